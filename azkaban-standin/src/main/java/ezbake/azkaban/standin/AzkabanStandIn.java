@@ -0,0 +1,913 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Embeddable stand-in for the parts of the Azkaban AJAX API the submitter uses: login on /, project creation,
+ * deletion, upload, flows and the project log on /manager, executions, their status and logs on /executor and
+ * schedules on /schedule.  Everything lives in memory.  Uploaded zips are read for their .job files; like Azkaban, the jobs no
+ * other job depends on are the flows.  Executions run for {@link #setExecutionDuration} and then succeed.
+ * <p/>
+ * Latency, the rate of failed requests, the rate of lost responses, response compression and the session time to live
+ * can be configured to see how the client behaves under load, with a slow or flaky server and with expiring sessions.
+ * <pre>
+ * final AzkabanStandIn azkaban = new AzkabanStandIn();
+ * azkaban.setLatency(5, 50, TimeUnit.MILLISECONDS);
+ * azkaban.start(0);
+ * new ProjectManager(new URI(azkaban.getUrl()), "azkaban", "azkaban").createProject("test", "test");
+ * </pre>
+ */
+public class AzkabanStandIn implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AzkabanStandIn.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // Events returned by fetchProjectLogs without a size, Azkaban's default
+    private static final int DEFAULT_LOG_PAGE_SIZE = 1000;
+
+    static {
+        // Without it small responses wait ~40ms for the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final StandInState state = new StandInState();
+    private final Map<String, String> users = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile double lostResponseRate;
+    private volatile Set<String> lostResponseActions = Collections.emptySet();
+    private volatile Set<String> failingFlows = Collections.emptySet();
+    private volatile int compressionThreshold = -1;
+    private volatile long sessionTimeToLiveMillis = TimeUnit.DAYS.toMillis(1);
+    private volatile long executionDurationMillis = TimeUnit.MINUTES.toMillis(1);
+    private volatile TimeZone timeZone = TimeZone.getDefault();
+    private int threads;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String scheme;
+
+    /**
+     * Only these users can log in.  If no user is added, any username and password is accepted.
+     */
+    public void addUser(String username, String password) {
+        users.put(username, password);
+    }
+
+    /**
+     * Delays every response by a uniformly distributed time
+     *
+     * @param min Minimum delay
+     * @param max Maximum delay, at least min
+     * @param unit Unit of min and max
+     */
+    public void setLatency(long min, long max, TimeUnit unit) {
+        if(min < 0 || max < min) {
+            throw new IllegalArgumentException("Latency must be 0 <= min <= max, was " + min + " and " + max);
+        }
+        this.minLatencyMillis = unit.toMillis(min);
+        this.maxLatencyMillis = unit.toMillis(max);
+    }
+
+    /**
+     * @param errorRate Fraction of requests, between 0 and 1, that fail with an HTTP 500
+     */
+    public void setErrorRate(double errorRate) {
+        if(errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1, was " + errorRate);
+        }
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param lostResponseRate Fraction of requests, between 0 and 1, that are carried out but whose connection is
+     *                         closed before the response is sent
+     * @param actions The ajax actions whose responses can be lost, all of them if none are given
+     */
+    public void setLostResponseRate(double lostResponseRate, String... actions) {
+        if(lostResponseRate < 0 || lostResponseRate > 1) {
+            throw new IllegalArgumentException("Lost response rate must be between 0 and 1, was " + lostResponseRate);
+        }
+        this.lostResponseActions = new HashSet<>(Arrays.asList(actions));
+        this.lostResponseRate = lostResponseRate;
+    }
+
+    /**
+     * @param flows Flows whose requests, e.g. removeSched or getRunning, always fail with an HTTP 500
+     */
+    public void setFailingFlows(String... flows) {
+        this.failingFlows = new HashSet<>(Arrays.asList(flows));
+    }
+
+    /**
+     * How long a session is valid after login, a day by default.  Calls with an expired session get
+     * {"error":"session"} back, like Azkaban.
+     */
+    public void setSessionTimeToLive(long timeToLive, TimeUnit unit) {
+        this.sessionTimeToLiveMillis = unit.toMillis(timeToLive);
+    }
+
+    /**
+     * Gzips the responses to clients that accept gzip, like Azkaban's Jetty with its GzipFilter
+     *
+     * @param minBytes Smallest response that is compressed, -1 (the default) to never compress
+     */
+    public void setCompressionThreshold(int minBytes) {
+        this.compressionThreshold = minBytes;
+    }
+
+    /**
+     * How long an execution stays running before it succeeds, a minute by default
+     */
+    public void setExecutionDuration(long duration, TimeUnit unit) {
+        this.executionDurationMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * The time zone of the server, the one of the JVM by default.  Schedule times are shown in it, and scheduleTime
+     * is taken in it unless its zone is UTC, like Azkaban.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * @param threads Number of request threads, 0 (the default) to use a thread per concurrent request
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Invalidates every session, the next call of each client gets {"error":"session"}
+     */
+    public void expireSessions() {
+        state.expireSessions();
+    }
+
+    /**
+     * Appends to the log of a running or finished execution, as if the job had written it
+     *
+     * @param executionId The execution
+     * @param jobId The job whose log to append to, NULL for the flow log
+     * @param text What the job wrote
+     * @throws IllegalArgumentException if the execution doesn't exist
+     */
+    public void appendLog(int executionId, String jobId, String text) {
+        if(!state.appendLog(executionId, jobId, text.getBytes(StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException("No execution " + executionId);
+        }
+    }
+
+    /**
+     * Adds an event to the log of a project, as if something else had been done to it
+     *
+     * @param projectName The project
+     * @param type The event type, e.g. PROPERTY_OVERRIDE
+     * @param message The message of the event
+     * @throws IllegalArgumentException if the project doesn't exist
+     */
+    public void addProjectEvent(String projectName, String type, String message) {
+        final StandInState.Project project = state.getProject(projectName);
+        if(project == null) {
+            throw new IllegalArgumentException("No project " + projectName);
+        }
+        state.addEvent(project, "azkaban", type, message);
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getInjectedFailureCount() {
+        return injectedFailures.get();
+    }
+
+    /**
+     * Starts serving HTTP on localhost
+     *
+     * @param port The port, 0 for any free port
+     */
+    public void start(int port) throws IOException {
+        start(HttpServer.create(new InetSocketAddress("localhost", port), 1024), "http");
+    }
+
+    /**
+     * Starts serving HTTPS on localhost
+     *
+     * @param port The port, 0 for any free port
+     * @param sslContext Context with the server certificate
+     */
+    public void start(int port, SSLContext sslContext) throws IOException {
+        final HttpsServer httpsServer = HttpsServer.create(new InetSocketAddress("localhost", port), 1024);
+        httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        start(httpsServer, "https");
+    }
+
+    private synchronized void start(HttpServer server, String scheme) {
+        if(this.server != null) {
+            throw new IllegalStateException("Already started on " + getUrl());
+        }
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "azkaban-standin-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.executor = threads > 0 ? Executors.newFixedThreadPool(threads, threadFactory) :
+                Executors.newCachedThreadPool(threadFactory);
+        this.server = server;
+        this.scheme = scheme;
+        server.createContext("/", this);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Azkaban stand-in listening on {}", getUrl());
+    }
+
+    public synchronized void stop() {
+        if(server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return The URL to give the managers, e.g. http://localhost:41234
+     */
+    public synchronized String getUrl() {
+        if(server == null) {
+            throw new IllegalStateException("Not started");
+        }
+        return scheme + "://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            delay();
+            if(errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedFailures.incrementAndGet();
+                respond(exchange, 500, error("Injected failure"));
+                return;
+            }
+
+            final Map<String, String> parameters = new HashMap<>();
+            final Map<String, byte[]> files = new HashMap<>();
+            readParameters(exchange, parameters, files);
+            if(isFailingFlow(parameters)) {
+                injectedFailures.incrementAndGet();
+                respond(exchange, 500, error("Injected failure"));
+                return;
+            }
+            final Object response = route(exchange.getRequestURI().getPath(), parameters, files);
+            if(lostResponseRate > 0 && isLostResponseAction(parameters) &&
+                    ThreadLocalRandom.current().nextDouble() < lostResponseRate) {
+                // Closing the exchange before the headers are sent drops the connection
+                injectedFailures.incrementAndGet();
+                return;
+            }
+            respond(exchange, 200, response);
+        } catch (Exception e) {
+            logger.warn("Request {} failed", exchange.getRequestURI(), e);
+            respond(exchange, 500, error(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isFailingFlow(Map<String, String> parameters) {
+        final Set<String> flows = failingFlows;
+        return !flows.isEmpty() && (flows.contains(parameters.get("flow")) || flows.contains(parameters.get("flowName")));
+    }
+
+    private boolean isLostResponseAction(Map<String, String> parameters) {
+        final Set<String> actions = lostResponseActions;
+        return actions.isEmpty() || actions.contains(parameters.get("ajax")) || actions.contains(parameters.get("action"));
+    }
+
+    private void delay() throws InterruptedException {
+        final long min = minLatencyMillis;
+        final long max = maxLatencyMillis;
+        final long delay = max > min ? min + ThreadLocalRandom.current().nextLong(max - min + 1) : min;
+        if(delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * @return The JSON response as a map, or a raw String body
+     */
+    private Object route(String path, Map<String, String> parameters, Map<String, byte[]> files) {
+        final String action = parameters.containsKey("ajax") ? parameters.get("ajax") : parameters.get("action");
+        if("login".equals(action)) {
+            return login(parameters);
+        }
+
+        final String user = state.getUser(parameters.get("session.id"));
+        if(user == null) {
+            return error("session");
+        }
+
+        switch(path) {
+            case "/manager":
+                if("true".equals(parameters.get("delete"))) {
+                    state.deleteProject(parameters.get("project"));
+                    return "";
+                }
+                if("create".equals(action)) {
+                    return createProject(parameters, user);
+                }
+                if("fetchprojectflows".equals(action)) {
+                    return fetchProjectFlows(parameters);
+                }
+                if("fetchProjectLogs".equals(action)) {
+                    return fetchProjectLogs(parameters);
+                }
+                if("upload".equals(action)) {
+                    return upload(parameters, files, user);
+                }
+                break;
+            case "/executor":
+                if("executeFlow".equals(action)) {
+                    return executeFlow(parameters);
+                }
+                if("getRunning".equals(action)) {
+                    return getRunning(parameters);
+                }
+                if("cancelFlow".equals(action)) {
+                    return cancelFlow(parameters);
+                }
+                if("fetchexecflow".equals(action)) {
+                    return fetchExecutionFlow(parameters);
+                }
+                if("fetchExecFlowLogs".equals(action)) {
+                    return fetchLogs(parameters, null);
+                }
+                if("fetchExecJobLogs".equals(action)) {
+                    return fetchLogs(parameters, parameters.get("jobId"));
+                }
+                break;
+            case "/schedule":
+                if("scheduleFlow".equals(action)) {
+                    return scheduleFlow(parameters, user);
+                }
+                if("removeSched".equals(action)) {
+                    return removeSchedule(parameters);
+                }
+                if("fetchSchedule".equals(action)) {
+                    return fetchSchedule(parameters);
+                }
+                break;
+            default:
+                break;
+        }
+        return error("Unknown action " + action + " on " + path);
+    }
+
+    private Map<String, Object> login(Map<String, String> parameters) {
+        final String username = parameters.get("username");
+        final String password = parameters.get("password");
+        if(username == null || (!users.isEmpty() && !String.valueOf(password).equals(users.get(username)))) {
+            return error("Incorrect Login. Username/Password not found.");
+        }
+
+        final Map<String, Object> result = status("success");
+        result.put("session.id", state.login(username, sessionTimeToLiveMillis));
+        return result;
+    }
+
+    private Map<String, Object> createProject(Map<String, String> parameters, String user) {
+        final String name = parameters.get("name");
+        if(name == null || name.isEmpty()) {
+            return message("error", "Project name can't be empty.");
+        }
+        if(state.createProject(name, parameters.get("description"), user) == null) {
+            return message("error", "Project already exists.");
+        }
+
+        final Map<String, Object> result = status("success");
+        result.put("path", "manager?project=" + name);
+        result.put("action", "redirect");
+        return result;
+    }
+
+    private Map<String, Object> fetchProjectFlows(Map<String, String> parameters) {
+        final StandInState.Project project = state.getProject(parameters.get("project"));
+        if(project == null) {
+            return error("Project " + parameters.get("project") + " doesn't exist.");
+        }
+
+        final List<Map<String, Object>> flows = new ArrayList<>();
+        for(String flow : project.flows) {
+            flows.add(Collections.<String, Object>singletonMap("flowId", flow));
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("project", project.name);
+        result.put("projectId", project.id);
+        result.put("flows", flows);
+        return result;
+    }
+
+    private Map<String, Object> fetchProjectLogs(Map<String, String> parameters) {
+        final StandInState.Project project = state.getProject(parameters.get("project"));
+        if(project == null) {
+            return error("Project " + parameters.get("project") + " doesn't exist.");
+        }
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("project", project.name);
+        result.put("projectId", project.id);
+        result.put("columns", Arrays.asList("user", "time", "type", "message"));
+        // Newest first, a page at a time like Azkaban
+        final int skip = Math.max(0, parseInt(parameters.get("skip")));
+        final int size = parameters.containsKey("size") ? Math.max(0, parseInt(parameters.get("size"))) :
+                DEFAULT_LOG_PAGE_SIZE;
+        result.put("logData", state.getEvents(project, skip, size));
+        return result;
+    }
+
+    private Map<String, Object> upload(Map<String, String> parameters, Map<String, byte[]> files, String user) {
+        final StandInState.Project project = state.getProject(parameters.get("project"));
+        if(project == null) {
+            return error("Installation Failed. Project '" + parameters.get("project") + "' doesn't exist.");
+        }
+        final byte[] zip = files.get("file");
+        if(zip == null) {
+            return error("Installation Failed. No file uploaded.");
+        }
+
+        final List<String> flows;
+        try {
+            flows = flows(zip);
+        } catch (IOException e) {
+            return error("Installation Failed. " + e.getMessage());
+        }
+        if(flows.isEmpty()) {
+            return error("Installation Failed. No .job files found in the archive.");
+        }
+
+        final int version = state.upload(project, flows, user, parameters.get("file.name"));
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("projectId", String.valueOf(project.id));
+        result.put("version", String.valueOf(version));
+        return result;
+    }
+
+    private Map<String, Object> executeFlow(Map<String, String> parameters) {
+        final StandInState.Project project = state.getProject(parameters.get("project"));
+        final String flow = parameters.get("flow");
+        if(project == null) {
+            return error("Project " + parameters.get("project") + " doesn't exist.");
+        }
+        if(!project.flows.contains(flow)) {
+            return error("Flow " + flow + " cannot be found in project " + project.name);
+        }
+
+        final StandInState.Execution execution = state.execute(project, flow, executionDurationMillis);
+        state.appendLog(execution.id, null, ("Submitting flow " + project.name + "." + flow + " as execution " +
+                execution.id + "\n").getBytes(StandardCharsets.UTF_8));
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("message", "Execution submitted successfully with exec id " + execution.id);
+        result.put("project", project.name);
+        result.put("flow", flow);
+        result.put("execid", execution.id);
+        return result;
+    }
+
+    private Map<String, Object> getRunning(Map<String, String> parameters) {
+        final StandInState.Project project = state.getProject(parameters.get("project"));
+        if(project == null) {
+            return error("Project " + parameters.get("project") + " doesn't exist.");
+        }
+
+        final List<Integer> running = state.getRunning(project, parameters.get("flow"));
+        final Map<String, Object> result = new LinkedHashMap<>();
+        if(!running.isEmpty()) {
+            result.put("execIds", running);
+        }
+        return result;
+    }
+
+    private Object cancelFlow(Map<String, String> parameters) {
+        final int id = parseInt(parameters.get("execid"));
+        if(!state.cancel(id)) {
+            return error("Execution " + parameters.get("execid") + " isn't running.");
+        }
+        // Azkaban answers a successful cancel with an empty body
+        return "";
+    }
+
+    private Map<String, Object> fetchExecutionFlow(Map<String, String> parameters) {
+        final StandInState.Execution execution = state.getExecution(parseInt(parameters.get("execid")));
+        if(execution == null) {
+            return error("Cannot find execution '" + parameters.get("execid") + "'");
+        }
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("execid", execution.id);
+        result.put("project", execution.project.name);
+        result.put("projectId", execution.project.id);
+        result.put("flow", execution.flow);
+        result.put("flowId", execution.flow);
+        result.put("status", execution.status);
+        result.put("submitTime", execution.submitTime);
+        result.put("startTime", execution.submitTime);
+        result.put("endTime", execution.endTime);
+        result.put("nodes", Collections.emptyList());
+        return result;
+    }
+
+    /**
+     * Answers fetchExecFlowLogs and fetchExecJobLogs with up to length bytes of the log from the offset, an empty
+     * object if the log doesn't exist yet
+     */
+    private Map<String, Object> fetchLogs(Map<String, String> parameters, String jobId) {
+        final int executionId = parseInt(parameters.get("execid"));
+        if(state.getExecution(executionId) == null) {
+            return error("Cannot find execution '" + parameters.get("execid") + "'");
+        }
+        final long offset = Math.max(0, parseLong(parameters.get("offset")));
+        final byte[] data = state.readLog(executionId, jobId, offset, parseInt(parameters.get("length")));
+        final Map<String, Object> result = new LinkedHashMap<>();
+        if(data != null) {
+            result.put("data", new String(data, StandardCharsets.UTF_8));
+            result.put("offset", offset);
+            result.put("length", data.length);
+        }
+        return result;
+    }
+
+    private Map<String, Object> scheduleFlow(Map<String, String> parameters, String user) {
+        final StandInState.Project project = state.getProject(parameters.get("projectName"));
+        final String flow = parameters.get("flow");
+        if(project == null) {
+            return error("Project " + parameters.get("projectName") + " does not exist");
+        }
+        if(!project.flows.contains(flow)) {
+            return error("Flow " + flow + " cannot be found in project " + project.name);
+        }
+        final String period = "on".equals(parameters.get("is_recurring")) ? parameters.get("period") : null;
+        if(period != null && !period.matches("\\d+[Mwdhms]")) {
+            return error("Invalid period " + period);
+        }
+
+        final String firstSchedTime = scheduleTime(parameters.get("scheduleDate"), parameters.get("scheduleTime"),
+                timeZone);
+        if(firstSchedTime == null) {
+            return error("Invalid date " + parameters.get("scheduleDate") + " or time " +
+                    parameters.get("scheduleTime"));
+        }
+
+        state.schedule(project, flow, user, firstSchedTime, period);
+        return message("success", project.name + "." + flow + " scheduled.");
+    }
+
+    private Object removeSchedule(Map<String, String> parameters) {
+        final String flow = parameters.get("flowName");
+        if(state.removeSchedule(parseInt(parameters.get("projectId")), flow) == null) {
+            // Azkaban redirects instead of answering with JSON when there's nothing to remove
+            return "";
+        }
+        return message("success", "flow " + flow + " removed from Schedules.");
+    }
+
+    private Map<String, Object> fetchSchedule(Map<String, String> parameters) {
+        final StandInState.Schedule schedule = state.getSchedule(parseInt(parameters.get("projectId")),
+                parameters.get("flowId"));
+        final Map<String, Object> result = new LinkedHashMap<>();
+        if(schedule != null) {
+            final Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("scheduleId", String.valueOf(schedule.id));
+            fields.put("submitUser", schedule.submitUser);
+            fields.put("firstSchedTime", schedule.firstSchedTime);
+            fields.put("nextExecTime", schedule.firstSchedTime);
+            fields.put("period", formatPeriod(schedule.period));
+            result.put("schedule", fields);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the scheduleDate (MM/DD/YYYY, today if missing) and scheduleTime (hh,mm,am|pm,zone) of a scheduleFlow
+     * into the yyyy-MM-dd HH:mm:ss Azkaban shows.  Like Azkaban, the time is in UTC if the zone is UTC and in the
+     * server's time zone otherwise, and it is shown in the server's time zone.
+     *
+     * @param serverZone The time zone of the server
+     * @return NULL if the date or the time is invalid
+     */
+    static String scheduleTime(String date, String time, TimeZone serverZone) {
+        final String[] parts = time == null ? new String[0] : time.split(",");
+        if(parts.length < 3) {
+            return null;
+        }
+        try {
+            int hour = Integer.parseInt(parts[0].trim());
+            final int minute = Integer.parseInt(parts[1].trim());
+            if(hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                return null;
+            }
+            if(hour <= 12) {
+                hour = hour % 12 + ("pm".equalsIgnoreCase(parts[2].trim()) ? 12 : 0);
+            }
+
+            final TimeZone zone = parts.length > 3 && "UTC".equalsIgnoreCase(parts[3].trim()) ?
+                    TimeZone.getTimeZone("UTC") : serverZone;
+            final SimpleDateFormat day = new SimpleDateFormat("MM/dd/yyyy");
+            day.setTimeZone(zone);
+            final String scheduledDay = date == null || date.isEmpty() || "null".equals(date) ? day.format(new Date()) :
+                    date;
+            final SimpleDateFormat parser = new SimpleDateFormat("MM/dd/yyyy HH:mm");
+            parser.setLenient(false);
+            parser.setTimeZone(zone);
+            final Date scheduled = parser.parse(String.format("%s %02d:%02d", scheduledDay, hour, minute));
+
+            final SimpleDateFormat shown = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            shown.setTimeZone(serverZone);
+            return shown.format(scheduled);
+        } catch (NumberFormatException | ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The period the way Azkaban shows it, e.g. "1 day(s)" for 1d
+     */
+    static String formatPeriod(String period) {
+        if(period == null) {
+            return "null";
+        }
+        final String count = period.substring(0, period.length() - 1);
+        switch(period.charAt(period.length() - 1)) {
+            case 'M': return count + " month(s)";
+            case 'w': return count + " week(s)";
+            case 'd': return count + " day(s)";
+            case 'h': return count + " hour(s)";
+            case 'm': return count + " minute(s)";
+            default: return count + " second(s)";
+        }
+    }
+
+    /**
+     * @return The jobs of the zip that no other job depends on
+     */
+    private static List<String> flows(byte[] zip) throws IOException {
+        final List<String> jobs = new ArrayList<>();
+        final Set<String> dependencies = new HashSet<>();
+        try(ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while((entry = in.getNextEntry()) != null) {
+                final String name = entry.getName();
+                if(entry.isDirectory() || !name.endsWith(".job")) {
+                    continue;
+                }
+                jobs.add(name.substring(name.lastIndexOf('/') + 1, name.length() - ".job".length()));
+
+                final Properties job = new Properties();
+                job.load(in);
+                final String dependsOn = job.getProperty("dependencies");
+                if(dependsOn != null) {
+                    for(String dependency : dependsOn.split(",")) {
+                        dependencies.add(dependency.trim());
+                    }
+                }
+            }
+        }
+        jobs.removeAll(dependencies);
+        return jobs;
+    }
+
+    private static void readParameters(HttpExchange exchange, Map<String, String> parameters,
+                                       Map<String, byte[]> files) throws IOException {
+        decode(exchange.getRequestURI().getRawQuery(), parameters);
+
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        try(InputStream body = exchange.getRequestBody()) {
+            if(contentType == null) {
+                IOUtils.skip(body, Long.MAX_VALUE);
+            } else if(contentType.startsWith("application/x-www-form-urlencoded")) {
+                decode(IOUtils.toString(body, "UTF-8"), parameters);
+            } else if(contentType.startsWith("multipart/form-data")) {
+                final Map<String, String> fileNames = new HashMap<>();
+                for(Map.Entry<String, byte[]> part : Multipart.parse(contentType, IOUtils.toByteArray(body),
+                        fileNames).entrySet()) {
+                    if("file".equals(part.getKey())) {
+                        files.put(part.getKey(), part.getValue());
+                        // Azkaban names the uploaded file in the project log
+                        parameters.put("file.name", fileNames.get(part.getKey()));
+                    } else {
+                        parameters.put(part.getKey(), new String(part.getValue(), StandardCharsets.UTF_8));
+                    }
+                }
+            } else {
+                IOUtils.skip(body, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    private static void decode(String encoded, Map<String, String> parameters) throws UnsupportedEncodingException {
+        if(encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for(String pair : encoded.split("&")) {
+            final int equals = pair.indexOf('=');
+            if(equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            } else if(!pair.isEmpty()) {
+                parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Object response) throws IOException {
+        byte[] body = response instanceof String ? ((String) response).getBytes(StandardCharsets.UTF_8) :
+                mapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        final int threshold = compressionThreshold;
+        if(threshold >= 0 && body.length >= threshold && acceptsGzip(exchange)) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try(GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        // A response to HEAD has the headers only
+        final boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, body.length == 0 || head ? -1 : body.length);
+        if(body.length > 0 && !head) {
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        final List<String> accepted = exchange.getRequestHeaders().get("Accept-Encoding");
+        if(accepted != null) {
+            for(String value : accepted) {
+                for(String coding : value.split(",")) {
+                    if("gzip".equalsIgnoreCase(coding.split(";")[0].trim())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, Object> error(String error) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("error", error);
+        return result;
+    }
+
+    private static Map<String, Object> status(String status) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", status);
+        return result;
+    }
+
+    private static Map<String, Object> message(String status, String message) {
+        final Map<String, Object> result = status(status);
+        result.put("message", message);
+        return result;
+    }
+
+    private static class OptionsBean {
+        @Option(name="-p", aliases="--port", usage="port to listen on (default 8081)")
+        int port = 8081;
+
+        @Option(name="-l", aliases="--latency", usage="minimum and maximum response delay in ms, e.g. 5,50")
+        String latency;
+
+        @Option(name="-e", aliases="--errorRate", usage="fraction of requests that fail, between 0 and 1")
+        double errorRate;
+
+        @Option(name="-o", aliases="--lostResponseRate", usage="fraction of requests carried out without a response, " +
+                "between 0 and 1")
+        double lostResponseRate;
+
+        @Option(name="-g", aliases="--gzip", usage="gzip responses of at least this many bytes to clients that " +
+                "accept gzip (default never)")
+        int compressionThreshold = -1;
+
+        @Option(name="-s", aliases="--sessionTtl", usage="session time to live in seconds")
+        long sessionTtl = TimeUnit.DAYS.toSeconds(1);
+
+        @Option(name="-d", aliases="--executionDuration", usage="how long executions run in seconds")
+        long executionDuration = TimeUnit.MINUTES.toSeconds(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        final OptionsBean options = new OptionsBean();
+        final CmdLineParser parser = new CmdLineParser(options);
+
+        try {
+            parser.parseArgument(args);
+            final AzkabanStandIn azkaban = new AzkabanStandIn();
+            if(options.latency != null) {
+                final String[] bounds = options.latency.split(",");
+                azkaban.setLatency(Long.parseLong(bounds[0]), Long.parseLong(bounds[bounds.length - 1]),
+                        TimeUnit.MILLISECONDS);
+            }
+            azkaban.setErrorRate(options.errorRate);
+            azkaban.setLostResponseRate(options.lostResponseRate);
+            azkaban.setCompressionThreshold(options.compressionThreshold);
+            azkaban.setSessionTimeToLive(options.sessionTtl, TimeUnit.SECONDS);
+            azkaban.setExecutionDuration(options.executionDuration, TimeUnit.SECONDS);
+            azkaban.start(options.port);
+            System.out.println("Azkaban stand-in running on " + azkaban.getUrl() + ", Ctrl-C to stop");
+            Thread.currentThread().join();
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            parser.printUsage(System.err);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.standin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal multipart/form-data parser, enough for the upload request of the submitter
+ */
+final class Multipart {
+
+    // name="..." but not filename="..."
+    private static final Pattern FIELD_NAME = Pattern.compile("[;\\s]name=\"([^\"]*)\"");
+    private static final Pattern FILE_NAME = Pattern.compile("[;\\s]filename=\"([^\"]*)\"");
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private Multipart() { }
+
+    /**
+     * @param contentType The Content-Type header of the request
+     * @param body The request body
+     * @param fileNames Where the file name of each file part is put by field name
+     * @return The content of each part by field name
+     * @throws IllegalArgumentException if the content type has no boundary
+     */
+    static Map<String, byte[]> parse(String contentType, byte[] body, Map<String, String> fileNames) {
+        final Map<String, byte[]> parts = new HashMap<>();
+        final byte[] delimiter = ("--" + boundary(contentType)).getBytes(StandardCharsets.ISO_8859_1);
+        final byte[] separator = ("\r\n--" + boundary(contentType)).getBytes(StandardCharsets.ISO_8859_1);
+
+        int position = indexOf(body, delimiter, 0);
+        while(position >= 0) {
+            position += delimiter.length;
+            if(position + 1 >= body.length || (body[position] == '-' && body[position + 1] == '-')) {
+                break;
+            }
+            final int headerStart = position + 2;
+            final int headerEnd = indexOf(body, HEADER_END, headerStart);
+            if(headerEnd < 0) {
+                break;
+            }
+            final int contentStart = headerEnd + HEADER_END.length;
+            final int contentEnd = indexOf(body, separator, contentStart);
+            if(contentEnd < 0) {
+                break;
+            }
+
+            final String headers = new String(body, headerStart, headerEnd - headerStart, StandardCharsets.ISO_8859_1);
+            final String name = find(FIELD_NAME, headers);
+            if(name != null) {
+                parts.put(name, Arrays.copyOfRange(body, contentStart, contentEnd));
+                final String fileName = find(FILE_NAME, headers);
+                if(fileName != null) {
+                    fileNames.put(name, fileName);
+                }
+            }
+            position = contentEnd + 2;
+        }
+        return parts;
+    }
+
+    private static String boundary(String contentType) {
+        for(String parameter : contentType.split(";")) {
+            final String trimmed = parameter.trim();
+            if(trimmed.startsWith("boundary=")) {
+                return trimmed.substring("boundary=".length()).replace("\"", "");
+            }
+        }
+        throw new IllegalArgumentException("No boundary in " + contentType);
+    }
+
+    private static String find(Pattern pattern, String headers) {
+        final Matcher matcher = pattern.matcher(headers);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for(int i = from; i <= data.length - pattern.length; i++) {
+            for(int j = 0; j < pattern.length; j++) {
+                if(data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
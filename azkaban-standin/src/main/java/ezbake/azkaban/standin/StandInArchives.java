@@ -0,0 +1,107 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds the Azkaban zips uploaded to an {@link AzkabanStandIn}
+ * <pre>
+ * final File zip = StandInArchives.tempZip("extract", "load");
+ * new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip();
+ * </pre>
+ */
+public final class StandInArchives {
+
+    private StandInArchives() { }
+
+    /**
+     * @return A command job echoing the command, depending on the given jobs
+     */
+    public static byte[] commandJob(String command, String... dependencies) {
+        final StringBuilder job = new StringBuilder("type=command\ncommand=echo ").append(command).append('\n');
+        if(dependencies.length > 0) {
+            job.append("dependencies=");
+            for(int i = 0; i < dependencies.length; i++) {
+                job.append(i > 0 ? "," : "").append(dependencies[i]);
+            }
+            job.append('\n');
+        }
+        return job.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return A &lt;flow&gt;.job entry echoing its name for every flow, none of them depend on another so each is a
+     * flow of its own
+     */
+    public static Map<String, byte[]> flows(String... flows) {
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        for(String flow : flows) {
+            entries.put(flow + ".job", commandJob(flow));
+        }
+        return entries;
+    }
+
+    /**
+     * @param entries Contents by entry name, in the order they are written
+     * @return The zip
+     */
+    public static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(entries, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a zip to a temporary file, the caller deletes it
+     *
+     * @param entries Contents by entry name, in the order they are written
+     */
+    public static File tempZip(Map<String, byte[]> entries) throws IOException {
+        final File zip = File.createTempFile("standin", ".zip");
+        try(OutputStream out = new FileOutputStream(zip)) {
+            write(entries, out);
+        }
+        return zip;
+    }
+
+    /**
+     * @see #flows(String...)
+     * @see #tempZip(Map)
+     */
+    public static File tempZip(String... flows) throws IOException {
+        return tempZip(flows(flows));
+    }
+
+    private static void write(Map<String, byte[]> entries, OutputStream out) throws IOException {
+        try(ZipOutputStream zip = new ZipOutputStream(out)) {
+            for(Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Projects, executions, schedules and sessions of an {@link AzkabanStandIn}.  Every method is synchronized, the
+ * HTTP handling around it is what costs time.
+ */
+class StandInState {
+
+    static class Project {
+        final int id;
+        final String name;
+        final String description;
+        int version;
+        List<String> flows = Collections.emptyList();
+        // user, time, type and message of everything done to the project, like Azkaban's project log
+        final List<Object[]> events = new ArrayList<>();
+
+        Project(int id, String name, String description) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    static class Execution {
+        final int id;
+        final Project project;
+        final String flow;
+        final long submitTime;
+        final long duration;
+        long endTime = -1;
+        String status = "RUNNING";
+        // The flow log under "" and the job logs by job ID, as UTF-8
+        final Map<String, ByteArrayOutputStream> logs = new HashMap<>();
+
+        Execution(int id, Project project, String flow, long submitTime, long duration) {
+            this.id = id;
+            this.project = project;
+            this.flow = flow;
+            this.submitTime = submitTime;
+            this.duration = duration;
+        }
+
+        /**
+         * Finishes the execution if its duration has passed
+         */
+        void update(long now) {
+            if("RUNNING".equals(status) && now >= submitTime + duration) {
+                status = "SUCCEEDED";
+                endTime = submitTime + duration;
+            }
+        }
+
+        boolean isRunning() {
+            return "RUNNING".equals(status);
+        }
+    }
+
+    static class Schedule {
+        final int id;
+        final Project project;
+        final String flow;
+        final String submitUser;
+        final String firstSchedTime;
+        final String period;
+
+        Schedule(int id, Project project, String flow, String submitUser, String firstSchedTime, String period) {
+            this.id = id;
+            this.project = project;
+            this.flow = flow;
+            this.submitUser = submitUser;
+            this.firstSchedTime = firstSchedTime;
+            this.period = period;
+        }
+    }
+
+    private static class Session {
+        final String user;
+        final long expires;
+
+        Session(String user, long expires) {
+            this.user = user;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<String, Project> projects = new HashMap<>();
+    private final Map<Integer, Execution> executions = new HashMap<>();
+    // Executions that were running when last looked at, by project and flow, so getRunning doesn't scan the history
+    private final Map<String, List<Execution>> running = new HashMap<>();
+    private final Map<String, Schedule> schedules = new HashMap<>();
+    private final Map<String, Session> sessions = new HashMap<>();
+    private int nextProjectId = 1;
+    private int nextExecutionId = 1;
+    private int nextScheduleId = 1;
+
+    synchronized String login(String user, long timeToLive) {
+        final String sessionId = UUID.randomUUID().toString();
+        sessions.put(sessionId, new Session(user, System.currentTimeMillis() + timeToLive));
+        return sessionId;
+    }
+
+    /**
+     * @return The user of the session, NULL if the session doesn't exist or expired
+     */
+    synchronized String getUser(String sessionId) {
+        final Session session = sessionId == null ? null : sessions.get(sessionId);
+        if(session == null) {
+            return null;
+        }
+        if(System.currentTimeMillis() >= session.expires) {
+            sessions.remove(sessionId);
+            return null;
+        }
+        return session.user;
+    }
+
+    synchronized void expireSessions() {
+        sessions.clear();
+    }
+
+    /**
+     * @return The new project, NULL if it already exists
+     */
+    synchronized Project createProject(String name, String description, String user) {
+        if(projects.containsKey(name)) {
+            return null;
+        }
+        final Project project = new Project(nextProjectId++, name, description);
+        addEvent(project, user, "CREATED", null);
+        projects.put(name, project);
+        return project;
+    }
+
+    synchronized Project getProject(String name) {
+        return name == null ? null : projects.get(name);
+    }
+
+    synchronized Project deleteProject(String name) {
+        final Project project = projects.remove(name);
+        if(project != null) {
+            for(Schedule schedule : new ArrayList<>(schedules.values())) {
+                if(schedule.project == project) {
+                    schedules.remove(key(project.id, schedule.flow));
+                }
+            }
+        }
+        return project;
+    }
+
+    /**
+     * @return The new version of the project
+     */
+    synchronized int upload(Project project, List<String> flows, String user, String fileName) {
+        project.flows = Collections.unmodifiableList(new ArrayList<>(flows));
+        project.version++;
+        addEvent(project, user, "UPLOADED", "Uploaded project files zip " + fileName + " as version " +
+                project.version);
+        return project.version;
+    }
+
+    synchronized void addEvent(Project project, String user, String type, String message) {
+        project.events.add(new Object[] {user, System.currentTimeMillis(), type, message});
+    }
+
+    /**
+     * @param skip Number of the newest events to leave out
+     * @param size Maximum number of events
+     * @return A copy of a page of the events of the project, newest first
+     */
+    synchronized List<Object[]> getEvents(Project project, int skip, int size) {
+        final List<Object[]> events = new ArrayList<>();
+        for(int i = project.events.size() - 1 - skip; i >= 0 && events.size() < size; i--) {
+            events.add(project.events.get(i).clone());
+        }
+        return events;
+    }
+
+    synchronized Execution execute(Project project, String flow, long duration) {
+        final Execution execution = new Execution(nextExecutionId++, project, flow, System.currentTimeMillis(),
+                duration);
+        executions.put(execution.id, execution);
+        List<Execution> flowExecutions = running.get(key(project.id, flow));
+        if(flowExecutions == null) {
+            flowExecutions = new ArrayList<>();
+            running.put(key(project.id, flow), flowExecutions);
+        }
+        flowExecutions.add(execution);
+        return execution;
+    }
+
+    synchronized Execution getExecution(int id) {
+        final Execution execution = executions.get(id);
+        if(execution != null) {
+            execution.update(System.currentTimeMillis());
+        }
+        return execution;
+    }
+
+    synchronized List<Integer> getRunning(Project project, String flow) {
+        final List<Integer> ids = new ArrayList<>();
+        final List<Execution> flowExecutions = running.get(key(project.id, flow));
+        if(flowExecutions == null) {
+            return ids;
+        }
+
+        final long now = System.currentTimeMillis();
+        for(Iterator<Execution> iterator = flowExecutions.iterator(); iterator.hasNext(); ) {
+            final Execution execution = iterator.next();
+            execution.update(now);
+            if(execution.isRunning()) {
+                ids.add(execution.id);
+            } else {
+                iterator.remove();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return false if the execution doesn't exist or isn't running
+     */
+    synchronized boolean cancel(int id) {
+        final Execution execution = getExecution(id);
+        if(execution == null || !execution.isRunning()) {
+            return false;
+        }
+        execution.status = "KILLED";
+        execution.endTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * @param jobId The job whose log to append to, NULL for the flow log
+     * @return false if the execution doesn't exist
+     */
+    synchronized boolean appendLog(int executionId, String jobId, byte[] text) {
+        final Execution execution = executions.get(executionId);
+        if(execution == null) {
+            return false;
+        }
+        final String key = jobId == null ? "" : jobId;
+        ByteArrayOutputStream log = execution.logs.get(key);
+        if(log == null) {
+            log = new ByteArrayOutputStream();
+            execution.logs.put(key, log);
+        }
+        log.write(text, 0, text.length);
+        return true;
+    }
+
+    /**
+     * Reads up to length bytes of a log from the offset, ending on a UTF-8 character boundary like Azkaban does
+     *
+     * @param jobId The job whose log to read, NULL for the flow log
+     * @return NULL if the execution or the job log doesn't exist
+     */
+    synchronized byte[] readLog(int executionId, String jobId, long offset, int length) {
+        final Execution execution = executions.get(executionId);
+        final ByteArrayOutputStream log = execution == null ? null : execution.logs.get(jobId == null ? "" : jobId);
+        if(log == null) {
+            return null;
+        }
+        final byte[] bytes = log.toByteArray();
+        final int start = (int) Math.max(0, Math.min(offset, bytes.length));
+        int end = (int) Math.min(bytes.length, (long) start + Math.max(0, length));
+        while(end > start && end < bytes.length && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOfRange(bytes, start, end);
+    }
+
+    synchronized Schedule schedule(Project project, String flow, String user, String firstSchedTime, String period) {
+        final Schedule schedule = new Schedule(nextScheduleId++, project, flow, user, firstSchedTime, period);
+        schedules.put(key(project.id, flow), schedule);
+        return schedule;
+    }
+
+    synchronized Schedule getSchedule(int projectId, String flow) {
+        return schedules.get(key(projectId, flow));
+    }
+
+    synchronized Schedule removeSchedule(int projectId, String flow) {
+        return schedules.remove(key(projectId, flow));
+    }
+
+    private static String key(int projectId, String flow) {
+        return projectId + "." + flow;
+    }
+}
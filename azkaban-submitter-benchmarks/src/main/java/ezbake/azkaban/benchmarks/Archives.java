@@ -0,0 +1,116 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic .tar.gz submissions laid out like a real pipeline: a jar, a config directory with SSL certificates, job
+ * files and data files filling the rest of the requested size.  The jar and data files are random bytes, so like
+ * real jars they barely compress and the archive is about as large as its contents.
+ */
+public final class Archives {
+
+    private static final int DATA_FILE_BYTES = 1024 * 1024;
+
+    private Archives() { }
+
+    /**
+     * @param megabytes Approximate uncompressed size of the archive
+     * @param jobs Number of .job files
+     * @return The gzipped tar
+     * @throws IllegalArgumentException if the archive wouldn't fit in a byte array
+     */
+    public static byte[] tarGz(int megabytes, int jobs) throws IOException {
+        if(megabytes < 1 || megabytes > 2000) {
+            throw new IllegalArgumentException("Archives are held in a byte array, between 1 and 2000MB, was " +
+                    megabytes);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(megabytes * 1024 * 1024 + 64 * 1024);
+        final Random random = new Random(megabytes);
+        try(TarOutputStream tar = new TarOutputStream(new FastGZIPOutputStream(bytes))) {
+            tar.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+            add(tar, "pipeline/config/app.properties", text("azkaban.project=pipeline\n"));
+            add(tar, "pipeline/config/ssl/secId/application.crt", random(random, 2048));
+            add(tar, "pipeline/config/ssl/secId/application.priv", random(random, 1024));
+            add(tar, "pipeline/lib/pipeline-1.0.jar", random(random, Math.min(DATA_FILE_BYTES, megabytes * 1024 * 1024)));
+            for(int i = 0; i < jobs; i++) {
+                add(tar, "pipeline/jobs/job-" + i + ".job", text("type=command\ncommand=echo " + i + "\n" +
+                        (i > 0 ? "dependencies=job-" + (i - 1) + "\n" : "")));
+            }
+            final byte[] data = new byte[DATA_FILE_BYTES];
+            for(int i = 1; i < megabytes; i++) {
+                random.nextBytes(data);
+                add(tar, "pipeline/data/part-" + i, data);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param flows Number of independent jobs, each of them a flow
+     * @return An Azkaban zip
+     */
+    public static byte[] zip(int flows) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for(int i = 0; i < flows; i++) {
+                zip.putNextEntry(new ZipEntry("flow-" + i + ".job"));
+                zip.write(text("type=command\ncommand=echo " + i + "\n"));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void add(TarOutputStream tar, String name, byte[] contents) throws IOException {
+        final TarEntry entry = new TarEntry(name);
+        entry.setSize(contents.length);
+        tar.putNextEntry(entry);
+        tar.write(contents);
+        tar.closeEntry();
+    }
+
+    private static byte[] text(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(Random random, int length) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Generating multi-hundred megabyte fixtures at the default level takes longer than the benchmark itself
+     */
+    private static class FastGZIPOutputStream extends GZIPOutputStream {
+        FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
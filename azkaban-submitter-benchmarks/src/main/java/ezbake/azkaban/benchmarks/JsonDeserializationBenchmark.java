@@ -0,0 +1,142 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+import ezbake.azkaban.manager.result.AuthenticationResult;
+import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.FetchScheduleResult;
+import ezbake.azkaban.manager.result.ManagerResult;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.RemoveScheduleResult;
+import ezbake.azkaban.manager.result.RunningExecutionsResult;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.submitter.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JsonUtil} decoding of every {@code manager.result} class, from the String the blocking calls used to read
+ * and from the response stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDeserializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Responses {
+        final String authentication = Payloads.authentication();
+        final String execution = Payloads.execution();
+        final String fetchSchedule = Payloads.fetchSchedule();
+        final String manager = Payloads.manager();
+        final String removeSchedule = Payloads.removeSchedule();
+        final String scheduler = Payloads.scheduler();
+        final String uploader = Payloads.uploader();
+    }
+
+    /**
+     * The results whose size depends on the project: flows of a project and running executions
+     */
+    @State(Scope.Benchmark)
+    public static class ListResponses {
+        @Param({"10", "1000", "100000"})
+        int items;
+
+        String projectFlows;
+        byte[] projectFlowsBytes;
+        String runningExecutions;
+        byte[] runningExecutionsBytes;
+
+        @Setup
+        public void setUp() {
+            projectFlows = Payloads.projectFlows(items);
+            projectFlowsBytes = projectFlows.getBytes(StandardCharsets.UTF_8);
+            runningExecutions = Payloads.runningExecutions(items);
+            runningExecutionsBytes = runningExecutions.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public Object authentication(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.authentication, AuthenticationResult.class);
+    }
+
+    @Benchmark
+    public Object execution(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.execution, ExecutionResult.class);
+    }
+
+    @Benchmark
+    public Object fetchSchedule(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.fetchSchedule, FetchScheduleResult.class);
+    }
+
+    @Benchmark
+    public Object manager(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.manager, ManagerResult.class);
+    }
+
+    @Benchmark
+    public Object removeSchedule(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.removeSchedule, RemoveScheduleResult.class);
+    }
+
+    @Benchmark
+    public Object scheduler(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.scheduler, SchedulerResult.class);
+    }
+
+    @Benchmark
+    public Object uploader(Responses responses) throws Exception {
+        return JsonUtil.deserialize(responses.uploader, UploaderResult.class);
+    }
+
+    @Benchmark
+    public Object projectFlows(ListResponses responses) throws Exception {
+        return JsonUtil.deserialize(responses.projectFlows, ProjectFlowsResult.class);
+    }
+
+    @Benchmark
+    public Object projectFlowsStream(ListResponses responses) throws Exception {
+        return JsonUtil.deserialize(new ByteArrayInputStream(responses.projectFlowsBytes), ProjectFlowsResult.class);
+    }
+
+    @Benchmark
+    public Object runningExecutions(ListResponses responses) throws Exception {
+        return JsonUtil.deserialize(responses.runningExecutions, RunningExecutionsResult.class);
+    }
+
+    @Benchmark
+    public Object runningExecutionsStream(ListResponses responses) throws Exception {
+        return JsonUtil.deserialize(new ByteArrayInputStream(responses.runningExecutionsBytes),
+                RunningExecutionsResult.class);
+    }
+}
@@ -0,0 +1,147 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+import ezbake.azkaban.submitter.util.AzkabanLogParser;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing Azkaban log lines with the grok pattern of the logstash config, as a Java regex, and with
+ * {@link AzkabanLogParser}.  Every benchmark parses the same {@value #LINES} lines, results are per line.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogParserBenchmark {
+
+    static final int LINES = 10000;
+
+    @State(Scope.Benchmark)
+    public static class Log {
+        final Pattern grok = Pattern.compile(AzkabanLogParser.GROK_PATTERN);
+        String text;
+        String[] lines;
+        char[] chars;
+        int[] lineStarts;
+        int[] lineEnds;
+
+        @Setup
+        public void setUp() {
+            text = Payloads.azkabanLog(LINES);
+            lines = text.split("\n");
+            chars = text.toCharArray();
+            lineStarts = new int[lines.length];
+            lineEnds = new int[lines.length];
+            int start = 0;
+            for(int i = 0; i < lines.length; i++) {
+                lineStarts[i] = start;
+                lineEnds[i] = start + lines[i].length();
+                start = lineEnds[i] + 1;
+            }
+        }
+    }
+
+    /**
+     * What grok does: a new matcher per line and a String per field
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void regex(Log log, Blackhole blackhole) {
+        for(String line : log.lines) {
+            final Matcher matcher = log.grok.matcher(line);
+            if(matcher.find()) {
+                blackhole.consume(matcher.group(1));
+                blackhole.consume(matcher.group(2));
+                blackhole.consume(matcher.group(3));
+                blackhole.consume(matcher.group(4));
+            }
+        }
+    }
+
+    /**
+     * The regex with the matcher reused and the group bounds read instead of the group Strings
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void regexReusedMatcher(Log log, Blackhole blackhole) {
+        final Matcher matcher = log.grok.matcher("");
+        for(String line : log.lines) {
+            matcher.reset(line);
+            if(matcher.find()) {
+                blackhole.consume(matcher.end(1));
+                blackhole.consume(matcher.end(2));
+                blackhole.consume(matcher.end(3));
+                blackhole.consume(matcher.start(4));
+            }
+        }
+    }
+
+    /**
+     * The scanner over the lines in place, fields as offsets
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void scanner(Log log, Blackhole blackhole) {
+        final AzkabanLogParser.Event event = new AzkabanLogParser.Event();
+        for(int i = 0; i < log.lineStarts.length; i++) {
+            blackhole.consume(AzkabanLogParser.parse(log.chars, log.lineStarts[i], log.lineEnds[i], event));
+        }
+    }
+
+    /**
+     * The scanner with a String per field, like {@link #regex}
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void scannerFields(Log log, Blackhole blackhole) {
+        for(String line : log.lines) {
+            final AzkabanLogParser.Event event = AzkabanLogParser.parse(line);
+            if(event.isMatched()) {
+                blackhole.consume(event.getDateTime());
+                blackhole.consume(event.getLevel());
+                blackhole.consume(event.getJavaClass());
+                blackhole.consume(event.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Everything the command line does: reading the lines, parsing them and writing JSON lines
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long jsonLines(Log log) throws Exception {
+        return AzkabanLogParser.toJsonLines(new StringReader(log.text), new NullOutputStream());
+    }
+}
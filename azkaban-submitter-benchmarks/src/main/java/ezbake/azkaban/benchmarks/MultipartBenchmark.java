@@ -0,0 +1,84 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+import ezbake.azkaban.manager.UploadManager;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.client.methods.HttpPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the multipart upload request of {@link UploadManager} and writing it out the way HttpClient does when
+ * sending it.  Writing reads the zip from disk, so after the first iteration it measures the page cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultipartBenchmark {
+
+    @Param({"1", "64", "512"})
+    int megabytes;
+
+    File zip;
+    UploadManager uploadManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        zip = File.createTempFile("multipart-benchmark", ".zip");
+        Files.write(zip.toPath(), Archives.tarGz(megabytes, 20));
+        uploadManager = new UploadManager("c0e7a5f4-0c55-4d3f-9d8a-2f35a0b1c7e2", "http://localhost:8081",
+                "ingest-pipeline", zip);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(!zip.delete()) {
+            zip.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public HttpPost build() {
+        return uploadManager.uploadRequest();
+    }
+
+    @Benchmark
+    public long buildAndWrite() throws IOException {
+        final CountingOutputStream out = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        uploadManager.uploadRequest().getEntity().writeTo(out);
+        return out.getByteCount();
+    }
+}
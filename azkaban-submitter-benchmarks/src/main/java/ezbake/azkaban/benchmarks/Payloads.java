@@ -0,0 +1,106 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+/**
+ * Azkaban responses shaped like the ones a production server returns
+ */
+public final class Payloads {
+
+    private Payloads() { }
+
+    public static String authentication() {
+        return "{\"status\":\"success\",\"session.id\":\"c0e7a5f4-0c55-4d3f-9d8a-2f35a0b1c7e2\"}";
+    }
+
+    public static String execution() {
+        return "{\"message\":\"Execution submitted successfully with exec id 10342\",\"project\":\"ingest-pipeline\"," +
+                "\"flow\":\"ingest-daily\",\"execid\":10342}";
+    }
+
+    public static String fetchSchedule() {
+        return "{\"schedule\":{\"scheduleId\":\"42\",\"submitUser\":\"azkaban\",\"firstSchedTime\":\"2014-08-01 " +
+                "02:00:00\",\"nextExecTime\":\"2014-08-27 02:00:00\",\"period\":\"1 day(s)\"}}";
+    }
+
+    public static String manager() {
+        return "{\"status\":\"success\",\"path\":\"manager?project=ingest-pipeline\",\"action\":\"redirect\"}";
+    }
+
+    public static String removeSchedule() {
+        return "{\"status\":\"success\",\"message\":\"flow ingest-daily removed from Schedules.\"}";
+    }
+
+    public static String scheduler() {
+        return "{\"status\":\"success\",\"message\":\"ingest-pipeline.ingest-daily scheduled.\"}";
+    }
+
+    public static String uploader() {
+        return "{\"projectId\":\"117\",\"version\":\"23\"}";
+    }
+
+    /**
+     * @param flows Number of flows in the project
+     */
+    public static String projectFlows(int flows) {
+        final StringBuilder json = new StringBuilder(64 + flows * 40)
+                .append("{\"project\":\"ingest-pipeline\",\"projectId\":117,\"flows\":[");
+        for(int i = 0; i < flows; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append("{\"flowId\":\"ingest-pipeline-flow-").append(i).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * @param executions Number of running executions
+     */
+    public static String runningExecutions(int executions) {
+        final StringBuilder json = new StringBuilder(16 + executions * 8).append("{\"execIds\":[");
+        for(int i = 0; i < executions; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append(10000 + i);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * An Azkaban executor log, one line in ten a stack trace line the grok pattern doesn't match
+     *
+     * @param lines Number of lines
+     */
+    public static String azkabanLog(int lines) {
+        final String[] levels = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+        final String[] classes = {"FlowRunner", "JobRunner", "ExecutorManager", "FlowPreparer"};
+        final StringBuilder log = new StringBuilder(lines * 110);
+        for(int i = 0; i < lines; i++) {
+            if(i % 10 == 9) {
+                log.append("\tat azkaban.execapp.FlowRunner.runExecutableNode(FlowRunner.java:").append(i % 900)
+                        .append(")\n");
+                continue;
+            }
+            log.append(String.format("2014/10/15 %02d:%02d:%02d.%03d -0400 ", i / 3600 % 24, i / 60 % 60, i % 60,
+                    i % 1000))
+                    .append(levels[i % levels.length]).append(" [").append(classes[i % classes.length])
+                    .append("] [Azkaban] Finished job node-").append(i % 97).append(" of execid:").append(10342 + i / 500)
+                    .append(" flow:ingest-daily in ").append(i * 7 % 5000).append(" ms\n");
+        }
+        return log.toString();
+    }
+}
@@ -0,0 +1,160 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.AuthenticationResult;
+import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.RunningExecutionsResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request round trips through the managers against an in-process {@link AzkabanStandIn}: building the request,
+ * the pooled connection, the server and decoding the response.  Sampled so the percentiles show the tail latency;
+ * raise the client concurrency with {@code -t} and the server latency with {@code -p latencyMillis=20}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    @Param({"10", "1000"})
+    int flows;
+
+    /**
+     * Upper bound of the uniformly distributed server latency
+     */
+    @Param({"0"})
+    int latencyMillis;
+
+    /**
+     * Requests in flight per asynchronous batch
+     */
+    @Param({"32"})
+    int batch;
+
+    AzkabanStandIn azkaban;
+    URI uri;
+    AuthenticationManager authenticator;
+    ExecutionManager executionManager;
+    ProjectManager projectManager;
+    UploadManager uploadManager;
+    File zip;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        azkaban = new AzkabanStandIn();
+        azkaban.setLatency(0, latencyMillis, TimeUnit.MILLISECONDS);
+        azkaban.setExecutionDuration(1, TimeUnit.DAYS);
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+        authenticator = new AuthenticationManager(uri, "azkaban", "azkaban");
+        final AzkabanSession session = new AzkabanSession(authenticator);
+        executionManager = new ExecutionManager(session, uri);
+        projectManager = new ProjectManager(session, uri);
+
+        zip = File.createTempFile("round-trip-benchmark", ".zip");
+        Files.write(zip.toPath(), Archives.zip(flows));
+        projectManager.createProject("ingest-pipeline", "Round trip benchmark");
+        uploadManager = new UploadManager(session.getId(), azkaban.getUrl(), "ingest-pipeline", zip);
+        final UploaderResult uploaded = uploadManager.uploadZip();
+        if(uploaded.hasError()) {
+            throw new IllegalStateException("Could not upload the benchmark project: " + uploaded.getError());
+        }
+        for(int i = 0; i < 10; i++) {
+            executionManager.executeFlow("ingest-pipeline", "flow-0");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        azkaban.stop();
+        if(!zip.delete()) {
+            zip.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public AuthenticationResult login() {
+        return authenticator.login();
+    }
+
+    @Benchmark
+    public ProjectFlowsResult fetchProjectFlows() throws Exception {
+        return projectManager.fetchProjectFlows("ingest-pipeline");
+    }
+
+    @Benchmark
+    public RunningExecutionsResult getRunningExecutions() throws Exception {
+        return executionManager.getRunningExecutions("ingest-pipeline", "flow-0");
+    }
+
+    /**
+     * Runs a different flow than the ten executions getRunningExecutions returns
+     */
+    @Benchmark
+    public ExecutionResult executeFlow() {
+        return executionManager.executeFlow("ingest-pipeline", "flow-1");
+    }
+
+    @Benchmark
+    public UploaderResult uploadZip() {
+        return uploadManager.uploadZip();
+    }
+
+    /**
+     * A batch of fetches kept in flight together through the non-blocking client, time is per batch
+     */
+    @Benchmark
+    public List<ProjectFlowsResult> fetchProjectFlowsAsync() throws Exception {
+        final List<ListenableFuture<ProjectFlowsResult>> futures = new ArrayList<>(batch);
+        for(int i = 0; i < batch; i++) {
+            futures.add(projectManager.fetchProjectFlowsAsync("ingest-pipeline"));
+        }
+        return Futures.allAsList(futures).get();
+    }
+}
@@ -0,0 +1,211 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.benchmarks;
+
+import com.google.common.base.Optional;
+import ezbake.azkaban.submitter.util.ArchiveIndex;
+import ezbake.azkaban.submitter.util.FileUtil;
+import ezbake.azkaban.submitter.util.LazyArchive;
+import ezbake.azkaban.submitter.util.UnzipUtil;
+import ezbake.azkaban.submitter.util.ZipTranscoder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting .tar.gz submissions with {@link UnzipUtil} and finding the config, SSL and jar directories in the result,
+ * by walking the tree and through the {@link ArchiveIndex}, against reading only what a submission needs through a
+ * {@link LazyArchive}.  The Azkaban zip of a submission is made by extracting and zipping the result, or by converting
+ * the stream with the {@link ZipTranscoder}.  Archives are held in memory, give the fork enough heap
+ * for the largest one, e.g. {@code -jvmArgs -Xmx4g -p megabytes=1900}.
+ */
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class UnzipBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Archive {
+        @Param({"1", "64", "1024"})
+        int megabytes;
+
+        ByteBuffer tarGz;
+        File folder;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            tarGz = ByteBuffer.wrap(Archives.tarGz(megabytes, 20));
+            folder = Files.createTempDirectory("unzip-benchmark").toFile();
+        }
+
+        @TearDown(Level.Invocation)
+        public void clean() throws IOException {
+            FileUtils.cleanDirectory(folder);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Writers {
+        @Param({"1", "2", "4"})
+        int writers;
+    }
+
+    /**
+     * An extracted submission with many job files, the lookups walk all of them
+     */
+    @State(Scope.Benchmark)
+    public static class Extracted {
+        @Param({"10", "1000", "10000"})
+        int jobs;
+
+        File folder;
+        File root;
+        File confDirectory;
+        ArchiveIndex index;
+
+        @Setup(Level.Trial)
+        public void extract() throws IOException {
+            folder = Files.createTempDirectory("lookup-benchmark").toFile();
+            index = UnzipUtil.unzipAndIndex(folder, ByteBuffer.wrap(Archives.tarGz(1, jobs)));
+            root = index.getRoot();
+            confDirectory = new File(index.getConfDirectory().get());
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            FileUtils.deleteDirectory(folder);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public File unzip(Archive archive) throws IOException {
+        return UnzipUtil.unzip(archive.folder, archive.tarGz.duplicate());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArchiveIndex unzipAndIndex(Archive archive) throws IOException {
+        return UnzipUtil.unzipAndIndex(archive.folder, archive.tarGz.duplicate());
+    }
+
+    /**
+     * Decompression on the benchmark thread, file writes on a pool of writers
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ArchiveIndex unzipAndIndexParallel(Archive archive, Writers writers) throws IOException {
+        return UnzipUtil.unzipAndIndex(archive.folder, archive.tarGz.duplicate(), writers.writers);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long unzipAndZip(Archive archive) throws IOException {
+        final ArchiveIndex index = UnzipUtil.unzipAndIndex(archive.folder, archive.tarGz.duplicate());
+        return FileUtil.zipDirectory(index.getRoot(), new File(archive.folder, "azkaban.zip"));
+    }
+
+    /**
+     * The zip is thrown away, as if it were sent to a network faster than the conversion
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long transcodeToZip(Archive archive) throws IOException {
+        return ZipTranscoder.transcode(archive.tarGz, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LazyArchive lazyScan(Archive archive) throws IOException {
+        return LazyArchive.scan(archive.tarGz);
+    }
+
+    /**
+     * Scan, then write the config directory and the first jar only
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int lazyMaterializeConfigAndJar(Archive archive) throws IOException {
+        final LazyArchive lazy = LazyArchive.scan(archive.tarGz);
+        return lazy.materialize(archive.folder, Arrays.asList(lazy.getIndex().getConfDirectory().get(),
+                lazy.getIndex().getJarPath().get()));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Optional<String> findConfDirectory(Extracted extracted) {
+        return UnzipUtil.getConfDirectory(extracted.root);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Optional<String> findSSLPath(Extracted extracted) {
+        return UnzipUtil.getSSLPath(extracted.confDirectory);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Optional<String> findJarPath(Extracted extracted) {
+        return UnzipUtil.getJarPath(extracted.root);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Optional<String> indexConfDirectory(Extracted extracted) {
+        return extracted.index.getConfDirectory();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Optional<String> indexJarPath(Extracted extracted) {
+        return extracted.index.getJarPath();
+    }
+}
@@ -0,0 +1,236 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client.http;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.util.EntityUtils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link HttpManager}.  Requests are multiplexed over a small number of NIO reactor
+ * threads, so a caller can keep thousands of Azkaban requests in flight without a thread per request.  Like the
+ * blocking client it asks for gzip or deflate responses and decompresses them while they are parsed.
+ */
+public class AsyncHttpManager {
+
+	/**
+	 * Turns the body of an Azkaban response into a result
+	 */
+	public interface ResponseParser<T> {
+		T parse(String body) throws Exception;
+	}
+
+	// Holder so that the reactor threads are only started by code that actually uses the asynchronous client
+	private static class ClientHolder {
+		private static final CloseableHttpAsyncClient client;
+		static {
+			try {
+				final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+						.setDaemon(true)
+						.setNameFormat("azkaban-async-%d")
+						.build();
+
+				final Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder
+						.<SchemeIOSessionStrategy> create()
+						.register("http", NoopIOSessionStrategy.INSTANCE)
+						.register("https", new SSLIOSessionStrategy(HttpManager.SSL_CONTEXT, HttpManager.HOSTNAME_VERIFIER))
+						.build();
+
+				final ConnectionPool pool = HttpManager.getPool();
+				final PoolingNHttpClientConnectionManager cm = new PoolingNHttpClientConnectionManager(
+						new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT, threadFactory), null,
+						sessionStrategyRegistry, null, null, pool.getTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+				// Same limits, eviction and keep-alive as the blocking pool
+				pool.manage(cm, new ConnectionPool.Evictable() {
+					@Override
+					public void closeExpiredConnections() {
+						cm.closeExpiredConnections();
+					}
+
+					@Override
+					public void closeIdleConnections(long idle, TimeUnit unit) {
+						cm.closeIdleConnections(idle, unit);
+					}
+				});
+				AzkabanMetrics.registerPool("async", cm);
+
+				client = HttpAsyncClients
+						.custom()
+						.setConnectionManager(cm)
+						.setKeepAliveStrategy(pool.getKeepAliveStrategy())
+						.setThreadFactory(threadFactory)
+						.build();
+				client.start();
+			} catch(Exception ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+	}
+
+	private AsyncHttpManager() { }
+
+	public static CloseableHttpAsyncClient getClient() {
+		return ClientHolder.client;
+	}
+
+	public static ListenableFuture<String> post(HttpPost post) {
+		return execute(post, new StringParser());
+	}
+
+	public static ListenableFuture<String> get(HttpGet get) {
+		return execute(get, new StringParser());
+	}
+
+	/**
+	 * Sends the request and decodes the JSON response straight from the response content
+	 */
+	public static <T> ListenableFuture<T> post(HttpPost post, Class<T> clazz) {
+		return post(HttpManager.actionOf(post), post, clazz);
+	}
+
+	/**
+	 * Sends the request and decodes the JSON response straight from the response content
+	 */
+	public static <T> ListenableFuture<T> get(HttpGet get, Class<T> clazz) {
+		return get(HttpManager.actionOf(get), get, clazz);
+	}
+
+	/**
+	 * Same as {@link #post(HttpPost, Class)}, recorded under the given action in {@link AzkabanMetrics}
+	 */
+	public static <T> ListenableFuture<T> post(String action, HttpPost post, Class<T> clazz) {
+		return send(action, post, new JsonParser<>(clazz));
+	}
+
+	/**
+	 * Same as {@link #get(HttpGet, Class)}, recorded under the given action in {@link AzkabanMetrics}
+	 */
+	public static <T> ListenableFuture<T> get(String action, HttpGet get, Class<T> clazz) {
+		return send(action, get, new JsonParser<>(clazz));
+	}
+
+	/**
+	 * Sends the request without blocking the caller
+	 *
+	 * @param request The request to send
+	 * @param parser Turns the response body into the result, runs on a reactor thread so it should be quick
+	 * @return Future of the parsed result, failed if the request or the parsing failed
+	 */
+	public static <T> ListenableFuture<T> execute(HttpUriRequest request, ResponseParser<T> parser) {
+		return execute(HttpManager.actionOf(request), request, parser);
+	}
+
+	/**
+	 * Same as {@link #execute(HttpUriRequest, ResponseParser)}, recorded under the given action in
+	 * {@link AzkabanMetrics}
+	 */
+	public static <T> ListenableFuture<T> execute(String action, HttpUriRequest request,
+			final ResponseParser<T> parser) {
+		return send(action, request, new EntityParser<T>() {
+			@Override
+			public T parse(HttpEntity entity) throws Exception {
+				// No entity is an empty body, like the blocking client
+				return parser.parse(entity == null ? "" : EntityUtils.toString(entity));
+			}
+		});
+	}
+
+	private static <T> ListenableFuture<T> send(final String action, final HttpUriRequest request,
+			final EntityParser<T> parser) {
+		final SettableFuture<T> future = SettableFuture.create();
+		ContentEncoding.accept(request);
+		final long start = System.nanoTime();
+		getClient().execute(request, new FutureCallback<HttpResponse>() {
+			@Override
+			public void completed(HttpResponse response) {
+				ContentEncoding.MeteredEntity entity = null;
+				boolean failed = response.getStatusLine().getStatusCode() >= HttpStatus.SC_BAD_REQUEST;
+				try {
+					if(response.getEntity() != null) {
+						entity = new ContentEncoding.MeteredEntity(response.getEntity());
+					}
+					future.set(parser.parse(entity == null ? null : entity.getEntity()));
+				} catch(Exception ex) {
+					failed = true;
+					future.setException(ex);
+				} finally {
+					record(failed, entity);
+				}
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				record(true, null);
+				future.setException(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				future.cancel(false);
+			}
+
+			private void record(boolean failed, ContentEncoding.MeteredEntity entity) {
+				HttpManager.record(action, System.nanoTime() - start, request, entity, failed);
+			}
+		});
+		return future;
+	}
+
+	private interface EntityParser<T> {
+		T parse(HttpEntity entity) throws Exception;
+	}
+
+	private static class StringParser implements ResponseParser<String> {
+		@Override
+		public String parse(String body) {
+			return body;
+		}
+	}
+
+	private static class JsonParser<T> implements EntityParser<T> {
+		private final Class<T> clazz;
+
+		JsonParser(Class<T> clazz) {
+			this.clazz = clazz;
+		}
+
+		@Override
+		public T parse(HttpEntity entity) throws Exception {
+			return HttpManager.JsonResponseHandler.decode(entity, clazz);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client.http;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.configuration.EzConfiguration;
+import ezbake.configuration.EzConfigurationLoaderException;
+import ezbakehelpers.ezconfigurationhelpers.azkaban.AzkabanConfigurationHelper;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool of the blocking client with its limits, eviction of idle and expired connections, keep-alive and
+ * pre-warming configured through these properties, from the EzConfiguration or the system properties:
+ * <ul>
+ *     <li>azkaban.http.pool.maxTotal - connections over all routes (200)</li>
+ *     <li>azkaban.http.pool.maxPerRoute - connections per route (20)</li>
+ *     <li>azkaban.http.pool.routeLimits - limits of single routes, e.g. https://azkaban:8443=50,http://other=5</li>
+ *     <li>azkaban.http.pool.idleTimeoutSeconds - idle connections are closed after this (30)</li>
+ *     <li>azkaban.http.pool.evictionIntervalSeconds - how often idle and expired connections are closed (5)</li>
+ *     <li>azkaban.http.pool.timeToLiveSeconds - connections are never reused after this, 0 for no limit (300)</li>
+ *     <li>azkaban.http.pool.keepAliveSeconds - keep-alive when the server doesn't send a Keep-Alive timeout (30)</li>
+ *     <li>azkaban.http.pool.prewarm - connections to open to the Azkaban URL up front (0)</li>
+ * </ul>
+ * The asynchronous client's pool gets the same limits and eviction through {@link #manage}.
+ */
+public class ConnectionPool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    public static final String MAX_TOTAL = "azkaban.http.pool.maxTotal";
+    public static final String MAX_PER_ROUTE = "azkaban.http.pool.maxPerRoute";
+    public static final String ROUTE_LIMITS = "azkaban.http.pool.routeLimits";
+    public static final String IDLE_TIMEOUT = "azkaban.http.pool.idleTimeoutSeconds";
+    public static final String EVICTION_INTERVAL = "azkaban.http.pool.evictionIntervalSeconds";
+    public static final String TIME_TO_LIVE = "azkaban.http.pool.timeToLiveSeconds";
+    public static final String KEEP_ALIVE = "azkaban.http.pool.keepAliveSeconds";
+    public static final String PREWARM = "azkaban.http.pool.prewarm";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Pools whose idle and expired connections are closed along with the blocking pool's
+     */
+    public interface Evictable {
+        void closeExpiredConnections();
+        void closeIdleConnections(long idle, TimeUnit unit);
+    }
+
+    private final String name;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final Map<HttpRoute, Integer> routeLimits;
+    private final long idleTimeoutMillis;
+    private final long timeToLiveMillis;
+    private final long keepAliveMillis;
+    private final int prewarm;
+    private final String azkabanUrl;
+
+    private final PoolingHttpClientConnectionManager manager;
+    private final ScheduledExecutorService evictor;
+    private final List<Evictable> managed = new CopyOnWriteArrayList<>();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    private final ConnectionKeepAliveStrategy keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            // The server's Keep-Alive: timeout=n hint wins, the pool's time to live still applies
+            final long hint = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return hint > 0 ? hint : keepAliveMillis;
+        }
+    };
+
+    /**
+     * @param name Name of the pool in the metrics, e.g. blocking
+     * @param properties The pool configuration
+     * @param socketFactories Socket factory of each scheme
+     */
+    public ConnectionPool(String name, Properties properties, Registry<ConnectionSocketFactory> socketFactories) {
+        this.name = name;
+        this.maxTotal = getInt(properties, MAX_TOTAL, 200);
+        this.maxPerRoute = getInt(properties, MAX_PER_ROUTE, 20);
+        this.routeLimits = parseRouteLimits(properties.getProperty(ROUTE_LIMITS));
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(getInt(properties, IDLE_TIMEOUT, 30));
+        this.timeToLiveMillis = TimeUnit.SECONDS.toMillis(getInt(properties, TIME_TO_LIVE, 300));
+        this.keepAliveMillis = TimeUnit.SECONDS.toMillis(getInt(properties, KEEP_ALIVE, 30));
+        this.prewarm = getInt(properties, PREWARM, 0);
+        this.azkabanUrl = getAzkabanUrl(properties);
+
+        manager = new PoolingHttpClientConnectionManager(socketFactories, new CountingConnectionFactory(), null, null,
+                timeToLiveMillis > 0 ? timeToLiveMillis : -1, TimeUnit.MILLISECONDS);
+        applyLimits(manager);
+        AzkabanMetrics.registerPool(name, manager, opened, evicted);
+
+        final long evictionIntervalMillis = TimeUnit.SECONDS.toMillis(getInt(properties, EVICTION_INTERVAL, 5));
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("azkaban-pool-" + name + "-%d")
+                .build());
+        if(evictionIntervalMillis > 0) {
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evict();
+                }
+            }, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return The EzConfiguration properties overridden by the system properties
+     */
+    public static Properties loadConfiguration() {
+        final Properties properties = new Properties();
+        try {
+            properties.putAll(new EzConfiguration().getProperties());
+        } catch (EzConfigurationLoaderException | RuntimeException e) {
+            logger.debug("No EzConfiguration, configuring the connection pool from the system properties", e);
+        }
+        properties.putAll(System.getProperties());
+        return properties;
+    }
+
+    public PoolingHttpClientConnectionManager getManager() {
+        return manager;
+    }
+
+    /**
+     * @return Keeps connections alive as long as the server says, or the configured keep-alive if it doesn't
+     */
+    public ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+        return keepAliveStrategy;
+    }
+
+    /**
+     * @return The time to live of a connection in milliseconds, -1 for none
+     */
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis > 0 ? timeToLiveMillis : -1;
+    }
+
+    /**
+     * Gives another pool, e.g. the asynchronous client's, the same limits and closes its idle and expired connections
+     * along with this pool's
+     */
+    public void manage(ConnPoolControl<HttpRoute> pool, Evictable evictable) {
+        applyLimits(pool);
+        managed.add(evictable);
+    }
+
+    private void applyLimits(ConnPoolControl<HttpRoute> pool) {
+        pool.setMaxTotal(maxTotal);
+        pool.setDefaultMaxPerRoute(maxPerRoute);
+        for(Map.Entry<HttpRoute, Integer> limit : routeLimits.entrySet()) {
+            pool.setMaxPerRoute(limit.getKey(), limit.getValue());
+        }
+    }
+
+    /**
+     * Opens the configured number of connections to the Azkaban URL in the background, so the first requests don't
+     * wait for the connection and TLS setup
+     *
+     * @return Future of the number of connections opened, NULL if pre-warming isn't configured
+     */
+    public Future<Integer> prewarm() {
+        if(prewarm <= 0 || azkabanUrl == null) {
+            return null;
+        }
+        return evictor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return prewarm(URI.create(azkabanUrl), prewarm);
+            }
+        });
+    }
+
+    /**
+     * Opens connections to the host of the URL and puts them in the pool, at most as many as its route may have
+     *
+     * @return The number of connections opened
+     */
+    public int prewarm(URI uri, int connections) {
+        final HttpRoute route = toRoute(uri);
+        final int count = Math.min(connections, manager.getMaxPerRoute(route));
+        final List<HttpClientConnection> leased = new ArrayList<>();
+        final long start = System.nanoTime();
+        try {
+            // Every connection is held until all are open, otherwise the pool would hand out the same one again
+            for(int i = 0; i < count; i++) {
+                final HttpClientConnection connection = manager.requestConnection(route, null)
+                        .get(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if(!connection.isOpen()) {
+                    final HttpClientContext context = HttpClientContext.create();
+                    manager.connect(connection, route, CONNECT_TIMEOUT_MILLIS, context);
+                    manager.routeComplete(connection, route, context);
+                    // Binds the socket streams, the stale check of the first request reads from them
+                    connection.flush();
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not pre-warm {} connections to {}", count, route, e);
+        } finally {
+            for(HttpClientConnection connection : leased) {
+                manager.releaseConnection(connection, null, keepAliveMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        logger.info("Pre-warmed {} connections to {} in {}ms", leased.size(), route,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return leased.size();
+    }
+
+    /**
+     * Closes expired connections and the ones that have been idle longer than the idle timeout
+     */
+    public void evict() {
+        try {
+            final int available = manager.getTotalStats().getAvailable();
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            // Approximate, connections leased and released meanwhile change the count too
+            evicted.addAndGet(Math.max(0, available - manager.getTotalStats().getAvailable()));
+
+            for(Evictable pool : managed) {
+                pool.closeExpiredConnections();
+                pool.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not evict connections of the {} pool", name, e);
+        }
+    }
+
+    public PoolStats getTotalStats() {
+        return manager.getTotalStats();
+    }
+
+    public PoolStats getStats(URI uri) {
+        return manager.getStats(toRoute(uri));
+    }
+
+    /**
+     * @return The number of connections opened, compare with the request count to see how well they're reused
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    /**
+     * @return About how many idle or expired connections the evictor closed
+     */
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        manager.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return name + " pool: " + manager.getTotalStats() + ", opened " + opened.get() + ", evicted " + evicted.get();
+    }
+
+    /**
+     * The route HttpClient uses for requests to the URL, with the default port filled in
+     */
+    static HttpRoute toRoute(URI uri) {
+        final boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        final int port = uri.getPort() > 0 ? uri.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
+    /**
+     * @param limits url=limit pairs separated by commas
+     */
+    static Map<HttpRoute, Integer> parseRouteLimits(String limits) {
+        if(limits == null || limits.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final Map<HttpRoute, Integer> routes = new HashMap<>();
+        for(String limit : limits.split(",")) {
+            final int equals = limit.lastIndexOf('=');
+            if(equals < 0) {
+                throw new IllegalArgumentException(ROUTE_LIMITS + " must be url=limit pairs, was '" + limit + "'");
+            }
+            routes.put(toRoute(URI.create(limit.substring(0, equals).trim())),
+                    Integer.parseInt(limit.substring(equals + 1).trim()));
+        }
+        return routes;
+    }
+
+    private static int getInt(Properties properties, String key, int defaultValue) {
+        final String value = properties.getProperty(key);
+        try {
+            return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number, was '" + value + "'", e);
+        }
+    }
+
+    private static String getAzkabanUrl(Properties properties) {
+        try {
+            return new AzkabanConfigurationHelper(properties).getAzkabanUrl();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Counts the connections the pool opens
+     */
+    private class CountingConnectionFactory implements HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+        @Override
+        public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+            opened.incrementAndGet();
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+        }
+    }
+}
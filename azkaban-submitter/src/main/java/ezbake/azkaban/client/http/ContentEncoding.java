@@ -0,0 +1,114 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client.http;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Gzip and deflate negotiation for the blocking and the asynchronous clients.  Azkaban's Jetty compresses the large
+ * JSON responses (execution flows, history, logs) when asked to, and the responses are decompressed while they are
+ * read so they never sit compressed or decompressed in memory as a whole.
+ */
+final class ContentEncoding {
+
+    static final String ACCEPT_ENCODING = "Accept-Encoding";
+    static final String ACCEPTED = "gzip,deflate";
+
+    private ContentEncoding() { }
+
+    /**
+     * Asks for a compressed response unless the request already says what it accepts
+     */
+    static void accept(HttpRequest request) {
+        if(!request.containsHeader(ACCEPT_ENCODING)) {
+            request.addHeader(ACCEPT_ENCODING, ACCEPTED);
+        }
+    }
+
+    /**
+     * @param entity The entity as it came over the wire
+     * @return An entity whose content is decompressed as it's read, the entity itself if it isn't compressed
+     * @throws IOException if the entity is compressed with something other than gzip or deflate
+     */
+    static HttpEntity decode(HttpEntity entity) throws IOException {
+        final Header encoding = entity == null ? null : entity.getContentEncoding();
+        if(encoding == null) {
+            return entity;
+        }
+
+        for(HeaderElement element : encoding.getElements()) {
+            final String codec = element.getName().toLowerCase(Locale.US);
+            if("gzip".equals(codec) || "x-gzip".equals(codec)) {
+                return new GzipDecompressingEntity(entity);
+            } else if("deflate".equals(codec)) {
+                return new DeflateDecompressingEntity(entity);
+            } else if(!"identity".equals(codec)) {
+                throw new IOException("Unsupported Content-Encoding: " + encoding.getValue());
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Counts the bytes of a response both as they come over the wire and as they are handed to the parser
+     */
+    static class MeteredEntity {
+        private final CountingEntity wire;
+        private final CountingEntity decoded;
+
+        /**
+         * @param entity The entity as it came over the wire, not NULL
+         * @throws IOException if the entity is compressed with something other than gzip or deflate
+         */
+        MeteredEntity(HttpEntity entity) throws IOException {
+            wire = new CountingEntity(entity);
+            final HttpEntity decompressing = decode(wire);
+            decoded = decompressing == wire ? wire : new CountingEntity(decompressing);
+        }
+
+        /**
+         * @return The entity to read the response from
+         */
+        HttpEntity getEntity() {
+            return decoded;
+        }
+
+        boolean isCompressed() {
+            return decoded != wire;
+        }
+
+        /**
+         * @return Bytes read from the connection so far
+         */
+        long getWireBytes() {
+            return wire.getByteCount();
+        }
+
+        /**
+         * @return Bytes read after decompression so far, the same as the wire bytes if the response isn't compressed
+         */
+        long getDecodedBytes() {
+            return decoded.getByteCount();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client.http;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from the content of a response entity
+ */
+class CountingEntity extends HttpEntityWrapper {
+
+    private CountingInputStream content;
+
+    CountingEntity(HttpEntity entity) {
+        super(entity);
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        if(content == null) {
+            content = new CountingInputStream(super.getContent());
+        }
+        return content;
+    }
+
+    /**
+     * @return The number of bytes read so far
+     */
+    long getByteCount() {
+        return content == null ? 0 : content.getByteCount();
+    }
+}
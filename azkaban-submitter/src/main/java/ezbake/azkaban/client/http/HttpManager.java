@@ -14,17 +14,28 @@
 
 package ezbake.azkaban.client.http;
 
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.submitter.util.JsonUtil;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.*;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
 import javax.net.ssl.SSLContext;
@@ -32,12 +43,37 @@ import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.net.URI;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Properties;
 
 public class HttpManager {
 
-	private static final PoolingHttpClientConnectionManager cm;
+	/**
+	 * SSL context and hostname verifier shared by the blocking and the asynchronous clients
+	 */
+	static final SSLContext SSL_CONTEXT;
+	static final X509HostnameVerifier HOSTNAME_VERIFIER = new X509HostnameVerifier() {
+
+		@Override
+		public boolean verify(String host, SSLSession sslSession) {
+			return true;
+		}
+
+		@Override
+		public void verify(String host, SSLSocket ssl) throws IOException { }
+
+		@Override
+		public void verify(String host, X509Certificate cert) throws SSLException { }
+
+		@Override
+		public void verify(String host, String[] cns, String[] subjectAlts) throws SSLException { } 
+		
+	};
+
+	private static final ConnectionPool pool;
 	static {
 		try {
 			//FIXME: comment this out in production
@@ -48,34 +84,19 @@ public class HttpManager {
 			        return true;
 			    }
 			});
-			SSLContext sslContext = builder.build();
-			SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sslContext, new X509HostnameVerifier() {
-
-				@Override
-				public boolean verify(String host, SSLSession sslSession) {
-					return true;
-				}
-
-				@Override
-				public void verify(String host, SSLSocket ssl) throws IOException { }
-
-				@Override
-				public void verify(String host, X509Certificate cert) throws SSLException { }
-
-				@Override
-				public void verify(String host, String[] cns, String[] subjectAlts) throws SSLException { } 
-				
-			});
+			SSL_CONTEXT = builder.build();
+			final Properties configuration = ConnectionPool.loadConfiguration();
+			// One context for the whole process, so its session cache lets new connections resume TLS sessions
+			TimedSSLConnectionSocketFactory.configureSessionCache(SSL_CONTEXT, configuration);
+			SSLConnectionSocketFactory sslsf = new TimedSSLConnectionSocketFactory(SSL_CONTEXT, HOSTNAME_VERIFIER);
 
 			Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder
 			        .<ConnectionSocketFactory> create().register("https", sslsf)
+			        .register("http", PlainConnectionSocketFactory.getSocketFactory())
 			        .build();
 			
-			cm = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-			// Increase max total connection to 200
-			cm.setMaxTotal(200);
-			// Increase default max connection per route to 20
-			cm.setDefaultMaxPerRoute(20);
+			pool = new ConnectionPool("blocking", configuration, socketFactoryRegistry);
+			pool.prewarm();
 		} catch(Exception ex) {
 			throw new RuntimeException(ex);
 		}
@@ -86,24 +107,246 @@ public class HttpManager {
 	public static HttpClient getClient() {
 		return HttpClients
 				.custom()
-				.setConnectionManager(cm)
+				.setConnectionManager(pool.getManager())
+				.setKeepAliveStrategy(pool.getKeepAliveStrategy())
+				// Decompressed by the response handlers instead, so the metrics see the bytes on the wire
+				.disableContentCompression()
 				.build();
 	}
 
-	public static String post(HttpPost post) throws Exception {
-        final HttpClient client = HttpManager.getClient();
-        final HttpResponse response = client.execute(post);
-        final HttpEntity entity = response.getEntity();
+	/**
+	 * @return The connection pool of the blocking client, configured from the EzConfiguration
+	 */
+	public static ConnectionPool getPool() {
+		return pool;
+	}
 
-        return EntityUtils.toString(entity);
+	public static String post(HttpPost post) throws Exception {
+		return post(actionOf(post), post);
 	}
 
     public static String get(HttpGet get) throws Exception {
-        final HttpClient client = HttpManager.getClient();
-        final HttpResponse response = client.execute(get);
-        final HttpEntity entity = response.getEntity();
+        return get(actionOf(get), get);
+    }
+
+    /**
+     * Sends the request and returns the response body
+     *
+     * @param action Name the call is recorded under in {@link AzkabanMetrics}
+     * @param post The request to send
+     */
+    public static String post(String action, HttpPost post) throws Exception {
+        return execute(action, post, new StringResponseHandler());
+    }
+
+    /**
+     * Sends the request and returns the response body
+     *
+     * @param action Name the call is recorded under in {@link AzkabanMetrics}
+     * @param get The request to send
+     */
+    public static String get(String action, HttpGet get) throws Exception {
+        return execute(action, get, new StringResponseHandler());
+    }
+
+    /**
+     * Sends the request and decodes the JSON response straight from the response stream
+     *
+     * @param post The request to send
+     * @param clazz The result type to decode into
+     * @return The decoded result, NULL if Azkaban returned an empty body
+     */
+    public static <T> T post(HttpPost post, Class<T> clazz) throws Exception {
+        return post(actionOf(post), post, clazz);
+    }
+
+    /**
+     * Sends the request and decodes the JSON response straight from the response stream
+     *
+     * @param get The request to send
+     * @param clazz The result type to decode into
+     * @return The decoded result, NULL if Azkaban returned an empty body
+     */
+    public static <T> T get(HttpGet get, Class<T> clazz) throws Exception {
+        return get(actionOf(get), get, clazz);
+    }
+
+    /**
+     * Same as {@link #post(HttpPost, Class)}, recorded under the given action
+     */
+    public static <T> T post(String action, HttpPost post, Class<T> clazz) throws Exception {
+        return execute(action, post, new JsonResponseHandler<>(clazz));
+    }
+
+    /**
+     * Same as {@link #get(HttpGet, Class)}, recorded under the given action
+     */
+    public static <T> T get(String action, HttpGet get, Class<T> clazz) throws Exception {
+        return execute(action, get, new JsonResponseHandler<>(clazz));
+    }
+
+    /**
+     * Sends the request and hands the response to the handler, for responses that are streamed somewhere instead of
+     * decoded.  The response is already decompressed when the handler gets it.
+     *
+     * @param action Name the call is recorded under in {@link AzkabanMetrics}
+     * @param get The request to send
+     * @param handler Reads the response
+     */
+    public static <T> T get(String action, HttpGet get, ResponseHandler<T> handler) throws Exception {
+        return execute(action, get, handler);
+    }
+
+    /**
+     * Same as {@link #post(String, HttpPost, Class)}, but a response with an error status throws an
+     * {@link HttpResponseException} instead of being decoded, so callers can tell a failing server from an Azkaban
+     * error
+     */
+    public static <T> T postChecked(String action, HttpPost post, Class<T> clazz) throws Exception {
+        return execute(action, post, new StatusCheckingResponseHandler<>(new JsonResponseHandler<>(clazz)));
+    }
+
+    /**
+     * Sends the request, asking for a gzip or deflate response, and records its latency, bytes and outcome
+     */
+    private static <T> T execute(String action, HttpUriRequest request, ResponseHandler<T> handler) throws IOException {
+        final MeteredResponseHandler<T> metered = new MeteredResponseHandler<>(handler);
+        ContentEncoding.accept(request);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final T result = getClient().execute(request, metered);
+            failed = metered.status >= HttpStatus.SC_BAD_REQUEST;
+            return result;
+        } finally {
+            record(action, System.nanoTime() - start, request, metered.entity, failed);
+        }
+    }
+
+    /**
+     * Records a call in {@link AzkabanMetrics}, with the compression ratio of the response if it was compressed
+     *
+     * @param entity The response entity, NULL if there wasn't one
+     */
+    static void record(String action, long elapsedNanos, HttpRequest request, ContentEncoding.MeteredEntity entity,
+                       boolean failed) {
+        AzkabanMetrics.record(action, elapsedNanos, bytesOut(request), entity == null ? 0 : entity.getWireBytes(),
+                failed);
+        if(entity != null && entity.isCompressed()) {
+            AzkabanMetrics.recordCompression(action, entity.getWireBytes(), entity.getDecodedBytes());
+        }
+    }
+
+    /**
+     * Name of the Azkaban action of a request, taken from its ajax or action parameter
+     */
+    static String actionOf(HttpUriRequest request) {
+        final URI uri = request.getURI();
+        for(NameValuePair parameter : URLEncodedUtils.parse(uri, "UTF-8")) {
+            if("ajax".equals(parameter.getName()) || "action".equals(parameter.getName())) {
+                return parameter.getValue();
+            }
+            if("delete".equals(parameter.getName())) {
+                return "delete";
+            }
+        }
+        return uri.getPath() == null || uri.getPath().length() <= 1 ? "root" : uri.getPath().substring(1);
+    }
+
+    /**
+     * @return The length of the request body, 0 if there isn't one or it's unknown
+     */
+    static long bytesOut(HttpRequest request) {
+        if(request instanceof HttpEntityEnclosingRequest) {
+            final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if(entity != null) {
+                return Math.max(0, entity.getContentLength());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The body as a String, empty if there is none
+     */
+    static class StringResponseHandler implements ResponseHandler<String> {
+        @Override
+        public String handleResponse(HttpResponse response) throws IOException {
+            final HttpEntity entity = response.getEntity();
+            return entity == null ? "" : EntityUtils.toString(entity);
+        }
+    }
+
+    /**
+     * Remembers the status, decompresses the response while the delegate reads it and counts the bytes read
+     */
+    private static class MeteredResponseHandler<T> implements ResponseHandler<T> {
+        private final ResponseHandler<T> delegate;
+        private ContentEncoding.MeteredEntity entity;
+        private int status;
+
+        MeteredResponseHandler(ResponseHandler<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T handleResponse(HttpResponse response) throws IOException {
+            status = response.getStatusLine().getStatusCode();
+            if(response.getEntity() != null) {
+                entity = new ContentEncoding.MeteredEntity(response.getEntity());
+                response.setEntity(entity.getEntity());
+            }
+            return delegate.handleResponse(response);
+        }
+    }
+
+    private static class StatusCheckingResponseHandler<T> implements ResponseHandler<T> {
+        private final ResponseHandler<T> delegate;
+
+        StatusCheckingResponseHandler(ResponseHandler<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T handleResponse(HttpResponse response) throws IOException {
+            final StatusLine status = response.getStatusLine();
+            if(status.getStatusCode() >= HttpStatus.SC_BAD_REQUEST) {
+                throw new HttpResponseException(status.getStatusCode(), status.getReasonPhrase());
+            }
+            return delegate.handleResponse(response);
+        }
+    }
+
+    /**
+     * Decodes the entity of a response.  HttpClient consumes whatever is left of the entity after the handler
+     * returns or throws, so the connection always goes back to the pool.
+     */
+    static class JsonResponseHandler<T> implements ResponseHandler<T> {
+        private final Class<T> clazz;
+
+        JsonResponseHandler(Class<T> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public T handleResponse(HttpResponse response) throws IOException {
+            return decode(response.getEntity(), clazz);
+        }
+
+        static <T> T decode(HttpEntity entity, Class<T> clazz) throws IOException {
+            if(entity == null) {
+                return null;
+            }
 
-        return EntityUtils.toString(entity);
+            try(PushbackInputStream content = new PushbackInputStream(entity.getContent())) {
+                final int first = content.read();
+                if(first == -1) {
+                    return null;
+                }
+                content.unread(first);
+                return JsonUtil.deserialize(content, clazz);
+            }
+        }
     }
 
 }
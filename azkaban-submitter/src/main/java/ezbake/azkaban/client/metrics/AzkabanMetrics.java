@@ -0,0 +1,276 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Slf4jReporter;
+import com.codahale.metrics.Timer;
+import org.apache.http.pool.ConnPoolControl;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side metrics for every call made to Azkaban.  For each action (login, upload, executeFlow, getRunning, ...)
+ * the registry holds:
+ * <ul>
+ *     <li>azkaban.&lt;action&gt;.latency - timer with the latency histogram and call rate</li>
+ *     <li>azkaban.&lt;action&gt;.errors - calls that failed or came back with an HTTP error status</li>
+ *     <li>azkaban.&lt;action&gt;.bytesOut / bytesIn - request and response body bytes, as sent over the wire</li>
+ *     <li>azkaban.&lt;action&gt;.compressed.bytesIn / bytesDecoded - wire and decompressed bytes of the gzip or
+ *     deflate responses, and their ratio (decompressed per wire byte) in azkaban.&lt;action&gt;.compressionRatio</li>
+ * </ul>
+ * plus the leased, pending, available, opened and evicted connections of each pool, the session cache counters, the
+ * project index hits, misses and evictions under azkaban.projects, the upload deduplication hits, misses and skipped
+ * bytes under azkaban.dedup and the full and resumed TLS handshakes under azkaban.tls.  Everything is exposed over
+ * JMX under the "ezbake.azkaban" domain; {@link #startReporter} adds periodic reporting.
+ */
+public class AzkabanMetrics {
+
+    public static final String PREFIX = "azkaban";
+
+    private static final MetricRegistry registry = new MetricRegistry();
+    private static final JmxReporter jmxReporter = JmxReporter.forRegistry(registry)
+            .inDomain("ezbake.azkaban")
+            .convertDurationsTo(TimeUnit.MILLISECONDS)
+            .build();
+    private static final ConcurrentMap<String, Boolean> compressedActions = new ConcurrentHashMap<>();
+
+    static {
+        jmxReporter.start();
+    }
+
+    private AzkabanMetrics() { }
+
+    public static MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Records one call to Azkaban
+     *
+     * @param action The Azkaban action, e.g. executeFlow
+     * @param elapsedNanos How long the call took, including reading the response
+     * @param bytesOut Bytes in the request body, 0 if unknown
+     * @param bytesIn Bytes in the response body
+     * @param failed Whether the call failed
+     */
+    public static void record(String action, long elapsedNanos, long bytesOut, long bytesIn, boolean failed) {
+        registry.timer(MetricRegistry.name(PREFIX, action, "latency")).update(elapsedNanos, TimeUnit.NANOSECONDS);
+        if(failed) {
+            registry.counter(MetricRegistry.name(PREFIX, action, "errors")).inc();
+        }
+        if(bytesOut > 0) {
+            registry.counter(MetricRegistry.name(PREFIX, action, "bytesOut")).inc(bytesOut);
+        }
+        if(bytesIn > 0) {
+            registry.counter(MetricRegistry.name(PREFIX, action, "bytesIn")).inc(bytesIn);
+        }
+    }
+
+    public static Timer getLatency(String action) {
+        return registry.timer(MetricRegistry.name(PREFIX, action, "latency"));
+    }
+
+    public static Counter getErrors(String action) {
+        return registry.counter(MetricRegistry.name(PREFIX, action, "errors"));
+    }
+
+    /**
+     * Records the size of a compressed response, in addition to {@link #record}
+     *
+     * @param action The Azkaban action, e.g. fetchexecflow
+     * @param wireBytes Bytes of the response as sent over the wire
+     * @param decodedBytes Bytes of the response after decompression
+     */
+    public static void recordCompression(final String action, long wireBytes, long decodedBytes) {
+        registry.counter(MetricRegistry.name(PREFIX, action, "compressed", "bytesIn")).inc(wireBytes);
+        registry.counter(MetricRegistry.name(PREFIX, action, "compressed", "bytesDecoded")).inc(decodedBytes);
+        if(compressedActions.putIfAbsent(action, Boolean.TRUE) == null) {
+            registry.register(MetricRegistry.name(PREFIX, action, "compressionRatio"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(getCompressedBytes(action, true).getCount(),
+                            getCompressedBytes(action, false).getCount());
+                }
+            });
+        }
+    }
+
+    /**
+     * @param action The Azkaban action
+     * @param decoded Whether to get the decompressed or the wire bytes of the compressed responses
+     */
+    public static Counter getCompressedBytes(String action, boolean decoded) {
+        return registry.counter(MetricRegistry.name(PREFIX, action, "compressed", decoded ? "bytesDecoded" : "bytesIn"));
+    }
+
+    /**
+     * @return Decompressed bytes per wire byte of the compressed responses to the action, NaN if there weren't any
+     */
+    public static double getCompressionRatio(String action) {
+        final long wire = getCompressedBytes(action, false).getCount();
+        return wire == 0 ? Double.NaN : (double) getCompressedBytes(action, true).getCount() / wire;
+    }
+
+    /**
+     * Records whether a submitted archive had already been uploaded
+     *
+     * @param hit Whether the upload was skipped
+     * @param bytes Size of the archive
+     */
+    public static void recordDedup(boolean hit, long bytes) {
+        registry.counter(MetricRegistry.name(PREFIX, "dedup", hit ? "hits" : "misses")).inc();
+        if(hit) {
+            registry.counter(MetricRegistry.name(PREFIX, "dedup", "bytesSkipped")).inc(bytes);
+        }
+    }
+
+    public static Counter getDedupHits() {
+        return registry.counter(MetricRegistry.name(PREFIX, "dedup", "hits"));
+    }
+
+    public static Counter getDedupMisses() {
+        return registry.counter(MetricRegistry.name(PREFIX, "dedup", "misses"));
+    }
+
+    /**
+     * Records a TLS handshake
+     *
+     * @param resumed Whether a cached session was resumed instead of negotiating a new one
+     * @param elapsedNanos How long the handshake took
+     */
+    public static void recordHandshake(boolean resumed, long elapsedNanos) {
+        getHandshakes(resumed).update(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param resumed Whether to get the timer of the resumed or of the full handshakes
+     */
+    public static Timer getHandshakes(boolean resumed) {
+        return registry.timer(MetricRegistry.name(PREFIX, "tls", resumed ? "resumed" : "full"));
+    }
+
+    /**
+     * Registers a gauge, replacing the one registered under the same name before
+     *
+     * @param name Name of the gauge under {@link #PREFIX}, e.g. session.hits
+     * @param gauge The gauge
+     */
+    public static void register(String name, Gauge<?> gauge) {
+        final String fullName = MetricRegistry.name(PREFIX, name);
+        registry.remove(fullName);
+        registry.register(fullName, gauge);
+    }
+
+    /**
+     * Registers gauges for the leased, pending, available and maximum connections of a pool
+     *
+     * @param name Name of the pool, e.g. blocking
+     * @param pool The connection manager
+     */
+    public static void registerPool(String name, final ConnPoolControl<?> pool) {
+        // A pool created again under the same name replaces the gauges of the old one
+        registry.removeMatching(poolFilter(name));
+        registry.register(MetricRegistry.name(PREFIX, "pool", name, "leased"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.getTotalStats().getLeased();
+            }
+        });
+        registry.register(MetricRegistry.name(PREFIX, "pool", name, "pending"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.getTotalStats().getPending();
+            }
+        });
+        registry.register(MetricRegistry.name(PREFIX, "pool", name, "available"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.getTotalStats().getAvailable();
+            }
+        });
+        registry.register(MetricRegistry.name(PREFIX, "pool", name, "max"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.getTotalStats().getMax();
+            }
+        });
+    }
+
+    /**
+     * Registers the gauges of {@link #registerPool(String, ConnPoolControl)} plus the number of connections the pool
+     * opened and evicted
+     */
+    public static void registerPool(String name, ConnPoolControl<?> pool, final AtomicLong opened,
+                                    final AtomicLong evicted) {
+        registerPool(name, pool);
+        registry.register(MetricRegistry.name(PREFIX, "pool", name, "opened"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return opened.get();
+            }
+        });
+        registry.register(MetricRegistry.name(PREFIX, "pool", name, "evicted"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return evicted.get();
+            }
+        });
+    }
+
+    private static MetricFilter poolFilter(String name) {
+        final String prefix = MetricRegistry.name(PREFIX, "pool", name) + ".";
+        return new MetricFilter() {
+            @Override
+            public boolean matches(String metricName, Metric metric) {
+                return metricName.startsWith(prefix);
+            }
+        };
+    }
+
+    /**
+     * Starts reporting the metrics periodically
+     *
+     * @param reporter Any reporter built for {@link #getRegistry()}, e.g. a Graphite or CSV reporter
+     * @param period Time between reports
+     * @param unit Unit of the period
+     * @return The started reporter, stop it when done
+     */
+    public static <R extends ScheduledReporter> R startReporter(R reporter, long period, TimeUnit unit) {
+        reporter.start(period, unit);
+        return reporter;
+    }
+
+    /**
+     * Starts logging the metrics periodically to the ezbake.azkaban.metrics logger
+     */
+    public static Slf4jReporter startLogReporter(long period, TimeUnit unit) {
+        return startReporter(Slf4jReporter.forRegistry(registry)
+                .outputTo(LoggerFactory.getLogger("ezbake.azkaban.metrics"))
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .build(), period, unit);
+    }
+}
@@ -0,0 +1,126 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends many calls through the asynchronous client over one session with at most a given number in flight.  If
+ * Azkaban says the session expired, the session is renewed once and the rejected calls are sent again.
+ */
+class AsyncCalls {
+
+    /**
+     * One request, its outcome is set on the reactor thread before its permit is released
+     */
+    abstract static class Call<T> {
+        volatile String error;
+        volatile long elapsedNanos;
+
+        /**
+         * @return The request, built with the current session ID
+         */
+        abstract ListenableFuture<T> send();
+
+        /**
+         * Records the response, sets the error if Azkaban returned one
+         */
+        abstract void completed(T result);
+    }
+
+    private final AzkabanSession session;
+    private final int concurrency;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * @param session The session the calls are made with
+     * @param concurrency The maximum number of calls in flight
+     */
+    AsyncCalls(AzkabanSession session, int concurrency) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.session = session;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sends the calls and returns once every one of them has completed
+     */
+    void send(Collection<? extends Call<?>> calls) throws InterruptedException {
+        sendAll(calls);
+
+        final List<Call<?>> expired = new ArrayList<>();
+        for(Call<?> call : calls) {
+            if(SessionCache.isSessionExpired(call.error)) {
+                expired.add(call);
+            }
+        }
+        if(!expired.isEmpty() && session.renew(expired.get(0).error)) {
+            for(Call<?> call : expired) {
+                call.error = null;
+            }
+            sendAll(expired);
+        }
+    }
+
+    /**
+     * @return Number of requests sent so far, including the ones sent again after renewing the session
+     */
+    int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * A permit is taken before each request and given back when its response arrives
+     */
+    private void sendAll(Collection<? extends Call<?>> calls) throws InterruptedException {
+        final Semaphore permits = new Semaphore(concurrency);
+        for(Call<?> call : calls) {
+            permits.acquire();
+            requests.incrementAndGet();
+            send(call, permits);
+        }
+        // Every permit is back once the last response has been handled
+        permits.acquire(concurrency);
+    }
+
+    private static <T> void send(final Call<T> call, final Semaphore permits) {
+        final long start = System.nanoTime();
+        final ListenableFuture<T> future = call.send();
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    call.completed(future.get());
+                } catch (Exception e) {
+                    final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    call.error = String.valueOf(cause.getMessage());
+                } finally {
+                    call.elapsedNanos = System.nanoTime() - start;
+                    permits.release();
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+}
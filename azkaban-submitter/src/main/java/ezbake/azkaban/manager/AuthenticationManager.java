@@ -16,7 +16,6 @@ package ezbake.azkaban.manager;
 
 import ezbake.azkaban.client.http.HttpManager;
 import ezbake.azkaban.manager.result.AuthenticationResult;
-import ezbake.azkaban.submitter.util.JsonUtil;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
@@ -62,6 +61,20 @@ public class AuthenticationManager {
         this.password = password;
     }
 
+    /**
+     * @return The URI logins are sent to
+     */
+    public URI getAzkabanUri() {
+        return azkabanURI;
+    }
+
+    /**
+     * @return The username to log in as
+     */
+    public String getUsername() {
+        return username;
+    }
+
     /**
      * Logs into Azkaban and returns the result with the session ID
       * @return {@link ezbake.azkaban.manager.result.AuthenticationResult} containing the session ID if successful
@@ -76,8 +89,8 @@ public class AuthenticationManager {
 			HttpPost post = new HttpPost(azkabanURI);
 			post.setEntity(new UrlEncodedFormEntity(pairs));
 			
-			String json = HttpManager.post(post);
-			return (AuthenticationResult) JsonUtil.deserialize(json, AuthenticationResult.class);
+			final AuthenticationResult result = HttpManager.post("login", post, AuthenticationResult.class);
+			return result != null ? result : new AuthenticationResult("Empty response from Azkaban");
 		} catch(Exception ex) {
 			ex.printStackTrace();
 			return new AuthenticationResult(ex.getMessage());
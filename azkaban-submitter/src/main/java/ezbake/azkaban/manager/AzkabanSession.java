@@ -0,0 +1,84 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import ezbake.azkaban.manager.result.AuthenticationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Azkaban session used by a manager.  Sessions created from credentials come from the {@link SessionCache} and
+ * are renewed when Azkaban reports them expired, sessions created from a session ID are used as-is.  Only the
+ * blocking manager calls renew, the asynchronous variants report the expired session in their result.
+ */
+public class AzkabanSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(AzkabanSession.class);
+
+    private final AuthenticationManager authenticator;
+    private volatile String sessionId;
+
+    /**
+     * Session that was obtained elsewhere and can't be renewed
+     *
+     * @param sessionId The session ID of an already connected session
+     */
+    public AzkabanSession(String sessionId) {
+        this.authenticator = null;
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Session shared through the {@link SessionCache}
+     *
+     * @param authenticator The credentials to log in with
+     * @throws IllegalStateException if the login failed
+     */
+    public AzkabanSession(AuthenticationManager authenticator) {
+        this.authenticator = authenticator;
+        final AuthenticationResult result = SessionCache.getInstance().login(authenticator);
+        if(result.hasError()){
+            throw new IllegalStateException(result.getError());
+        }
+        this.sessionId = result.getSessionId();
+    }
+
+    /**
+     * @return The current session ID
+     */
+    public String getId() {
+        return sessionId;
+    }
+
+    /**
+     * Logs in again if the error returned by Azkaban says the session has expired
+     *
+     * @param error The error from the Azkaban response, may be null
+     * @return true if a new session was obtained and the request should be sent again
+     */
+    public boolean renew(String error) {
+        if(authenticator == null || !SessionCache.isSessionExpired(error)){
+            return false;
+        }
+
+        final AuthenticationResult result = SessionCache.getInstance().refresh(authenticator, sessionId);
+        if(result.hasError()){
+            logger.error("Could not renew expired session: {}", result.getError());
+            return false;
+        }
+        sessionId = result.getSessionId();
+        return true;
+    }
+}
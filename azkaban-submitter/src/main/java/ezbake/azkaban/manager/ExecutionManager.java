@@ -14,27 +14,49 @@
 
 package ezbake.azkaban.manager;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.client.http.AsyncHttpManager;
 import ezbake.azkaban.client.http.HttpManager;
-import ezbake.azkaban.manager.result.AuthenticationResult;
+import ezbake.azkaban.manager.result.CancelFlowsResult;
+import ezbake.azkaban.manager.result.CancelResult;
+import ezbake.azkaban.manager.result.ExecutionFlowResult;
 import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.LogChunkResult;
 import ezbake.azkaban.manager.result.RunningExecutionsResult;
 import ezbake.azkaban.submitter.util.JsonUtil;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.message.BasicNameValuePair;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class for executing a flow on Azkaban
@@ -60,7 +82,7 @@ public class ExecutionManager {
         String flow;
 	}
 
-    private String sessionId;
+    private AzkabanSession session;
     private URI executionUri; // The URL to hit
 
     /**
@@ -70,12 +92,7 @@ public class ExecutionManager {
      * @param azkabanUri The Azkaban URL
      */
     public ExecutionManager(String sessionId, URI azkabanUri){
-        try {
-            this.executionUri = new URIBuilder(azkabanUri).setPath("/executor").build();
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-        this.sessionId = sessionId;
+        this(new AzkabanSession(sessionId), azkabanUri);
     }
 
     /**
@@ -86,18 +103,22 @@ public class ExecutionManager {
      * @param password The password for the username
      */
     public ExecutionManager(URI azkabanUri, String username, String password) {
+        this(new AzkabanSession(new AuthenticationManager(azkabanUri, username, password)), azkabanUri);
+    }
+
+    /**
+     * Class for executing a flow in Azkaban
+     *
+     * @param session The session to use for all requests
+     * @param azkabanUri The Azkaban URL
+     */
+    public ExecutionManager(AzkabanSession session, URI azkabanUri){
         try {
             this.executionUri = new URIBuilder(azkabanUri).setPath("/executor").build();
         } catch (URISyntaxException e) {
             e.printStackTrace();
         }
-
-        final AuthenticationManager azkabanAuthenticator = new AuthenticationManager(azkabanUri, username, password);
-        final AuthenticationResult result = azkabanAuthenticator.login();
-        if(result.hasError()){
-            throw new IllegalStateException(result.getError());
-        }
-        this.sessionId = result.getSessionId();
+        this.session = session;
     }
 
 
@@ -109,18 +130,47 @@ public class ExecutionManager {
      * @return List of flow ID's that are currently executing
      */
     public RunningExecutionsResult getRunningExecutions(String projectName, String flowId) throws Exception {
+        RunningExecutionsResult result = fetchRunningExecutions(projectName, flowId);
+        if(result != null && session.renew(result.getError())){
+            result = fetchRunningExecutions(projectName, flowId);
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link #getRunningExecutions(String, String)}
+     *
+     * @param projectName The project to fetch from
+     * @param flowId The id of the flow to fetch the executions for
+     * @return Future of the flow ID's that are currently executing
+     */
+    public ListenableFuture<RunningExecutionsResult> getRunningExecutionsAsync(String projectName, String flowId) {
+        try {
+            return AsyncHttpManager.get("getRunning", getRunningRequest(projectName, flowId),
+                    RunningExecutionsResult.class);
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    private RunningExecutionsResult fetchRunningExecutions(String projectName, String flowId) throws Exception {
+        final RunningExecutionsResult result = HttpManager.get("getRunning", getRunningRequest(projectName, flowId),
+                RunningExecutionsResult.class);
+        if(result != null) {
+            logger.info("Running executions of {}.{}: {}", projectName, flowId, result.getExecIds());
+        }
+        return result;
+    }
+
+    private HttpGet getRunningRequest(String projectName, String flowId) throws URISyntaxException {
         final URI uri = new URIBuilder(executionUri)
-                .setParameter("session.id", sessionId)
+                .setParameter("session.id", session.getId())
                 .setParameter("ajax", "getRunning")
                 .setParameter("project", projectName)
                 .setParameter("flow", flowId)
                 .build();
 
-        final HttpGet get = new HttpGet(uri);
-        final String json = HttpManager.get(get);
-        logger.info("Running executions result: \n{}", json);
-
-        return (RunningExecutionsResult) JsonUtil.deserialize(json, RunningExecutionsResult.class);
+        return new HttpGet(uri);
     }
 
     /**
@@ -131,16 +181,305 @@ public class ExecutionManager {
      * @throws Exception
      */
     public String cancelFlow(String executionId) throws Exception {
+        final String json = HttpManager.get("cancelFlow", cancelFlowRequest(executionId));
+        logger.info("Cancel Flow result: \n{}", json);
+        return json.isEmpty() ? json : "Flow isn't running";
+    }
+
+    /**
+     * Asynchronous version of {@link #cancelFlow(String)}
+     *
+     * @param executionId The execution ID of the flow to cancel
+     * @return Future of an empty String if no errors, or a message if there was a problem
+     */
+    public ListenableFuture<String> cancelFlowAsync(String executionId) {
+        try {
+            return AsyncHttpManager.execute("cancelFlow", cancelFlowRequest(executionId),
+                    new AsyncHttpManager.ResponseParser<String>() {
+                        @Override
+                        public String parse(String json) {
+                            logger.info("Cancel Flow result: \n{}", json);
+                            return json.isEmpty() ? json : "Flow isn't running";
+                        }
+                    });
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    /**
+     * Cancels many executions at the same time, at most concurrency requests are in flight.  An expired session is
+     * renewed once and the executions that were rejected because of it are cancelled again.
+     *
+     * @param executionIds The execution IDs to cancel
+     * @param concurrency The maximum number of cancel requests in flight
+     * @return The outcome for every execution ID in the order they were given
+     */
+    public CancelFlowsResult cancelFlows(Collection<String> executionIds, int concurrency) throws InterruptedException {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        final long start = System.nanoTime();
+        final List<CancelCall> cancels = new ArrayList<>();
+        for(String executionId : new LinkedHashSet<>(executionIds)) {
+            cancels.add(new CancelCall(executionId));
+        }
+        new AsyncCalls(session, concurrency).send(cancels);
+
+        final List<CancelResult> results = new ArrayList<>();
+        for(CancelCall cancel : cancels) {
+            results.add(cancel.result != null ? cancel.result :
+                    new CancelResult(cancel.executionId, CancelResult.Outcome.FAILED, cancel.error));
+        }
+        final CancelFlowsResult result = new CancelFlowsResult(results,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Cancelled {} executions: {}", results.size(), result);
+        return result;
+    }
+
+    /**
+     * Cancels every running execution of the flow
+     *
+     * @param projectName The project containing the flow
+     * @param flowId The flow to cancel the executions of
+     * @param concurrency The maximum number of cancel requests in flight
+     * @return The outcome for every execution that was running
+     * @throws Exception if the running executions couldn't be fetched
+     */
+    public CancelFlowsResult cancelFlows(String projectName, String flowId, int concurrency) throws Exception {
+        final RunningExecutionsResult running = getRunningExecutions(projectName, flowId);
+        if(running != null && running.hasError()) {
+            throw new IllegalStateException("Could not fetch running executions of " + projectName + "." + flowId +
+                    ": " + running.getError());
+        }
+        final List<String> executionIds = running != null && running.getExecIds() != null ?
+                running.getExecIds() : Collections.<String>emptyList();
+        return cancelFlows(executionIds, concurrency);
+    }
+
+    /**
+     * One execution of {@link #cancelFlows(Collection, int)}, Azkaban refusing the cancel is its error
+     */
+    private class CancelCall extends AsyncCalls.Call<CancelResult> {
+        final String executionId;
+        volatile CancelResult result;
+
+        CancelCall(String executionId) {
+            this.executionId = executionId;
+        }
+
+        @Override
+        ListenableFuture<CancelResult> send() {
+            result = null;
+            return cancelFlowOutcomeAsync(executionId);
+        }
+
+        @Override
+        void completed(CancelResult result) {
+            this.result = result;
+            if(result.getOutcome() == CancelResult.Outcome.FAILED) {
+                error = result.getMessage();
+            }
+        }
+    }
+
+    private ListenableFuture<CancelResult> cancelFlowOutcomeAsync(final String executionId) {
+        try {
+            return AsyncHttpManager.execute("cancelFlow", cancelFlowRequest(executionId),
+                    new AsyncHttpManager.ResponseParser<CancelResult>() {
+                        @Override
+                        public CancelResult parse(String json) throws Exception {
+                            return toCancelResult(executionId, json);
+                        }
+                    });
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    /**
+     * Azkaban answers a successful cancel with an empty body and anything else with an error
+     */
+    static CancelResult toCancelResult(String executionId, String json) throws IOException {
+        if(json == null || json.trim().isEmpty()) {
+            return new CancelResult(executionId, CancelResult.Outcome.CANCELLED, null);
+        }
+        final Object error = ((Map<?, ?>) JsonUtil.deserialize(json, Map.class)).get("error");
+        final String message = error != null ? error.toString() : json;
+        if(message.contains("isn't running") || message.contains("not running")) {
+            return new CancelResult(executionId, CancelResult.Outcome.NOT_RUNNING, message);
+        }
+        return new CancelResult(executionId, CancelResult.Outcome.FAILED, message);
+    }
+
+    private HttpGet cancelFlowRequest(String executionId) throws URISyntaxException {
         final URI uri = new URIBuilder(executionUri)
-                .setParameter("session.id", sessionId)
+                .setParameter("session.id", session.getId())
                 .setParameter("ajax", "cancelFlow")
                 .setParameter("execid", executionId)
                 .build();
 
-        final HttpGet get = new HttpGet(uri);
-        final String json = HttpManager.get(get);
-        logger.info("Cancel Flow result: \n{}", json);
-        return json.isEmpty() ? json : "Flow isn't running";
+        return new HttpGet(uri);
+    }
+
+    /**
+     * Fetches the status of an execution
+     *
+     * @param executionId The execution ID
+     * @return The status of the execution, NULL if Azkaban returned an empty body
+     */
+    public ExecutionFlowResult fetchExecutionFlow(String executionId) throws Exception {
+        ExecutionFlowResult result = HttpManager.get("fetchexecflow", fetchExecutionFlowRequest(executionId),
+                ExecutionFlowResult.class);
+        if(result != null && session.renew(result.getError())) {
+            result = HttpManager.get("fetchexecflow", fetchExecutionFlowRequest(executionId), ExecutionFlowResult.class);
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link #fetchExecutionFlow(String)}
+     *
+     * @param executionId The execution ID
+     * @return Future of the status of the execution
+     */
+    public ListenableFuture<ExecutionFlowResult> fetchExecutionFlowAsync(String executionId) {
+        try {
+            return AsyncHttpManager.get("fetchexecflow", fetchExecutionFlowRequest(executionId),
+                    ExecutionFlowResult.class);
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    private HttpGet fetchExecutionFlowRequest(String executionId) throws URISyntaxException {
+        final URI uri = new URIBuilder(executionUri)
+                .setParameter("session.id", session.getId())
+                .setParameter("ajax", "fetchexecflow")
+                .setParameter("execid", executionId)
+                .build();
+
+        return new HttpGet(uri);
+    }
+
+    /**
+     * Fetches the next chunk of the log of an execution and writes it to the stream as it is read from the response
+     *
+     * @param executionId The execution ID
+     * @param offset Byte offset in the log to start from, the {@link LogChunkResult#getNextOffset()} of the previous
+     *               chunk
+     * @param length Maximum number of bytes to fetch
+     * @param out Where the log data is written, not closed
+     * @return Where the chunk was in the log, empty if there was nothing new
+     */
+    public LogChunkResult fetchExecFlowLogs(String executionId, long offset, int length, OutputStream out)
+            throws Exception {
+        return fetchLogs(executionId, null, offset, length, out);
+    }
+
+    /**
+     * Same as {@link #fetchExecFlowLogs(String, long, int, OutputStream)} for the log of one job of the execution
+     *
+     * @param jobId The job whose log to fetch
+     */
+    public LogChunkResult fetchExecJobLogs(String executionId, String jobId, long offset, int length,
+                                           OutputStream out) throws Exception {
+        if(jobId == null) {
+            throw new IllegalArgumentException("Job ID is required");
+        }
+        return fetchLogs(executionId, jobId, offset, length, out);
+    }
+
+    private LogChunkResult fetchLogs(String executionId, String jobId, long offset, int length, OutputStream out)
+            throws Exception {
+        if(offset < 0 || length < 1) {
+            throw new IllegalArgumentException("Offset must be at least 0 and length at least 1, was " + offset +
+                    " and " + length);
+        }
+        final String action = jobId == null ? "fetchExecFlowLogs" : "fetchExecJobLogs";
+        LogChunkResult result = HttpManager.get(action, fetchLogsRequest(action, executionId, jobId, offset, length),
+                new LogChunkHandler(offset, out));
+        // An error response has no data, so nothing was written before the retry
+        if(session.renew(result.getError())) {
+            result = HttpManager.get(action, fetchLogsRequest(action, executionId, jobId, offset, length),
+                    new LogChunkHandler(offset, out));
+        }
+        return result;
+    }
+
+    private HttpGet fetchLogsRequest(String action, String executionId, String jobId, long offset, int length)
+            throws URISyntaxException {
+        final URIBuilder builder = new URIBuilder(executionUri)
+                .setParameter("session.id", session.getId())
+                .setParameter("ajax", action)
+                .setParameter("execid", executionId);
+        if(jobId != null) {
+            builder.setParameter("jobId", jobId);
+        }
+        final URI uri = builder
+                .setParameter("offset", String.valueOf(offset))
+                .setParameter("length", String.valueOf(length))
+                .build();
+
+        return new HttpGet(uri);
+    }
+
+    /**
+     * Reads a log response with the streaming parser, writing the data field to the stream through the encoder's
+     * fixed buffer instead of decoding the response into an object.  Memory is bounded by the chunk length.
+     */
+    static class LogChunkHandler implements ResponseHandler<LogChunkResult> {
+        private final long offset;
+        private final OutputStream out;
+
+        LogChunkHandler(long offset, OutputStream out) {
+            this.offset = offset;
+            this.out = out;
+        }
+
+        @Override
+        public LogChunkResult handleResponse(HttpResponse response) throws IOException {
+            final LogChunkResult result = new LogChunkResult(offset, 0);
+            final HttpEntity entity = response.getEntity();
+            if(entity == null) {
+                return result;
+            }
+
+            try(JsonParser parser = JsonUtil.createParser(entity.getContent())) {
+                // Azkaban answers with an empty object once there's nothing left, or an empty body
+                if(parser.nextToken() != JsonToken.START_OBJECT) {
+                    return result;
+                }
+                while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+                    if("data".equals(field) && value == JsonToken.VALUE_STRING) {
+                        // Not closed, that would close the caller's stream
+                        final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                        writer.write(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                        writer.flush();
+                    } else if("offset".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                        result.setOffset(parser.getLongValue());
+                    } else if("length".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                        result.setLength(parser.getIntValue());
+                    } else if("error".equals(field)) {
+                        result.setError(parser.getText());
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Renews the session of this manager for callers of the asynchronous methods
+     *
+     * @see AzkabanSession#renew(String)
+     */
+    boolean renewSession(String error) {
+        return session.renew(error);
     }
 
     /**
@@ -150,25 +489,52 @@ public class ExecutionManager {
      * @return {@link ezbake.azkaban.manager.result.AuthenticationResult} containing the session ID if successful
      */
 	public ExecutionResult executeFlow(String projectName, String flow) {
+		ExecutionResult result = postExecuteFlow(projectName, flow);
+		if(session.renew(result.getError())) {
+			result = postExecuteFlow(projectName, flow);
+		}
+		return result;
+	}
+
+    /**
+     * Asynchronous version of {@link #executeFlow(String, String)}
+     *
+     * @param projectName The project name containing the flow to execute
+     * @param flow The flow to execute
+     * @return Future of the {@link ezbake.azkaban.manager.result.ExecutionResult}
+     */
+	public ListenableFuture<ExecutionResult> executeFlowAsync(String projectName, String flow) {
 		try {
-			final List<NameValuePair> postPairs = new ArrayList<>();
-			postPairs.add(new BasicNameValuePair("session.id", sessionId));
-			postPairs.add(new BasicNameValuePair("ajax", "executeFlow"));
-			postPairs.add(new BasicNameValuePair("project", projectName));
-            postPairs.add(new BasicNameValuePair("flow", flow));
-			
-			final HttpPost post = new HttpPost(executionUri);
-			post.setEntity(new UrlEncodedFormEntity(postPairs));
-
-			final String json = HttpManager.post(post);
-
-			return (ExecutionResult) JsonUtil.deserialize(json, ExecutionResult.class);
+			return AsyncHttpManager.post("executeFlow", executeFlowRequest(projectName, flow),
+					ExecutionResult.class);
+		} catch(Exception ex) {
+			return Futures.immediateFailedFuture(ex);
+		}
+	}
+
+	private ExecutionResult postExecuteFlow(String projectName, String flow) {
+		try {
+			final ExecutionResult result = HttpManager.post("executeFlow", executeFlowRequest(projectName, flow),
+					ExecutionResult.class);
+			return result != null ? result : new ExecutionResult("Empty response from Azkaban");
 		} catch(Exception ex) {
 			ex.printStackTrace();
 			return new ExecutionResult(ex.getMessage());
 		}
 	}
 
+	private HttpPost executeFlowRequest(String projectName, String flow) throws UnsupportedEncodingException {
+		final List<NameValuePair> postPairs = new ArrayList<>();
+		postPairs.add(new BasicNameValuePair("session.id", session.getId()));
+		postPairs.add(new BasicNameValuePair("ajax", "executeFlow"));
+		postPairs.add(new BasicNameValuePair("project", projectName));
+		postPairs.add(new BasicNameValuePair("flow", flow));
+
+		final HttpPost post = new HttpPost(executionUri);
+		post.setEntity(new UrlEncodedFormEntity(postPairs));
+		return post;
+	}
+
     public static void main(String[] args) throws Exception {
         final OptionsBean optionsBean = new OptionsBean();
         final CmdLineParser parser = new CmdLineParser(optionsBean);
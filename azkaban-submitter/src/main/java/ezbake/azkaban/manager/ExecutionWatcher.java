@@ -0,0 +1,449 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ezbake.azkaban.manager.result.ExecutionFlowResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waits for many executions to finish from a single scheduler thread.  On every tick the executions whose poll is due
+ * are fetched together through {@link ExecutionManager#fetchExecutionFlowAsync(String)}, at most
+ * {@link #setMaxInFlight(int)} at a time.  After each fetch the next poll of that execution is scheduled:
+ * <ul>
+ *     <li>halfway to the expected end, if earlier executions of the same flow were seen finishing</li>
+ *     <li>a tenth of the time it has been running otherwise, so long running executions are polled less and less</li>
+ * </ul>
+ * bounded by {@link #setPollInterval}.  Executions that don't change are rarely fetched, so the polling load follows
+ * the executions that are about to change rather than how many are watched.
+ * <p/>
+ * Listeners are called on the scheduler thread and should return quickly.  An expired session is renewed on a thread
+ * of its own, the executions that were rejected because of it are fetched again once it is renewed.
+ */
+public class ExecutionWatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionWatcher.class);
+
+    private static final long TICK_MILLIS = 100;
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+    // Weight of the latest duration in the per flow average
+    private static final double HISTORY_WEIGHT = 0.3;
+
+    /**
+     * Callbacks for a watched execution
+     */
+    public interface Listener {
+        /**
+         * The status of the execution changed, including the first time it was fetched
+         *
+         * @param execution The latest status of the execution
+         * @param previousStatus The status before, NULL the first time
+         */
+        void onStateChange(ExecutionFlowResult execution, String previousStatus);
+
+        /**
+         * The execution reached a final status, called once after the last {@link #onStateChange}
+         */
+        void onCompletion(ExecutionFlowResult execution);
+    }
+
+    private static class Watch implements Comparable<Watch> {
+        final String executionId;
+        final long added = System.currentTimeMillis();
+        final List<Listener> listeners = new ArrayList<>();
+        final List<SettableFuture<ExecutionFlowResult>> futures = new ArrayList<>();
+        String status;
+        long nextPoll = System.currentTimeMillis();
+        int failures;
+        boolean removed;
+
+        Watch(String executionId) {
+            this.executionId = executionId;
+        }
+
+        @Override
+        public int compareTo(Watch other) {
+            return Long.compare(nextPoll, other.nextPoll);
+        }
+    }
+
+    private final ExecutionManager executionManager;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService renewer;
+
+    // Only touched on the scheduler thread
+    private final Map<String, Watch> watches = new HashMap<>();
+    private final PriorityQueue<Watch> due = new PriorityQueue<>();
+    private final Map<String, Long> averageDurations = new HashMap<>();
+    // Rejected because the session expired, fetched again once the renewal in progress completes
+    private final List<Watch> awaitingRenewal = new ArrayList<>();
+    private int inFlight;
+
+    private volatile long minIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+    private volatile long maxIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+    private volatile int maxInFlight = 64;
+    private volatile boolean closed;
+
+    private final AtomicInteger watched = new AtomicInteger();
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong stateChanges = new AtomicLong();
+
+    /**
+     * @param executionManager Used to fetch the status of the executions, its session is renewed when it expires
+     */
+    public ExecutionWatcher(ExecutionManager executionManager) {
+        this.executionManager = executionManager;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("azkaban-watcher-%d")
+                .build());
+        this.renewer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("azkaban-watcher-renew-%d")
+                .build());
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Bounds the time between two fetches of the same execution, 1 second to 1 minute by default
+     */
+    public void setPollInterval(long min, long max, TimeUnit unit) {
+        if(min <= 0 || max < min) {
+            throw new IllegalArgumentException("Poll interval must be 0 < min <= max, was " + min + " and " + max);
+        }
+        this.minIntervalMillis = unit.toMillis(min);
+        this.maxIntervalMillis = unit.toMillis(max);
+    }
+
+    /**
+     * @param maxInFlight Maximum number of status fetches outstanding at once, 64 by default
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in flight must be at least 1, was " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Watches an execution until it finishes.  Watching an execution that is already watched adds the listener to
+     * the existing watch.
+     *
+     * @param executionId The execution to watch
+     * @param listener Called on state changes and on completion, may be NULL
+     * @return Future of the final status, failed if the status couldn't be fetched or Azkaban returned an error
+     */
+    public ListenableFuture<ExecutionFlowResult> watch(final String executionId, final Listener listener) {
+        if(closed) {
+            throw new IllegalStateException("Watcher is closed");
+        }
+        final SettableFuture<ExecutionFlowResult> future = SettableFuture.create();
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                Watch watch = watches.get(executionId);
+                if(watch == null) {
+                    watch = new Watch(executionId);
+                    watches.put(executionId, watch);
+                    due.add(watch);
+                    watched.incrementAndGet();
+                }
+                if(listener != null) {
+                    watch.listeners.add(listener);
+                }
+                watch.futures.add(future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Stops watching an execution, its futures are cancelled
+     */
+    public void unwatch(final String executionId) {
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Watch watch = watches.get(executionId);
+                if(watch != null) {
+                    remove(watch);
+                    for(SettableFuture<ExecutionFlowResult> future : watch.futures) {
+                        future.cancel(false);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The number of executions being watched
+     */
+    public int getWatchedCount() {
+        return watched.get();
+    }
+
+    /**
+     * @return The number of status fetches so far
+     */
+    public long getPollCount() {
+        return polls.get();
+    }
+
+    /**
+     * @return The number of state changes seen so far
+     */
+    public long getStateChangeCount() {
+        return stateChanges.get();
+    }
+
+    /**
+     * Stops the scheduler thread and cancels the futures of the executions still watched
+     */
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                for(Watch watch : new ArrayList<>(watches.values())) {
+                    remove(watch);
+                    for(SettableFuture<ExecutionFlowResult> future : watch.futures) {
+                        future.cancel(false);
+                    }
+                }
+            }
+        });
+        scheduler.shutdown();
+        renewer.shutdown();
+    }
+
+    private void tick() {
+        final long now = System.currentTimeMillis();
+        while(inFlight < maxInFlight && !due.isEmpty() && due.peek().nextPoll <= now) {
+            final Watch watch = due.poll();
+            if(!watch.removed) {
+                poll(watch);
+            }
+        }
+    }
+
+    private void poll(final Watch watch) {
+        inFlight++;
+        polls.incrementAndGet();
+        final ListenableFuture<ExecutionFlowResult> fetched = executionManager.fetchExecutionFlowAsync(
+                watch.executionId);
+        fetched.addListener(new Runnable() {
+            @Override
+            public void run() {
+                inFlight--;
+                if(!watch.removed) {
+                    handle(watch, fetched);
+                }
+            }
+        }, scheduler);
+    }
+
+    private void handle(Watch watch, ListenableFuture<ExecutionFlowResult> fetched) {
+        final ExecutionFlowResult execution;
+        try {
+            execution = fetched.get();
+        } catch (ExecutionException e) {
+            retry(watch, e.getCause());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if(execution == null) {
+            retry(watch, new IllegalStateException("Empty response from Azkaban"));
+            return;
+        }
+        if(execution.hasError()) {
+            if(SessionCache.isSessionExpired(execution.getError())) {
+                renew(watch, execution.getError());
+            } else {
+                fail(watch, new IllegalStateException("Could not fetch execution " + watch.executionId + ": " +
+                        execution.getError()));
+            }
+            return;
+        }
+
+        watch.failures = 0;
+        if(watch.status == null || !watch.status.equals(execution.getStatus())) {
+            final String previousStatus = watch.status;
+            watch.status = execution.getStatus();
+            stateChanges.incrementAndGet();
+            for(Listener listener : watch.listeners) {
+                try {
+                    listener.onStateChange(execution, previousStatus);
+                } catch (RuntimeException e) {
+                    logger.warn("Listener of execution {} failed", watch.executionId, e);
+                }
+            }
+        }
+
+        if(execution.isFinished()) {
+            complete(watch, execution);
+        } else {
+            schedule(watch, nextInterval(watch, execution));
+        }
+    }
+
+    /**
+     * How long to wait before fetching the execution again, from how long it has been running and how long the flow
+     * took before
+     */
+    private long nextInterval(Watch watch, ExecutionFlowResult execution) {
+        final long now = System.currentTimeMillis();
+        final long started = execution.getStartTime() > 0 ? execution.getStartTime() :
+                execution.getSubmitTime() > 0 ? execution.getSubmitTime() : watch.added;
+        final long elapsed = Math.max(0, now - started);
+
+        final Long average = averageDurations.get(flowKey(execution));
+        final long interval = average != null && average > elapsed ? (average - elapsed) / 2 : elapsed / 10;
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+
+    private void complete(Watch watch, ExecutionFlowResult execution) {
+        if(execution.getStartTime() > 0 && execution.getEndTime() >= execution.getStartTime()) {
+            final long duration = execution.getEndTime() - execution.getStartTime();
+            final String key = flowKey(execution);
+            final Long average = averageDurations.get(key);
+            averageDurations.put(key, average == null ? duration :
+                    (long) (HISTORY_WEIGHT * duration + (1 - HISTORY_WEIGHT) * average));
+        }
+
+        remove(watch);
+        for(Listener listener : watch.listeners) {
+            try {
+                listener.onCompletion(execution);
+            } catch (RuntimeException e) {
+                logger.warn("Listener of execution {} failed", watch.executionId, e);
+            }
+        }
+        for(SettableFuture<ExecutionFlowResult> future : watch.futures) {
+            future.set(execution);
+        }
+    }
+
+    /**
+     * Renews the session without blocking the scheduler thread, the watches rejected while a renewal is in progress
+     * wait for that one
+     */
+    private void renew(Watch watch, final String error) {
+        awaitingRenewal.add(watch);
+        if(awaitingRenewal.size() > 1) {
+            return;
+        }
+        try {
+            renewer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final boolean renewed = executionManager.renewSession(error);
+                    try {
+                        scheduler.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                renewed(renewed, error);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        logger.debug("Watcher closed while renewing the session");
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            renewed(false, error);
+        }
+    }
+
+    private void renewed(boolean renewed, String error) {
+        final List<Watch> waiting = new ArrayList<>(awaitingRenewal);
+        awaitingRenewal.clear();
+        for(Watch watch : waiting) {
+            if(watch.removed) {
+                continue;
+            }
+            if(renewed) {
+                schedule(watch, 0);
+            } else {
+                fail(watch, new IllegalStateException("Could not fetch execution " + watch.executionId + ": " +
+                        error));
+            }
+        }
+    }
+
+    private void retry(Watch watch, Throwable cause) {
+        if(++watch.failures >= MAX_CONSECUTIVE_FAILURES) {
+            fail(watch, cause);
+            return;
+        }
+        logger.debug("Fetching execution {} failed {} times, retrying", watch.executionId, watch.failures, cause);
+        schedule(watch, Math.min(maxIntervalMillis, minIntervalMillis << Math.min(watch.failures, 20)));
+    }
+
+    private void fail(Watch watch, Throwable cause) {
+        logger.warn("Stopped watching execution {}", watch.executionId, cause);
+        remove(watch);
+        for(SettableFuture<ExecutionFlowResult> future : watch.futures) {
+            future.setException(cause);
+        }
+    }
+
+    private void schedule(Watch watch, long delayMillis) {
+        watch.nextPoll = System.currentTimeMillis() + delayMillis;
+        due.add(watch);
+    }
+
+    private void remove(Watch watch) {
+        if(!watch.removed) {
+            watch.removed = true;
+            // Left in the due queue, tick skips it
+            watches.remove(watch.executionId);
+            watched.decrementAndGet();
+        }
+    }
+
+    private static String flowKey(ExecutionFlowResult execution) {
+        return execution.getProject() + "." + execution.getFlow();
+    }
+}
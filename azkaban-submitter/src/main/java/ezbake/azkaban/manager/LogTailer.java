@@ -0,0 +1,243 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ezbake.azkaban.manager.result.LogChunkResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows the logs of many jobs of an execution, like tail -f.  Each log is fetched a chunk at a time from where the
+ * last chunk ended, through {@link ExecutionManager#fetchExecJobLogs}, and written straight to its stream.  A full
+ * chunk is followed by the next one right away; otherwise the log is polled again after {@link #setPollInterval}, so
+ * an idle log costs one small request per poll and memory doesn't grow with the size of the log.
+ * <p/>
+ * Every log has at most one fetch in flight, the logs are fetched concurrently on the tailer's threads.  A tail stops
+ * when its future is cancelled, or once the log is drained after the until future given to {@link #tail} completes,
+ * e.g. the future of {@link ExecutionWatcher#watch}.
+ */
+public class LogTailer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogTailer.class);
+
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+    private class Tail implements Runnable {
+        final String executionId;
+        final String jobId;
+        final OutputStream out;
+        final ListenableFuture<?> until;
+        final SettableFuture<Long> future = SettableFuture.create();
+        long offset;
+        int failures;
+
+        Tail(String executionId, String jobId, long offset, OutputStream out, ListenableFuture<?> until) {
+            this.executionId = executionId;
+            this.jobId = jobId;
+            this.offset = offset;
+            this.out = out;
+            this.until = until;
+        }
+
+        @Override
+        public void run() {
+            if(future.isDone()) {
+                return;
+            }
+
+            // Checked before the fetch, so the last chunk covers everything logged before the until future completed
+            final boolean finishing = until != null && until.isDone();
+            final int chunkSize = LogTailer.this.chunkSize;
+            final LogChunkResult chunk;
+            try {
+                polls.incrementAndGet();
+                chunk = jobId == null ? executionManager.fetchExecFlowLogs(executionId, offset, chunkSize, out) :
+                        executionManager.fetchExecJobLogs(executionId, jobId, offset, chunkSize, out);
+            } catch (Exception e) {
+                if(++failures >= MAX_CONSECUTIVE_FAILURES) {
+                    stop(this, e);
+                } else {
+                    logger.debug("Fetching the log of {} failed {} times, retrying", this, failures, e);
+                    schedule(this, Math.min(TimeUnit.MINUTES.toMillis(1), pollIntervalMillis << Math.min(failures, 20)));
+                }
+                return;
+            }
+            if(chunk.hasError()) {
+                stop(this, new IllegalStateException("Could not fetch the log of " + this + ": " + chunk.getError()));
+                return;
+            }
+
+            failures = 0;
+            offset = chunk.getNextOffset();
+            bytes.addAndGet(chunk.getLength());
+            if(chunk.getLength() >= chunkSize) {
+                schedule(this, 0);
+            } else if(finishing) {
+                // Removed before the future completes, so callers waiting on it see the tail gone
+                tails.remove(this);
+                future.set(offset);
+            } else {
+                schedule(this, pollIntervalMillis);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return jobId == null ? "execution " + executionId : "job " + jobId + " of execution " + executionId;
+        }
+    }
+
+    private final ExecutionManager executionManager;
+    private final ScheduledExecutorService executor;
+    private final Set<Tail> tails = Collections.newSetFromMap(new ConcurrentHashMap<Tail, Boolean>());
+
+    private volatile int chunkSize = 64 * 1024;
+    private volatile long pollIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+    private volatile boolean closed;
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * @param executionManager Used to fetch the logs, its session is renewed when it expires
+     * @param threads The maximum number of logs fetched at the same time
+     */
+    public LogTailer(ExecutionManager executionManager, int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1, was " + threads);
+        }
+        this.executionManager = executionManager;
+        this.executor = Executors.newScheduledThreadPool(threads, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("azkaban-log-tailer-%d")
+                .build());
+    }
+
+    /**
+     * @param chunkSize The maximum number of bytes fetched per request, 64KB by default
+     */
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, was " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param interval How long to wait before polling a log that had nothing new, 1 second by default
+     */
+    public void setPollInterval(long interval, TimeUnit unit) {
+        if(interval <= 0) {
+            throw new IllegalArgumentException("Poll interval must be positive, was " + interval);
+        }
+        this.pollIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Follows a log, writing everything from the offset on to the stream
+     *
+     * @param executionId The execution
+     * @param jobId The job whose log to follow, NULL for the flow log
+     * @param offset Byte offset in the log to start from, 0 for the whole log
+     * @param out Where the log is written, not closed.  Only written to by one thread at a time.
+     * @param until Once it completes the log is drained and the tail stops, NULL to follow until cancelled
+     * @return Future of the offset the tail stopped at, cancel it to stop following the log
+     */
+    public ListenableFuture<Long> tail(String executionId, String jobId, long offset, OutputStream out,
+                                       ListenableFuture<?> until) {
+        if(closed) {
+            throw new IllegalStateException("Tailer is closed");
+        }
+        if(offset < 0) {
+            throw new IllegalArgumentException("Offset must be at least 0, was " + offset);
+        }
+        final Tail tail = new Tail(executionId, jobId, offset, out, until);
+        tails.add(tail);
+        tail.future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                tails.remove(tail);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        schedule(tail, 0);
+        return tail.future;
+    }
+
+    /**
+     * @return The number of logs being followed
+     */
+    public int getTailCount() {
+        return tails.size();
+    }
+
+    /**
+     * @return The number of log fetches so far
+     */
+    public long getPollCount() {
+        return polls.get();
+    }
+
+    /**
+     * @return The number of log bytes written so far
+     */
+    public long getBytesTailed() {
+        return bytes.get();
+    }
+
+    /**
+     * Stops the threads and cancels the futures of the logs still followed
+     */
+    @Override
+    public void close() {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdownNow();
+        for(Tail tail : tails) {
+            tail.future.cancel(false);
+        }
+    }
+
+    private void schedule(Tail tail, long delayMillis) {
+        try {
+            executor.schedule(tail, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed while the fetch was in flight
+            tail.future.cancel(false);
+        }
+    }
+
+    private void stop(Tail tail, Throwable cause) {
+        logger.warn("Stopped following the log of {}", tail, cause);
+        tails.remove(tail);
+        tail.future.setException(cause);
+    }
+}
@@ -0,0 +1,216 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import com.codahale.metrics.Gauge;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide index of project name to project ID and flow IDs, keyed by Azkaban server and project.  Azkaban only
+ * gives out the numeric project ID with the flows of the project, so the index saves scheduling and teardown a
+ * fetchprojectflows round trip per operation.
+ * <p/>
+ * It is filled by every {@link ProjectManager#fetchProjectFlows} and lazily by
+ * {@link ProjectManager#resolveProject}, and an entry is dropped when the project is created, uploaded to or deleted
+ * through this client.  Changes made by other clients aren't seen until then.  The least recently used entries are
+ * evicted once the index holds {@link #setMaxSize max size} projects.
+ */
+public class ProjectIndex {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final ProjectIndex INSTANCE = new ProjectIndex();
+
+    /**
+     * What the index knows about a project
+     */
+    public static class Entry {
+        private final String projectId;
+        private final List<String> flowIds;
+
+        public Entry(String projectId, List<String> flowIds) {
+            this.projectId = projectId;
+            this.flowIds = Collections.unmodifiableList(new ArrayList<>(flowIds));
+        }
+
+        public String getProjectId() {
+            return projectId;
+        }
+
+        public List<String> getFlowIds() {
+            return flowIds;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + projectId + " " + flowIds;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if(size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Bumped by every invalidation so that a fetch which started before it doesn't put back what it read
+    private long generation;
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    private ProjectIndex() {
+        AzkabanMetrics.register("projects.hits", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return hits.get();
+            }
+        });
+        AzkabanMetrics.register("projects.misses", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return misses.get();
+            }
+        });
+        AzkabanMetrics.register("projects.evictions", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return evictions.get();
+            }
+        });
+    }
+
+    /**
+     * @return The process-wide project index
+     */
+    public static ProjectIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxSize Number of projects kept before the least recently used ones are evicted
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be at least 1, was " + maxSize);
+        }
+        this.maxSize = maxSize;
+        final Iterator<Entry> eldest = entries.values().iterator();
+        while(entries.size() > maxSize) {
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param azkabanUri The Azkaban server
+     * @param projectName The project
+     * @return The indexed project, NULL if it isn't in the index
+     */
+    public synchronized Entry get(URI azkabanUri, String projectName) {
+        final Entry entry = entries.get(key(azkabanUri, projectName));
+        (entry == null ? misses : hits).incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * @return A token to hand to {@link #put(URI, String, ProjectFlowsResult, long)} with what is fetched after
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Indexes the flows fetched for a project unless the index was invalidated since the fetch started
+     *
+     * @param generation {@link #getGeneration()} from before the fetch
+     * @return The indexed project, NULL if the result doesn't describe a project
+     */
+    synchronized Entry put(URI azkabanUri, String projectName, ProjectFlowsResult flows, long generation) {
+        if(flows == null || flows.hasError() || flows.getProjectId() == null) {
+            return null;
+        }
+
+        final List<String> flowIds = new ArrayList<>();
+        if(flows.getFlows() != null) {
+            for(ProjectFlowsResult.FlowId flow : flows.getFlows()) {
+                flowIds.add(flow.getFlowId());
+            }
+        }
+        final Entry entry = new Entry(flows.getProjectId(), flowIds);
+        if(generation == this.generation) {
+            entries.put(key(azkabanUri, projectName), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Drops the project, the next lookup fetches it again
+     */
+    public synchronized void invalidate(URI azkabanUri, String projectName) {
+        generation++;
+        entries.remove(key(azkabanUri, projectName));
+    }
+
+    /**
+     * Drops every project
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The same server reached through different paths or a differently cased host is the same key
+     */
+    private static String key(URI azkabanUri, String projectName) {
+        final String scheme = azkabanUri.getScheme() == null ? "" : azkabanUri.getScheme().toLowerCase(Locale.US);
+        final String host = azkabanUri.getHost() == null ? "" : azkabanUri.getHost().toLowerCase(Locale.US);
+        return scheme + "://" + host + ":" + azkabanUri.getPort() + "/" + projectName;
+    }
+}
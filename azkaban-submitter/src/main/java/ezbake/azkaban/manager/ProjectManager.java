@@ -14,12 +14,18 @@
 
 package ezbake.azkaban.manager;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import ezbake.azkaban.client.http.AsyncHttpManager;
 import ezbake.azkaban.client.http.HttpManager;
+import ezbake.azkaban.manager.result.CancelFlowsResult;
+import ezbake.azkaban.manager.result.CancelResult;
 import ezbake.azkaban.manager.result.ManagerResult;
 import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.ProjectLogsResult;
 import ezbake.azkaban.manager.result.RemoveScheduleResult;
 import ezbake.azkaban.manager.result.RunningExecutionsResult;
-import ezbake.azkaban.submitter.util.JsonUtil;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
@@ -32,7 +38,15 @@ import org.slf4j.LoggerFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class to manage all aspects of projects in Azkaban
@@ -41,9 +55,12 @@ public class ProjectManager {
 
     private static final Logger logger = LoggerFactory.getLogger(ProjectManager.class);
 
+    // Cancel requests in flight per flow while tearing a project down
+    private static final int CANCEL_CONCURRENCY = 8;
+
     private URI azkabanUri;
     private URI managerUri;
-    private String sessionId;
+    private AzkabanSession session;
 
     /**
      * Manages Azkaban projects
@@ -53,13 +70,7 @@ public class ProjectManager {
      * @param password The password for the project
      */
     public ProjectManager(URI azkabanUri, String username, String password){
-        this.azkabanUri = azkabanUri;
-        try {
-            this.managerUri = new URIBuilder(azkabanUri).setPath("/manager").build();
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-        this.sessionId = new AuthenticationManager(azkabanUri, username, password).login().getSessionId();
+        this(new AzkabanSession(new AuthenticationManager(azkabanUri, username, password)), azkabanUri);
     }
 
     /**
@@ -69,13 +80,23 @@ public class ProjectManager {
      * @param azkabanUri The URL of the Azkaban server
      */
     public ProjectManager(String sessionId, URI azkabanUri){
+        this(new AzkabanSession(sessionId), azkabanUri);
+    }
+
+    /**
+     * Manages Azkaban projects
+     *
+     * @param session The session to use for all requests
+     * @param azkabanUri The URL of the Azkaban server
+     */
+    public ProjectManager(AzkabanSession session, URI azkabanUri){
         this.azkabanUri = azkabanUri;
         try {
             this.managerUri = new URIBuilder(azkabanUri).setPath("/manager").build();
         } catch (URISyntaxException e) {
             e.printStackTrace();
         }
-        this.sessionId = sessionId;
+        this.session = session;
     }
 
     /**
@@ -87,7 +108,7 @@ public class ProjectManager {
      */
     public ManagerResult createProject(String projectName, String projectDescription){
         final List<NameValuePair> postPairs = new ArrayList<>();
-        postPairs.add(new BasicNameValuePair("session.id", this.sessionId));
+        postPairs.add(new BasicNameValuePair("session.id", session.getId()));
         postPairs.add(new BasicNameValuePair("action", "create"));
         postPairs.add(new BasicNameValuePair("name", projectName));
         postPairs.add(new BasicNameValuePair("description", projectDescription));
@@ -95,10 +116,12 @@ public class ProjectManager {
         try {
             final HttpPost post = new HttpPost(managerUri);
             post.setEntity(new UrlEncodedFormEntity(postPairs));
-            final String json = HttpManager.post(post);
-            return (ManagerResult) JsonUtil.deserialize(json, ManagerResult.class);
+            final ManagerResult result = HttpManager.post("create", post, ManagerResult.class);
+            return result != null ? result : new ManagerResult("Empty response from Azkaban");
         } catch (Exception e) {
             return new ManagerResult(e.getMessage());
+        } finally {
+            ProjectIndex.getInstance().invalidate(azkabanUri, projectName);
         }
     }
 
@@ -111,21 +134,126 @@ public class ProjectManager {
      * @throws Exception
      */
     public ProjectFlowsResult fetchProjectFlows(String projectName) throws Exception {
+        final ProjectIndex index = ProjectIndex.getInstance();
+        final long generation = index.getGeneration();
+        ProjectFlowsResult result = getProjectFlows(projectName);
+        if(result != null && session.renew(result.getError())){
+            result = getProjectFlows(projectName);
+        }
+        index.put(azkabanUri, projectName, result, generation);
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link #fetchProjectFlows(String)}
+     *
+     * @param projectName The project to fetch from
+     * @return Future of all of the flows for the project, NULL if the project could not be found.
+     */
+    public ListenableFuture<ProjectFlowsResult> fetchProjectFlowsAsync(final String projectName) {
+        try {
+            final ProjectIndex index = ProjectIndex.getInstance();
+            final long generation = index.getGeneration();
+            final ListenableFuture<ProjectFlowsResult> future = AsyncHttpManager.get("fetchprojectflows",
+                    fetchProjectFlowsRequest(projectName), ProjectFlowsResult.class);
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        index.put(azkabanUri, projectName, Futures.getUnchecked(future), generation);
+                    } catch (RuntimeException e) {
+                        // Failed fetches aren't indexed
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            return future;
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    /**
+     * Looks the project up in the {@link ProjectIndex}, fetching its flows if it isn't indexed yet
+     *
+     * @param projectName The project to resolve
+     * @return The project ID and flow IDs, NULL if the project could not be found
+     */
+    public ProjectIndex.Entry resolveProject(String projectName) throws Exception {
+        final ProjectIndex index = ProjectIndex.getInstance();
+        final ProjectIndex.Entry entry = index.get(azkabanUri, projectName);
+        if(entry != null) {
+            return entry;
+        }
+
+        final long generation = index.getGeneration();
+        final ProjectFlowsResult result = fetchProjectFlows(projectName);
+        if(result != null && result.hasError()) {
+            logger.info("Could not resolve project {}: {}", projectName, result.getError());
+        }
+        return index.put(azkabanUri, projectName, result, generation);
+    }
+
+    private ProjectFlowsResult getProjectFlows(String projectName) throws Exception {
+        final ProjectFlowsResult result = HttpManager.get("fetchprojectflows", fetchProjectFlowsRequest(projectName),
+                ProjectFlowsResult.class);
+        if(result != null) {
+            logger.info("Fetched project {} (#{}) with {} flows", result.getProject(), result.getProjectId(),
+                    result.getFlows() != null ? result.getFlows().size() : 0);
+        }
+        return result;
+    }
+
+    private HttpGet fetchProjectFlowsRequest(String projectName) throws URISyntaxException {
         final URI uri = new URIBuilder(managerUri)
-                .setParameter("session.id", sessionId)
+                .setParameter("session.id", session.getId())
                 .setParameter("ajax","fetchprojectflows")
                 .setParameter("project", projectName)
                 .build();
 
-        final HttpGet get = new HttpGet(uri);
-        final String json = HttpManager.get(get);
-        logger.info("Fetch Projects result: \n{}", json);
+        return new HttpGet(uri);
+    }
 
-        if(json == null || json.isEmpty()){
-            return null;
-        } else {
-            return (ProjectFlowsResult) JsonUtil.deserialize(json, ProjectFlowsResult.class);
+    /**
+     * Fetches the log of everything done to a project: creation, uploads, permission changes and so on
+     *
+     * @param projectName The project to fetch the log of
+     * @return The newest page of the log, NULL if Azkaban returned an empty body
+     */
+    public ProjectLogsResult fetchProjectLogs(String projectName) throws Exception {
+        return fetchProjectLogs(projectName, -1, -1);
+    }
+
+    /**
+     * Fetches a page of the project log, newest events first
+     *
+     * @param projectName The name of the project
+     * @param skip Number of the newest events to leave out, -1 for Azkaban's default of 0
+     * @param size Maximum number of events, -1 for Azkaban's default of 1000
+     * @return The page of the log, NULL if Azkaban returned an empty body
+     */
+    public ProjectLogsResult fetchProjectLogs(String projectName, int skip, int size) throws Exception {
+        ProjectLogsResult result = HttpManager.get("fetchProjectLogs", fetchProjectLogsRequest(projectName, skip, size),
+                ProjectLogsResult.class);
+        if(result != null && session.renew(result.getError())){
+            result = HttpManager.get("fetchProjectLogs", fetchProjectLogsRequest(projectName, skip, size),
+                    ProjectLogsResult.class);
         }
+        return result;
+    }
+
+    private HttpGet fetchProjectLogsRequest(String projectName, int skip, int size) throws URISyntaxException {
+        final URIBuilder builder = new URIBuilder(managerUri)
+                .setParameter("session.id", session.getId())
+                .setParameter("ajax", "fetchProjectLogs")
+                .setParameter("project", projectName);
+        if(skip >= 0) {
+            builder.setParameter("skip", String.valueOf(skip));
+        }
+        if(size >= 0) {
+            builder.setParameter("size", String.valueOf(size));
+        }
+
+        return new HttpGet(builder.build());
     }
 
     /**
@@ -136,12 +264,16 @@ public class ProjectManager {
      */
     public void deleteProject(String projectName) throws Exception {
         final URI uri = new URIBuilder(managerUri)
-                .setParameter("session.id", sessionId)
+                .setParameter("session.id", session.getId())
                 .setParameter("delete", "true")
                 .setParameter("project", projectName)
                 .build();
 
-        HttpManager.get(new HttpGet(uri));
+        try {
+            HttpManager.get("delete", new HttpGet(uri));
+        } finally {
+            ProjectIndex.getInstance().invalidate(azkabanUri, projectName);
+        }
     }
 
     /**
@@ -151,54 +283,193 @@ public class ProjectManager {
      * @return The ID number of the project that was removed
      */
     public String removeProject(String projectName) throws Exception {
-        final ExecutionManager executionManager = new ExecutionManager(sessionId, azkabanUri);
-        final ScheduleManager  scheduleManager  = new ScheduleManager (sessionId, azkabanUri);
+        final ExecutionManager executionManager = new ExecutionManager(session, azkabanUri);
+        final ScheduleManager  scheduleManager  = new ScheduleManager (session, azkabanUri);
 
-        // Fetch flows for the project
-        final ProjectFlowsResult flowsResult = fetchProjectFlows(projectName);
-        final List<ProjectFlowsResult.FlowId> flows = flowsResult.getFlows();
+        // Resolve the flows of the project
+        final ProjectIndex.Entry project = resolveExisting(projectName);
 
         // Find any currently running flows
-        for(ProjectFlowsResult.FlowId flowId : flows){
+        for(String flowId : project.getFlowIds()){
             // Un-schedule any upcoming flows
-            final RemoveScheduleResult removeScheduleResult = scheduleManager.removeSchedule(flowsResult.getProjectId(),
-                    flowId.getFlowId());
+            final RemoveScheduleResult removeScheduleResult = scheduleManager.removeSchedule(project.getProjectId(),
+                    flowId);
             if(removeScheduleResult.hasError()){
-                logger.error("Could not un-schedule flow {}: {}", flowId.getFlowId(), removeScheduleResult.getMessage());
-                throw new Exception("Could not un-schedule flow: " + removeScheduleResult.getMessage());
+                logger.error("Could not un-schedule flow {}: {}", flowId, describe(removeScheduleResult));
+                throw new Exception("Could not un-schedule flow: " + describe(removeScheduleResult));
             }
 
-            logger.info("Checking for executions for flow ID '{}'", flowId.getFlowId());
-            RunningExecutionsResult runningExecutionsResult = executionManager.getRunningExecutions(projectName, flowId.getFlowId());
+            logger.info("Checking for executions for flow ID '{}'", flowId);
+            RunningExecutionsResult runningExecutionsResult = executionManager.getRunningExecutions(projectName, flowId);
             if(runningExecutionsResult != null && runningExecutionsResult.getExecIds() != null){
-                for(String executionId : runningExecutionsResult.getExecIds()){
-                    // Cancel the execution
-                    logger.info("Canceling execution ID {}", executionId);
-                    String result = executionManager.cancelFlow(executionId);
-                    if(!result.isEmpty()){
-                        logger.warn("Tried to cancel execution {} but it was not running.", executionId);
+                // Cancel the executions
+                logger.info("Canceling execution IDs {}", runningExecutionsResult.getExecIds());
+                final CancelFlowsResult cancelled = executionManager.cancelFlows(runningExecutionsResult.getExecIds(),
+                        CANCEL_CONCURRENCY);
+                for(CancelResult result : cancelled.getResults(CancelResult.Outcome.NOT_RUNNING)) {
+                    logger.warn("Tried to cancel execution {} but it was not running.", result.getExecId());
+                }
+                final List<CancelResult> failed = cancelled.getResults(CancelResult.Outcome.FAILED);
+                if(!failed.isEmpty()){
+                    logger.error("Could not cancel executions of flow {}: {}", flowId, failed);
+                    throw new Exception("Could not cancel executions of flow " + flowId + ": " + failed);
+                }
+            }
+        }
+
+        // Now that there is nothing running or scheduled to run, attempt to delete the project
+        deleteAndVerify(projectName);
+
+        return project.getProjectId();
+    }
+
+    /**
+     * Removes the project from Azkaban, un-scheduling and canceling all of its flows concurrently.  Every flow is torn
+     * down even if others fail, and the project is only deleted once all of them succeeded.
+     *
+     * @param projectName The project to remove
+     * @param concurrency The maximum number of flows torn down at the same time
+     * @return The ID number of the project that was removed
+     * @throws Exception with a report of every flow that could not be torn down
+     */
+    public String removeProject(final String projectName, int concurrency) throws Exception {
+        if(concurrency < 1){
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+
+        final ExecutionManager executionManager = new ExecutionManager(session, azkabanUri);
+        final ScheduleManager  scheduleManager  = new ScheduleManager (session, azkabanUri);
+
+        // Resolve the flows of the project
+        final ProjectIndex.Entry project = resolveExisting(projectName);
+        final List<String> flows = project.getFlowIds();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, flows.size())));
+        final Map<String, Future<List<String>>> teardowns = new LinkedHashMap<>();
+        try {
+            for(final String flowId : flows){
+                teardowns.put(flowId, executor.submit(new Callable<List<String>>() {
+                    @Override
+                    public List<String> call() {
+                        return teardownFlow(executionManager, scheduleManager, projectName, project.getProjectId(),
+                                flowId);
+                    }
+                }));
+            }
+
+            final StringBuilder report = new StringBuilder();
+            int failedFlows = 0;
+            for(Map.Entry<String, Future<List<String>>> teardown : teardowns.entrySet()){
+                List<String> failures;
+                try {
+                    failures = teardown.getValue().get();
+                } catch (ExecutionException e) {
+                    failures = Collections.singletonList(String.valueOf(e.getCause()));
+                }
+
+                if(!failures.isEmpty()){
+                    failedFlows++;
+                    for(String failure : failures){
+                        report.append("\n  ").append(teardown.getKey()).append(": ").append(failure);
                     }
                 }
             }
+
+            if(failedFlows > 0){
+                logger.error("Could not tear down {} of {} flows of project {}:{}", failedFlows, flows.size(),
+                        projectName, report);
+                throw new Exception("Could not tear down " + failedFlows + " of " + flows.size() + " flows of project " +
+                        projectName + ":" + report);
+            }
+        } finally {
+            executor.shutdownNow();
         }
 
         // Now that there is nothing running or scheduled to run, attempt to delete the project
+        deleteAndVerify(projectName);
+
+        return project.getProjectId();
+    }
+
+    /**
+     * Fetches the flows of the project instead of trusting the {@link ProjectIndex}, somebody else may have uploaded
+     * new flows since it was indexed and those have to be torn down too
+     */
+    private ProjectIndex.Entry resolveExisting(String projectName) throws Exception {
+        ProjectIndex.getInstance().invalidate(azkabanUri, projectName);
+        final ProjectIndex.Entry project = resolveProject(projectName);
+        if(project == null){
+            throw new Exception("Could not find project " + projectName);
+        }
+        return project;
+    }
+
+    /**
+     * Un-schedules the flow and cancels its running executions
+     *
+     * @return Description of everything that failed, empty if the flow was torn down
+     */
+    private static List<String> teardownFlow(ExecutionManager executionManager, ScheduleManager scheduleManager,
+                                             String projectName, String projectId, String flowId) {
+        final List<String> failures = new ArrayList<>();
+        try {
+            final RemoveScheduleResult removeScheduleResult = scheduleManager.removeSchedule(projectId, flowId);
+            if(removeScheduleResult.hasError()){
+                failures.add("Could not un-schedule flow: " + describe(removeScheduleResult));
+            }
+        } catch (Exception e) {
+            failures.add("Could not un-schedule flow: " + e.getMessage());
+        }
+
+        final RunningExecutionsResult runningExecutionsResult;
+        try {
+            logger.info("Checking for executions for flow ID '{}'", flowId);
+            runningExecutionsResult = executionManager.getRunningExecutions(projectName, flowId);
+        } catch (Exception e) {
+            failures.add("Could not fetch running executions: " + e.getMessage());
+            return failures;
+        }
+
+        if(runningExecutionsResult != null && runningExecutionsResult.getExecIds() != null){
+            logger.info("Canceling execution IDs {}", runningExecutionsResult.getExecIds());
+            try {
+                final CancelFlowsResult cancelled = executionManager.cancelFlows(runningExecutionsResult.getExecIds(),
+                        CANCEL_CONCURRENCY);
+                for(CancelResult result : cancelled.getResults(CancelResult.Outcome.NOT_RUNNING)) {
+                    logger.warn("Tried to cancel execution {} but it was not running.", result.getExecId());
+                }
+                for(CancelResult result : cancelled.getResults(CancelResult.Outcome.FAILED)) {
+                    failures.add("Could not cancel execution " + result.getExecId() + ": " + result.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add("Interrupted while cancelling executions");
+            }
+        }
+        return failures;
+    }
+
+    private static String describe(RemoveScheduleResult result) {
+        return result.getError() != null ? result.getError() : result.getMessage();
+    }
+
+    private void deleteAndVerify(String projectName) throws Exception {
         logger.info("Attempting to delete project");
         deleteProject(projectName);
 
         // Verify project was deleted.
         final ProjectFlowsResult verify = fetchProjectFlows(projectName);
-        if(verify != null && !verify.getFlows().isEmpty()){
+        if(verify != null && verify.getFlows() != null && !verify.getFlows().isEmpty()){
             throw new Exception("There are still flows for the the project.  Delete unsuccessful.");
         }
-
-        return flowsResult.getProjectId();
     }
 
     public static void main(String[] args) throws Exception {
         System.out.println("Attempting to delete project: " + args[0]);
         final URI azkabanUri = new URI("https://az01:8443");
         final ProjectManager manager = new ProjectManager(azkabanUri, args[1], args[2]);
-        System.out.println("Removed project #" + manager.removeProject(args[0]));
+        final String projectId = args.length > 3 ? manager.removeProject(args[0], Integer.parseInt(args[3]))
+                : manager.removeProject(args[0]);
+        System.out.println("Removed project #" + projectId);
     }
 }
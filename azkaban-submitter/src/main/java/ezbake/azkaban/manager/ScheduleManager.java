@@ -14,13 +14,19 @@
 
 package ezbake.azkaban.manager;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.client.http.AsyncHttpManager;
 import ezbake.azkaban.client.http.HttpManager;
-import ezbake.azkaban.manager.result.AuthenticationResult;
+import ezbake.azkaban.manager.result.FetchScheduleResult;
+import ezbake.azkaban.manager.result.FlowScheduleResult;
 import ezbake.azkaban.manager.result.RemoveScheduleResult;
+import ezbake.azkaban.manager.result.ScheduleFlowsResult;
 import ezbake.azkaban.manager.result.SchedulerResult;
 import ezbake.azkaban.submitter.util.JsonUtil;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.message.BasicNameValuePair;
@@ -33,13 +39,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Class for scheduling a flow in Azkaban
+ * Class for scheduling a flow in Azkaban.  The date, time and period set on a manager apply to its
+ * {@link #scheduleFlow(String, String, String)}; the methods taking a {@link ScheduleSpec} don't use them and can be
+ * called concurrently.
  */
 public class ScheduleManager {
 
@@ -75,7 +88,8 @@ public class ScheduleManager {
     }
 
 
-    private String sessionId;
+    private AzkabanSession session;
+    private URI azkabanUri;
     private URI schedulerUri;
 
     private String scheduleDate;
@@ -92,18 +106,7 @@ public class ScheduleManager {
      * @param password The password for the username
      */
     public ScheduleManager(URI azkabanUri, String username, String password) {
-        try {
-            this.schedulerUri = new URIBuilder(azkabanUri).setPath("/schedule").build();
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-
-        final AuthenticationManager azkabanAuthenticator = new AuthenticationManager(schedulerUri,username,password);
-        final AuthenticationResult result = azkabanAuthenticator.login();
-        if(result.hasError()){
-            throw new IllegalStateException(result.getError());
-        }
-        this.sessionId = result.getSessionId();
+        this(new AzkabanSession(new AuthenticationManager(azkabanUri, username, password)), azkabanUri);
     }
 
     /**
@@ -113,7 +116,18 @@ public class ScheduleManager {
      * @param azkabanUri The Azkaban URL
      */
     public ScheduleManager(String sessionId, URI azkabanUri){
-        this.sessionId = sessionId;
+        this(new AzkabanSession(sessionId), azkabanUri);
+    }
+
+    /**
+     * Class for scheduling a flow in Azkaban
+     *
+     * @param session The session to use for all requests
+     * @param azkabanUri The Azkaban URL
+     */
+    public ScheduleManager(AzkabanSession session, URI azkabanUri){
+        this.session = session;
+        this.azkabanUri = azkabanUri;
         try {
             this.schedulerUri = new URIBuilder(azkabanUri).setPath("/schedule").build();
         } catch (URISyntaxException e) {
@@ -174,29 +188,93 @@ public class ScheduleManager {
      * @throws Exception - If the flow isn't scheduled
      */
     public RemoveScheduleResult removeSchedule(String projectId, String flowName) throws Exception {
+        RemoveScheduleResult result = postRemoveSchedule(projectId, flowName);
+        if(result != null && session.renew(result.getError())) {
+            result = postRemoveSchedule(projectId, flowName);
+        }
+        if(result == null) {
+            return notScheduled(flowName);
+        }
+        logger.info("Remove result for {}: {} {}", flowName, result.getResult(), result.getMessage());
+        return result;
+    }
+
+    /**
+     * Attempts to remove the scheduled flow, resolving the project ID through the {@link ProjectIndex}
+     *
+     * @param projectName The NAME of the project the flow is in
+     * @param flowName The id of the flow to remove the schedule for
+     * @return Whether or not the operation was successful
+     * @throws Exception - If the project can't be found
+     */
+    public RemoveScheduleResult unscheduleFlow(String projectName, String flowName) throws Exception {
+        final ProjectIndex.Entry project = new ProjectManager(session, azkabanUri).resolveProject(projectName);
+        if(project == null) {
+            throw new Exception("Could not find project " + projectName);
+        }
+        return removeSchedule(project.getProjectId(), flowName);
+    }
+
+    /**
+     * Asynchronous version of {@link #removeSchedule(String, String)}
+     *
+     * @param projectId The project NUMBER the flow is in
+     * @param flowName The id of the flow to remove the schedule for
+     * @return Future of whether or not the operation was successful
+     */
+    public ListenableFuture<RemoveScheduleResult> removeScheduleAsync(String projectId, final String flowName) {
+        try {
+            return AsyncHttpManager.execute("removeSched", removeScheduleRequest(projectId, flowName),
+                    new AsyncHttpManager.ResponseParser<RemoveScheduleResult>() {
+                        @Override
+                        public RemoveScheduleResult parse(String json) throws Exception {
+                            return parseRemoveSchedule(json, flowName);
+                        }
+                    });
+        } catch (Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    private HttpPost removeScheduleRequest(String projectId, String flowName) throws UnsupportedEncodingException {
         final List<NameValuePair> postPairs = new ArrayList<>();
         postPairs.add(new BasicNameValuePair("action", "removeSched"));
-        postPairs.add(new BasicNameValuePair("session.id", sessionId));
+        postPairs.add(new BasicNameValuePair("session.id", session.getId()));
         postPairs.add(new BasicNameValuePair("projectId", projectId));
         postPairs.add(new BasicNameValuePair("flowName", flowName));
 
         final HttpPost post = new HttpPost(schedulerUri);
         post.setEntity(new UrlEncodedFormEntity(postPairs));
+        return post;
+    }
+
+    private RemoveScheduleResult postRemoveSchedule(String projectId, String flowName) throws Exception {
+        try {
+            return HttpManager.post("removeSched", removeScheduleRequest(projectId, flowName), RemoveScheduleResult.class);
+        } catch (JsonParseException ex){
+            // Not JSON, the flow might not have been scheduled
+            return null;
+        }
+    }
 
-        final String json = HttpManager.post(post);
+    private static RemoveScheduleResult parseRemoveSchedule(String json, String flowName) throws IOException {
         try {
             final RemoveScheduleResult result = (RemoveScheduleResult) JsonUtil.deserialize(json, RemoveScheduleResult.class);
             logger.info("Remove result: \n{}", json);
             return result;
         } catch (JsonParseException ex){
-            logger.warn("Flow '{}' potentially not scheduled", flowName);
-            final RemoveScheduleResult result = new RemoveScheduleResult();
-            result.setResult("unknown");
-            result.setMessage("Flow might not have been scheduled");
-            return result;
+            return notScheduled(flowName);
         }
     }
 
+    private static RemoveScheduleResult notScheduled(String flowName) {
+        logger.warn("Flow '{}' potentially not scheduled", flowName);
+        final RemoveScheduleResult result = new RemoveScheduleResult();
+        result.setResult("unknown");
+        result.setMessage("Flow might not have been scheduled");
+        return result;
+    }
+
     /**
      * Schedules a flow to run in Azkaban
      * @param projectName The project name containing the flow to execute
@@ -206,47 +284,312 @@ public class ScheduleManager {
      * @return {@link ezbake.azkaban.manager.result.SchedulerResult} containing the results of the scheduling
      */
     public SchedulerResult scheduleFlow(String projectName, String flow, String projectId) {
+        SchedulerResult result = postScheduleFlow(projectName, flow, projectId);
+        if(session.renew(result.getError())){
+            result = postScheduleFlow(projectName, flow, projectId);
+        }
+        return result;
+    }
+
+    /**
+     * Schedules a flow to run in Azkaban, resolving the project ID through the {@link ProjectIndex} instead of asking
+     * Azkaban for it every time
+     * @param projectName The project name containing the flow to execute
+     * @param flow The flow to execute
+     *
+     * @return {@link ezbake.azkaban.manager.result.SchedulerResult} containing the results of the scheduling
+     */
+    public SchedulerResult scheduleFlow(String projectName, String flow) {
+        final ProjectIndex.Entry project;
         try {
-            final List<NameValuePair> postPairs = new ArrayList<>();
-            postPairs.add(new BasicNameValuePair("ajax", "scheduleFlow"));
-            postPairs.add(new BasicNameValuePair("session.id", sessionId));
-            postPairs.add(new BasicNameValuePair("projectName", projectName));
-            postPairs.add(new BasicNameValuePair("projectId", projectId));
-            postPairs.add(new BasicNameValuePair("flow", flow));
-            postPairs.add(new BasicNameValuePair("scheduleDate", scheduleDate));
-
-            // Create the time if one wasn't provided
-            if(scheduleTime == null) {
-                // Need to add 2 minutes because Azkaban won't actually schedule it if it's scheduled to run at the
-                // current time or in the past.  If we only added one minute there's a race condition for the code
-                // submitting before the clock rolls over to the next minute.
-                final LocalTime now = LocalTime.now().plusMinutes(2);
-                scheduleTime = now.getHourOfDay() + "," + now.getMinuteOfHour() + "," +
-                        ((now.getHourOfDay() > 12) ? "pm" : "am") + "," + now.getChronology().getZone().toString();
+            project = new ProjectManager(session, azkabanUri).resolveProject(projectName);
+        } catch(Exception ex) {
+            return new SchedulerResult("Could not resolve project " + projectName + ": " + ex.getMessage());
+        }
+        if(project == null) {
+            return new SchedulerResult("Could not find project " + projectName);
+        }
 
-                logger.warn("time option not provided.  Using: " + scheduleTime);
+        final SchedulerResult result = scheduleFlow(projectName, flow, project.getProjectId());
+        if(result.hasError()) {
+            // The project may have been recreated by somebody else since it was indexed
+            ProjectIndex.getInstance().invalidate(azkabanUri, projectName);
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link #scheduleFlow(String, String, String)}
+     * @param projectName The project name containing the flow to execute
+     * @param flow The flow to execute
+     * @param projectId The ID of the project
+     *
+     * @return Future of the {@link ezbake.azkaban.manager.result.SchedulerResult}
+     */
+    public ListenableFuture<SchedulerResult> scheduleFlowAsync(String projectName, String flow, String projectId) {
+        try {
+            return AsyncHttpManager.post("scheduleFlow", scheduleFlowRequest(projectName, flow, projectId),
+                    SchedulerResult.class);
+        } catch(Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    private SchedulerResult postScheduleFlow(String projectName, String flow, String projectId) {
+        try {
+            final SchedulerResult result = HttpManager.post("scheduleFlow", scheduleFlowRequest(projectName, flow, projectId),
+                    SchedulerResult.class);
+            return result != null ? result : new SchedulerResult("Empty response from Azkaban");
+        } catch(Exception ex) {
+            ex.printStackTrace();
+            return new SchedulerResult(ex.getMessage());
+        }
+    }
+
+    private HttpPost scheduleFlowRequest(String projectName, String flow, String projectId) throws UnsupportedEncodingException {
+        // Create the time if one wasn't provided, without touching the field so concurrent calls don't race
+        String time = scheduleTime;
+        if(time == null) {
+            // Need to add 2 minutes because Azkaban won't actually schedule it if it's scheduled to run at the
+            // current time or in the past.  If we only added one minute there's a race condition for the code
+            // submitting before the clock rolls over to the next minute.
+            final LocalTime now = LocalTime.now().plusMinutes(2);
+            time = now.getHourOfDay() + "," + now.getMinuteOfHour() + "," +
+                    ((now.getHourOfDay() > 12) ? "pm" : "am") + "," + now.getChronology().getZone().toString();
+
+            logger.warn("time option not provided.  Using: " + time);
+        }
+        return scheduleFlowRequest(projectName, flow, projectId, scheduleDate, time, period);
+    }
+
+    private HttpPost scheduleFlowRequest(String projectName, String flow, String projectId, String date, String time,
+                                         String period) throws UnsupportedEncodingException {
+        final List<NameValuePair> postPairs = new ArrayList<>();
+        postPairs.add(new BasicNameValuePair("ajax", "scheduleFlow"));
+        postPairs.add(new BasicNameValuePair("session.id", session.getId()));
+        postPairs.add(new BasicNameValuePair("projectName", projectName));
+        postPairs.add(new BasicNameValuePair("projectId", projectId));
+        postPairs.add(new BasicNameValuePair("flow", flow));
+        postPairs.add(new BasicNameValuePair("scheduleDate", date));
+        postPairs.add(new BasicNameValuePair("scheduleTime", time));
+
+        if(period != null){
+            postPairs.add(new BasicNameValuePair("is_recurring", "on"));
+            postPairs.add(new BasicNameValuePair("period", period));
+        }
+
+        logger.info("Attempting to schedule {}.{} on {} at {} reoccuring {}", projectName, flow, date, time,
+                (period != null ? period : "never"));
+
+        final HttpPost post = new HttpPost(schedulerUri);
+        post.setEntity(new UrlEncodedFormEntity(postPairs));
+        return post;
+    }
+
+    /**
+     * Schedules a flow as described by the spec, resolving the project ID through the {@link ProjectIndex}.  The
+     * date, time and period set on this manager are not used.
+     *
+     * @param schedule What to schedule when
+     * @return {@link ezbake.azkaban.manager.result.SchedulerResult} containing the results of the scheduling
+     */
+    public SchedulerResult scheduleFlow(ScheduleSpec schedule) {
+        final String projectId;
+        try {
+            projectId = resolveProjectId(schedule.getProjectName());
+        } catch(Exception ex) {
+            return new SchedulerResult("Could not resolve project " + schedule.getProjectName() + ": " + ex.getMessage());
+        }
+        if(projectId == null) {
+            return new SchedulerResult("Could not find project " + schedule.getProjectName());
+        }
+
+        SchedulerResult result = postScheduleFlow(schedule, projectId);
+        if(session.renew(result.getError())){
+            result = postScheduleFlow(schedule, projectId);
+        }
+        if(result.hasError()) {
+            ProjectIndex.getInstance().invalidate(azkabanUri, schedule.getProjectName());
+        }
+        return result;
+    }
+
+    /**
+     * Schedules a flow as described by the spec without blocking the caller
+     *
+     * @param schedule What to schedule when
+     * @param projectId The ID of the project
+     * @return Future of the {@link ezbake.azkaban.manager.result.SchedulerResult}
+     */
+    public ListenableFuture<SchedulerResult> scheduleFlowAsync(ScheduleSpec schedule, String projectId) {
+        try {
+            return AsyncHttpManager.post("scheduleFlow", scheduleFlowRequest(schedule, projectId),
+                    SchedulerResult.class);
+        } catch(Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    /**
+     * Schedules many flows over this manager's session, keeping up to concurrency scheduleFlow requests in flight on
+     * the pooled connections instead of waiting for each response before sending the next.  Project IDs are resolved
+     * once per project through the {@link ProjectIndex}, and an expired session is renewed once.
+     *
+     * @param schedules What to schedule when, one spec per flow
+     * @param concurrency The maximum number of requests in flight
+     * @return The result of every flow in the order the specs were given, with the throughput of the run
+     */
+    public ScheduleFlowsResult scheduleFlows(Collection<ScheduleSpec> schedules, int concurrency)
+            throws InterruptedException {
+        final long start = System.nanoTime();
+        final AsyncCalls calls = new AsyncCalls(session, concurrency);
+        final Map<String, String> projectIds = new HashMap<>();
+        final Map<String, String> unresolved = new HashMap<>();
+        final List<ScheduleCall> scheduleCalls = new ArrayList<>();
+        final List<ScheduleCall> sent = new ArrayList<>();
+
+        for(ScheduleSpec schedule : schedules) {
+            final String projectName = schedule.getProjectName();
+            if(!projectIds.containsKey(projectName) && !unresolved.containsKey(projectName)) {
+                try {
+                    final String projectId = resolveProjectId(projectName);
+                    if(projectId != null) {
+                        projectIds.put(projectName, projectId);
+                    } else {
+                        unresolved.put(projectName, "Could not find project " + projectName);
+                    }
+                } catch(Exception ex) {
+                    unresolved.put(projectName, "Could not resolve project " + projectName + ": " + ex.getMessage());
+                }
             }
-            postPairs.add(new BasicNameValuePair("scheduleTime", scheduleTime));
 
-            if(period != null){
-                postPairs.add(new BasicNameValuePair("is_recurring", "on"));
-                postPairs.add(new BasicNameValuePair("period", period));
+            final ScheduleCall call = new ScheduleCall(schedule, projectIds.get(projectName));
+            call.error = unresolved.get(projectName);
+            scheduleCalls.add(call);
+            if(call.error == null) {
+                sent.add(call);
             }
+        }
+        calls.send(sent);
+
+        final List<FlowScheduleResult> results = new ArrayList<>();
+        final List<Long> latencies = new ArrayList<>();
+        for(ScheduleCall call : scheduleCalls) {
+            final FlowScheduleResult result = new FlowScheduleResult(call.schedule.getProjectName(),
+                    call.schedule.getFlow(), call.error);
+            if(call.result != null) {
+                result.setStatus(call.result.getStatus());
+                result.setMessage(call.result.getMessage());
+            }
+            results.add(result);
+            if(call.projectId != null) {
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(call.elapsedNanos));
+                if(call.error != null) {
+                    // The project may have been recreated by somebody else since it was indexed
+                    ProjectIndex.getInstance().invalidate(azkabanUri, call.schedule.getProjectName());
+                }
+            }
+        }
 
-            logger.info("Attempting to schedule {}.{} on {} at {} reoccuring {}", projectName, flow, scheduleDate, scheduleTime,
-                    (period != null ? period : "never"));
+        final ScheduleFlowsResult result = new ScheduleFlowsResult(results, latencies, calls.getRequests(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Scheduled {} flows: {}", results.size(), result);
+        return result;
+    }
 
-            final HttpPost post = new HttpPost(schedulerUri);
-            post.setEntity(new UrlEncodedFormEntity(postPairs));
+    private String resolveProjectId(String projectName) throws Exception {
+        final ProjectIndex.Entry project = new ProjectManager(session, azkabanUri).resolveProject(projectName);
+        return project != null ? project.getProjectId() : null;
+    }
 
-            final String json = HttpManager.post(post);
-            return (SchedulerResult) JsonUtil.deserialize(json, SchedulerResult.class);
+    private SchedulerResult postScheduleFlow(ScheduleSpec schedule, String projectId) {
+        try {
+            final SchedulerResult result = HttpManager.post("scheduleFlow", scheduleFlowRequest(schedule, projectId),
+                    SchedulerResult.class);
+            return result != null ? result : new SchedulerResult("Empty response from Azkaban");
         } catch(Exception ex) {
-            ex.printStackTrace();
             return new SchedulerResult(ex.getMessage());
         }
     }
 
+    private HttpPost scheduleFlowRequest(ScheduleSpec schedule, String projectId) throws UnsupportedEncodingException {
+        return scheduleFlowRequest(schedule.getProjectName(), schedule.getFlow(), projectId, schedule.getScheduleDate(),
+                schedule.getScheduleTime(), schedule.getPeriod());
+    }
+
+    /**
+     * One flow of {@link #scheduleFlows}
+     */
+    private class ScheduleCall extends AsyncCalls.Call<SchedulerResult> {
+        final ScheduleSpec schedule;
+        final String projectId;
+        volatile SchedulerResult result;
+
+        ScheduleCall(ScheduleSpec schedule, String projectId) {
+            this.schedule = schedule;
+            this.projectId = projectId;
+        }
+
+        @Override
+        ListenableFuture<SchedulerResult> send() {
+            return scheduleFlowAsync(schedule, projectId);
+        }
+
+        @Override
+        void completed(SchedulerResult result) {
+            this.result = result;
+            if(result == null) {
+                error = "Empty response from Azkaban";
+            } else if(result.hasError()) {
+                error = result.getError();
+            }
+        }
+    }
+
+    /**
+     * Fetches the schedule of a flow
+     *
+     * @param projectId The project NUMBER the flow is in
+     * @param flowId The flow to fetch the schedule of
+     * @return The result, its schedule is NULL if the flow isn't scheduled
+     */
+    public FetchScheduleResult fetchSchedule(String projectId, String flowId) throws Exception {
+        FetchScheduleResult result = getSchedule(projectId, flowId);
+        if(session.renew(result.getError())) {
+            result = getSchedule(projectId, flowId);
+        }
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link #fetchSchedule(String, String)}
+     */
+    public ListenableFuture<FetchScheduleResult> fetchScheduleAsync(String projectId, String flowId) {
+        try {
+            return AsyncHttpManager.get("fetchSchedule", fetchScheduleRequest(projectId, flowId),
+                    FetchScheduleResult.class);
+        } catch(Exception ex) {
+            return Futures.immediateFailedFuture(ex);
+        }
+    }
+
+    private FetchScheduleResult getSchedule(String projectId, String flowId) throws Exception {
+        final FetchScheduleResult result = HttpManager.get("fetchSchedule", fetchScheduleRequest(projectId, flowId),
+                FetchScheduleResult.class);
+        return result != null ? result : new FetchScheduleResult();
+    }
+
+    private HttpGet fetchScheduleRequest(String projectId, String flowId) throws URISyntaxException {
+        final URI uri = new URIBuilder(schedulerUri)
+                .setParameter("session.id", session.getId())
+                .setParameter("ajax", "fetchSchedule")
+                .setParameter("projectId", projectId)
+                .setParameter("flowId", flowId)
+                .build();
+
+        return new HttpGet(uri);
+    }
+
     public static void main(String[] args) throws IOException, InterruptedException, TException {
         final OptionsBean bean = new OptionsBean();
         final CmdLineParser parser = new CmdLineParser(bean);
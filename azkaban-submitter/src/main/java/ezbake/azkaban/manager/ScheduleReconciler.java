@@ -0,0 +1,284 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.manager.result.FetchScheduleResult;
+import ezbake.azkaban.manager.result.ReconcileSchedulesResult;
+import ezbake.azkaban.manager.result.RemoveScheduleResult;
+import ezbake.azkaban.manager.result.ScheduleChange;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the schedules of a set of projects match a desired set of schedules with as few requests as possible.  The
+ * current schedule of every flow of the projects is fetched concurrently, and only the flows whose schedule differs
+ * are scheduled or unscheduled.  Flows of the projects that aren't in the desired set are unscheduled; projects that
+ * aren't in the desired set are left alone.
+ * <p/>
+ * Azkaban shows schedule times in its own time zone, which the reconciler has to know to compare them with desired
+ * times in UTC.  It is the local time zone unless it is given.
+ * <pre>
+ * final ScheduleReconciler reconciler = new ScheduleReconciler(session, azkabanUri, 16,
+ *         DateTimeZone.forID("America/New_York"));
+ * final ReconcileSchedulesResult result = reconciler.reconcile(Arrays.asList(
+ *         ScheduleSpec.parse("ingest", "ingest-daily", null, "2,00,am,UTC", "1d")));
+ * </pre>
+ */
+public class ScheduleReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleReconciler.class);
+
+    private final AzkabanSession session;
+    private final URI azkabanUri;
+    private final int concurrency;
+    private final DateTimeZone serverZone;
+
+    /**
+     * @param session The session to use for all requests
+     * @param azkabanUri The Azkaban URL
+     * @param concurrency The maximum number of requests in flight
+     */
+    public ScheduleReconciler(AzkabanSession session, URI azkabanUri, int concurrency) {
+        this(session, azkabanUri, concurrency, DateTimeZone.getDefault());
+    }
+
+    /**
+     * @param session The session to use for all requests
+     * @param azkabanUri The Azkaban URL
+     * @param concurrency The maximum number of requests in flight
+     * @param serverZone The time zone of the Azkaban server
+     */
+    public ScheduleReconciler(AzkabanSession session, URI azkabanUri, int concurrency, DateTimeZone serverZone) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.session = session;
+        this.azkabanUri = azkabanUri;
+        this.concurrency = concurrency;
+        this.serverZone = serverZone;
+    }
+
+    /**
+     * Schedules, reschedules and unschedules the flows of the projects in the desired set until Azkaban has exactly the
+     * desired schedules for them
+     *
+     * @param desired The schedules that should exist, at most one per flow
+     * @return A change per flow that is or should be scheduled, in the order of the desired schedules followed by the
+     * removed ones
+     * @throws IllegalArgumentException if a flow is in the desired set more than once
+     */
+    public ReconcileSchedulesResult reconcile(Collection<ScheduleSpec> desired) throws InterruptedException {
+        final long start = System.nanoTime();
+        final Map<String, Map<String, ScheduleSpec>> byProject = new LinkedHashMap<>();
+        for(ScheduleSpec schedule : desired) {
+            Map<String, ScheduleSpec> flows = byProject.get(schedule.getProjectName());
+            if(flows == null) {
+                flows = new LinkedHashMap<>();
+                byProject.put(schedule.getProjectName(), flows);
+            }
+            if(flows.put(schedule.getFlow(), schedule) != null) {
+                throw new IllegalArgumentException("More than one schedule for " + schedule.getProjectName() + "." +
+                        schedule.getFlow());
+            }
+        }
+
+        final ScheduleManager scheduleManager = new ScheduleManager(session, azkabanUri);
+        final ProjectManager projectManager = new ProjectManager(session, azkabanUri);
+        final AsyncCalls calls = new AsyncCalls(session, concurrency);
+        final List<ScheduleChange> changes = new ArrayList<>();
+
+        // Current schedule of every flow of every project
+        final List<FetchCall> fetches = new ArrayList<>();
+        for(Map.Entry<String, Map<String, ScheduleSpec>> project : byProject.entrySet()) {
+            ProjectIndex.Entry resolved;
+            String error = null;
+            try {
+                resolved = projectManager.resolveProject(project.getKey());
+            } catch (Exception e) {
+                resolved = null;
+                error = String.valueOf(e.getMessage());
+            }
+            if(resolved == null) {
+                for(ScheduleSpec schedule : project.getValue().values()) {
+                    changes.add(new ScheduleChange(schedule.getProjectName(), schedule.getFlow(),
+                            ScheduleChange.Type.ADD, "Could not find project" + (error != null ? ": " + error : "")));
+                }
+                continue;
+            }
+            for(ScheduleSpec schedule : project.getValue().values()) {
+                if(!resolved.getFlowIds().contains(schedule.getFlow())) {
+                    changes.add(new ScheduleChange(schedule.getProjectName(), schedule.getFlow(),
+                            ScheduleChange.Type.ADD, "Flow not found in project"));
+                }
+            }
+            for(String flow : resolved.getFlowIds()) {
+                fetches.add(new FetchCall(scheduleManager, project.getKey(), resolved.getProjectId(), flow));
+            }
+        }
+        calls.send(fetches);
+
+        // Only what differs is sent
+        final List<ChangeCall<?>> applies = new ArrayList<>();
+        for(FetchCall fetch : fetches) {
+            final ScheduleSpec schedule = byProject.get(fetch.projectName).get(fetch.flow);
+            if(fetch.error != null) {
+                if(schedule != null) {
+                    // Scheduling replaces whatever schedule the flow has, so it's safe without knowing it
+                    applies.add(new ScheduleCall(scheduleManager, fetch, schedule, ScheduleChange.Type.UPDATE));
+                } else {
+                    changes.add(new ScheduleChange(fetch.projectName, fetch.flow, ScheduleChange.Type.REMOVE,
+                            "Could not fetch schedule: " + fetch.error));
+                }
+            } else if(schedule == null) {
+                if(fetch.schedule != null) {
+                    applies.add(new RemoveCall(scheduleManager, fetch));
+                }
+            } else if(fetch.schedule == null) {
+                applies.add(new ScheduleCall(scheduleManager, fetch, schedule, ScheduleChange.Type.ADD));
+            } else if(schedule.matches(fetch.schedule, serverZone)) {
+                changes.add(new ScheduleChange(fetch.projectName, fetch.flow, ScheduleChange.Type.UNCHANGED, null));
+            } else {
+                applies.add(new ScheduleCall(scheduleManager, fetch, schedule, ScheduleChange.Type.UPDATE));
+            }
+        }
+        calls.send(applies);
+
+        for(ChangeCall<?> apply : applies) {
+            if(apply.error != null && apply.type != ScheduleChange.Type.REMOVE) {
+                // The project may have been recreated by somebody else since it was indexed
+                ProjectIndex.getInstance().invalidate(azkabanUri, apply.fetch.projectName);
+            }
+            changes.add(new ScheduleChange(apply.fetch.projectName, apply.fetch.flow, apply.type, apply.error));
+        }
+
+        final ReconcileSchedulesResult result = new ReconcileSchedulesResult(order(changes, desired),
+                calls.getRequests(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Reconciled {} schedules of {} projects: {}", desired.size(), byProject.size(), result);
+        return result;
+    }
+
+    /**
+     * Orders the changes of the desired schedules like the desired schedules, followed by the removals
+     */
+    private static List<ScheduleChange> order(List<ScheduleChange> changes, Collection<ScheduleSpec> desired) {
+        final Map<String, ScheduleChange> byFlow = new LinkedHashMap<>();
+        for(ScheduleChange change : changes) {
+            byFlow.put(change.getProjectName() + "." + change.getFlow(), change);
+        }
+        final List<ScheduleChange> ordered = new ArrayList<>();
+        for(ScheduleSpec schedule : desired) {
+            final ScheduleChange change = byFlow.remove(schedule.getProjectName() + "." + schedule.getFlow());
+            if(change != null) {
+                ordered.add(change);
+            }
+        }
+        ordered.addAll(byFlow.values());
+        return ordered;
+    }
+
+    private static class FetchCall extends AsyncCalls.Call<FetchScheduleResult> {
+        final ScheduleManager scheduleManager;
+        final String projectName;
+        final String projectId;
+        final String flow;
+        volatile FetchScheduleResult.Schedule schedule;
+
+        FetchCall(ScheduleManager scheduleManager, String projectName, String projectId, String flow) {
+            this.scheduleManager = scheduleManager;
+            this.projectName = projectName;
+            this.projectId = projectId;
+            this.flow = flow;
+        }
+
+        @Override
+        ListenableFuture<FetchScheduleResult> send() {
+            return scheduleManager.fetchScheduleAsync(projectId, flow);
+        }
+
+        @Override
+        void completed(FetchScheduleResult result) {
+            if(result != null && result.hasError()) {
+                error = result.getError();
+            } else {
+                schedule = result != null ? result.getSchedule() : null;
+            }
+        }
+    }
+
+    private abstract static class ChangeCall<T> extends AsyncCalls.Call<T> {
+        final ScheduleManager scheduleManager;
+        final FetchCall fetch;
+        final ScheduleChange.Type type;
+
+        ChangeCall(ScheduleManager scheduleManager, FetchCall fetch, ScheduleChange.Type type) {
+            this.scheduleManager = scheduleManager;
+            this.fetch = fetch;
+            this.type = type;
+        }
+    }
+
+    private static class ScheduleCall extends ChangeCall<SchedulerResult> {
+        final ScheduleSpec schedule;
+
+        ScheduleCall(ScheduleManager scheduleManager, FetchCall fetch, ScheduleSpec schedule,
+                     ScheduleChange.Type type) {
+            super(scheduleManager, fetch, type);
+            this.schedule = schedule;
+        }
+
+        @Override
+        ListenableFuture<SchedulerResult> send() {
+            return scheduleManager.scheduleFlowAsync(schedule, fetch.projectId);
+        }
+
+        @Override
+        void completed(SchedulerResult result) {
+            if(result == null) {
+                error = "Empty response from Azkaban";
+            } else if(result.hasError()) {
+                error = result.getError();
+            }
+        }
+    }
+
+    private static class RemoveCall extends ChangeCall<RemoveScheduleResult> {
+        RemoveCall(ScheduleManager scheduleManager, FetchCall fetch) {
+            super(scheduleManager, fetch, ScheduleChange.Type.REMOVE);
+        }
+
+        @Override
+        ListenableFuture<RemoveScheduleResult> send() {
+            return scheduleManager.removeScheduleAsync(fetch.projectId, fetch.flow);
+        }
+
+        @Override
+        void completed(RemoveScheduleResult result) {
+            if(result != null && result.hasError()) {
+                error = result.getError() != null ? result.getError() : result.getMessage();
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import ezbake.azkaban.manager.result.FetchScheduleResult;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable description of when a flow should run: the date of the first run, the time of day and how often it
+ * repeats.  It is validated once when it is created, so any number of flows can be scheduled from it concurrently.
+ * <pre>
+ * final ScheduleSpec nightly = ScheduleSpec.parse("ingest", "ingest-daily", null, "2,00,am,UTC", "1d");
+ * </pre>
+ */
+public final class ScheduleSpec {
+
+    /**
+     * The units of a period and their symbol in Azkaban's &lt;int&gt;[Mwdhms] format
+     */
+    public enum Unit {
+        MONTHS('M', "month"),
+        WEEKS('w', "week"),
+        DAYS('d', "day"),
+        HOURS('h', "hour"),
+        MINUTES('m', "minute"),
+        SECONDS('s', "second");
+
+        private final char symbol;
+        private final String azkabanName;
+
+        Unit(char symbol, String azkabanName) {
+            this.symbol = symbol;
+            this.azkabanName = azkabanName;
+        }
+
+        public char getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * @return The unit with the symbol, NULL if there isn't one
+         */
+        public static Unit of(char symbol) {
+            for(Unit unit : values()) {
+                if(unit.symbol == symbol) {
+                    return unit;
+                }
+            }
+            return null;
+        }
+
+        private static Unit ofAzkabanName(String name) {
+            for(Unit unit : values()) {
+                if(unit.azkabanName.equals(name)) {
+                    return unit;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final DateTimeFormatter DATE = DateTimeFormat.forPattern("MM/dd/yyyy");
+    private static final Pattern PERIOD = Pattern.compile("(\\d+)([Mwdhms])");
+    private static final Pattern AZKABAN_PERIOD = Pattern.compile("(\\d+) (\\w+)\\(s\\)");
+    private static final Pattern AZKABAN_TIME = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}) (\\d{2}):(\\d{2}).*");
+
+    private final String projectName;
+    private final String flow;
+    private final LocalDate date;
+    private final int hour;
+    private final int minute;
+    private final String timeZone;
+    private final int periodCount;
+    private final Unit periodUnit;
+
+    /**
+     * @param projectName The project containing the flow
+     * @param flow The flow to schedule
+     * @param date The date of the first run, NULL for today
+     * @param hour The hour of the day to run, 0 to 23
+     * @param minute The minute of the hour to run
+     * @param timeZone UTC, or anything else for the time zone of the Azkaban server
+     * @param periodCount How many period units between runs, ignored if there is no unit
+     * @param periodUnit The unit of the period, NULL to run once
+     * @throws IllegalArgumentException if any of them is invalid
+     */
+    public ScheduleSpec(String projectName, String flow, LocalDate date, int hour, int minute, String timeZone,
+                        int periodCount, Unit periodUnit) {
+        if(projectName == null || projectName.isEmpty() || flow == null || flow.isEmpty()) {
+            throw new IllegalArgumentException("Project and flow are required, was " + projectName + "." + flow);
+        }
+        if(hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            throw new IllegalArgumentException("Invalid time of day " + hour + ":" + minute);
+        }
+        if(timeZone == null || timeZone.isEmpty() || timeZone.contains(",")) {
+            throw new IllegalArgumentException("Invalid time zone '" + timeZone + "'");
+        }
+        if(periodUnit != null && periodCount < 1) {
+            throw new IllegalArgumentException("Period must be at least 1, was " + periodCount);
+        }
+        this.projectName = projectName;
+        this.flow = flow;
+        this.date = date;
+        this.hour = hour;
+        this.minute = minute;
+        this.timeZone = "utc".equalsIgnoreCase(timeZone) ? "UTC" : timeZone;
+        this.periodCount = periodUnit != null ? periodCount : 0;
+        this.periodUnit = periodUnit;
+    }
+
+    /**
+     * Parses the formats {@link ScheduleManager} takes
+     *
+     * @param date The date of the first run in MM/DD/YYYY format, NULL for today
+     * @param time The time of day in 12,00,pm,utc format, hours past 12 are taken as 24 hour clock hours.  NULL for
+     *             two minutes from now, Azkaban doesn't schedule anything in the past.
+     * @param period How often to run in &lt;int&gt;[Mwdhms] format, NULL to run once
+     * @throws IllegalArgumentException if any of them is invalid
+     */
+    public static ScheduleSpec parse(String projectName, String flow, String date, String time, String period) {
+        final LocalDate firstDate;
+        try {
+            firstDate = date == null ? null : DATE.parseLocalDate(date);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("'" + date + "' is an invalid date. Should be MM/DD/YYYY", e);
+        }
+
+        int hour;
+        final int minute;
+        final String timeZone;
+        if(time == null) {
+            final LocalTime now = LocalTime.now().plusMinutes(2);
+            hour = now.getHourOfDay();
+            minute = now.getMinuteOfHour();
+            timeZone = now.getChronology().getZone().toString();
+        } else {
+            final String[] parts = time.split(",");
+            if(parts.length != 4 || !("am".equalsIgnoreCase(parts[2].trim()) || "pm".equalsIgnoreCase(parts[2].trim()))) {
+                throw new IllegalArgumentException("'" + time + "' is an invalid time. Should be hh,mm,am|pm,zone");
+            }
+            try {
+                hour = Integer.parseInt(parts[0].trim());
+                minute = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("'" + time + "' is an invalid time. Should be hh,mm,am|pm,zone", e);
+            }
+            if(hour <= 12) {
+                hour = hour % 12 + ("pm".equalsIgnoreCase(parts[2].trim()) ? 12 : 0);
+            }
+            timeZone = parts[3].trim();
+        }
+
+        int periodCount = 0;
+        Unit periodUnit = null;
+        if(period != null) {
+            final Matcher matcher = PERIOD.matcher(period);
+            if(!matcher.matches()) {
+                throw new IllegalArgumentException("'" + period + "' is an invalid period. Should be <int>[Mwdhms]");
+            }
+            periodCount = Integer.parseInt(matcher.group(1));
+            periodUnit = Unit.of(matcher.group(2).charAt(0));
+        }
+        return new ScheduleSpec(projectName, flow, firstDate, hour, minute, timeZone, periodCount, periodUnit);
+    }
+
+    /**
+     * @return The same schedule for another flow
+     */
+    public ScheduleSpec forFlow(String projectName, String flow) {
+        return new ScheduleSpec(projectName, flow, date, hour, minute, timeZone, periodCount, periodUnit);
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public String getFlow() {
+        return flow;
+    }
+
+    /**
+     * @return The date of the first run, NULL for the day it's scheduled
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * @return Number of period units between runs, 0 if the flow runs once
+     */
+    public int getPeriodCount() {
+        return periodCount;
+    }
+
+    /**
+     * @return The unit of the period, NULL if the flow runs once
+     */
+    public Unit getPeriodUnit() {
+        return periodUnit;
+    }
+
+    /**
+     * @return The scheduleDate parameter in MM/DD/YYYY format, NULL if there's no date
+     */
+    public String getScheduleDate() {
+        return date == null ? null : DATE.print(date);
+    }
+
+    /**
+     * @return The scheduleTime parameter in 12,00,pm,utc format
+     */
+    public String getScheduleTime() {
+        return String.format("%d,%02d,%s,%s", hour % 12 == 0 ? 12 : hour % 12, minute, hour < 12 ? "am" : "pm",
+                timeZone);
+    }
+
+    /**
+     * @return The period parameter in &lt;int&gt;[Mwdhms] format, NULL if the flow runs once
+     */
+    public String getPeriod() {
+        return periodUnit == null ? null : periodCount + String.valueOf(periodUnit.getSymbol());
+    }
+
+    /**
+     * Whether Azkaban already has the flow scheduled like this.  Azkaban shows times in its own time zone, so the time
+     * it shows is converted to the time zone of this schedule before it is compared.
+     *
+     * @param current The schedule Azkaban has for the flow
+     * @param serverZone The time zone of the Azkaban server
+     */
+    public boolean matches(FetchScheduleResult.Schedule current, DateTimeZone serverZone) {
+        final Matcher first = current.getFirstSchedTime() == null ? null :
+                AZKABAN_TIME.matcher(current.getFirstSchedTime());
+        if(first == null || !first.matches()) {
+            return false;
+        }
+        final DateTime shown;
+        try {
+            shown = new LocalDate(first.group(1)).toLocalDateTime(new LocalTime(Integer.parseInt(first.group(2)),
+                    Integer.parseInt(first.group(3)))).toDateTime(serverZone).withZone(getZone(serverZone));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if(shown.getHourOfDay() != hour || shown.getMinuteOfHour() != minute) {
+            return false;
+        }
+        if(date != null && !date.equals(shown.toLocalDate())) {
+            return false;
+        }
+        final String period = getPeriod();
+        return period == null ? normalizePeriod(current.getPeriod()) == null :
+                period.equals(normalizePeriod(current.getPeriod()));
+    }
+
+    /**
+     * @param serverZone The time zone of the Azkaban server
+     * @return The time zone the time of day is in, UTC or the one of the server
+     */
+    public DateTimeZone getZone(DateTimeZone serverZone) {
+        return "UTC".equals(timeZone) ? DateTimeZone.UTC : serverZone;
+    }
+
+    /**
+     * @param period A period the way Azkaban shows it, e.g. "1 day(s)", or in &lt;int&gt;[Mwdhms] format
+     * @return The period in &lt;int&gt;[Mwdhms] format, NULL if there is none, the period itself if it isn't understood
+     */
+    static String normalizePeriod(String period) {
+        if(period == null || period.trim().isEmpty() || "null".equals(period.trim())) {
+            return null;
+        }
+        final Matcher matcher = PERIOD.matcher(period.trim());
+        if(matcher.matches()) {
+            return Integer.parseInt(matcher.group(1)) + matcher.group(2);
+        }
+        final Matcher azkaban = AZKABAN_PERIOD.matcher(period.trim().toLowerCase(Locale.US));
+        if(azkaban.matches()) {
+            final Unit unit = Unit.ofAzkabanName(azkaban.group(2));
+            if(unit != null) {
+                return Integer.parseInt(azkaban.group(1)) + String.valueOf(unit.getSymbol());
+            }
+        }
+        return period;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof ScheduleSpec)) {
+            return false;
+        }
+        final ScheduleSpec other = (ScheduleSpec) o;
+        return projectName.equals(other.projectName) && flow.equals(other.flow) &&
+                (date == null ? other.date == null : date.equals(other.date)) && hour == other.hour &&
+                minute == other.minute && timeZone.equals(other.timeZone) && periodCount == other.periodCount &&
+                periodUnit == other.periodUnit;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = projectName.hashCode();
+        result = 31 * result + flow.hashCode();
+        result = 31 * result + (date != null ? date.hashCode() : 0);
+        result = 31 * result + hour * 60 + minute;
+        result = 31 * result + timeZone.hashCode();
+        result = 31 * result + (periodUnit != null ? periodCount * 7 + periodUnit.ordinal() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return projectName + "." + flow + " at " + getScheduleTime() + (date != null ? " from " + getScheduleDate() : "") +
+                (periodUnit != null ? " every " + getPeriod() : "");
+    }
+}
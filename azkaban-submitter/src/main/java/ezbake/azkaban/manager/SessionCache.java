@@ -0,0 +1,301 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager;
+
+import com.codahale.metrics.Gauge;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.result.AuthenticationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of Azkaban sessions keyed by Azkaban server and user.  Every manager created with a
+ * username/password shares one session ID per key instead of logging in on construction, and concurrent
+ * callers for the same key wait on a single in-flight login.
+ */
+public class SessionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionCache.class);
+
+    /**
+     * The error Azkaban returns from ajax calls made with an expired or unknown session
+     */
+    public static final String SESSION_EXPIRED_ERROR = "session";
+
+    /**
+     * Azkaban keeps sessions for a day by default
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final SessionCache INSTANCE = new SessionCache();
+
+    private final ConcurrentMap<Key, FutureTask<Session>> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    private SessionCache() {
+        AzkabanMetrics.register("session.hits", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return hits.get();
+            }
+        });
+        AzkabanMetrics.register("session.misses", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return misses.get();
+            }
+        });
+        AzkabanMetrics.register("session.refreshes", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return refreshes.get();
+            }
+        });
+    }
+
+    /**
+     * @return The process-wide session cache
+     */
+    public static SessionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether the error returned by an Azkaban ajax call means the session needs to be renewed
+     *
+     * @param error The error from the Azkaban response, may be null
+     * @return true if Azkaban no longer recognizes the session
+     */
+    public static boolean isSessionExpired(String error) {
+        return SESSION_EXPIRED_ERROR.equals(error);
+    }
+
+    /**
+     * Sets how long a session is handed out before it is proactively replaced by a new login
+     *
+     * @param duration The time to live
+     * @param unit The unit of the duration
+     */
+    public void setTimeToLive(long duration, TimeUnit unit) {
+        this.timeToLiveMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * Returns the cached session for the authenticator's server and user, logging in if there isn't one or it has
+     * outlived the time to live.  Failed logins are not cached.
+     *
+     * @param authenticator The credentials to log in with
+     * @return {@link ezbake.azkaban.manager.result.AuthenticationResult} containing the session ID if successful
+     */
+    public AuthenticationResult login(AuthenticationManager authenticator) {
+        final Key key = new Key(authenticator);
+        final FutureTask<Session> task = sessions.get(key);
+        if (task == null) {
+            final FutureTask<Session> created = newLoginTask(authenticator);
+            final FutureTask<Session> existing = sessions.putIfAbsent(key, created);
+            if (existing == null) {
+                misses.incrementAndGet();
+                created.run();
+                return await(key, created);
+            }
+            return shared(key, existing, authenticator);
+        }
+        return shared(key, task, authenticator);
+    }
+
+    /**
+     * Logs in again after Azkaban reported the session expired.  Only the first caller holding the expired session
+     * performs the login; everyone else gets the session it obtained.
+     *
+     * @param authenticator The credentials to log in with
+     * @param expiredSessionId The session ID Azkaban rejected
+     * @return {@link ezbake.azkaban.manager.result.AuthenticationResult} containing the new session ID if successful
+     */
+    public AuthenticationResult refresh(AuthenticationManager authenticator, String expiredSessionId) {
+        final Key key = new Key(authenticator);
+        final FutureTask<Session> task = sessions.get(key);
+        if (task == null) {
+            return login(authenticator);
+        }
+
+        final AuthenticationResult current = await(key, task);
+        if (!current.hasError() && !current.getSessionId().equals(expiredSessionId)) {
+            // Somebody else already replaced the expired session
+            return current;
+        }
+
+        final FutureTask<Session> created = newLoginTask(authenticator);
+        if (sessions.replace(key, task, created)) {
+            refreshes.incrementAndGet();
+            logger.info("Session for {} expired, logging in again", key);
+            created.run();
+            return await(key, created);
+        }
+        return login(authenticator);
+    }
+
+    /**
+     * Drops the cached session for the server and user so that the next caller logs in again
+     *
+     * @param azkabanUri The Azkaban URL
+     * @param username The username of the session
+     */
+    public void invalidate(URI azkabanUri, String username) {
+        sessions.remove(new Key(azkabanUri, username));
+    }
+
+    /**
+     * Drops every cached session
+     */
+    public void clear() {
+        sessions.clear();
+    }
+
+    /**
+     * @return Number of logins answered from the cache, i.e. login round trips saved
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of logins that had to go to Azkaban because nothing was cached
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of logins performed because a session expired or outlived its time to live
+     */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionCache{sessions=" + sessions.size() + ", hits=" + hits.get() + ", misses=" + misses.get() +
+                ", refreshes=" + refreshes.get() + "}";
+    }
+
+    private AuthenticationResult shared(Key key, FutureTask<Session> task, AuthenticationManager authenticator) {
+        final AuthenticationResult result = await(key, task);
+        if (result.hasError()) {
+            return result;
+        }
+
+        final Session session = getQuietly(task);
+        if (session != null && System.currentTimeMillis() - session.createdAt > timeToLiveMillis) {
+            logger.debug("Session for {} is older than {}ms", key, timeToLiveMillis);
+            return refresh(authenticator, result.getSessionId());
+        }
+
+        hits.incrementAndGet();
+        return result;
+    }
+
+    private AuthenticationResult await(Key key, FutureTask<Session> task) {
+        final AuthenticationResult result;
+        try {
+            result = task.get().result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new AuthenticationResult(e.getMessage());
+        } catch (ExecutionException e) {
+            sessions.remove(key, task);
+            return new AuthenticationResult(e.getCause().getMessage());
+        }
+
+        if (result.hasError() || result.getSessionId() == null) {
+            // Don't hold on to failed logins, let the next caller try again
+            sessions.remove(key, task);
+            if (!result.hasError()) {
+                result.setError("Azkaban did not return a session ID");
+            }
+        }
+        return result;
+    }
+
+    private static Session getQuietly(FutureTask<Session> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static FutureTask<Session> newLoginTask(final AuthenticationManager authenticator) {
+        return new FutureTask<>(new Callable<Session>() {
+            @Override
+            public Session call() {
+                return new Session(authenticator.login());
+            }
+        });
+    }
+
+    private static class Session {
+        final AuthenticationResult result;
+        final long createdAt = System.currentTimeMillis();
+
+        Session(AuthenticationResult result) {
+            this.result = result;
+        }
+    }
+
+    private static class Key {
+        private final String server;
+        private final String username;
+
+        Key(AuthenticationManager authenticator) {
+            this(authenticator.getAzkabanUri(), authenticator.getUsername());
+        }
+
+        Key(URI azkabanUri, String username) {
+            // Managers log in against different paths (/, /schedule) of the same server
+            this.server = azkabanUri.getScheme() + "://" + azkabanUri.getAuthority();
+            this.username = username;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key other = (Key) o;
+            return server.equals(other.server) && username.equals(other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * server.hashCode() + username.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return username + "@" + server;
+        }
+    }
+}
@@ -14,22 +14,90 @@
 
 package ezbake.azkaban.manager;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import ezbake.azkaban.client.http.HttpManager;
 import ezbake.azkaban.manager.result.AuthenticationResult;
+import ezbake.azkaban.manager.result.ProjectLogsResult;
 import ezbake.azkaban.manager.result.UploaderResult;
-import ezbake.azkaban.submitter.util.JsonUtil;
+import ezbake.azkaban.submitter.util.ZipTranscoder;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.UnsupportedSchemeException;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.entity.mime.MIME;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.http.entity.mime.content.FileBody;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
+import org.codehaus.jackson.JsonProcessingException;
 import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 
 public class UploadManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(UploadManager.class);
+
+	// Bytes of the request body between two progress events
+	private static final long PROGRESS_INTERVAL = 1024 * 1024;
+
+	// Newest events of the project log searched for an upload
+	private static final int LOG_PAGE_SIZE = 100;
+
+	private static final Pattern UPLOADED_VERSION = Pattern.compile("\\bversion (\\d+)");
+
+	/**
+	 * Told how far an upload got while the zip is being sent
+	 */
+	public interface ProgressListener {
+		/**
+		 * @param attempt The attempt sending the zip, starting at 1
+		 * @param bytesSent Bytes of the request body sent so far in this attempt
+		 * @param totalBytes Length of the request body, -1 if unknown
+		 * @param bytesPerSecond Average throughput of this attempt so far
+		 */
+		void onProgress(int attempt, long bytesSent, long totalBytes, double bytesPerSecond);
+	}
+
+	/**
+	 * httpmime's multipart entity can only be written to a blocking stream, so asynchronous uploads run on a small
+	 * dedicated pool.  Uploads are few and large, the pool bounds how many transfer at once.
+	 */
+	private static final ListeningExecutorService uploadExecutor = MoreExecutors.listeningDecorator(
+			Executors.newFixedThreadPool(4, new ThreadFactoryBuilder()
+					.setDaemon(true)
+					.setNameFormat("azkaban-upload-%d")
+					.build()));
 	
 	private static class OptionsBean {
 		@Option(name="-u", aliases="--username", usage="username", required=true)
@@ -61,13 +129,87 @@ public class UploadManager {
         this.endPoint = url + "/manager";
         this.projectName = projectName;
         this.zip = zip;
+        this.uploadName = newUploadName(projectName);
+    }
+
+    /**
+     * Uploads a .tar.gz submission to Azkaban, converting it to an Azkaban zip while it is sent.  The zip is never
+     * written to disk, its length isn't known up front so the request body is chunked.
+     *
+     * @param sessionId The session ID of an authenticated Azkaban user
+     * @param url The Azkaban URL
+     * @param projectName The project to upload the zip to
+     * @param tarGz The .tar.gz archive containing the jobs, jar and properties
+     * @see ZipTranscoder
+     */
+    public UploadManager(String sessionId, String url, String projectName, ByteBuffer tarGz) {
+        this.sessionId = sessionId;
+        this.endPoint = url + "/manager";
+        this.projectName = projectName;
+        this.tarGz = tarGz;
+        this.uploadName = newUploadName(projectName);
+    }
+
+    private static String newUploadName(String projectName) {
+        return projectName + "-" + UUID.randomUUID() + ".zip";
     }
 
 	private String sessionId;
 	private String endPoint;
 	private File zip;
+	private ByteBuffer tarGz;
+	private final String uploadName;
 	private String projectName;
 
+	private int maxAttempts = 5;
+	private long initialBackoffMillis = TimeUnit.SECONDS.toMillis(1);
+	private long maxBackoffMillis = TimeUnit.SECONDS.toMillis(30);
+	private ProgressListener progressListener;
+	private volatile long bytesUploaded;
+
+	/**
+	 * @param maxAttempts Number of times {@link #uploadZipWithRetries()} sends the zip at most, 5 by default
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("Max attempts must be at least 1, was " + maxAttempts);
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * The wait before the nth retry is between half and all of initial * 2^(n-1), capped at max.  1 and 30 seconds by
+	 * default.
+	 */
+	public void setBackoff(long initial, long max, TimeUnit unit) {
+		if(initial < 0 || max < initial) {
+			throw new IllegalArgumentException("Backoff must be 0 <= initial <= max, was " + initial + " and " + max);
+		}
+		this.initialBackoffMillis = unit.toMillis(initial);
+		this.maxBackoffMillis = unit.toMillis(max);
+	}
+
+	/**
+	 * @param progressListener Told about the progress of {@link #uploadZipWithRetries()}, NULL for none
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * @return File name the zip is sent as, unique to this upload so it can be found in the project log
+	 */
+	public String getUploadName() {
+		return uploadName;
+	}
+
+	/**
+	 * @return Length of the zip sent by the last upload attempt, so far if it is still being sent
+	 */
+	public long getBytesUploaded() {
+		return bytesUploaded;
+	}
+
     /**
      * Uploads the zip file to Azkaban
      *
@@ -75,24 +217,322 @@ public class UploadManager {
      */
 	public UploaderResult uploadZip() {
 		try {
-			HttpEntity entity = MultipartEntityBuilder
-					.create()
-					.addTextBody("session.id", sessionId)
-					.addTextBody("ajax", "upload")
-					.addBinaryBody("file", zip, ContentType.create("application/zip"), zip.getName())
-					.addTextBody("project", projectName)
-					.build();
-			
-			HttpPost post = new HttpPost(endPoint);
-			post.setEntity(entity);
-			
-			String json = HttpManager.post(post);
-			return (UploaderResult)JsonUtil.deserialize(json, UploaderResult.class);
+			final UploaderResult result = HttpManager.post("upload", uploadRequest(), UploaderResult.class);
+			return result != null ? result : new UploaderResult("Empty response from Azkaban");
 		} catch(Exception ex) {
-			return new UploaderResult(ex.getMessage());
+			return new UploaderResult(archiveFailure(ex).getMessage());
+		} finally {
+			invalidateProject();
 		}
 	}
 	
+	/**
+	 * Uploads the zip file to Azkaban, sending it again when the upload fails for a reason that may go away: a
+	 * connection or I/O error, or an HTTP 5xx, 408 or 429.  Errors returned by Azkaban, like a zip without jobs, are
+	 * returned right away.
+	 * <p/>
+	 * A failed attempt may still have been installed, e.g. if the connection dropped while Azkaban was answering.
+	 * Every attempt sends the zip as {@link #getUploadName()}, and Azkaban names the uploaded file in the UPLOADED
+	 * event of the project log.  Before sending the zip again the newest page of the log is checked for an upload of
+	 * that name no older than the newest upload before the first attempt, and if there is one it is taken as this
+	 * upload.
+	 *
+	 * @return {@link ezbake.azkaban.manager.result.UploaderResult} status of the upload
+	 */
+	public UploaderResult uploadZipWithRetries() {
+		try {
+			return uploadWithRetries();
+		} finally {
+			invalidateProject();
+		}
+	}
+
+	private UploaderResult uploadWithRetries() {
+		final long latestBefore = latestUploadTime();
+		Exception failure = null;
+		for(int attempt = 1; attempt <= maxAttempts; attempt++) {
+			try {
+				final UploaderResult result = HttpManager.postChecked("upload", uploadRequest(attempt),
+						UploaderResult.class);
+				return result != null ? result : new UploaderResult("Empty response from Azkaban");
+			} catch(Exception caught) {
+				final Exception ex = archiveFailure(caught);
+				if(!isTransient(ex)) {
+					return new UploaderResult(ex.getMessage());
+				}
+				failure = ex;
+				logger.warn("Upload of {} to {} failed on attempt {} of {}: {}", zip != null ? zip : "the archive",
+						projectName, attempt, maxAttempts, String.valueOf(ex));
+			}
+
+			try {
+				if(attempt < maxAttempts) {
+					Thread.sleep(backoffMillis(attempt));
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return new UploaderResult("Interrupted while uploading: " + failure.getMessage());
+			}
+
+			final UploaderResult landed = findLandedUpload(latestBefore);
+			if(landed != null) {
+				logger.info("Attempt {} of the upload to {} was installed as version {}", attempt, projectName,
+						landed.getVersion());
+				return landed;
+			}
+		}
+		return new UploaderResult("Upload failed after " + maxAttempts + " attempts: " + failure.getMessage());
+	}
+
+	/**
+	 * @return Whether sending the request again might succeed
+	 */
+	static boolean isTransient(Throwable failure) {
+		if(failure instanceof HttpResponseException) {
+			final int status = ((HttpResponseException) failure).getStatusCode();
+			return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == HttpStatus.SC_REQUEST_TIMEOUT ||
+					status == 429;
+		}
+		// Bad responses, unknown hosts, certificates, missing files and invalid archives don't get better by trying again
+		return failure instanceof IOException && !(failure instanceof ClientProtocolException) &&
+				!(failure instanceof JsonProcessingException) && !(failure instanceof UnknownHostException) &&
+				!(failure instanceof SSLHandshakeException) && !(failure instanceof SSLPeerUnverifiedException) &&
+				!(failure instanceof UnsupportedSchemeException) && !(failure instanceof FileNotFoundException) &&
+				!(failure instanceof ZipException);
+	}
+
+	/**
+	 * HttpClient wraps what the request body throws, a .tar.gz that couldn't be converted is reported as itself
+	 *
+	 * @return The {@link ZipException} the failure was caused by, or the failure
+	 */
+	static Exception archiveFailure(Exception failure) {
+		for(Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if(cause instanceof ZipException) {
+				return (ZipException) cause;
+			}
+		}
+		return failure;
+	}
+
+	private long backoffMillis(int retry) {
+		final long cap = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(retry - 1, 30));
+		return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+	}
+
+	/**
+	 * @return Time of the newest upload in the project log, 0 if there is none and -1 if the log couldn't be fetched
+	 */
+	private long latestUploadTime() {
+		final ProjectLogsResult logs = fetchRecentLogs();
+		if(logs == null) {
+			return -1;
+		}
+		final ProjectLogsResult.Event latest = logs.getLatestEvent("UPLOADED");
+		return latest != null ? latest.getTime() : 0;
+	}
+
+	/**
+	 * @param latestBefore Time of the newest upload before the first attempt
+	 * @return The result of an upload of this zip that landed after the first attempt, NULL if there isn't one or it's
+	 * unknown
+	 */
+	private UploaderResult findLandedUpload(long latestBefore) {
+		if(latestBefore < 0) {
+			return null;
+		}
+		final ProjectLogsResult logs = fetchRecentLogs();
+		if(logs == null) {
+			return null;
+		}
+		for(ProjectLogsResult.Event event : logs.getEvents("UPLOADED")) {
+			if(event.getTime() >= latestBefore && isUploadOf(event, uploadName)) {
+				final UploaderResult result = new UploaderResult();
+				result.setProjectId(logs.getProjectId());
+				result.setVersion(versionOf(event));
+				return result;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Whether the UPLOADED event is the upload of the file, Azkaban names the file in the message
+	 */
+	public static boolean isUploadOf(ProjectLogsResult.Event event, String uploadName) {
+		return uploadName != null && event.getMessage() != null && event.getMessage().contains(uploadName);
+	}
+
+	/**
+	 * @return The project version installed by the UPLOADED event, NULL if the message doesn't say
+	 */
+	static String versionOf(ProjectLogsResult.Event event) {
+		final Matcher matcher = event.getMessage() != null ? UPLOADED_VERSION.matcher(event.getMessage()) : null;
+		return matcher != null && matcher.find() ? matcher.group(1) : null;
+	}
+
+	/**
+	 * @return The newest page of the project log, NULL if it couldn't be fetched
+	 */
+	private ProjectLogsResult fetchRecentLogs() {
+		try {
+			final ProjectLogsResult logs = new ProjectManager(sessionId, managerUri()).fetchProjectLogs(projectName, 0,
+					LOG_PAGE_SIZE);
+			return logs == null || logs.hasError() ? null : logs;
+		} catch(Exception ex) {
+			logger.warn("Could not fetch the log of project {}: {}", projectName, String.valueOf(ex));
+			return null;
+		}
+	}
+
+	/**
+	 * The upload replaces the flows of the project, so the {@link ProjectIndex} has to fetch them again
+	 */
+	private void invalidateProject() {
+		try {
+			ProjectIndex.getInstance().invalidate(managerUri(), projectName);
+		} catch(URISyntaxException ex) {
+			logger.warn("Could not invalidate project {} at {}: {}", projectName, endPoint, String.valueOf(ex));
+		}
+	}
+
+	private URI managerUri() throws URISyntaxException {
+		return new URI(endPoint.substring(0, endPoint.length() - "/manager".length()));
+	}
+
+    /**
+     * Uploads the zip file to Azkaban without blocking the caller
+     *
+     * @return Future of the {@link ezbake.azkaban.manager.result.UploaderResult} status of the upload
+     */
+	public ListenableFuture<UploaderResult> uploadZipAsync() {
+		return uploadExecutor.submit(new Callable<UploaderResult>() {
+			@Override
+			public UploaderResult call() {
+				return uploadZip();
+			}
+		});
+	}
+
+	/**
+	 * Builds the multipart upload request.  The zip is streamed from disk, or converted from the .tar.gz, when the
+	 * request is sent.
+	 *
+	 * @return The request, a new one on every call
+	 */
+	public HttpPost uploadRequest() {
+		bytesUploaded = zip != null ? zip.length() : 0;
+		final ContentBody file = zip != null ? new FileBody(zip, ContentType.create("application/zip"), uploadName)
+				: new TranscodingBody(tarGz, uploadName);
+		HttpEntity entity = MultipartEntityBuilder
+				.create()
+				.addTextBody("session.id", sessionId)
+				.addTextBody("ajax", "upload")
+				.addPart("file", file)
+				.addTextBody("project", projectName)
+				.build();
+
+		HttpPost post = new HttpPost(endPoint);
+		post.setEntity(entity);
+		return post;
+	}
+
+	private HttpPost uploadRequest(int attempt) {
+		final HttpPost post = uploadRequest();
+		if(progressListener != null) {
+			post.setEntity(new ProgressEntity(post.getEntity(), attempt, progressListener));
+		}
+		return post;
+	}
+
+	/**
+	 * The zip converted from a .tar.gz, written straight into the request body
+	 */
+	private class TranscodingBody extends AbstractContentBody {
+		private final ByteBuffer tarGz;
+		private final String filename;
+
+		TranscodingBody(ByteBuffer tarGz, String filename) {
+			super(ContentType.create("application/zip"));
+			this.tarGz = tarGz;
+			this.filename = filename;
+		}
+
+		@Override
+		public String getFilename() {
+			return filename;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			ZipTranscoder.transcode(tarGz, new CountingOutputStream(out) {
+				@Override
+				protected void afterWrite(int n) throws IOException {
+					super.afterWrite(n);
+					bytesUploaded = getByteCount();
+				}
+			});
+		}
+
+		@Override
+		public String getTransferEncoding() {
+			return MIME.ENC_BINARY;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+	}
+
+	/**
+	 * Tells the listener how many bytes of the wrapped entity were written, every {@link #PROGRESS_INTERVAL} bytes and
+	 * when it's done
+	 */
+	private static class ProgressEntity extends HttpEntityWrapper {
+		private final int attempt;
+		private final ProgressListener listener;
+
+		ProgressEntity(HttpEntity entity, int attempt, ProgressListener listener) {
+			super(entity);
+			this.attempt = attempt;
+			this.listener = listener;
+		}
+
+		@Override
+		public void writeTo(final OutputStream out) throws IOException {
+			final long start = System.nanoTime();
+			final long total = getContentLength();
+			final OutputStream counting = new FilterOutputStream(out) {
+				private long sent;
+				private long nextEvent = PROGRESS_INTERVAL;
+
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					sent(1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					sent(len);
+				}
+
+				private void sent(int bytes) {
+					sent += bytes;
+					if(sent >= nextEvent || sent == total) {
+						nextEvent = sent + PROGRESS_INTERVAL;
+						final double seconds = Math.max(1, System.nanoTime() - start) / 1e9;
+						listener.onProgress(attempt, sent, total, sent / seconds);
+					}
+				}
+			};
+			super.writeTo(counting);
+			counting.flush();
+		}
+	}
+
 	public static void main(String[] args) throws Exception {
         OptionsBean optionsBean = new OptionsBean();
         CmdLineParser parser = new CmdLineParser(optionsBean);
@@ -0,0 +1,78 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a bulk cancel, one per execution in the order they were given
+ */
+public class CancelFlowsResult {
+
+    private final List<CancelResult> results;
+    private final long elapsedMillis;
+
+    public CancelFlowsResult(List<CancelResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @JsonProperty(value="results")
+    public List<CancelResult> getResults() {
+        return results;
+    }
+
+    @JsonProperty(value="elapsedMillis")
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return The results with the outcome
+     */
+    public List<CancelResult> getResults(CancelResult.Outcome outcome) {
+        final List<CancelResult> matching = new ArrayList<>();
+        for(CancelResult result : results) {
+            if(result.getOutcome() == outcome) {
+                matching.add(result);
+            }
+        }
+        return matching;
+    }
+
+    public int count(CancelResult.Outcome outcome) {
+        return getResults(outcome).size();
+    }
+
+    /**
+     * @return Whether any cancel request failed
+     */
+    @JsonIgnore
+    public boolean hasError() {
+        return count(CancelResult.Outcome.FAILED) > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d cancelled, %d not running, %d failed in %dms",
+                count(CancelResult.Outcome.CANCELLED), count(CancelResult.Outcome.NOT_RUNNING),
+                count(CancelResult.Outcome.FAILED), elapsedMillis);
+    }
+}
@@ -0,0 +1,65 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * Outcome of cancelling one execution in a bulk cancel of the ExecutionManager
+ */
+public class CancelResult {
+
+    public enum Outcome {
+        /** Azkaban cancelled the execution */
+        CANCELLED,
+        /** The execution had already finished or doesn't exist */
+        NOT_RUNNING,
+        /** The cancel request failed, see the message */
+        FAILED
+    }
+
+    private final String execId;
+    private final Outcome outcome;
+    private final String message;
+
+    public CancelResult(String execId, Outcome outcome, String message) {
+        this.execId = execId;
+        this.outcome = outcome;
+        this.message = message;
+    }
+
+    @JsonProperty(value="execid")
+    public String getExecId() {
+        return execId;
+    }
+
+    @JsonProperty(value="outcome")
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return What Azkaban or the client said when the execution wasn't cancelled, NULL if it was
+     */
+    @JsonProperty(value="message")
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return execId + ": " + outcome + (message != null ? " (" + message + ")" : "");
+    }
+}
@@ -0,0 +1,141 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Status of one execution, from the fetchexecflow call of the ExecutionManager.  The per job nodes Azkaban also
+ * returns are ignored.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExecutionFlowResult {
+
+    private static final Set<String> FINISHED = new HashSet<>(Arrays.asList("SUCCEEDED", "FAILED", "KILLED",
+            "CANCELLED", "SKIPPED", "FAILED_SUCCEEDED"));
+
+    private String execId;
+    private String project;
+    private String projectId;
+    private String flow;
+    private String status;
+    private long submitTime = -1;
+    private long startTime = -1;
+    private long endTime = -1;
+    private String error;
+
+    public ExecutionFlowResult() { }
+
+    public ExecutionFlowResult(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty(value="error")
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty(value="execid")
+    public String getExecId() {
+        return execId;
+    }
+    public void setExecId(String execId) {
+        this.execId = execId;
+    }
+
+    @JsonProperty(value="project")
+    public String getProject() {
+        return project;
+    }
+    public void setProject(String project) {
+        this.project = project;
+    }
+
+    @JsonProperty(value="projectId")
+    public String getProjectId() {
+        return projectId;
+    }
+    public void setProjectId(String projectId) {
+        this.projectId = projectId;
+    }
+
+    @JsonProperty(value="flow")
+    public String getFlow() {
+        return flow;
+    }
+    public void setFlow(String flow) {
+        this.flow = flow;
+    }
+
+    /**
+     * @return The Azkaban status, e.g. PREPARING, RUNNING, SUCCEEDED, FAILED or KILLED
+     */
+    @JsonProperty(value="status")
+    public String getStatus() {
+        return status;
+    }
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @JsonProperty(value="submitTime")
+    public long getSubmitTime() {
+        return submitTime;
+    }
+    public void setSubmitTime(long submitTime) {
+        this.submitTime = submitTime;
+    }
+
+    @JsonProperty(value="startTime")
+    public long getStartTime() {
+        return startTime;
+    }
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * @return When the execution finished in milliseconds since the epoch, -1 while it's running
+     */
+    @JsonProperty(value="endTime")
+    public long getEndTime() {
+        return endTime;
+    }
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    /**
+     * @return Whether the execution reached a final status
+     */
+    @JsonIgnore
+    public boolean isFinished() {
+        return status != null && FINISHED.contains(status);
+    }
+
+    @JsonIgnore
+    public boolean hasError() {
+        return null != error && !"".equals(error);
+    }
+}
@@ -51,15 +51,25 @@ public class FetchScheduleResult {
         this.schedule = schedule;
     }
 
-    @JsonIgnoreProperties({"submitUser", "firstSchedTime", "nextExecTime", "period"})
-    public class Schedule {
+    /**
+     * A schedule as Azkaban shows it: times in yyyy-MM-dd HH:mm:ss and the period like "1 day(s)", "null" if the
+     * schedule doesn't repeat
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Schedule {
         @JsonProperty(value="scheduleId")
         private int scheduleId;
 
-        // Ignored for now
+        @JsonProperty(value="submitUser")
         private String submitUser;
+
+        @JsonProperty(value="firstSchedTime")
         private String firstSchedTime;
+
+        @JsonProperty(value="nextExecTime")
         private String nextExecTime;
+
+        @JsonProperty(value="period")
         private String period;
 
         public int getScheduleId() {
@@ -69,5 +79,37 @@ public class FetchScheduleResult {
         public void setScheduleId(int scheduleId) {
             this.scheduleId = scheduleId;
         }
+
+        public String getSubmitUser() {
+            return submitUser;
+        }
+
+        public void setSubmitUser(String submitUser) {
+            this.submitUser = submitUser;
+        }
+
+        public String getFirstSchedTime() {
+            return firstSchedTime;
+        }
+
+        public void setFirstSchedTime(String firstSchedTime) {
+            this.firstSchedTime = firstSchedTime;
+        }
+
+        public String getNextExecTime() {
+            return nextExecTime;
+        }
+
+        public void setNextExecTime(String nextExecTime) {
+            this.nextExecTime = nextExecTime;
+        }
+
+        public String getPeriod() {
+            return period;
+        }
+
+        public void setPeriod(String period) {
+            this.period = period;
+        }
     }
 }
@@ -0,0 +1,54 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+/**
+ * Result of scheduling one flow of a bulk schedule
+ */
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL)
+public class FlowScheduleResult extends SchedulerResult {
+
+    private final String projectName;
+    private final String flow;
+
+    public FlowScheduleResult(String projectName, String flow) {
+        this.projectName = projectName;
+        this.flow = flow;
+    }
+
+    public FlowScheduleResult(String projectName, String flow, String error) {
+        super(error);
+        this.projectName = projectName;
+        this.flow = flow;
+    }
+
+    @JsonProperty(value="project")
+    public String getProjectName() {
+        return projectName;
+    }
+
+    @JsonProperty(value="flow")
+    public String getFlow() {
+        return flow;
+    }
+
+    @Override
+    public String toString() {
+        return projectName + "." + flow + ": " + (hasError() ? "FAILED " + getError() : getStatus() + " " + getMessage());
+    }
+}
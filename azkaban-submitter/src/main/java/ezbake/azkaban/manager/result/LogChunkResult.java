@@ -0,0 +1,88 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * One chunk of a flow or job log, from the fetchExecFlowLogs and fetchExecJobLogs calls of the ExecutionManager.  The
+ * log data itself was written to the caller's stream, only where it was in the log is kept.
+ */
+public class LogChunkResult {
+
+    private long offset;
+    private int length;
+    private String error;
+
+    public LogChunkResult() { }
+
+    public LogChunkResult(String error) {
+        this.error = error;
+    }
+
+    public LogChunkResult(long offset, int length) {
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @JsonProperty(value="error")
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * @return Byte offset in the log of the start of the chunk
+     */
+    @JsonProperty(value="offset")
+    public long getOffset() {
+        return offset;
+    }
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * @return Number of bytes of the log in the chunk, 0 if there was nothing new
+     */
+    @JsonProperty(value="length")
+    public int getLength() {
+        return length;
+    }
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return The offset to fetch the next chunk from
+     */
+    @JsonIgnore
+    public long getNextOffset() {
+        return offset + length;
+    }
+
+    @JsonIgnore
+    public boolean hasError() {
+        return null != error && !"".equals(error);
+    }
+
+    @Override
+    public String toString() {
+        return hasError() ? "FAILED: " + error : length + " bytes at " + offset;
+    }
+}
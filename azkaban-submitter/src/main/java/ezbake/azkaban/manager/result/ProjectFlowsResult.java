@@ -14,6 +14,7 @@
 
 package ezbake.azkaban.manager.result;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.util.List;
@@ -26,9 +27,18 @@ public class ProjectFlowsResult {
     private String project;
     private String projectId;
     private List<FlowId> flows;
+    private String error;
 
     public ProjectFlowsResult() { }
 
+    @JsonProperty(value="error")
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+
     @JsonProperty(value="project")
     public String getProject() {
         return project;
@@ -66,4 +76,8 @@ public class ProjectFlowsResult {
         }
     }
 
+    @JsonIgnore
+    public boolean hasError() {
+        return null != error && !"".equals(error);
+    }
 }
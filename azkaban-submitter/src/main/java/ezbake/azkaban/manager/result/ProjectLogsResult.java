@@ -0,0 +1,180 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The project log from the fetchProjectLogs call of the ProjectManager.  Each row of the log data holds the values of
+ * the columns, usually user, time, type and message.  Azkaban returns one page of the log, newest events first.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProjectLogsResult {
+
+    /**
+     * One row of the log
+     */
+    public static class Event {
+        private final String user;
+        private final long time;
+        private final String type;
+        private final String message;
+
+        public Event(String user, long time, String type, String message) {
+            this.user = user;
+            this.time = time;
+            this.type = type;
+            this.message = message;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * @return When it happened in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return type + " by " + user + " at " + time + ": " + message;
+        }
+    }
+
+    private String project;
+    private String projectId;
+    private List<String> columns;
+    private List<List<Object>> logData;
+    private String error;
+
+    public ProjectLogsResult() { }
+
+    public ProjectLogsResult(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty(value="error")
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty(value="project")
+    public String getProject() {
+        return project;
+    }
+    public void setProject(String project) {
+        this.project = project;
+    }
+
+    @JsonProperty(value="projectId")
+    public String getProjectId() {
+        return projectId;
+    }
+    public void setProjectId(String projectId) {
+        this.projectId = projectId;
+    }
+
+    @JsonProperty(value="columns")
+    public List<String> getColumns() {
+        return columns;
+    }
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    @JsonProperty(value="logData")
+    public List<List<Object>> getLogData() {
+        return logData;
+    }
+    public void setLogData(List<List<Object>> logData) {
+        this.logData = logData;
+    }
+
+    /**
+     * @param type The event type, e.g. UPLOADED
+     * @return The number of events of the type in this page of the log
+     */
+    public int countEvents(String type) {
+        return getEvents(type).size();
+    }
+
+    /**
+     * @param type The event type, e.g. UPLOADED
+     * @return The events of the type in this page of the log, in log order
+     */
+    public List<Event> getEvents(String type) {
+        final List<Event> events = new ArrayList<>();
+        final int typeColumn = columns != null ? columns.indexOf("type") : -1;
+        if(typeColumn < 0 || logData == null) {
+            return events;
+        }
+        final int userColumn = columns.indexOf("user");
+        final int timeColumn = columns.indexOf("time");
+        final int messageColumn = columns.indexOf("message");
+        for(List<Object> row : logData) {
+            if(type.equals(String.valueOf(value(row, typeColumn)))) {
+                final Object user = value(row, userColumn);
+                final Object time = value(row, timeColumn);
+                final Object message = value(row, messageColumn);
+                events.add(new Event(user != null ? String.valueOf(user) : null,
+                        time instanceof Number ? ((Number) time).longValue() : -1, type,
+                        message != null ? String.valueOf(message) : null));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @param type The event type, e.g. UPLOADED
+     * @return The newest event of the type in this page of the log, NULL if there is none
+     */
+    public Event getLatestEvent(String type) {
+        Event latest = null;
+        for(Event event : getEvents(type)) {
+            if(latest == null || event.getTime() > latest.getTime()) {
+                latest = event;
+            }
+        }
+        return latest;
+    }
+
+    private static Object value(List<Object> row, int column) {
+        return column >= 0 && column < row.size() ? row.get(column) : null;
+    }
+
+    @JsonIgnore
+    public boolean hasError() {
+        return null != error && !"".equals(error);
+    }
+}
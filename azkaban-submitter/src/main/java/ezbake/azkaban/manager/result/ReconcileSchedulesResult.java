@@ -0,0 +1,102 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of reconciling the schedules in Azkaban with the desired ones, one change per flow that is or should be
+ * scheduled
+ */
+public class ReconcileSchedulesResult {
+
+    private final List<ScheduleChange> changes;
+    private final int requests;
+    private final long elapsedMillis;
+
+    public ReconcileSchedulesResult(List<ScheduleChange> changes, int requests, long elapsedMillis) {
+        this.changes = Collections.unmodifiableList(new ArrayList<>(changes));
+        this.requests = requests;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @JsonProperty(value="changes")
+    public List<ScheduleChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return Number of requests sent to Azkaban, fetching the current schedules included
+     */
+    @JsonProperty(value="requests")
+    public int getRequests() {
+        return requests;
+    }
+
+    @JsonProperty(value="elapsedMillis")
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return The changes of the type
+     */
+    public List<ScheduleChange> getChanges(ScheduleChange.Type type) {
+        final List<ScheduleChange> matching = new ArrayList<>();
+        for(ScheduleChange change : changes) {
+            if(change.getType() == type) {
+                matching.add(change);
+            }
+        }
+        return matching;
+    }
+
+    public int count(ScheduleChange.Type type) {
+        return getChanges(type).size();
+    }
+
+    /**
+     * @return The changes that couldn't be made
+     */
+    public List<ScheduleChange> getFailures() {
+        final List<ScheduleChange> failures = new ArrayList<>();
+        for(ScheduleChange change : changes) {
+            if(change.hasError()) {
+                failures.add(change);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return Whether any change couldn't be made
+     */
+    @JsonIgnore
+    public boolean hasError() {
+        return !getFailures().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d added, %d updated, %d removed, %d unchanged, %d failed, %d requests in %dms",
+                count(ScheduleChange.Type.ADD), count(ScheduleChange.Type.UPDATE), count(ScheduleChange.Type.REMOVE),
+                count(ScheduleChange.Type.UNCHANGED), getFailures().size(), requests, elapsedMillis);
+    }
+}
@@ -16,10 +16,15 @@ package ezbake.azkaban.manager.result;
 
 
 import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.codehaus.jackson.annotate.JsonProperty;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class RemoveScheduleResult {
 
+    @JsonProperty(value = "error")
+    private String error;
+
     @JsonProperty(value = "message")
     private String message;
 
@@ -28,7 +33,15 @@ public class RemoveScheduleResult {
 
     @JsonIgnore
     public boolean hasError() {
-        return "error".equals(result);
+        return "error".equals(result) || (error != null && !error.isEmpty());
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
     }
 
     public String getMessage() {
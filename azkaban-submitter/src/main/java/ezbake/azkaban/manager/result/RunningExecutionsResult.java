@@ -14,6 +14,7 @@
 
 package ezbake.azkaban.manager.result;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.util.List;
@@ -24,9 +25,18 @@ import java.util.List;
 public class RunningExecutionsResult {
 
     private List<String> execIds;
+    private String error;
 
     public RunningExecutionsResult() { }
 
+    @JsonProperty(value="error")
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+
     @JsonProperty(value="execIds")
     public List<String> getExecIds() {
         return execIds;
@@ -35,4 +45,8 @@ public class RunningExecutionsResult {
         this.execIds = execIds;
     }
 
+    @JsonIgnore
+    public boolean hasError() {
+        return null != error && !"".equals(error);
+    }
 }
@@ -0,0 +1,80 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * What a schedule reconciliation did to the schedule of one flow
+ */
+public class ScheduleChange {
+
+    public enum Type {
+        /** The flow wasn't scheduled and was scheduled */
+        ADD,
+        /** The flow was scheduled at another time or period and was scheduled again */
+        UPDATE,
+        /** The flow was scheduled but isn't in the desired schedules and was unscheduled */
+        REMOVE,
+        /** The flow was already scheduled as desired, nothing was sent */
+        UNCHANGED
+    }
+
+    private final String projectName;
+    private final String flow;
+    private final Type type;
+    private final String error;
+
+    public ScheduleChange(String projectName, String flow, Type type, String error) {
+        this.projectName = projectName;
+        this.flow = flow;
+        this.type = type;
+        this.error = error;
+    }
+
+    @JsonProperty(value="project")
+    public String getProjectName() {
+        return projectName;
+    }
+
+    @JsonProperty(value="flow")
+    public String getFlow() {
+        return flow;
+    }
+
+    @JsonProperty(value="type")
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return Why the change couldn't be made, NULL if it was
+     */
+    @JsonProperty(value="error")
+    public String getError() {
+        return error;
+    }
+
+    @JsonIgnore
+    public boolean hasError() {
+        return null != error && !"".equals(error);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + projectName + "." + flow + (hasError() ? " FAILED: " + error : "");
+    }
+}
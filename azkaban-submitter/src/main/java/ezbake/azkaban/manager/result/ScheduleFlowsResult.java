@@ -0,0 +1,113 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.manager.result;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of a bulk schedule, one per flow in the order they were given, with the throughput of the whole run
+ */
+public class ScheduleFlowsResult {
+
+    private final List<FlowScheduleResult> results;
+    private final List<Long> latenciesMillis;
+    private final int requests;
+    private final long elapsedMillis;
+
+    /**
+     * @param latenciesMillis Latency of every request that was sent
+     */
+    public ScheduleFlowsResult(List<FlowScheduleResult> results, List<Long> latenciesMillis, int requests,
+                               long elapsedMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        final List<Long> sorted = new ArrayList<>(latenciesMillis);
+        Collections.sort(sorted);
+        this.latenciesMillis = Collections.unmodifiableList(sorted);
+        this.requests = requests;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @JsonProperty(value="results")
+    public List<FlowScheduleResult> getResults() {
+        return results;
+    }
+
+    /**
+     * @return Number of scheduleFlow requests sent, including the ones sent again after renewing the session
+     */
+    @JsonProperty(value="requests")
+    public int getRequests() {
+        return requests;
+    }
+
+    @JsonProperty(value="elapsedMillis")
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return Flows scheduled per second over the whole run
+     */
+    @JsonProperty(value="flowsPerSecond")
+    public double getFlowsPerSecond() {
+        final int scheduled = results.size() - getFailures().size();
+        return scheduled * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The request latency at the percentile in milliseconds, nearest rank
+     */
+    public long getLatencyMillis(double percentile) {
+        if(latenciesMillis.isEmpty()) {
+            return 0;
+        }
+        final int rank = (int) Math.ceil(percentile / 100 * latenciesMillis.size());
+        return latenciesMillis.get(Math.max(0, Math.min(latenciesMillis.size(), rank) - 1));
+    }
+
+    /**
+     * @return The flows that couldn't be scheduled
+     */
+    public List<FlowScheduleResult> getFailures() {
+        final List<FlowScheduleResult> failures = new ArrayList<>();
+        for(FlowScheduleResult result : results) {
+            if(result.hasError()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return Whether any flow couldn't be scheduled
+     */
+    @JsonIgnore
+    public boolean hasError() {
+        return !getFailures().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d scheduled, %d failed, %d requests in %dms (%.1f flows/s), latency p50=%dms p99=%dms",
+                results.size() - getFailures().size(), getFailures().size(), requests, elapsedMillis,
+                getFlowsPerSecond(), getLatencyMillis(50), getLatencyMillis(99));
+    }
+}
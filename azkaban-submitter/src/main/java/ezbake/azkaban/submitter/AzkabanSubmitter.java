@@ -14,8 +14,12 @@
 
 package ezbake.azkaban.submitter;
 
+import com.codahale.metrics.Slf4jReporter;
 import com.google.common.base.Strings;
-import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import ezbake.azkaban.submitter.util.UploadIndex;
 import ezbake.configuration.EzConfiguration;
 import ezbake.configuration.EzConfigurationLoaderException;
 import ezbake.configuration.constants.EzBakePropertyConstants;
@@ -25,12 +29,12 @@ import org.apache.thrift.TException;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 public class AzkabanSubmitter {
 
@@ -61,8 +65,68 @@ public class AzkabanSubmitter {
     @Option(name="-u", aliases="--submit", usage="Denotes that this will be a submit request")
     boolean submit = false;
 
-    public UploaderResult submit(ByteBuffer zip, String projectName) {
-        throw new NotImplementedException();
+    @Option(name="-f", aliases="--flow", usage="Flow to execute or schedule after the upload")
+    String flow;
+
+    @Option(name="-x", aliases="--execute", usage="Execute the flow after the upload")
+    boolean execute = false;
+
+    @Option(name="-d", aliases="--date", usage="Date to schedule the flow in MM/DD/YYYY format (default today)")
+    String scheduleDate;
+
+    @Option(name="-t", aliases="--time", usage="Time of day to schedule the flow in 12,00,pm,utc format (default NOW)")
+    String scheduleTime;
+
+    @Option(name="-q", aliases="--period", usage="Frequency to run the scheduled flow in <int>[Mwdhms] format")
+    String period;
+
+    @Option(name="-m", aliases="--manifest", usage="Manifest of archives to submit in bulk, one '<archive> <project> " +
+            "[flow [execute | time [period [date]]]]' per line")
+    String manifest;
+
+    @Option(name="-c", aliases="--concurrency", usage="Number of manifest entries to submit at the same time (default 4)")
+    int concurrency = 4;
+
+    @Option(name="--force", usage="Upload the archive even if the same archive was the last one uploaded to the project")
+    boolean force = false;
+
+    @Option(name="--uploadIndex", usage="Index of the last archive uploaded to each project (default " +
+            "~/.azkaban-submitter/uploads.properties)")
+    String uploadIndex;
+
+    @Option(name="--noStream", usage="Extract and zip a .tar.gz before uploading it instead of converting it while " +
+            "it is sent chunked")
+    boolean noStream = false;
+
+    @Option(name="-r", aliases="--reportMetrics", usage="Log the client metrics every <int> seconds while submitting")
+    int reportMetricsSeconds = 0;
+
+    /**
+     * Submits the archive through a {@link SubmissionPipeline}
+     *
+     * @param zip The Azkaban .zip or the .tar.gz submission
+     * @param projectName The project to upload to, created if it doesn't exist
+     * @return The upload result with the time spent in each stage
+     */
+    public SubmissionResult submit(ByteBuffer zip, String projectName) {
+        return newPipeline().submit(zip, projectName);
+    }
+
+    protected SubmissionPipeline newPipeline() {
+        final SubmissionPipeline pipeline = new SubmissionPipeline(azkabanUrl, azkabanUsername, azkabanPassword);
+        pipeline.setFlow(flow);
+        pipeline.setExecute(execute);
+        pipeline.setUploadIndex(getUploadIndex());
+        pipeline.setForce(force);
+        pipeline.setStreamArchives(!noStream);
+        if(scheduleDate != null || scheduleTime != null || period != null) {
+            pipeline.setSchedule(scheduleDate, scheduleTime, period);
+        }
+        return pipeline;
+    }
+
+    private UploadIndex getUploadIndex() {
+        return new UploadIndex(uploadIndex != null ? new File(uploadIndex) : UploadIndex.getDefaultFile());
     }
 
     private void run(CmdLineParser parser) throws TException, IOException, CmdLineException {
@@ -79,13 +143,63 @@ public class AzkabanSubmitter {
 
         config.getProperties().setProperty(EzBakePropertyConstants.EZBAKE_SECURITY_ID, securityId);
 
-        if (submit) {
+        final Slf4jReporter reporter = reportMetricsSeconds > 0 ?
+                AzkabanMetrics.startLogReporter(reportMetricsSeconds, TimeUnit.SECONDS) : null;
+        final boolean succeeded;
+        try {
+            succeeded = submit(parser);
+        } finally {
+            if (reporter != null) {
+                reporter.report();
+                reporter.stop();
+            }
+        }
+        if (!succeeded) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return false if any manifest entry failed
+     */
+    private boolean submit(CmdLineParser parser) throws IOException, CmdLineException {
+
+        if (submit && manifest != null) {
+            final BulkSubmitter bulkSubmitter = new BulkSubmitter(azkabanUrl, azkabanUsername, azkabanPassword, concurrency);
+            bulkSubmitter.setUploadIndex(getUploadIndex());
+            bulkSubmitter.setForce(force);
+            bulkSubmitter.setStreamArchives(!noStream);
+            try {
+                final BulkSubmitter.Summary summary = bulkSubmitter.submit(BulkSubmitter.readManifest(new File(manifest)),
+                        System.out);
+                return summary.getFailures() == 0;
+            } catch (IllegalArgumentException e) {
+                throw new CmdLineException(parser, e.getMessage());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        } else if (submit) {
             if (Strings.isNullOrEmpty(projectId)) throw new CmdLineException(parser, "Pipeline ID required for submission");
             File zipFile = new File(pathToTarGz);
             byte[] fileBytes = FileUtils.readFileToByteArray(zipFile);
-            UploaderResult result = submit(ByteBuffer.wrap(fileBytes), projectId);
-            System.out.println("Upload " + (result.hasError() ? "FAILED" : "SUCCESSFUL"));
+            SubmissionResult result = submit(ByteBuffer.wrap(fileBytes), projectId);
+            System.out.println("Upload " + (result.hasError() ? "FAILED: " + result.getError() : "SUCCESSFUL"));
+            if(result.getExecutionResult() != null) {
+                final ExecutionResult execution = result.getExecutionResult();
+                System.out.println("Execution " + (execution.hasError() ? "FAILED: " + execution.getError() :
+                        "#" + execution.getExecId()));
+            }
+            if(result.getSchedulerResult() != null) {
+                final SchedulerResult schedule = result.getSchedulerResult();
+                System.out.println("Schedule " + (schedule.hasError() ? "FAILED: " + schedule.getError() :
+                        schedule.getStatus() + " | " + schedule.getMessage()));
+            }
+            for(SubmissionResult.Stage stage : result.getStages()) {
+                System.out.println("  " + stage);
+            }
+            System.out.println("  total: " + result.getElapsedMillis() + "ms");
         }
+        return true;
     }
     
     public static void main(String[] args) throws Exception {
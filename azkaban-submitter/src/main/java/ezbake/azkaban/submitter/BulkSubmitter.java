@@ -0,0 +1,349 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ezbake.azkaban.submitter.util.UploadIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Submits many archives listed in a manifest over one shared session and connection pool.  Each line of the manifest
+ * is whitespace separated:
+ * <pre>
+ * # archive            project   [flow     [execute | time [period [date]]]]
+ * /builds/ingest.zip   ingest
+ * /builds/report.tgz   report    report    execute
+ * /builds/nightly.tgz  nightly   nightly   2,00,am,UTC   1d
+ * </pre>
+ * Blank lines and lines starting with # are ignored.
+ */
+public class BulkSubmitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkSubmitter.class);
+
+    /**
+     * One line of the manifest
+     */
+    public static class Entry {
+        private final int line;
+        private final File archive;
+        private final String projectName;
+        private String flow;
+        private boolean execute;
+        private String scheduleTime;
+        private String period;
+        private String scheduleDate;
+
+        public Entry(int line, File archive, String projectName) {
+            this.line = line;
+            this.archive = archive;
+            this.projectName = projectName;
+        }
+
+        /**
+         * Parses a manifest line
+         *
+         * @return The entry, or NULL for blank and comment lines
+         * @throws IllegalArgumentException if the line doesn't have an archive and a project
+         */
+        public static Entry parse(int line, String text) {
+            final String trimmed = text.trim();
+            if(trimmed.isEmpty() || trimmed.startsWith("#")) {
+                return null;
+            }
+
+            final String[] fields = trimmed.split("\\s+");
+            if(fields.length < 2) {
+                throw new IllegalArgumentException("Line " + line + ": expected <archive> <project> [flow [execute | " +
+                        "time [period [date]]]] but was '" + trimmed + "'");
+            }
+
+            final Entry entry = new Entry(line, new File(fields[0]), fields[1]);
+            if(fields.length > 2) {
+                entry.flow = fields[2];
+            }
+            if(fields.length > 3) {
+                if("execute".equals(fields[3])) {
+                    entry.execute = true;
+                } else {
+                    entry.scheduleTime = fields[3];
+                    entry.period = fields.length > 4 ? fields[4] : null;
+                    entry.scheduleDate = fields.length > 5 ? fields[5] : null;
+                }
+            }
+            return entry;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public File getArchive() {
+            return archive;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        public String getFlow() {
+            return flow;
+        }
+
+        public boolean isExecute() {
+            return execute;
+        }
+
+        public String getScheduleTime() {
+            return scheduleTime;
+        }
+
+        public String getPeriod() {
+            return period;
+        }
+
+        public String getScheduleDate() {
+            return scheduleDate;
+        }
+
+        @Override
+        public String toString() {
+            return projectName + " (" + archive + ")";
+        }
+    }
+
+    /**
+     * Aggregate of a bulk run
+     */
+    public static class Summary {
+        private int successes;
+        private int failures;
+        private long bytesUploaded;
+        private long elapsedMillis;
+        private final List<Long> latencies = new ArrayList<>();
+
+        /**
+         * Counts the result of one submission
+         */
+        public void add(SubmissionResult result) {
+            if(result.hasError()) {
+                failures++;
+            } else {
+                successes++;
+            }
+            for(SubmissionResult.Stage stage : result.getStages()) {
+                if("upload".equals(stage.getName())) {
+                    bytesUploaded += stage.getBytes();
+                }
+            }
+            latencies.add(result.getElapsedMillis());
+        }
+
+        public int getSuccesses() {
+            return successes;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public long getBytesUploaded() {
+            return bytesUploaded;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return The submission latency at the percentile in milliseconds, nearest rank
+         */
+        public long getLatencyMillis(double percentile) {
+            if(latencies.isEmpty()) {
+                return 0;
+            }
+            final List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+            return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d succeeded, %d failed, %d bytes uploaded in %dms, latency p50=%dms p99=%dms",
+                    successes, failures, bytesUploaded, elapsedMillis, getLatencyMillis(50), getLatencyMillis(99));
+        }
+    }
+
+    private final String azkabanUrl;
+    private final String username;
+    private final String password;
+    private final int concurrency;
+    private UploadIndex uploadIndex;
+    private boolean force;
+    private boolean streamArchives = true;
+
+    /**
+     * @param azkabanUrl The Azkaban URL
+     * @param username The username to use for every entry
+     * @param password The password for the username
+     * @param concurrency The maximum number of entries submitted at the same time
+     */
+    public BulkSubmitter(String azkabanUrl, String username, String password, int concurrency) {
+        if(concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.azkabanUrl = azkabanUrl;
+        this.username = username;
+        this.password = password;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param uploadIndex Skips archives that were already uploaded to their project, NULL to always upload
+     * @see SubmissionPipeline#setUploadIndex(UploadIndex)
+     */
+    public void setUploadIndex(UploadIndex uploadIndex) {
+        this.uploadIndex = uploadIndex;
+    }
+
+    /**
+     * @param force Whether to upload every archive even if the upload index says it's already there
+     */
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    /**
+     * @param streamArchives Whether .tar.gz archives are converted while they are uploaded
+     * @see SubmissionPipeline#setStreamArchives(boolean)
+     */
+    public void setStreamArchives(boolean streamArchives) {
+        this.streamArchives = streamArchives;
+    }
+
+    /**
+     * Reads a manifest
+     *
+     * @param manifest The manifest file
+     * @return The entries in manifest order
+     * @throws IOException if the manifest can't be read
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    public static List<Entry> readManifest(File manifest) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest),
+                StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null) {
+                final Entry entry = Entry.parse(++lineNumber, line);
+                if(entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Submits every entry, printing a line per entry as it finishes and the aggregate at the end
+     *
+     * @param entries The entries to submit
+     * @param out Where the per entry and aggregate summaries are printed
+     * @return The aggregate of the run
+     */
+    public Summary submit(List<Entry> entries, final PrintStream out) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, entries.size())),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("azkaban-bulk-%d").build());
+        final CompletionService<SubmissionResult> completion = new ExecutorCompletionService<>(executor);
+        final Summary summary = new Summary();
+
+        try {
+            for(final Entry entry : entries) {
+                completion.submit(new Callable<SubmissionResult>() {
+                    @Override
+                    public SubmissionResult call() {
+                        final SubmissionResult result = submit(entry);
+                        out.println(String.format("%s %s line %d: %s%s, %dms", result.hasError() ? "FAILED" : "OK",
+                                entry.getProjectName(), entry.getLine(), result.hasError() ? result.getError() :
+                                "version " + result.getVersion(), executionSummary(result), result.getElapsedMillis()));
+                        return result;
+                    }
+                });
+            }
+
+            for(int i = 0; i < entries.size(); i++) {
+                try {
+                    summary.add(completion.take().get());
+                } catch (ExecutionException e) {
+                    logger.error("Bulk entry failed", e.getCause());
+                    summary.add(new SubmissionResult(String.valueOf(e.getCause())));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        summary.elapsedMillis = System.currentTimeMillis() - start;
+        out.println(summary);
+        return summary;
+    }
+
+    private SubmissionResult submit(Entry entry) {
+        final SubmissionPipeline pipeline = new SubmissionPipeline(azkabanUrl, username, password);
+        pipeline.setFlow(entry.flow);
+        pipeline.setExecute(entry.execute);
+        pipeline.setUploadIndex(uploadIndex);
+        pipeline.setForce(force);
+        pipeline.setStreamArchives(streamArchives);
+        if(entry.scheduleTime != null) {
+            pipeline.setSchedule(entry.scheduleDate, entry.scheduleTime, entry.period);
+        }
+        return pipeline.submit(entry.getArchive(), entry.getProjectName());
+    }
+
+    private static String executionSummary(SubmissionResult result) {
+        if(result.getExecutionResult() != null) {
+            return result.getExecutionResult().hasError() ? ", execution failed: " +
+                    result.getExecutionResult().getError() : ", execution #" + result.getExecutionResult().getExecId();
+        }
+        if(result.getSchedulerResult() != null) {
+            return result.getSchedulerResult().hasError() ? ", schedule failed: " +
+                    result.getSchedulerResult().getError() : ", scheduled";
+        }
+        return "";
+    }
+}
@@ -0,0 +1,422 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.ManagerResult;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.ProjectLogsResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.submitter.util.ArchiveIndex;
+import ezbake.azkaban.submitter.util.FileUtil;
+import ezbake.azkaban.submitter.util.UploadIndex;
+import ezbake.azkaban.submitter.util.UnzipUtil;
+import org.apache.commons.io.FileUtils;
+import org.joda.time.LocalDate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Submits an archive to Azkaban in stages: authenticate, make sure the project exists, convert or validate the
+ * archive, upload it and optionally execute or schedule a flow.  Logging in and looking up the project happen on a
+ * separate thread while the archive is being processed.  A .tar.gz is converted to a zip while it is uploaded, unless
+ * {@link #setStreamArchives(boolean)} is turned off.  Each stage's wall-clock time and bytes are recorded in the
+ * {@link SubmissionResult}.
+ */
+public class SubmissionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionPipeline.class);
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("azkaban-submit-%d")
+            .build());
+
+    // Newest events of the project log searched for the last upload, one further back is uploaded again
+    private static final int DEDUP_LOG_PAGE_SIZE = 100;
+
+    private final String azkabanUrl;
+    private final String username;
+    private final String password;
+
+    private File workDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private String projectDescription;
+    private String flow;
+    private boolean execute;
+    private String scheduleDate;
+    private String scheduleTime;
+    private String period;
+    private UploadIndex uploadIndex;
+    private boolean force;
+    private int extractionThreads;
+    private boolean streamArchives = true;
+
+    /**
+     * @param azkabanUrl The Azkaban URL
+     * @param username The username to use
+     * @param password The password for the username
+     */
+    public SubmissionPipeline(String azkabanUrl, String username, String password) {
+        this.azkabanUrl = azkabanUrl;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * @param workDirectory Where .tar.gz archives are extracted and converted when they aren't streamed, defaults to
+     *                      java.io.tmpdir
+     */
+    public void setWorkDirectory(File workDirectory) {
+        this.workDirectory = workDirectory;
+    }
+
+    /**
+     * @param projectDescription Description used if the project has to be created
+     */
+    public void setProjectDescription(String projectDescription) {
+        this.projectDescription = projectDescription;
+    }
+
+    /**
+     * @param flow The flow to execute or schedule after the upload
+     */
+    public void setFlow(String flow) {
+        this.flow = flow;
+    }
+
+    /**
+     * @param execute Whether to execute the flow right after the upload
+     */
+    public void setExecute(boolean execute) {
+        this.execute = execute;
+    }
+
+    /**
+     * Schedules the flow after the upload.  See {@link ezbake.azkaban.manager.ScheduleManager} for the formats.
+     *
+     * @param date The date to execute the flow (MM/DD/YYYY), today if null
+     * @param time The time of day to run in 12,00,pm,utc format, two minutes from now if null
+     * @param period How often to run in the format of: intValue[Mwdhms], only once if null
+     */
+    public void setSchedule(String date, String time, String period) {
+        this.scheduleDate = date;
+        this.scheduleTime = time;
+        this.period = period;
+    }
+
+    /**
+     * Skips the conversion and upload of an archive that was already uploaded to the project, see
+     * {@link UploadIndex}
+     *
+     * @param uploadIndex Where the last upload to each project is recorded, NULL to always upload
+     */
+    public void setUploadIndex(UploadIndex uploadIndex) {
+        this.uploadIndex = uploadIndex;
+    }
+
+    /**
+     * @param force Whether to upload the archive even if the upload index says it's already there
+     */
+    public void setForce(boolean force) {
+        this.force = force;
+    }
+
+    /**
+     * @param extractionThreads Number of threads writing the files of a .tar.gz while it is decompressed, 0 (the
+     *                          default) to write them on the submitting thread.  Only used when archives aren't
+     *                          streamed.
+     * @see UnzipUtil#unzipAndIndex(File, ByteBuffer, int)
+     */
+    public void setExtractionThreads(int extractionThreads) {
+        if(extractionThreads < 0) {
+            throw new IllegalArgumentException("Extraction threads must be at least 0, was " + extractionThreads);
+        }
+        this.extractionThreads = extractionThreads;
+    }
+
+    /**
+     * @param streamArchives Whether a .tar.gz is converted to a zip while it is uploaded (the default), instead of
+     *                       being extracted to the work directory and zipped before the upload.  Streamed uploads are
+     *                       sent chunked, turn this off if something between here and Azkaban doesn't accept that.
+     * @see UploadManager#UploadManager(String, String, String, ByteBuffer)
+     */
+    public void setStreamArchives(boolean streamArchives) {
+        this.streamArchives = streamArchives;
+    }
+
+    /**
+     * Runs the pipeline on an archive file.  The file is mapped into memory instead of being read onto the heap.
+     *
+     * @param archive Either an Azkaban .zip or a .tar.gz submission
+     * @param projectName The project to upload to, created if it doesn't exist
+     * @return The upload result with the stage timings, and the execution or schedule result if requested
+     */
+    public SubmissionResult submit(File archive, String projectName) {
+        final long start = System.nanoTime();
+        final ByteBuffer mapped;
+        try {
+            mapped = FileUtil.map(archive);
+        } catch (IOException e) {
+            logger.error("Could not read {}", archive, e);
+            final SubmissionResult result = new SubmissionResult("Could not read " + archive + ": " + e.getMessage());
+            result.setElapsedMillis(millisSince(start));
+            return result;
+        }
+        return submit(mapped, projectName);
+    }
+
+    /**
+     * Runs the pipeline
+     *
+     * @param archive Either an Azkaban .zip or a .tar.gz submission
+     * @param projectName The project to upload to, created if it doesn't exist
+     * @return The upload result with the stage timings, and the execution or schedule result if requested
+     */
+    public SubmissionResult submit(ByteBuffer archive, final String projectName) {
+        final long start = System.nanoTime();
+        final SubmissionResult result = new SubmissionResult();
+
+        final Future<AzkabanSession> prepared = executor.submit(new Callable<AzkabanSession>() {
+            @Override
+            public AzkabanSession call() throws Exception {
+                return prepareProject(projectName, result);
+            }
+        });
+
+        File zip = null;
+        try {
+            final String sha256 = uploadIndex != null ? hash(archive, result) : null;
+            final AzkabanSession session;
+            if(sha256 != null && !force && isUploaded(sha256, prepared, projectName, result)) {
+                session = prepared.get();
+                AzkabanMetrics.recordDedup(true, archive.remaining());
+            } else {
+                final boolean stream = streamArchives && !isZip(archive);
+                zip = stream ? null : prepareArchive(archive, result);
+                session = prepared.get();
+                final UploadManager uploader = stream ?
+                        new UploadManager(session.getId(), azkabanUrl, projectName, archive) :
+                        new UploadManager(session.getId(), azkabanUrl, projectName, zip);
+                upload(uploader, result);
+                if(sha256 != null) {
+                    AzkabanMetrics.recordDedup(false, archive.remaining());
+                    index(projectName, sha256, uploader.getUploadName(), result);
+                }
+            }
+            if(!result.hasError() && flow != null) {
+                runFlow(session, projectName, result);
+            }
+        } catch (ExecutionException e) {
+            logger.error("Could not prepare project {}", projectName, e.getCause());
+            result.setError(e.getCause().getMessage());
+        } catch (Exception e) {
+            logger.error("Could not submit project {}", projectName, e);
+            result.setError(e.getMessage());
+        } finally {
+            prepared.cancel(true);
+            if(zip != null && !zip.delete()) {
+                logger.warn("Could not delete {}", zip);
+            }
+            result.setElapsedMillis(millisSince(start));
+        }
+
+        logger.info("Submitted {} in {}ms: {}", projectName, result.getElapsedMillis(), result.getStages());
+        return result;
+    }
+
+    /**
+     * Logs in and creates the project if it doesn't exist yet
+     */
+    private AzkabanSession prepareProject(String projectName, SubmissionResult result) throws Exception {
+        long stageStart = System.nanoTime();
+        final AzkabanSession session = new AzkabanSession(new AuthenticationManager(new URI(azkabanUrl), username,
+                password));
+        result.addStage("authenticate", millisSince(stageStart), 0);
+
+        stageStart = System.nanoTime();
+        final ProjectManager projectManager = new ProjectManager(session, new URI(azkabanUrl));
+        final ProjectFlowsResult flows = projectManager.fetchProjectFlows(projectName);
+        if(flows == null || flows.hasError()) {
+            logger.info("Project {} doesn't exist, creating it", projectName);
+            final ManagerResult created = projectManager.createProject(projectName,
+                    projectDescription != null ? projectDescription : projectName);
+            if(created.hasError()) {
+                throw new IllegalStateException("Could not create project " + projectName + ": " + created.getMessage());
+            }
+        }
+        result.addStage("project", millisSince(stageStart), 0);
+        return session;
+    }
+
+    private static String hash(ByteBuffer archive, SubmissionResult result) {
+        final long stageStart = System.nanoTime();
+        final String sha256 = UploadIndex.sha256(archive);
+        result.addStage("hash", millisSince(stageStart), archive.remaining());
+        return sha256;
+    }
+
+    /**
+     * Checks whether the archive is the last one uploaded to the project.  The newest UPLOADED event of the project
+     * log must still be that upload, found by the file name it was sent as, otherwise the project was recreated or
+     * somebody else uploaded to it since.
+     *
+     * @return true if the archive doesn't have to be uploaded, the result then has the project ID and version
+     */
+    private boolean isUploaded(String sha256, Future<AzkabanSession> prepared, String projectName,
+                               SubmissionResult result) throws Exception {
+        final UploadIndex.Entry entry = uploadIndex.get(azkabanUrl, projectName);
+        if(entry == null || !entry.getSha256().equals(sha256)) {
+            return false;
+        }
+
+        final long stageStart = System.nanoTime();
+        final ProjectLogsResult logs = new ProjectManager(prepared.get(), new URI(azkabanUrl))
+                .fetchProjectLogs(projectName, 0, DEDUP_LOG_PAGE_SIZE);
+        final ProjectLogsResult.Event latest = logs != null && !logs.hasError() ?
+                logs.getLatestEvent("UPLOADED") : null;
+        final boolean uploaded = latest != null && entry.getProjectId().equals(logs.getProjectId()) &&
+                UploadManager.isUploadOf(latest, entry.getUploadName());
+        result.addStage("dedup", millisSince(stageStart), 0);
+        if(uploaded) {
+            logger.info("Archive {} is already version {} of {}, skipping the upload", sha256, entry.getVersion(),
+                    projectName);
+            result.setProjectId(entry.getProjectId());
+            result.setVersion(entry.getVersion());
+        }
+        return uploaded;
+    }
+
+    private void index(String projectName, String sha256, String uploadName, SubmissionResult result) {
+        try {
+            if(result.hasError() || result.getProjectId() == null || result.getVersion() == null) {
+                uploadIndex.remove(azkabanUrl, projectName);
+            } else {
+                uploadIndex.put(azkabanUrl, projectName, new UploadIndex.Entry(sha256, result.getProjectId(),
+                        result.getVersion(), uploadName));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not update the upload index", e);
+        }
+    }
+
+    /**
+     * Validates an Azkaban zip, or converts a .tar.gz into one
+     *
+     * @return The zip to upload, a temporary file
+     */
+    private File prepareArchive(ByteBuffer archive, SubmissionResult result) throws IOException {
+        final long stageStart = System.nanoTime();
+        final long archiveBytes = archive.remaining();
+        final File zip;
+
+        if(isZip(archive)) {
+            if(countJobs(archive) == 0) {
+                throw new IOException("The zip doesn't contain any .job files");
+            }
+            zip = FileUtil.saveAsTempFile(archive.duplicate(), ".zip");
+        } else {
+            final ArchiveIndex index = UnzipUtil.unzipAndIndex(workDirectory, archive, extractionThreads);
+            logger.debug("Extracted {}", index.getExtractionStats());
+            try {
+                if(index.getJobFiles().isEmpty()) {
+                    throw new IOException("The archive doesn't contain any .job files");
+                }
+                zip = File.createTempFile("azkaban", ".zip", workDirectory);
+                FileUtil.zipDirectory(index.getRoot(), zip);
+            } finally {
+                FileUtils.deleteDirectory(index.getRoot());
+            }
+        }
+
+        result.addStage("archive", millisSince(stageStart), archiveBytes);
+        return zip;
+    }
+
+    /**
+     * Sends the zip, or the .tar.gz converted on the way.  The upload stage's bytes are the length of the zip.
+     */
+    private void upload(UploadManager uploader, SubmissionResult result) {
+        final long stageStart = System.nanoTime();
+        final UploaderResult uploaded = uploader.uploadZipWithRetries();
+        result.addStage("upload", millisSince(stageStart), uploader.getBytesUploaded());
+
+        result.setError(uploaded.getError());
+        result.setProjectId(uploaded.getProjectId());
+        result.setVersion(uploaded.getVersion());
+    }
+
+    private void runFlow(AzkabanSession session, String projectName, SubmissionResult result) throws Exception {
+        if(execute) {
+            final long stageStart = System.nanoTime();
+            result.setExecutionResult(new ExecutionManager(session, new URI(azkabanUrl)).executeFlow(projectName, flow));
+            result.addStage("execute", millisSince(stageStart), 0);
+        }
+
+        if(scheduleDate != null || scheduleTime != null || period != null) {
+            final long stageStart = System.nanoTime();
+            final ScheduleManager scheduleManager = new ScheduleManager(session, new URI(azkabanUrl));
+            scheduleManager.setScheduleDate(scheduleDate != null ? scheduleDate : LocalDate.now().toString("MM/dd/yyyy"));
+            scheduleManager.setScheduleTime(scheduleTime);
+            if(period != null) {
+                scheduleManager.setPeriod(period);
+            }
+            result.setSchedulerResult(scheduleManager.scheduleFlow(projectName, flow, result.getProjectId()));
+            result.addStage("schedule", millisSince(stageStart), 0);
+        }
+    }
+
+    private static boolean isZip(ByteBuffer archive) {
+        final int position = archive.position();
+        return archive.remaining() >= 4 && archive.get(position) == 'P' && archive.get(position + 1) == 'K' &&
+                archive.get(position + 2) == 3 && archive.get(position + 3) == 4;
+    }
+
+    private static int countJobs(ByteBuffer archive) throws IOException {
+        int jobs = 0;
+        try(ZipInputStream zip = new ZipInputStream(FileUtil.newInputStream(archive))) {
+            ZipEntry entry;
+            while((entry = zip.getNextEntry()) != null) {
+                if(!entry.isDirectory() && entry.getName().endsWith(".job")) {
+                    jobs++;
+                }
+            }
+        }
+        return jobs;
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,115 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter;
+
+import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link SubmissionPipeline} run: the upload result plus the wall-clock time and bytes of each stage
+ */
+@JsonSerialize(include=JsonSerialize.Inclusion.NON_NULL)
+public class SubmissionResult extends UploaderResult {
+
+    /**
+     * Wall-clock time and bytes processed by one stage of the pipeline
+     */
+    public static class Stage {
+        private final String name;
+        private final long elapsedMillis;
+        private final long bytes;
+
+        public Stage(String name, long elapsedMillis, long bytes) {
+            this.name = name;
+            this.elapsedMillis = elapsedMillis;
+            this.bytes = bytes;
+        }
+
+        @JsonProperty(value="name")
+        public String getName() {
+            return name;
+        }
+
+        @JsonProperty(value="elapsedMillis")
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @JsonProperty(value="bytes")
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + elapsedMillis + "ms, " + bytes + " bytes";
+        }
+    }
+
+    private final List<Stage> stages = Collections.synchronizedList(new ArrayList<Stage>());
+    private long elapsedMillis;
+    private ExecutionResult executionResult;
+    private SchedulerResult schedulerResult;
+
+    public SubmissionResult() { }
+
+    public SubmissionResult(String error) {
+        super(error);
+    }
+
+    /**
+     * Records a completed stage.  Stages that overlap are recorded separately, so their times don't add up to the
+     * elapsed time of the whole submission.
+     */
+    public void addStage(String name, long elapsedMillis, long bytes) {
+        stages.add(new Stage(name, elapsedMillis, bytes));
+    }
+
+    @JsonProperty(value="stages")
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    @JsonProperty(value="elapsedMillis")
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @JsonProperty(value="execution")
+    public ExecutionResult getExecutionResult() {
+        return executionResult;
+    }
+    public void setExecutionResult(ExecutionResult executionResult) {
+        this.executionResult = executionResult;
+    }
+
+    @JsonProperty(value="schedule")
+    public SchedulerResult getSchedulerResult() {
+        return schedulerResult;
+    }
+    public void setSchedulerResult(SchedulerResult schedulerResult) {
+        this.schedulerResult = schedulerResult;
+    }
+}
@@ -0,0 +1,269 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import com.google.common.base.Optional;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Layout of a submission archive, recorded entry by entry while the archive is streamed.  Answers the same questions
+ * as {@link UnzipUtil#getConfDirectory(java.io.File)}, {@link UnzipUtil#getSSLPath(java.io.File)} and
+ * {@link UnzipUtil#getJarPath(java.io.File)} without listing the extracted directories.
+ *
+ * Where several directories share a name the shallowest one wins, ties go to the one that came first in the archive.
+ */
+public class ArchiveIndex {
+
+    private static final String CONFIG_DIR = "config";
+    private static final String SSL_DIR = "ssl";
+    private static final String LIB_DIR = "lib";
+
+    private final File root;
+
+    // Relative paths in archive order
+    private final Set<String> directories = new LinkedHashSet<>();
+    private final Map<String, Long> fileSizes = new LinkedHashMap<>();
+    private final List<String> jobFiles = new ArrayList<>();
+    private long totalBytes;
+    private ExtractionStats extractionStats;
+
+    // Resolved by finish()
+    private String confDir;
+    private String libDir;
+    private final Map<String, String> sslDirs = new LinkedHashMap<>();
+    private final List<String> jars = new ArrayList<>();
+
+    /**
+     * @param root Directory the archive is extracted into, relative paths are resolved against it
+     */
+    ArchiveIndex(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Records an archive entry
+     *
+     * @param name The entry name as stored in the archive
+     * @param directory Whether the entry is a directory
+     * @param size Size of the entry contents in bytes
+     */
+    void record(String name, boolean directory, long size) {
+        final String path = normalize(name);
+        if(path.isEmpty()) {
+            return;
+        }
+
+        // Archives don't have to contain entries for the directories, derive them from the paths
+        int slash = path.indexOf('/');
+        while(slash > 0) {
+            directories.add(path.substring(0, slash));
+            slash = path.indexOf('/', slash + 1);
+        }
+
+        if(directory) {
+            directories.add(path);
+        } else {
+            fileSizes.put(path, size);
+            totalBytes += size;
+            if(path.endsWith(".job")) {
+                jobFiles.add(path);
+            }
+        }
+    }
+
+    /**
+     * Resolves the config, ssl and lib directories once all entries have been recorded
+     */
+    void finish() {
+        confDir = shallowest(CONFIG_DIR);
+        libDir = shallowest(LIB_DIR);
+
+        if(confDir != null) {
+            final String sslDir = confDir + "/" + SSL_DIR;
+            for(String dir : directories) {
+                if(isChild(sslDir, dir)) {
+                    sslDirs.put(dir.substring(sslDir.length() + 1), dir);
+                }
+            }
+        }
+
+        if(libDir != null) {
+            for(String file : fileSizes.keySet()) {
+                if(isChild(libDir, file) && file.endsWith(".jar")) {
+                    jars.add(file);
+                }
+            }
+        }
+    }
+
+    void setExtractionStats(ExtractionStats extractionStats) {
+        this.extractionStats = extractionStats;
+    }
+
+    /**
+     * @return Where the time of the extraction went, NULL if the archive wasn't extracted
+     */
+    public ExtractionStats getExtractionStats() {
+        return extractionStats;
+    }
+
+    /**
+     * @return The directory the archive was extracted into
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * @return Absolute path of the config directory, if the archive has one
+     */
+    public Optional<String> getConfDirectory() {
+        return resolve(confDir);
+    }
+
+    /**
+     * @return Absolute path of the first directory under config/ssl, which holds the certs/keys for the security ID
+     */
+    public Optional<String> getSSLPath() {
+        return sslDirs.isEmpty() ? Optional.<String>absent() : resolve(sslDirs.values().iterator().next());
+    }
+
+    /**
+     * @param securityId The security ID the certs/keys were issued to
+     * @return Absolute path of config/ssl/&lt;securityId&gt;, if the archive has it
+     */
+    public Optional<String> getSSLPath(String securityId) {
+        return resolve(sslDirs.get(securityId));
+    }
+
+    /**
+     * @return Absolute path of the first jar in the lib directory
+     */
+    public Optional<String> getJarPath() {
+        return jars.isEmpty() ? Optional.<String>absent() : resolve(jars.get(0));
+    }
+
+    /**
+     * @return Relative paths of the jars in the lib directory, in archive order
+     */
+    public List<String> getJars() {
+        return Collections.unmodifiableList(jars);
+    }
+
+    /**
+     * @return Relative paths of all .job files, in archive order
+     */
+    public List<String> getJobFiles() {
+        return Collections.unmodifiableList(jobFiles);
+    }
+
+    /**
+     * @return Relative path to size in bytes of every file in the archive, in archive order
+     */
+    public Map<String, Long> getFileSizes() {
+        return Collections.unmodifiableMap(fileSizes);
+    }
+
+    /**
+     * @param path Relative path of a file in the archive
+     * @return The size of the file in bytes, or -1 if the archive doesn't contain it
+     */
+    public long getSize(String path) {
+        final Long size = fileSizes.get(normalize(path));
+        return size != null ? size : -1;
+    }
+
+    /**
+     * @return Total size in bytes of all files in the archive
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return Number of files in the archive
+     */
+    public int getFileCount() {
+        return fileSizes.size();
+    }
+
+    /**
+     * @param path Relative path
+     * @return Whether the archive has the directory, either as an entry or as the parent of one
+     */
+    boolean isDirectory(String path) {
+        return directories.contains(normalize(path));
+    }
+
+    private Optional<String> resolve(String path) {
+        if(path == null) {
+            return Optional.absent();
+        }
+        return Optional.of(root != null ? new File(root, path).getAbsolutePath() : path);
+    }
+
+    private String shallowest(String dirName) {
+        String result = null;
+        int resultDepth = Integer.MAX_VALUE;
+        for(String dir : directories) {
+            final int slash = dir.lastIndexOf('/');
+            if(dir.substring(slash + 1).equals(dirName)) {
+                final int depth = depth(dir);
+                if(depth < resultDepth) {
+                    result = dir;
+                    resultDepth = depth;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isChild(String parent, String path) {
+        return path.length() > parent.length() + 1 && path.startsWith(parent) && path.charAt(parent.length()) == '/' &&
+                path.indexOf('/', parent.length() + 1) < 0;
+    }
+
+    private static int depth(String path) {
+        int depth = 0;
+        for(int i = 0; i < path.length(); i++) {
+            if(path.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    static String normalize(String name) {
+        String path = name.replace('\\', '/');
+        while(path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        while(path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while(path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,409 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses Azkaban log lines, {@code AZ_DATETIME LOGLEVEL [Class] [Azkaban] message}, into the DATETIME, LOGLEVEL,
+ * JAVACLASS and MESSAGE fields the grok pattern of the logstash config extracts, e.g.
+ * <pre>
+ * 2014/10/15 12:34:56.789 -0400 INFO [FlowRunner] [Azkaban] Running execid:12 flow:nightly
+ * </pre>
+ * The line is scanned once, left to right, without backtracking.  The fields are kept as offsets into the caller's
+ * buffer in a reusable {@link Event}, so parsing and writing JSON allocate nothing per line.
+ * <p/>
+ * Unlike grok, the pattern has to start at the beginning of the line.  Azkaban writes it there, a line that only has
+ * it further in is a message continuation, e.g. of a stack trace.
+ * <p/>
+ * Run on its own it turns a log on stdin into one JSON object per line on stdout for logstash's json codec:
+ * <pre>
+ * tail -F azkaban.log | java -cp azkaban-submitter.jar ezbake.azkaban.submitter.util.AzkabanLogParser
+ * </pre>
+ */
+public final class AzkabanLogParser {
+
+    /**
+     * The grok pattern of the logstash config with AZ_DATETIME and the grok patterns it uses expanded, anchored at the
+     * start of the line.  Groups 1 to 4 are DATETIME, LOGLEVEL, JAVACLASS and MESSAGE.  This parser matches the
+     * same lines and extracts the same fields.
+     */
+    public static final String GROK_PATTERN = "^((?>\\d\\d){1,2}[/-](?:0?[1-9]|1[0-2])[/-]" +
+            "(?:(?:0[1-9])|(?:[12][0-9])|(?:3[01])|[1-9]) " +
+            "(?!<[0-9])(?:2[0123]|[01]?[0-9]):(?:[0-5][0-9])(?::(?:(?:[0-5]?[0-9]|60)(?:[:.,][0-9]+)?))(?![0-9]) " +
+            "(?:Z|[+-](?:2[0123]|[01]?[0-9])(?::?(?:[0-5][0-9])))) " +
+            "([Aa]lert|ALERT|[Tt]race|TRACE|[Dd]ebug|DEBUG|[Nn]otice|NOTICE|[Ii]nfo|INFO|[Ww]arn?(?:ing)?|" +
+            "WARN?(?:ING)?|[Ee]rr?(?:or)?|ERR?(?:OR)?|[Cc]rit?(?:ical)?|CRIT?(?:ICAL)?|[Ff]atal|FATAL|[Ss]evere|" +
+            "SEVERE|EMERG(?:ENCY)?|[Ee]merg(?:ency)?) \\[(\\w+)\\] \\[Azkaban\\] (.*)";
+
+    private static final String AZKABAN = " [Azkaban] ";
+
+    // Every word grok's LOGLEVEL matches, each either upper case or lower case with an optional capital
+    private static final char[][] LEVELS = {
+            "ALERT".toCharArray(), "TRACE".toCharArray(), "DEBUG".toCharArray(), "NOTICE".toCharArray(),
+            "INFO".toCharArray(), "WAR".toCharArray(), "WARN".toCharArray(), "WARING".toCharArray(),
+            "WARNING".toCharArray(), "ER".toCharArray(), "ERR".toCharArray(), "EROR".toCharArray(),
+            "ERROR".toCharArray(), "CRI".toCharArray(), "CRIT".toCharArray(), "CRICAL".toCharArray(),
+            "CRITICAL".toCharArray(), "FATAL".toCharArray(), "SEVERE".toCharArray(), "EMERG".toCharArray(),
+            "EMERGENCY".toCharArray()
+    };
+
+    /**
+     * One parsed line.  The fields point into the buffer given to {@link #parse}, they are only valid until it changes.
+     */
+    public static final class Event {
+        private char[] line;
+        private int start;
+        private int end;
+        private boolean matched;
+        private int dateTimeEnd;
+        private int levelStart;
+        private int levelEnd;
+        private int classStart;
+        private int classEnd;
+        private int messageStart;
+
+        /**
+         * @return Whether the line had the Azkaban format, the fields are only set if it had
+         */
+        public boolean isMatched() {
+            return matched;
+        }
+
+        public String getLine() {
+            return new String(line, start, end - start);
+        }
+
+        public String getDateTime() {
+            return matched ? new String(line, start, dateTimeEnd - start) : null;
+        }
+
+        public String getLevel() {
+            return matched ? new String(line, levelStart, levelEnd - levelStart) : null;
+        }
+
+        public String getJavaClass() {
+            return matched ? new String(line, classStart, classEnd - classStart) : null;
+        }
+
+        public String getMessage() {
+            return matched ? new String(line, messageStart, end - messageStart) : null;
+        }
+
+        /**
+         * Writes the event as a JSON object with the fields of the grok pattern, or the line tagged
+         * _grokparsefailure like logstash does when it doesn't match
+         */
+        public void writeJson(JsonGenerator json) throws IOException {
+            json.writeStartObject();
+            json.writeFieldName("message");
+            json.writeString(line, start, end - start);
+            if(matched) {
+                json.writeFieldName("DATETIME");
+                json.writeString(line, start, dateTimeEnd - start);
+                json.writeFieldName("LOGLEVEL");
+                json.writeString(line, levelStart, levelEnd - levelStart);
+                json.writeFieldName("JAVACLASS");
+                json.writeString(line, classStart, classEnd - classStart);
+                json.writeFieldName("MESSAGE");
+                json.writeString(line, messageStart, end - messageStart);
+            } else {
+                json.writeArrayFieldStart("tags");
+                json.writeString("_grokparsefailure");
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+        }
+    }
+
+    private AzkabanLogParser() { }
+
+    /**
+     * @return A new event with the line parsed into it
+     */
+    public static Event parse(String line) {
+        final Event event = new Event();
+        final char[] chars = line.toCharArray();
+        parse(chars, 0, chars.length, event);
+        return event;
+    }
+
+    /**
+     * Parses the line into the event, overwriting what it held before
+     *
+     * @param line Buffer holding the line
+     * @param start Index of the first character of the line
+     * @param end Index after the last character of the line, without the line terminator
+     * @param event Receives the line and its fields
+     * @return Whether the line had the Azkaban format
+     */
+    public static boolean parse(char[] line, int start, int end, Event event) {
+        event.line = line;
+        event.start = start;
+        event.end = end;
+        event.matched = false;
+
+        // AZ_DATETIME: %{YEAR}[/-]%{MONTHNUM}[/-]%{MONTHDAY} %{TIME} %{ISO8601_TIMEZONE}
+        int i = year(line, start, end);
+        i = separator(line, i, end, "/-");
+        i = number(line, i, end, 1, 2, 1, 12);
+        i = separator(line, i, end, "/-");
+        i = number(line, i, end, 1, 2, 1, 31);
+        i = separator(line, i, end, " ");
+        i = time(line, i, end);
+        i = separator(line, i, end, " ");
+        i = timeZone(line, i, end);
+        if(i < 0) {
+            return false;
+        }
+        event.dateTimeEnd = i;
+        i = separator(line, i, end, " ");
+
+        event.levelStart = i;
+        i = level(line, i, end);
+        event.levelEnd = i;
+        i = separator(line, i, end, " ");
+        i = separator(line, i, end, "[");
+
+        event.classStart = i;
+        i = word(line, i, end);
+        event.classEnd = i;
+        i = separator(line, i, end, "]");
+        i = literal(line, i, end, AZKABAN);
+        if(i < 0) {
+            return false;
+        }
+
+        event.messageStart = i;
+        event.matched = true;
+        return true;
+    }
+
+    /**
+     * Reads lines from the reader and writes each one as a JSON object on its own line.  Lines are parsed in place
+     * in a buffer that only grows for lines longer than it.
+     *
+     * @return The number of lines written
+     */
+    public static long toJsonLines(Reader in, OutputStream out) throws IOException {
+        final JsonGenerator json = new ObjectMapper().getJsonFactory().createJsonGenerator(out, JsonEncoding.UTF8);
+        final Event event = new Event();
+        char[] buffer = new char[64 * 1024];
+        int filled = 0;
+        int lineStart = 0;
+        long lines = 0;
+        boolean eof = false;
+
+        while(!eof || lineStart < filled) {
+            int newline = -1;
+            for(int i = lineStart; i < filled; i++) {
+                if(buffer[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if(newline < 0 && !eof) {
+                // Move the partial line to the front, growing the buffer only if the line fills it
+                if(lineStart > 0) {
+                    System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                    filled -= lineStart;
+                    lineStart = 0;
+                } else if(filled == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                final int read = in.read(buffer, filled, buffer.length - filled);
+                if(read < 0) {
+                    eof = true;
+                } else {
+                    filled += read;
+                }
+                continue;
+            }
+
+            final int lineEnd = newline < 0 ? filled : newline;
+            final int end = lineEnd > lineStart && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            parse(buffer, lineStart, end, event);
+            event.writeJson(json);
+            json.writeRaw('\n');
+            lines++;
+            lineStart = newline < 0 ? filled : newline + 1;
+        }
+        json.flush();
+        return lines;
+    }
+
+    /**
+     * @return The index after 2 or 4 digits, -1 if there aren't
+     */
+    private static int year(char[] line, int i, int end) {
+        final int digits = digits(line, i, end, 4);
+        return digits == 2 || digits == 4 ? i + digits : -1;
+    }
+
+    /**
+     * @return The index after a number of minDigits to maxDigits digits between min and max, -1 if there isn't one
+     */
+    private static int number(char[] line, int i, int end, int minDigits, int maxDigits, int min, int max) {
+        if(i < 0) {
+            return -1;
+        }
+        final int digits = digits(line, i, end, maxDigits);
+        if(digits < minDigits) {
+            return -1;
+        }
+        int value = 0;
+        for(int d = 0; d < digits; d++) {
+            value = value * 10 + line[i + d] - '0';
+        }
+        return value >= min && value <= max ? i + digits : -1;
+    }
+
+    /**
+     * TIME: %{HOUR}:%{MINUTE}:%{SECOND} not followed by a digit, SECOND with an optional [:.,] fraction
+     */
+    private static int time(char[] line, int i, int end) {
+        i = number(line, i, end, 1, 2, 0, 23);
+        i = separator(line, i, end, ":");
+        i = number(line, i, end, 2, 2, 0, 59);
+        i = separator(line, i, end, ":");
+        i = number(line, i, end, 1, 2, 0, 60);
+        if(i < 0) {
+            return -1;
+        }
+        if(i + 1 < end && ":.,".indexOf(line[i]) >= 0 && isDigit(line[i + 1])) {
+            i += 1 + digits(line, i + 1, end, Integer.MAX_VALUE);
+        }
+        return i < end && isDigit(line[i]) ? -1 : i;
+    }
+
+    /**
+     * ISO8601_TIMEZONE: Z or [+-]%{HOUR}(?::?%{MINUTE}), followed by a space.  Like the regex, a two digit hour that
+     * leaves no valid minute is retried as a one digit hour.
+     */
+    private static int timeZone(char[] line, int i, int end) {
+        if(i < 0 || i >= end) {
+            return -1;
+        }
+        if(line[i] == 'Z') {
+            return followedBySpace(line, i + 1, end);
+        }
+        if(line[i] != '+' && line[i] != '-') {
+            return -1;
+        }
+        for(int hourDigits = 2; hourDigits >= 1; hourDigits--) {
+            int zone = number(line, i + 1, end, hourDigits, hourDigits, 0, 23);
+            if(zone >= 0 && zone < end && line[zone] == ':') {
+                zone++;
+            }
+            zone = followedBySpace(line, number(line, zone, end, 2, 2, 0, 59), end);
+            if(zone >= 0) {
+                return zone;
+            }
+        }
+        return -1;
+    }
+
+    private static int followedBySpace(char[] line, int i, int end) {
+        return i >= 0 && i < end && line[i] == ' ' ? i : -1;
+    }
+
+    private static int level(char[] line, int i, int end) {
+        if(i < 0) {
+            return -1;
+        }
+        int wordEnd = i;
+        while(wordEnd < end && Character.isLetter(line[wordEnd])) {
+            wordEnd++;
+        }
+        for(char[] level : LEVELS) {
+            if(isLevel(line, i, wordEnd, level)) {
+                return wordEnd;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLevel(char[] line, int start, int end, char[] level) {
+        if(end - start != level.length || Character.toUpperCase(line[start]) != level[0]) {
+            return false;
+        }
+        final boolean upper = line[start] == level[0] && Character.isUpperCase(line[start + 1]);
+        for(int i = 1; i < level.length; i++) {
+            if(line[start + i] != (upper ? level[i] : Character.toLowerCase(level[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The index after one or more [A-Za-z0-9_], -1 if there isn't any
+     */
+    private static int word(char[] line, int i, int end) {
+        if(i < 0) {
+            return -1;
+        }
+        final int start = i;
+        while(i < end && (isDigit(line[i]) || line[i] == '_' || (line[i] >= 'a' && line[i] <= 'z') ||
+                (line[i] >= 'A' && line[i] <= 'Z'))) {
+            i++;
+        }
+        return i > start ? i : -1;
+    }
+
+    private static int separator(char[] line, int i, int end, String separators) {
+        return i >= 0 && i < end && separators.indexOf(line[i]) >= 0 ? i + 1 : -1;
+    }
+
+    private static int literal(char[] line, int i, int end, String literal) {
+        if(i < 0 || end - i < literal.length()) {
+            return -1;
+        }
+        for(int c = 0; c < literal.length(); c++) {
+            if(line[i + c] != literal.charAt(c)) {
+                return -1;
+            }
+        }
+        return i + literal.length();
+    }
+
+    /**
+     * @return The number of consecutive digits from i, at most max
+     */
+    private static int digits(char[] line, int i, int end, int max) {
+        int digits = 0;
+        while(i + digits < end && digits < max && isDigit(line[i + digits])) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public static void main(String[] args) throws IOException {
+        toJsonLines(new InputStreamReader(System.in, StandardCharsets.UTF_8), System.out);
+    }
+}
@@ -0,0 +1,100 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time of an extraction went.  When decompression and writing overlap, the elapsed time approaches the
+ * slower of the two instead of their sum.
+ */
+public class ExtractionStats {
+
+    private final long bytes;
+    private final int files;
+    private final long elapsedNanos;
+    private final long decompressNanos;
+    private final long writeNanos;
+    private final long bufferWaitNanos;
+    private final int writers;
+
+    /**
+     * @param bytes Bytes of file contents written
+     * @param files Number of files written
+     * @param elapsedNanos Wall-clock time of the whole extraction
+     * @param decompressNanos Time spent reading and decompressing the archive
+     * @param writeNanos Time spent writing files, summed over the writer threads
+     * @param bufferWaitNanos Time the decompressing thread waited for a free buffer
+     * @param writers Number of writer threads, 0 if the files were written by the decompressing thread
+     */
+    public ExtractionStats(long bytes, int files, long elapsedNanos, long decompressNanos, long writeNanos,
+                           long bufferWaitNanos, int writers) {
+        this.bytes = bytes;
+        this.files = files;
+        this.elapsedNanos = elapsedNanos;
+        this.decompressNanos = decompressNanos;
+        this.writeNanos = writeNanos;
+        this.bufferWaitNanos = bufferWaitNanos;
+        this.writers = writers;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public long getDecompressMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(decompressNanos);
+    }
+
+    /**
+     * @return Time spent writing files, summed over the writer threads
+     */
+    public long getWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeNanos);
+    }
+
+    /**
+     * @return Time the decompressing thread waited for the writers to give a buffer back
+     */
+    public long getBufferWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(bufferWaitNanos);
+    }
+
+    public int getWriters() {
+        return writers;
+    }
+
+    /**
+     * @return Bytes extracted per second of elapsed time, in megabytes
+     */
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes / (1024.0 * 1024.0) / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %d bytes in %dms (%.1f MB/s): decompress %dms, write %dms on %d writers, " +
+                        "buffer wait %dms", files, bytes, getElapsedMillis(), getMegabytesPerSecond(),
+                getDecompressMillis(), getWriteMillis(), writers, getBufferWaitMillis());
+    }
+}
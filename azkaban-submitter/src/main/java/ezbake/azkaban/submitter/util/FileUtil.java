@@ -14,11 +14,19 @@
 
 package ezbake.azkaban.submitter.util;
 
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class FileUtil {
 
@@ -40,4 +48,93 @@ public class FileUtil {
 		return tempFile;
 	}
 
+    /**
+     * Maps the file into memory read-only.  The contents stay in the page cache instead of being copied onto the heap.
+     *
+     * @param file The file to map
+     * @return A buffer over the whole file
+     * @throws IOException if the file can't be read
+     */
+	public static ByteBuffer map(File file) throws IOException {
+		try(FileInputStream in = new FileInputStream(file)) {
+			final FileChannel channel = in.getChannel();
+			// The mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+    /**
+     * Reads the remaining bytes of the buffer without changing its position
+     *
+     * @param buffer A heap, direct or mapped buffer
+     * @return A stream over the remaining bytes
+     */
+	public static InputStream newInputStream(ByteBuffer buffer) {
+		final ByteBuffer duplicate = buffer.duplicate();
+		if(duplicate.hasArray()) {
+			return new ByteArrayInputStream(duplicate.array(), duplicate.arrayOffset() + duplicate.position(),
+					duplicate.remaining());
+		}
+		return new InputStream() {
+			@Override
+			public int read() {
+				return duplicate.hasRemaining() ? duplicate.get() & 0xff : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if(len == 0) {
+					return 0;
+				}
+				if(!duplicate.hasRemaining()) {
+					return -1;
+				}
+				final int read = Math.min(len, duplicate.remaining());
+				duplicate.get(b, off, read);
+				return read;
+			}
+
+			@Override
+			public int available() {
+				return duplicate.remaining();
+			}
+		};
+	}
+
+    /**
+     * Zips the contents of a directory, entry names are relative to the directory
+     *
+     * @param directory The directory to zip
+     * @param zip The zip file to create
+     * @return The number of bytes of file content that were zipped
+     * @throws IOException
+     */
+	public static long zipDirectory(File directory, File zip) throws IOException {
+		try(ZipOutputStream os = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zip)))) {
+			return addToZip(os, directory, "");
+		}
+	}
+
+	private static long addToZip(ZipOutputStream os, File directory, String prefix) throws IOException {
+		final File[] files = directory.listFiles();
+		long bytes = 0;
+		if(files == null) {
+			return bytes;
+		}
+
+		for(File file : files) {
+			final String name = prefix + file.getName();
+			if(file.isDirectory()) {
+				os.putNextEntry(new ZipEntry(name + "/"));
+				os.closeEntry();
+				bytes += addToZip(os, file, name + "/");
+			} else {
+				os.putNextEntry(new ZipEntry(name));
+				bytes += FileUtils.copyFile(file, os);
+				os.closeEntry();
+			}
+		}
+		return bytes;
+	}
+
 }
@@ -14,17 +14,58 @@
 
 package ezbake.azkaban.submitter.util;
 
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class JsonUtil {
 
 	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	// Readers are immutable and thread safe, one per result type saves the type lookups on every call
+	private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
 	
 	private JsonUtil() { }
 	
 	public static Object deserialize(String json, Class<?> clazz) throws IOException {
 		return MAPPER.readValue(json, clazz);
 	}
+
+	/**
+	 * Decodes the stream directly into the result type without first reading it into a String.  The stream is
+	 * read to the end and closed.
+	 *
+	 * @param json The stream containing the JSON document
+	 * @param clazz The type to decode into
+	 * @return The decoded object
+	 * @throws IOException if the stream couldn't be read or isn't valid JSON for the type
+	 */
+	public static <T> T deserialize(InputStream json, Class<T> clazz) throws IOException {
+		return getReader(clazz).readValue(json);
+	}
+
+	/**
+	 * Streaming parser over the stream, for responses too large to decode into an object
+	 *
+	 * @param json The stream containing the JSON document, closed with the parser
+	 * @return The parser, positioned before the first token
+	 * @throws IOException if the stream couldn't be read
+	 */
+	public static JsonParser createParser(InputStream json) throws IOException {
+		return MAPPER.getJsonFactory().createJsonParser(json);
+	}
+
+	private static ObjectReader getReader(Class<?> clazz) {
+		ObjectReader reader = READERS.get(clazz);
+		if(reader == null) {
+			reader = MAPPER.reader(clazz);
+			READERS.putIfAbsent(clazz, reader);
+		}
+		return reader;
+	}
 }
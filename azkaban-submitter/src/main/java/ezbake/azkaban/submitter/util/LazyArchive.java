@@ -0,0 +1,239 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * View of a tar.gz submission that doesn't extract it.  {@link #scan} reads the archive once to build the entry table
+ * and an {@link ArchiveIndex} with relative paths; entries are then read on demand, either written to disk with
+ * {@link #materialize} or read with {@link #openStream}.
+ * <pre>
+ * final LazyArchive archive = LazyArchive.scan(tarGz);
+ * final String sslDir = archive.getIndex().getSSLPath(securityId).get();
+ * archive.materialize(workDirectory, Arrays.asList(sslDir, archive.getIndex().getJarPath().get()));
+ * </pre>
+ * A gzip stream can't be entered in the middle, so every read decompresses the archive from the start, but only up to
+ * the last entry asked for and without writing anything else to disk.
+ */
+public class LazyArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyArchive.class);
+
+    /**
+     * One entry of the archive
+     */
+    public static class Entry {
+        private final String path;
+        private final boolean directory;
+        private final long size;
+        private final int ordinal;
+
+        Entry(String path, boolean directory, long size, int ordinal) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * @return The normalized relative path, without leading ./ or /
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return path + (directory ? "/" : " (" + size + " bytes)");
+        }
+    }
+
+    private final ByteBuffer tarGz;
+    private final ArchiveIndex index;
+    // By normalized path, in archive order
+    private final Map<String, Entry> entries;
+
+    private LazyArchive(ByteBuffer tarGz, ArchiveIndex index, Map<String, Entry> entries) {
+        this.tarGz = tarGz;
+        this.index = index;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the archive once to build its entry table, nothing is written to disk
+     *
+     * @param tarGz The tar.gz archive, kept by the view to read entries from
+     * @throws IOException if the archive isn't a valid tar.gz
+     */
+    public static LazyArchive scan(ByteBuffer tarGz) throws IOException {
+        final long start = System.nanoTime();
+        final ArchiveIndex index = new ArchiveIndex(null);
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        try(TarInputStream tar = open(tarGz)) {
+            TarEntry entry;
+            int ordinal = 0;
+            while((entry = tar.getNextEntry()) != null) {
+                final String path = ArchiveIndex.normalize(entry.getName());
+                index.record(entry.getName(), entry.isDirectory(), entry.getSize());
+                if(!path.isEmpty()) {
+                    entries.put(path, new Entry(path, entry.isDirectory(), entry.getSize(), ordinal));
+                }
+                ordinal++;
+            }
+        }
+        index.finish();
+        logger.debug("Scanned {} entries in {}ms", entries.size(), (System.nanoTime() - start) / 1000000);
+        return new LazyArchive(tarGz, index, entries);
+    }
+
+    /**
+     * @return Index of the archive, its paths are relative to the root of the archive
+     */
+    public ArchiveIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return Every entry, in archive order
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * @param path Relative path of the entry
+     * @return The entry, NULL if the archive doesn't have it
+     */
+    public Entry getEntry(String path) {
+        return entries.get(ArchiveIndex.normalize(path));
+    }
+
+    /**
+     * Opens a file of the archive.  The archive is decompressed up to the file, the stream ends with the file.
+     *
+     * @param path Relative path of the file
+     * @return The contents of the file, close it to release the decompressor
+     * @throws FileNotFoundException if the archive doesn't have the file
+     */
+    public InputStream openStream(String path) throws IOException {
+        final Entry entry = getEntry(path);
+        if(entry == null || entry.isDirectory()) {
+            throw new FileNotFoundException(path + " isn't a file of the archive");
+        }
+
+        final TarInputStream tar = open(tarGz);
+        try {
+            for(int ordinal = 0; ordinal <= entry.ordinal; ordinal++) {
+                if(tar.getNextEntry() == null) {
+                    throw new IOException("Archive ended before " + path);
+                }
+            }
+        } catch (IOException e) {
+            tar.close();
+            throw e;
+        }
+        return new FilterInputStream(tar) { };
+    }
+
+    /**
+     * Writes the given files and directories, with everything under the directories, into the folder.  Nothing past
+     * the last of them is decompressed.
+     *
+     * @param folder Where the entries are written, at their relative path
+     * @param paths Relative paths of files or directories of the archive
+     * @return The number of files written
+     * @throws FileNotFoundException if the archive doesn't have one of the paths
+     */
+    public int materialize(File folder, Collection<String> paths) throws IOException {
+        final List<String> selected = new ArrayList<>();
+        for(String path : paths) {
+            final String normalized = ArchiveIndex.normalize(path);
+            if(!entries.containsKey(normalized) && !index.isDirectory(normalized)) {
+                throw new FileNotFoundException(path + " isn't in the archive");
+            }
+            selected.add(normalized);
+        }
+
+        int last = -1;
+        for(Entry entry : entries.values()) {
+            if(isSelected(entry.path, selected)) {
+                last = entry.ordinal;
+            }
+        }
+
+        int files = 0;
+        try(TarInputStream tar = open(tarGz)) {
+            TarEntry tarEntry;
+            for(int ordinal = 0; ordinal <= last && (tarEntry = tar.getNextEntry()) != null; ordinal++) {
+                final String path = ArchiveIndex.normalize(tarEntry.getName());
+                if(path.isEmpty() || !isSelected(path, selected)) {
+                    continue;
+                }
+                final File file = new File(folder, path);
+                if(tarEntry.isDirectory()) {
+                    file.mkdirs();
+                } else {
+                    file.getParentFile().mkdirs();
+                    try(FileOutputStream out = new FileOutputStream(file)) {
+                        tar.copyEntryContents(out);
+                    }
+                    files++;
+                }
+            }
+        }
+        logger.debug("Materialized {} files of {} into {}", files, selected, folder);
+        return files;
+    }
+
+    private static boolean isSelected(String path, List<String> selected) {
+        for(String prefix : selected) {
+            if(path.equals(prefix) || (path.startsWith(prefix) && path.charAt(prefix.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TarInputStream open(ByteBuffer tarGz) throws IOException {
+        return new TarInputStream(new GZIPInputStream(FileUtil.newInputStream(tarGz)));
+    }
+}
@@ -0,0 +1,278 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extracts a tar stream with the decompression on the calling thread and the file writes on a pool of writer
+ * threads, so gunzip and disk writes overlap.  The caller fills buffers taken from a fixed pool and hands them to the
+ * writer of the entry; the writer gives each buffer back once it is written, so memory is bounded by the pool whatever
+ * the size of the entries.  The caller blocks when every buffer is waiting to be written.
+ * <p/>
+ * All chunks of an entry go to the same writer, in order.  A new entry goes to the writer with the fewest chunks
+ * queued, so small files aren't stuck behind a large jar.  An entry whose path was already extracted goes to the
+ * writer of the earlier copy, so it is overwritten in archive order and the last copy is kept like a sequential
+ * extraction does.
+ */
+class ParallelExtractor {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A piece of an entry for a writer, the first one of an entry has the file to create
+     */
+    private static class Chunk {
+        final File file;
+        final byte[] buffer;
+        final int length;
+        final boolean last;
+
+        Chunk(File file, byte[] buffer, int length, boolean last) {
+            this.file = file;
+            this.buffer = buffer;
+            this.length = length;
+            this.last = last;
+        }
+    }
+
+    private static final Chunk END = new Chunk(null, null, 0, true);
+
+    private final int writers;
+    private final int bufferSize;
+    private final int buffers;
+
+    /**
+     * @param writers Number of writer threads
+     * @param bufferSize Size of each buffer in bytes
+     * @param buffers Number of buffers, bounds the memory to buffers * bufferSize
+     */
+    ParallelExtractor(int writers, int bufferSize, int buffers) {
+        if(writers < 1 || bufferSize < 1 || buffers < 1) {
+            throw new IllegalArgumentException("Writers, buffer size and buffers must be at least 1, were " + writers +
+                    ", " + bufferSize + " and " + buffers);
+        }
+        this.writers = writers;
+        this.bufferSize = bufferSize;
+        this.buffers = buffers;
+    }
+
+    /**
+     * Extracts every entry of the tar stream into the output folder
+     *
+     * @param index Records the entries, may be NULL
+     */
+    ExtractionStats extract(File outputFolder, TarInputStream tar, ArchiveIndex index) throws IOException {
+        final long start = System.nanoTime();
+        final BlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(buffers);
+        for(int i = 0; i < buffers; i++) {
+            pool.add(new byte[bufferSize]);
+        }
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        final AtomicLong writeNanos = new AtomicLong();
+        final ExecutorService executor = Executors.newFixedThreadPool(writers, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("azkaban-unzip-writer-%d")
+                .build());
+        final List<BlockingQueue<Chunk>> queues = new ArrayList<>(writers);
+        for(int i = 0; i < writers; i++) {
+            queues.add(new LinkedBlockingQueue<Chunk>());
+            executor.execute(new Writer(queues.get(i), pool, failure, writeNanos));
+        }
+
+        long decompressNanos = 0;
+        long bufferWaitNanos = 0;
+        long bytes = 0;
+        int files = 0;
+        final Set<File> directories = new HashSet<>();
+        final Map<Path, BlockingQueue<Chunk>> writtenBy = new HashMap<>();
+        try {
+            long readStart = System.nanoTime();
+            TarEntry entry = tar.getNextEntry();
+            while(entry != null && failure.get() == null) {
+                final String fileName = entry.getName();
+                final File newFile = new File(outputFolder, fileName);
+                final File parent = entry.isDirectory() ? newFile : newFile.getParentFile();
+                // Created here, before any writer opens a file in them
+                if(directories.add(parent)) {
+                    parent.mkdirs();
+                }
+
+                if(!entry.isDirectory()) {
+                    final Path path = newFile.toPath().normalize();
+                    BlockingQueue<Chunk> queue = writtenBy.get(path);
+                    if(queue == null) {
+                        queue = shortest(queues);
+                        writtenBy.put(path, queue);
+                    }
+                    File file = newFile;
+                    boolean last = false;
+                    while(!last) {
+                        decompressNanos += System.nanoTime() - readStart;
+                        final long waitStart = System.nanoTime();
+                        final byte[] buffer = pool.take();
+                        readStart = System.nanoTime();
+                        bufferWaitNanos += readStart - waitStart;
+
+                        final int length = fill(tar, buffer);
+                        last = length < buffer.length;
+                        queue.add(new Chunk(file, buffer, length, last));
+                        file = null;
+                        bytes += length;
+                    }
+                    files++;
+                }
+                if(index != null) {
+                    index.record(fileName, entry.isDirectory(), entry.getSize());
+                }
+                entry = tar.getNextEntry();
+            }
+            decompressNanos += System.nanoTime() - readStart;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting", e);
+        } finally {
+            for(BlockingQueue<Chunk> queue : queues) {
+                queue.add(END);
+            }
+            executor.shutdown();
+            awaitWriters(executor);
+        }
+
+        if(failure.get() != null) {
+            throw failure.get();
+        }
+        return new ExtractionStats(bytes, files, System.nanoTime() - start, decompressNanos, writeNanos.get(),
+                bufferWaitNanos, writers);
+    }
+
+    /**
+     * Reads from the entry until the buffer is full or the entry ends
+     *
+     * @return The number of bytes read, less than the buffer only at the end of the entry
+     */
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while(length < buffer.length) {
+            final int read = in.read(buffer, length, buffer.length - length);
+            if(read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private static BlockingQueue<Chunk> shortest(List<BlockingQueue<Chunk>> queues) {
+        BlockingQueue<Chunk> shortest = queues.get(0);
+        for(int i = 1; i < queues.size(); i++) {
+            if(queues.get(i).size() < shortest.size()) {
+                shortest = queues.get(i);
+            }
+        }
+        return shortest;
+    }
+
+    private static void awaitWriters(ExecutorService executor) throws IOException {
+        try {
+            while(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Writers always finish their queue, a stuck disk is the only way to get here
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the writers", e);
+        }
+    }
+
+    /**
+     * Writes the chunks of its queue until the end marker.  After a failure it keeps giving the buffers back without
+     * writing, so the decompressing thread never waits for a buffer that won't come.
+     */
+    private static class Writer implements Runnable {
+        private final BlockingQueue<Chunk> queue;
+        private final BlockingQueue<byte[]> pool;
+        private final AtomicReference<IOException> failure;
+        private final AtomicLong writeNanos;
+
+        Writer(BlockingQueue<Chunk> queue, BlockingQueue<byte[]> pool, AtomicReference<IOException> failure,
+               AtomicLong writeNanos) {
+            this.queue = queue;
+            this.pool = pool;
+            this.failure = failure;
+            this.writeNanos = writeNanos;
+        }
+
+        @Override
+        public void run() {
+            FileOutputStream out = null;
+            try {
+                Chunk chunk;
+                while((chunk = queue.take()) != END) {
+                    final long start = System.nanoTime();
+                    try {
+                        if(failure.get() == null) {
+                            if(chunk.file != null) {
+                                out = new FileOutputStream(chunk.file);
+                            }
+                            out.write(chunk.buffer, 0, chunk.length);
+                            if(chunk.last) {
+                                out.close();
+                                out = null;
+                            }
+                        }
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pool.add(chunk.buffer);
+                        writeNanos.addAndGet(System.nanoTime() - start);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if(out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -31,6 +31,52 @@ public class UnzipUtil {
     private static final Logger log = LoggerFactory.getLogger(UnzipUtil.class);
 
     public static File unzip(File folder, ByteBuffer buf) throws IOException {
+        return unzip(folder, buf, 0);
+    }
+
+    /**
+     * Same as {@link #unzip(java.io.File, java.nio.ByteBuffer)}, with the files written by a pool of writer threads
+     * while the archive is decompressed
+     *
+     * @param writers Number of writer threads, 0 to write on the calling thread
+     */
+    public static File unzip(File folder, ByteBuffer buf, int writers) throws IOException {
+        File outputFolder = createOutputFolder(folder);
+        ExtractionStats stats = extract(outputFolder, buf, null, writers);
+        log.debug("Extracted {}", stats);
+        return outputFolder;
+    }
+
+    /**
+     * Extracts the archive like {@link #unzip(java.io.File, java.nio.ByteBuffer)} and records its layout while
+     * streaming, so the config, ssl and jar lookups don't have to walk the extracted files afterwards.
+     *
+     * @param folder The folder to create the timestamped output folder in
+     * @param buf The tar.gz archive
+     * @return Index of the extracted archive, {@link ArchiveIndex#getRoot()} is the output folder
+     * @throws IOException if the archive couldn't be extracted
+     */
+    public static ArchiveIndex unzipAndIndex(File folder, ByteBuffer buf) throws IOException {
+        return unzipAndIndex(folder, buf, 0);
+    }
+
+    /**
+     * Same as {@link #unzipAndIndex(java.io.File, java.nio.ByteBuffer)}, with the files written by a pool of writer
+     * threads while the archive is decompressed.  Large jars in lib/ then cost about the slower of gunzip and the disk
+     * instead of both.
+     *
+     * @param writers Number of writer threads, 0 to write on the calling thread
+     * @return Index of the extracted archive, with the {@link ArchiveIndex#getExtractionStats()} of the extraction
+     */
+    public static ArchiveIndex unzipAndIndex(File folder, ByteBuffer buf, int writers) throws IOException {
+        File outputFolder = createOutputFolder(folder);
+        ArchiveIndex index = new ArchiveIndex(outputFolder);
+        index.setExtractionStats(extract(outputFolder, buf, index, writers));
+        index.finish();
+        return index;
+    }
+
+    private static File createOutputFolder(File folder) throws IOException {
         File outputFolder = new File(folder, Long.toString(System.currentTimeMillis()));
         log.debug("Unzipping into " + outputFolder.getAbsoluteFile().getAbsolutePath());
 
@@ -42,8 +88,35 @@ public class UnzipUtil {
                 throw new IOException(String.format("Folder for submission could not be created at %s", outputFolder.getAbsoluteFile().getAbsolutePath()));
             }
         }
+        return outputFolder;
+    }
+
+    private static ExtractionStats extract(File outputFolder, ByteBuffer buf, ArchiveIndex index, int writers)
+            throws IOException {
+        if (writers < 0) {
+            throw new IllegalArgumentException("Writers must be at least 0, was " + writers);
+        }
+        TarInputStream tar = new TarInputStream(new GZIPInputStream(FileUtil.newInputStream(buf)));
+        try {
+            if (writers > 0) {
+                // Enough buffers to keep every writer busy while the next chunks are decompressed
+                return new ParallelExtractor(writers, ParallelExtractor.DEFAULT_BUFFER_SIZE, writers * 4)
+                        .extract(outputFolder, tar, index);
+            }
+            return extract(outputFolder, tar, index);
+        } finally {
+            tar.close();
+        }
+    }
 
-        TarInputStream tar = new TarInputStream(new GZIPInputStream(new ByteArrayInputStream(buf.array())));
+    private static ExtractionStats extract(File outputFolder, TarInputStream tar, ArchiveIndex index)
+            throws IOException {
+        final long start = System.nanoTime();
+        final byte[] buffer = new byte[ParallelExtractor.DEFAULT_BUFFER_SIZE];
+        long decompressNanos = 0;
+        long writeNanos = 0;
+        long bytes = 0;
+        int files = 0;
         TarEntry entry = tar.getNextEntry();
 
         while (entry != null) {
@@ -55,15 +128,27 @@ public class UnzipUtil {
             new File(newFile.getParent()).mkdirs();
 
             if (!entry.isDirectory()) {
-                FileOutputStream fos = new FileOutputStream(newFile);
-                tar.copyEntryContents(fos);
-                fos.close();
+                try (FileOutputStream fos = new FileOutputStream(newFile)) {
+                    long readStart = System.nanoTime();
+                    int read;
+                    while ((read = tar.read(buffer)) >= 0) {
+                        final long writeStart = System.nanoTime();
+                        decompressNanos += writeStart - readStart;
+                        fos.write(buffer, 0, read);
+                        readStart = System.nanoTime();
+                        writeNanos += readStart - writeStart;
+                        bytes += read;
+                    }
+                }
+                files++;
+            }
+            if (index != null) {
+                index.record(fileName, entry.isDirectory(), entry.getSize());
             }
             entry = tar.getNextEntry();
         }
 
-        tar.close();
-        return outputFolder;
+        return new ExtractionStats(bytes, files, System.nanoTime() - start, decompressNanos, writeNanos, 0, 0);
     }
 
     public static Optional<String> getConfDirectory(File unzipped) {
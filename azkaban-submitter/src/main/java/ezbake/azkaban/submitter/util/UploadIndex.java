@@ -0,0 +1,204 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import com.google.common.io.BaseEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Remembers the SHA-256 of the last archive uploaded to each project, so an archive that hasn't changed doesn't have
+ * to be uploaded again.  The index is a properties file with one line per project and Azkaban URL:
+ * <pre>
+ * ingest@https\://azkaban\:8443=&lt;sha256&gt;,&lt;projectId&gt;,&lt;version&gt;,&lt;upload name&gt;
+ * </pre>
+ * The upload name is the file name the zip was sent as, which Azkaban records in the UPLOADED event of the project
+ * log.  Lines written before it was recorded have no upload name and never match, costing one more upload.
+ * It's written to a temporary file that replaces the index, so a reader never sees half of it.  When several
+ * processes update the same index the last one wins, which at worst costs an upload.
+ */
+public class UploadIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadIndex.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The last upload to a project
+     */
+    public static class Entry {
+        private final String sha256;
+        private final String projectId;
+        private final String version;
+        private final String uploadName;
+
+        /**
+         * @param uploadName File name the zip was sent as, see
+         *                   {@link ezbake.azkaban.manager.UploadManager#getUploadName()}
+         */
+        public Entry(String sha256, String projectId, String version, String uploadName) {
+            this.sha256 = sha256;
+            this.projectId = projectId;
+            this.version = version;
+            this.uploadName = uploadName;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public String getProjectId() {
+            return projectId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return File name the zip was sent as, NULL if the entry predates upload names
+         */
+        public String getUploadName() {
+            return uploadName;
+        }
+    }
+
+    private final File file;
+    private final Properties entries = new Properties();
+
+    /**
+     * @param file The index, read if it exists and created on the first upload otherwise
+     */
+    public UploadIndex(File file) {
+        this.file = file;
+        if(file.isFile()) {
+            try(InputStream in = new FileInputStream(file)) {
+                entries.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("Could not read upload index {}, starting with an empty one", file, e);
+                entries.clear();
+            }
+        }
+    }
+
+    /**
+     * @return ~/.azkaban-submitter/uploads.properties
+     */
+    public static File getDefaultFile() {
+        return new File(new File(System.getProperty("user.home"), ".azkaban-submitter"), "uploads.properties");
+    }
+
+    /**
+     * @return The last upload to the project, NULL if there is none
+     */
+    public synchronized Entry get(String azkabanUrl, String projectName) {
+        final String value = entries.getProperty(key(azkabanUrl, projectName));
+        if(value == null) {
+            return null;
+        }
+        final String[] fields = value.split(",");
+        if(fields.length == 3) {
+            return new Entry(fields[0], fields[1], fields[2], null);
+        }
+        return fields.length == 4 ? new Entry(fields[0], fields[1], fields[2], fields[3]) : null;
+    }
+
+    /**
+     * Records an upload and saves the index
+     */
+    public synchronized void put(String azkabanUrl, String projectName, Entry entry) throws IOException {
+        entries.setProperty(key(azkabanUrl, projectName), entry.getSha256() + "," + entry.getProjectId() + "," +
+                entry.getVersion() + "," + entry.getUploadName());
+        save();
+    }
+
+    /**
+     * Forgets the last upload to the project and saves the index
+     */
+    public synchronized void remove(String azkabanUrl, String projectName) throws IOException {
+        if(entries.remove(key(azkabanUrl, projectName)) != null) {
+            save();
+        }
+    }
+
+    private void save() throws IOException {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        final File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try(OutputStream out = new FileOutputStream(temp)) {
+                entries.store(out, "Last archive uploaded to each Azkaban project");
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static String key(String azkabanUrl, String projectName) {
+        return projectName + "@" + azkabanUrl;
+    }
+
+    /**
+     * @return The hex SHA-256 of the remaining bytes of the buffer, its position isn't changed
+     */
+    public static String sha256(ByteBuffer archive) {
+        final MessageDigest digest = newDigest();
+        digest.update(archive.duplicate());
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    /**
+     * Hashes the file a buffer at a time, without reading all of it into memory
+     *
+     * @return The hex SHA-256 of the file
+     */
+    public static String sha256(File archive) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try(InputStream in = new FileInputStream(archive)) {
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.submitter.util;
+
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Converts a .tar.gz submission into an Azkaban zip while both are streamed, one entry at a time.  Nothing is
+ * written to disk and memory use doesn't depend on the size of the archive.  The zip has the same entries as
+ * extracting the archive and zipping the result with {@link FileUtil#zipDirectory}.
+ */
+public class ZipTranscoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ZipTranscoder() { }
+
+    /**
+     * @see #transcode(InputStream, OutputStream)
+     */
+    public static long transcode(ByteBuffer tarGz, OutputStream out) throws IOException {
+        return transcode(FileUtil.newInputStream(tarGz), out);
+    }
+
+    /**
+     * Writes the entries of the tar.gz to the stream as a zip.  The stream is flushed but left open.
+     * <p/>
+     * Problems with the archive, a corrupt gzip or tar, a duplicate entry or no .job files at all, are thrown as a
+     * {@link ZipException} so they can be told apart from failures of the stream written to.  The zip is incomplete
+     * when that happens.
+     *
+     * @param tarGz The .tar.gz archive
+     * @param out Where the zip is written
+     * @return The number of bytes of file content that were zipped
+     * @throws ZipException if the archive is invalid
+     * @throws IOException if the zip couldn't be written
+     */
+    public static long transcode(InputStream tarGz, OutputStream out) throws IOException {
+        final Gate gate = new Gate(out);
+        final TarInputStream tar = open(tarGz);
+        final ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(gate, BUFFER_SIZE));
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            final Set<String> directories = new HashSet<>();
+            long bytes = 0;
+            int jobs = 0;
+
+            TarEntry entry;
+            while((entry = nextEntry(tar)) != null) {
+                final String path = ArchiveIndex.normalize(entry.getName());
+                if(path.isEmpty()) {
+                    continue;
+                }
+
+                // Archives don't have to contain entries for the directories, add them like zipDirectory does
+                int slash = path.indexOf('/');
+                while(slash > 0) {
+                    addDirectory(zip, path.substring(0, slash), directories, entry);
+                    slash = path.indexOf('/', slash + 1);
+                }
+
+                if(entry.isDirectory()) {
+                    addDirectory(zip, path, directories, entry);
+                    continue;
+                }
+
+                final ZipEntry zipEntry = new ZipEntry(path);
+                zipEntry.setTime(entry.getModTime().getTime());
+                zip.putNextEntry(zipEntry);
+                int read;
+                while((read = read(tar, buffer)) >= 0) {
+                    zip.write(buffer, 0, read);
+                    bytes += read;
+                }
+                zip.closeEntry();
+                if(path.endsWith(".job")) {
+                    jobs++;
+                }
+            }
+
+            if(jobs == 0) {
+                throw new ZipException("The archive doesn't contain any .job files");
+            }
+            zip.finish();
+            zip.flush();
+            return bytes;
+        } catch(IOException | RuntimeException e) {
+            // Don't let closing the zip finish it, the receiver must not see a complete zip
+            gate.open = false;
+            throw e;
+        } finally {
+            zip.close();
+            tar.close();
+        }
+    }
+
+    private static void addDirectory(ZipOutputStream zip, String path, Set<String> directories, TarEntry entry)
+            throws IOException {
+        if(directories.add(path)) {
+            final ZipEntry zipEntry = new ZipEntry(path + "/");
+            zipEntry.setTime(entry.getModTime().getTime());
+            zip.putNextEntry(zipEntry);
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Passes writes through until it's shut, never closes the stream
+     */
+    private static class Gate extends FilterOutputStream {
+        private boolean open = true;
+
+        Gate(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if(open) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(open) {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if(open) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static TarInputStream open(InputStream tarGz) throws ZipException {
+        try {
+            return new TarInputStream(new GZIPInputStream(tarGz, BUFFER_SIZE));
+        } catch(IOException e) {
+            throw invalid(e);
+        }
+    }
+
+    private static TarEntry nextEntry(TarInputStream tar) throws ZipException {
+        try {
+            return tar.getNextEntry();
+        } catch(IOException e) {
+            throw invalid(e);
+        }
+    }
+
+    private static int read(TarInputStream tar, byte[] buffer) throws ZipException {
+        try {
+            return tar.read(buffer);
+        } catch(IOException e) {
+            throw invalid(e);
+        }
+    }
+
+    private static ZipException invalid(IOException e) {
+        if(e instanceof ZipException) {
+            return (ZipException) e;
+        }
+        final ZipException invalid = new ZipException("Invalid .tar.gz archive: " + e.getMessage());
+        invalid.initCause(e);
+        return invalid;
+    }
+}
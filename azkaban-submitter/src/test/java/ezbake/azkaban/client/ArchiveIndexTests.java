@@ -0,0 +1,241 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.submitter.util.ArchiveIndex;
+import ezbake.azkaban.submitter.util.ExtractionStats;
+import ezbake.azkaban.submitter.util.LazyArchive;
+import ezbake.azkaban.submitter.util.UnzipUtil;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+public class ArchiveIndexTests {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("archive-index").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testLookupsMatchDirectoryWalk() throws Exception {
+        final ByteBuffer archive = tarGz(
+                "pipeline/lib/pipeline-1.0.jar",
+                "pipeline/lib/README",
+                "pipeline/config/app.properties",
+                "pipeline/config/ssl/secId/application.crt",
+                "pipeline/jobs/ingest.job",
+                "pipeline/jobs/nested/lib/other.jar",
+                "pipeline/jobs/report.job");
+
+        final ArchiveIndex index = UnzipUtil.unzipAndIndex(folder, archive);
+        final File root = index.getRoot();
+
+        Assert.assertEquals(UnzipUtil.getConfDirectory(root), index.getConfDirectory());
+        Assert.assertEquals(UnzipUtil.getSSLPath(new File(index.getConfDirectory().get())), index.getSSLPath());
+        Assert.assertEquals(index.getSSLPath(), index.getSSLPath("secId"));
+        Assert.assertEquals(UnzipUtil.getJarPath(root), index.getJarPath());
+
+        Assert.assertEquals(Arrays.asList("pipeline/jobs/ingest.job", "pipeline/jobs/report.job"), index.getJobFiles());
+        Assert.assertEquals(Arrays.asList("pipeline/lib/pipeline-1.0.jar"), index.getJars());
+        Assert.assertEquals(7, index.getFileCount());
+        Assert.assertEquals("pipeline/lib/README".length(), index.getSize("pipeline/lib/README"));
+        Assert.assertEquals(-1, index.getSize("pipeline/missing"));
+    }
+
+    @Test
+    public void testMissingDirectories() throws Exception {
+        final ArchiveIndex index = UnzipUtil.unzipAndIndex(folder, tarGz("flow.job"));
+
+        Assert.assertFalse(index.getConfDirectory().isPresent());
+        Assert.assertFalse(index.getSSLPath().isPresent());
+        Assert.assertFalse(index.getJarPath().isPresent());
+        Assert.assertEquals(1, index.getJobFiles().size());
+    }
+
+    @Test
+    public void testParallelExtractionWritesTheSameFiles() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Random random = new Random(7);
+        final int[] sizes = {0, 1, 64 * 1024, 64 * 1024 + 1, 3 * 1024 * 1024, 100};
+        try (TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(bytes))) {
+            for (int i = 0; i < sizes.length; i++) {
+                final byte[] contents = new byte[sizes[i]];
+                random.nextBytes(contents);
+                final TarEntry entry = new TarEntry("pipeline/lib/file" + i + ".jar");
+                entry.setSize(contents.length);
+                tar.putNextEntry(entry);
+                tar.write(contents);
+                tar.closeEntry();
+            }
+        }
+        final ByteBuffer archive = ByteBuffer.wrap(bytes.toByteArray());
+
+        final ArchiveIndex sequential = UnzipUtil.unzipAndIndex(folder, archive, 0);
+        Thread.sleep(2);
+        final ArchiveIndex parallel = UnzipUtil.unzipAndIndex(folder, archive, 3);
+
+        Assert.assertEquals(sequential.getFileSizes(), parallel.getFileSizes());
+        for (String path : sequential.getFileSizes().keySet()) {
+            Assert.assertTrue(path, FileUtils.contentEquals(new File(sequential.getRoot(), path),
+                    new File(parallel.getRoot(), path)));
+        }
+        final ExtractionStats stats = parallel.getExtractionStats();
+        Assert.assertEquals(sizes.length, stats.getFiles());
+        Assert.assertEquals(sequential.getTotalBytes(), stats.getBytes());
+        Assert.assertEquals(sequential.getExtractionStats().getBytes(), stats.getBytes());
+        Assert.assertEquals(3, stats.getWriters());
+        Assert.assertEquals(0, sequential.getExtractionStats().getWriters());
+    }
+
+    @Test
+    public void testParallelExtractionKeepsTheLastCopy() throws Exception {
+        final byte[] first = new byte[3 * 1024 * 1024];
+        new Random(7).nextBytes(first);
+        final byte[] last = "last".getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(bytes))) {
+            // A large first copy, its writer can still be busy with it when the last copy is read
+            for (byte[] contents : Arrays.asList(first, new byte[0], last)) {
+                final TarEntry entry = new TarEntry(contents.length == 0 ? "pipeline/flow.job" : "pipeline/lib/a.jar");
+                entry.setSize(contents.length);
+                tar.putNextEntry(entry);
+                tar.write(contents);
+                tar.closeEntry();
+            }
+        }
+        final ByteBuffer archive = ByteBuffer.wrap(bytes.toByteArray());
+
+        final ArchiveIndex sequential = UnzipUtil.unzipAndIndex(folder, archive, 0);
+        Thread.sleep(2);
+        final ArchiveIndex parallel = UnzipUtil.unzipAndIndex(folder, archive, 3);
+
+        Assert.assertArrayEquals(last, FileUtils.readFileToByteArray(
+                new File(sequential.getRoot(), "pipeline/lib/a.jar")));
+        Assert.assertArrayEquals(last, FileUtils.readFileToByteArray(
+                new File(parallel.getRoot(), "pipeline/lib/a.jar")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testParallelExtractionFailure() throws Exception {
+        // Whichever comes first, the file or the directory of the same name, the other one can't be written
+        UnzipUtil.unzipAndIndex(folder, tarGz("pipeline/flow.job", "pipeline/lib", "pipeline/lib/a.jar"), 2);
+    }
+
+    @Test
+    public void testLazyArchiveMaterializesOnlySelectedEntries() throws Exception {
+        final LazyArchive archive = LazyArchive.scan(tarGz(
+                "./pipeline/lib/pipeline-1.0.jar",
+                "./pipeline/lib/other.jar",
+                "./pipeline/config/app.properties",
+                "./pipeline/config/ssl/secId/application.crt",
+                "./pipeline/config/ssl/other/application.crt",
+                "./pipeline/jobs/ingest.job"));
+        final ArchiveIndex index = archive.getIndex();
+
+        Assert.assertNull(index.getRoot());
+        Assert.assertEquals("pipeline/config/ssl/secId", index.getSSLPath("secId").get());
+        Assert.assertEquals("pipeline/lib/pipeline-1.0.jar", index.getJarPath().get());
+        Assert.assertEquals(6, archive.getEntries().size());
+        Assert.assertEquals("./pipeline/jobs/ingest.job".length(), archive.getEntry("pipeline/jobs/ingest.job").getSize());
+        Assert.assertNull(archive.getEntry("pipeline/missing"));
+
+        final int files = archive.materialize(folder, Arrays.asList(index.getSSLPath("secId").get(),
+                index.getJarPath().get(), "pipeline/config/app.properties"));
+
+        Assert.assertEquals(3, files);
+        Assert.assertEquals("./pipeline/config/ssl/secId/application.crt", FileUtils.readFileToString(
+                new File(folder, "pipeline/config/ssl/secId/application.crt"), StandardCharsets.UTF_8));
+        Assert.assertTrue(new File(folder, "pipeline/lib/pipeline-1.0.jar").isFile());
+        Assert.assertTrue(new File(folder, "pipeline/config/app.properties").isFile());
+        Assert.assertFalse(new File(folder, "pipeline/lib/other.jar").exists());
+        Assert.assertFalse(new File(folder, "pipeline/config/ssl/other").exists());
+        Assert.assertFalse(new File(folder, "pipeline/jobs").exists());
+    }
+
+    @Test
+    public void testLazyArchiveStreams() throws Exception {
+        final LazyArchive archive = LazyArchive.scan(tarGz("pipeline/flow.job", "pipeline/config/app.properties",
+                "pipeline/lib/pipeline-1.0.jar"));
+
+        for (LazyArchive.Entry entry : archive.getEntries()) {
+            try (InputStream in = archive.openStream(entry.getPath())) {
+                Assert.assertEquals(entry.getPath(), IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testLazyArchiveMissingEntries() throws Exception {
+        final LazyArchive archive = LazyArchive.scan(tarGz("pipeline/flow.job"));
+        try {
+            archive.openStream("pipeline");
+            Assert.fail("Directories can't be opened");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+        try {
+            archive.materialize(folder, Collections.singletonList("pipeline/lib"));
+            Assert.fail("Missing paths can't be materialized");
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+        Assert.assertEquals(1, archive.materialize(folder, Collections.singletonList("pipeline")));
+    }
+
+    /**
+     * Builds a tar.gz where every file contains its own name
+     */
+    private static ByteBuffer tarGz(String... names) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(bytes))) {
+            tar.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+            for (String name : names) {
+                final byte[] contents = name.getBytes(StandardCharsets.UTF_8);
+                final TarEntry entry = new TarEntry(name);
+                entry.setSize(contents.length);
+                tar.putNextEntry(entry);
+                tar.write(contents);
+                tar.closeEntry();
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
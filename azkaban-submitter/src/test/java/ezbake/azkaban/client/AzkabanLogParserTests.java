@@ -0,0 +1,138 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.submitter.util.AzkabanLogParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class AzkabanLogParserTests {
+
+    private static final Pattern GROK = Pattern.compile(AzkabanLogParser.GROK_PATTERN);
+
+    private static final List<String> LINES = Arrays.asList(
+            "2014/10/15 12:34:56.789 -0400 INFO [FlowRunner] [Azkaban] Running execid:12 flow:nightly",
+            "2014-1-5 7:04:05 Z ERROR [JobRunner] [Azkaban] ",
+            "14/10/15 23:59:60,1 +05:30 Warning [Emailer] [Azkaban] Sent [Azkaban] mail",
+            "2014/10/15 12:34:56 +530 debug [ExecutorManager] [Azkaban] one digit zone hour",
+            "2014/10/15 12:34:56 +123 crit [A_1] [Azkaban] x",
+            "2014/10/15 12:34 -0400 INFO [FlowRunner] [Azkaban] no seconds",
+            "2014/10/15 24:34:56 -0400 INFO [FlowRunner] [Azkaban] hour out of range",
+            "2014/13/15 12:34:56 -0400 INFO [FlowRunner] [Azkaban] month out of range",
+            "2014/10/15 12:34:56 -0400 aLERT [FlowRunner] [Azkaban] mixed case level",
+            "2014/10/15 12:34:56 -0400 INFO [azkaban.execapp.FlowRunner] [Azkaban] dotted class",
+            "2014/10/15 12:34:56 -0400 INFO [FlowRunner] [Other] not Azkaban",
+            "\tat azkaban.execapp.FlowRunner.run(FlowRunner.java:123)",
+            "");
+
+    @Test
+    public void testFieldsOfMatchingLine() {
+        final AzkabanLogParser.Event event = AzkabanLogParser.parse(LINES.get(0));
+        Assert.assertTrue(event.isMatched());
+        Assert.assertEquals("2014/10/15 12:34:56.789 -0400", event.getDateTime());
+        Assert.assertEquals("INFO", event.getLevel());
+        Assert.assertEquals("FlowRunner", event.getJavaClass());
+        Assert.assertEquals("Running execid:12 flow:nightly", event.getMessage());
+
+        Assert.assertFalse(AzkabanLogParser.parse(LINES.get(LINES.size() - 2)).isMatched());
+        Assert.assertNull(AzkabanLogParser.parse(LINES.get(LINES.size() - 2)).getMessage());
+    }
+
+    @Test
+    public void testSameAsRegex() {
+        for(String line : LINES) {
+            assertSameAsRegex(line);
+        }
+    }
+
+    @Test
+    public void testSameAsRegexOnMutatedLines() {
+        final Random random = new Random(42);
+        final String alphabet = "0123456789:/-., +Z[]_aINFOWRrnieg";
+        for(String line : LINES.subList(0, 5)) {
+            for(int i = 0; i < 20000; i++) {
+                final char[] mutated = line.toCharArray();
+                for(int changes = 1 + random.nextInt(3); changes > 0; changes--) {
+                    // The header, the message is matched by .* either way
+                    mutated[random.nextInt(Math.min(mutated.length, 50))] =
+                            alphabet.charAt(random.nextInt(alphabet.length()));
+                }
+                assertSameAsRegex(new String(mutated));
+            }
+        }
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        final StringBuilder log = new StringBuilder();
+        for(String line : LINES) {
+            log.append(line).append("\r\n");
+        }
+        log.append(LINES.get(0));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(LINES.size() + 1, AzkabanLogParser.toJsonLines(new StringReader(log.toString()), out));
+
+        final String[] json = out.toString("UTF-8").split("\n");
+        Assert.assertEquals(LINES.size() + 1, json.length);
+        final ObjectMapper mapper = new ObjectMapper();
+        final Map<?, ?> first = mapper.readValue(json[0], Map.class);
+        Assert.assertEquals(LINES.get(0), first.get("message"));
+        Assert.assertEquals("INFO", first.get("LOGLEVEL"));
+        Assert.assertEquals("FlowRunner", first.get("JAVACLASS"));
+        Assert.assertEquals("Running execid:12 flow:nightly", first.get("MESSAGE"));
+        Assert.assertEquals("2014/10/15 12:34:56.789 -0400", first.get("DATETIME"));
+
+        final Map<?, ?> trace = mapper.readValue(json[LINES.size() - 2], Map.class);
+        Assert.assertEquals(LINES.get(LINES.size() - 2), trace.get("message"));
+        Assert.assertEquals(Arrays.asList("_grokparsefailure"), trace.get("tags"));
+        Assert.assertEquals(first, mapper.readValue(json[LINES.size()], Map.class));
+    }
+
+    @Test
+    public void testLinesLongerThanTheBuffer() throws Exception {
+        final StringBuilder message = new StringBuilder();
+        while(message.length() < 200 * 1024) {
+            message.append("0123456789");
+        }
+        final String line = "2014/10/15 12:34:56 Z INFO [FlowRunner] [Azkaban] " + message;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(2, AzkabanLogParser.toJsonLines(new StringReader(line + "\n" + line + "\n"), out));
+        final Map<?, ?> event = new ObjectMapper().readValue(out.toString("UTF-8").split("\n")[1], Map.class);
+        Assert.assertEquals(message.toString(), event.get("MESSAGE"));
+    }
+
+    private static void assertSameAsRegex(String line) {
+        final Matcher matcher = GROK.matcher(line);
+        final AzkabanLogParser.Event event = AzkabanLogParser.parse(line);
+        final boolean matched = matcher.find();
+        Assert.assertEquals(line, matched, event.isMatched());
+        if(matched) {
+            Assert.assertEquals(line, matcher.group(1), event.getDateTime());
+            Assert.assertEquals(line, matcher.group(2), event.getLevel());
+            Assert.assertEquals(line, matcher.group(3), event.getJavaClass());
+            Assert.assertEquals(line, matcher.group(4), event.getMessage());
+        }
+    }
+}
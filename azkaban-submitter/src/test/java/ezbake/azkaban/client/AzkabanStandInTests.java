@@ -0,0 +1,157 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.RemoveScheduleResult;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the managers against an {@link AzkabanStandIn}
+ */
+public class AzkabanStandInTests {
+
+    private AzkabanStandIn azkaban;
+    private URI uri;
+    private AzkabanSession session;
+    private File zip;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.addUser("azkaban", "secret");
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "secret"));
+
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("pipeline/extract.job", StandInArchives.commandJob("extract"));
+        entries.put("pipeline/load.job", StandInArchives.commandJob("load", "extract"));
+        zip = StandInArchives.tempZip(entries);
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+        Assert.assertTrue(zip.delete());
+    }
+
+    @Test
+    public void testProjectLifecycle() throws Exception {
+        final ProjectManager projectManager = new ProjectManager(session, uri);
+        Assert.assertFalse(projectManager.createProject("pipeline", "Test pipeline").hasError());
+        Assert.assertTrue(projectManager.createProject("pipeline", "Again").hasError());
+
+        final UploaderResult uploaded = new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip)
+                .uploadZip();
+        Assert.assertFalse(uploaded.getError(), uploaded.hasError());
+        Assert.assertEquals("1", uploaded.getVersion());
+
+        final ProjectFlowsResult flows = projectManager.fetchProjectFlows("pipeline");
+        Assert.assertEquals(1, flows.getFlows().size());
+        Assert.assertEquals("load", flows.getFlows().get(0).getFlowId());
+
+        final ExecutionManager executionManager = new ExecutionManager(session, uri);
+        final ExecutionResult execution = executionManager.executeFlow("pipeline", "load");
+        Assert.assertFalse(execution.getError(), execution.hasError());
+        Assert.assertEquals(Arrays.asList(execution.getExecId()),
+                executionManager.getRunningExecutions("pipeline", "load").getExecIds());
+        Assert.assertEquals("", executionManager.cancelFlow(execution.getExecId()));
+        Assert.assertEquals("Flow isn't running", executionManager.cancelFlow(execution.getExecId()));
+
+        final ScheduleManager scheduleManager = new ScheduleManager(session, uri);
+        scheduleManager.setScheduleDate("08/26/2014");
+        scheduleManager.setPeriod("1d");
+        final SchedulerResult scheduled = scheduleManager.scheduleFlow("pipeline", "load", uploaded.getProjectId());
+        Assert.assertFalse(scheduled.getError(), scheduled.hasError());
+
+        final RemoveScheduleResult removed = scheduleManager.removeSchedule(uploaded.getProjectId(), "load");
+        Assert.assertEquals("success", removed.getResult());
+        Assert.assertEquals("unknown", scheduleManager.removeSchedule(uploaded.getProjectId(), "load").getResult());
+
+        projectManager.removeProject("pipeline");
+        Assert.assertTrue(projectManager.fetchProjectFlows("pipeline").hasError());
+    }
+
+    @Test
+    public void testExpiredSessionIsRenewed() throws Exception {
+        final ProjectManager projectManager = new ProjectManager(session, uri);
+        projectManager.createProject("pipeline", "Test pipeline");
+        final String expired = session.getId();
+
+        azkaban.expireSessions();
+        Assert.assertEquals("pipeline", projectManager.fetchProjectFlows("pipeline").getProject());
+        Assert.assertNotEquals(expired, session.getId());
+    }
+
+    @Test
+    public void testRemoveScheduleRenewsExpiredSession() throws Exception {
+        new ProjectManager(session, uri).createProject("pipeline", "Test pipeline");
+        final UploaderResult uploaded = new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip)
+                .uploadZip();
+        final ScheduleManager scheduleManager = new ScheduleManager(session, uri);
+        scheduleManager.setScheduleDate("08/26/2014");
+        scheduleManager.setPeriod("1d");
+        Assert.assertFalse(scheduleManager.scheduleFlow("pipeline", "load", uploaded.getProjectId()).hasError());
+        final String expired = session.getId();
+
+        azkaban.expireSessions();
+        final RemoveScheduleResult removed = scheduleManager.removeSchedule(uploaded.getProjectId(), "load");
+        Assert.assertFalse(removed.getError(), removed.hasError());
+        Assert.assertEquals("success", removed.getResult());
+        Assert.assertNotEquals(expired, session.getId());
+        Assert.assertNull(scheduleManager.fetchSchedule(uploaded.getProjectId(), "load").getSchedule());
+    }
+
+    @Test
+    public void testExecutionsFinish() throws Exception {
+        azkaban.setExecutionDuration(0, TimeUnit.MILLISECONDS);
+        new ProjectManager(session, uri).createProject("pipeline", "Test pipeline");
+        new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip();
+
+        final ExecutionManager executionManager = new ExecutionManager(session, uri);
+        executionManager.executeFlow("pipeline", "load");
+        Assert.assertNull(executionManager.getRunningExecutions("pipeline", "load").getExecIds());
+    }
+
+    @Test
+    public void testWrongPassword() throws Exception {
+        Assert.assertTrue(new AuthenticationManager(uri, "azkaban", "wrong").login().hasError());
+    }
+}
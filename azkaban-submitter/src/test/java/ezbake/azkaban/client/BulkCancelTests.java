@@ -0,0 +1,115 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.CancelFlowsResult;
+import ezbake.azkaban.manager.result.CancelResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkCancelTests {
+
+    private AzkabanStandIn azkaban;
+    private ExecutionManager executionManager;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        final URI uri = new URI(azkaban.getUrl());
+        final AzkabanSession session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+
+        final File zip = StandInArchives.tempZip("flow");
+        new ProjectManager(session, uri).createProject("pipeline", "Test pipeline");
+        new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip();
+        Assert.assertTrue(zip.delete());
+
+        executionManager = new ExecutionManager(session, uri);
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testOutcomePerExecution() throws Exception {
+        final List<String> ids = execute(20);
+        final String cancelledEarlier = ids.get(0);
+        Assert.assertEquals("", executionManager.cancelFlow(cancelledEarlier));
+        ids.add("99999");
+
+        final CancelFlowsResult result = executionManager.cancelFlows(ids, 4);
+
+        Assert.assertEquals(ids.size(), result.getResults().size());
+        for(int i = 0; i < ids.size(); i++) {
+            Assert.assertEquals(ids.get(i), result.getResults().get(i).getExecId());
+        }
+        Assert.assertEquals(19, result.count(CancelResult.Outcome.CANCELLED));
+        Assert.assertEquals(2, result.count(CancelResult.Outcome.NOT_RUNNING));
+        Assert.assertFalse(result.hasError());
+        Assert.assertEquals(CancelResult.Outcome.NOT_RUNNING, result.getResults().get(0).getOutcome());
+        Assert.assertNotNull(result.getResults().get(0).getMessage());
+        Assert.assertNull(executionManager.getRunningExecutions("pipeline", "flow").getExecIds());
+    }
+
+    @Test
+    public void testSelectorAfterSessionExpired() throws Exception {
+        execute(10);
+        azkaban.expireSessions();
+
+        final CancelFlowsResult result = executionManager.cancelFlows("pipeline", "flow", 3);
+
+        Assert.assertEquals(10, result.count(CancelResult.Outcome.CANCELLED));
+        Assert.assertNull(executionManager.getRunningExecutions("pipeline", "flow").getExecIds());
+        Assert.assertEquals(0, executionManager.cancelFlows("pipeline", "flow", 3).getResults().size());
+    }
+
+    @Test
+    public void testUnreachableAzkabanFails() throws Exception {
+        final List<String> ids = execute(3);
+        azkaban.stop();
+
+        final CancelFlowsResult result = executionManager.cancelFlows(ids, 2);
+
+        Assert.assertEquals(3, result.count(CancelResult.Outcome.FAILED));
+        Assert.assertTrue(result.hasError());
+    }
+
+    private List<String> execute(int executions) {
+        final List<String> ids = new ArrayList<>();
+        for(int i = 0; i < executions; i++) {
+            ids.add(executionManager.executeFlow("pipeline", "flow").getExecId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,244 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import ezbake.azkaban.submitter.BulkSubmitter;
+import ezbake.azkaban.submitter.SubmissionResult;
+import org.apache.commons.io.FileUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class BulkSubmitterTests {
+
+    private AzkabanStandIn azkaban;
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        folder = Files.createTempDirectory("bulk-submitter").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        azkaban.stop();
+        FileUtils.deleteDirectory(folder);
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testParseSkipsBlankAndCommentLines() {
+        Assert.assertNull(BulkSubmitter.Entry.parse(1, ""));
+        Assert.assertNull(BulkSubmitter.Entry.parse(2, "   \t"));
+        Assert.assertNull(BulkSubmitter.Entry.parse(3, "# archive project"));
+        Assert.assertNull(BulkSubmitter.Entry.parse(4, "  # indented comment"));
+    }
+
+    @Test
+    public void testParseArchiveAndProject() {
+        final BulkSubmitter.Entry entry = BulkSubmitter.Entry.parse(7, "  /builds/ingest.zip \t ingest ");
+        Assert.assertEquals(7, entry.getLine());
+        Assert.assertEquals(new File("/builds/ingest.zip"), entry.getArchive());
+        Assert.assertEquals("ingest", entry.getProjectName());
+        Assert.assertNull(entry.getFlow());
+        Assert.assertFalse(entry.isExecute());
+        Assert.assertNull(entry.getScheduleTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWithoutProject() {
+        BulkSubmitter.Entry.parse(1, "/builds/ingest.zip");
+    }
+
+    @Test
+    public void testParseExecute() {
+        final BulkSubmitter.Entry entry = BulkSubmitter.Entry.parse(1, "/builds/report.tgz report report execute");
+        Assert.assertEquals("report", entry.getFlow());
+        Assert.assertTrue(entry.isExecute());
+        Assert.assertNull(entry.getScheduleTime());
+        Assert.assertNull(entry.getPeriod());
+        Assert.assertNull(entry.getScheduleDate());
+    }
+
+    @Test
+    public void testParseSchedule() {
+        BulkSubmitter.Entry entry = BulkSubmitter.Entry.parse(1, "/builds/nightly.tgz nightly nightly 2,00,am,UTC");
+        Assert.assertFalse(entry.isExecute());
+        Assert.assertEquals("2,00,am,UTC", entry.getScheduleTime());
+        Assert.assertNull(entry.getPeriod());
+        Assert.assertNull(entry.getScheduleDate());
+
+        entry = BulkSubmitter.Entry.parse(1, "/builds/nightly.tgz nightly nightly 2,00,am,UTC 1d 08/26/2014");
+        Assert.assertEquals("2,00,am,UTC", entry.getScheduleTime());
+        Assert.assertEquals("1d", entry.getPeriod());
+        Assert.assertEquals("08/26/2014", entry.getScheduleDate());
+    }
+
+    @Test
+    public void testReadManifest() throws IOException {
+        final File manifest = manifest(
+                "# archive project [flow [execute | time [period [date]]]]",
+                "/builds/ingest.zip ingest",
+                "",
+                "/builds/report.tgz report report execute");
+
+        final List<BulkSubmitter.Entry> entries = BulkSubmitter.readManifest(manifest);
+
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("ingest", entries.get(0).getProjectName());
+        Assert.assertEquals(2, entries.get(0).getLine());
+        Assert.assertEquals("report", entries.get(1).getProjectName());
+        Assert.assertEquals(4, entries.get(1).getLine());
+    }
+
+    @Test
+    public void testReadManifestReportsTheInvalidLine() throws IOException {
+        try {
+            BulkSubmitter.readManifest(manifest("/builds/ingest.zip ingest", "/builds/report.tgz"));
+            Assert.fail("A line without a project was accepted");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2:"));
+        }
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        final BulkSubmitter.Summary summary = new BulkSubmitter.Summary();
+        Assert.assertEquals(0, summary.getLatencyMillis(50));
+
+        summary.add(result(42));
+        Assert.assertEquals(42, summary.getLatencyMillis(0));
+        Assert.assertEquals(42, summary.getLatencyMillis(50));
+        Assert.assertEquals(42, summary.getLatencyMillis(100));
+
+        // Added out of order, ranked by latency
+        for(long latency : new long[] {10, 1, 9, 2, 8, 3, 7, 4, 6, 5}) {
+            summary.add(result(latency));
+        }
+        // 1..10 and 42, nearest rank
+        Assert.assertEquals(1, summary.getLatencyMillis(0));
+        Assert.assertEquals(6, summary.getLatencyMillis(50));
+        Assert.assertEquals(10, summary.getLatencyMillis(90));
+        Assert.assertEquals(42, summary.getLatencyMillis(99));
+        Assert.assertEquals(42, summary.getLatencyMillis(100));
+        Assert.assertEquals(42, summary.getLatencyMillis(150));
+    }
+
+    @Test
+    public void testSubmitManifest() throws Exception {
+        final File ingest = zip("ingest.zip", "ingest");
+        final File report = tarGz("report.tgz", "report");
+        final File nightly = tarGz("nightly.tgz", "nightly");
+        final File manifest = manifest(
+                "# A small run",
+                ingest + " ingest",
+                report + " report report execute",
+                nightly + " nightly nightly 2,00,am,UTC 1d 08/26/2014",
+                new File(folder, "missing.zip") + " missing");
+        final BulkSubmitter submitter = new BulkSubmitter(azkaban.getUrl(), "azkaban", "azkaban", 2);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final BulkSubmitter.Summary summary = submitter.submit(BulkSubmitter.readManifest(manifest),
+                new PrintStream(out, true, "UTF-8"));
+
+        Assert.assertEquals(3, summary.getSuccesses());
+        Assert.assertEquals(1, summary.getFailures());
+        Assert.assertTrue(summary.getBytesUploaded() > 0);
+        final String printed = out.toString("UTF-8");
+        Assert.assertTrue(printed, printed.contains("OK ingest line 2: version 1"));
+        Assert.assertTrue(printed, printed.contains("OK report line 3: version 1, execution #"));
+        Assert.assertTrue(printed, printed.contains("OK nightly line 4: version 1, scheduled"));
+        Assert.assertTrue(printed, printed.contains("FAILED missing line 5: Could not read"));
+        Assert.assertTrue(printed, printed.contains("3 succeeded, 1 failed"));
+
+        final URI uri = new URI(azkaban.getUrl());
+        final AzkabanSession session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+        Assert.assertEquals(1, new ExecutionManager(session, uri).getRunningExecutions("report", "report")
+                .getExecIds().size());
+        final String nightlyId = new ProjectManager(session, uri).resolveProject("nightly").getProjectId();
+        Assert.assertNotNull(new ScheduleManager(session, uri).fetchSchedule(nightlyId, "nightly").getSchedule());
+        Assert.assertTrue(ingest.exists() && report.exists() && nightly.exists());
+    }
+
+    @Test
+    public void testSubmitManifestWithoutStreaming() throws Exception {
+        final File manifest = manifest(tarGz("report.tgz", "report") + " report");
+        final BulkSubmitter submitter = new BulkSubmitter(azkaban.getUrl(), "azkaban", "azkaban", 1);
+        submitter.setStreamArchives(false);
+
+        final BulkSubmitter.Summary summary = submitter.submit(BulkSubmitter.readManifest(manifest),
+                new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"));
+
+        Assert.assertEquals(1, summary.getSuccesses());
+        Assert.assertEquals(0, summary.getFailures());
+    }
+
+    private File manifest(String... lines) throws IOException {
+        final File manifest = new File(folder, "manifest.txt");
+        FileUtils.writeLines(manifest, "UTF-8", Arrays.asList(lines));
+        return manifest;
+    }
+
+    private File zip(String name, String flow) throws IOException {
+        final File zip = new File(folder, name);
+        FileUtils.writeByteArrayToFile(zip, StandInArchives.zip(StandInArchives.flows(flow)));
+        return zip;
+    }
+
+    private File tarGz(String name, String flow) throws IOException {
+        final File tarGz = new File(folder, name);
+        try (TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(new FileOutputStream(tarGz)))) {
+            final byte[] contents = StandInArchives.commandJob(flow);
+            final TarEntry entry = new TarEntry(flow + "/" + flow + ".job");
+            entry.setSize(contents.length);
+            tar.putNextEntry(entry);
+            tar.write(contents);
+            tar.closeEntry();
+        }
+        return tarGz;
+    }
+
+    private static SubmissionResult result(long elapsedMillis) {
+        final SubmissionResult result = new SubmissionResult();
+        result.setElapsedMillis(elapsedMillis);
+        return result;
+    }
+}
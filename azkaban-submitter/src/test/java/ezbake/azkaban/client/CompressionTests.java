@@ -0,0 +1,92 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+public class CompressionTests {
+
+    private static final int FLOWS = 500;
+
+    private AzkabanStandIn azkaban;
+    private ProjectManager projectManager;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        final URI uri = new URI(azkaban.getUrl());
+        final AzkabanSession session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+
+        final String[] flows = new String[FLOWS];
+        for(int i = 0; i < FLOWS; i++) {
+            flows[i] = "ingest-flow-" + i;
+        }
+        final File zip = StandInArchives.tempZip(flows);
+        projectManager = new ProjectManager(session, uri);
+        projectManager.createProject("pipeline", "Test pipeline");
+        new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip();
+        Assert.assertTrue(zip.delete());
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testUncompressedByDefault() throws Exception {
+        final long compressed = AzkabanMetrics.getCompressedBytes("fetchprojectflows", false).getCount();
+        Assert.assertEquals(FLOWS, projectManager.fetchProjectFlows("pipeline").getFlows().size());
+        Assert.assertEquals(compressed, AzkabanMetrics.getCompressedBytes("fetchprojectflows", false).getCount());
+    }
+
+    @Test
+    public void testDecompressedWhileDecoding() throws Exception {
+        azkaban.setCompressionThreshold(256);
+        final long wireBefore = AzkabanMetrics.getCompressedBytes("fetchprojectflows", false).getCount();
+        final long decodedBefore = AzkabanMetrics.getCompressedBytes("fetchprojectflows", true).getCount();
+
+        final ProjectFlowsResult blocking = projectManager.fetchProjectFlows("pipeline");
+        final ProjectFlowsResult async = projectManager.fetchProjectFlowsAsync("pipeline").get(10, TimeUnit.SECONDS);
+        Assert.assertNull(blocking.getError());
+        Assert.assertEquals(FLOWS, blocking.getFlows().size());
+        Assert.assertEquals(FLOWS, async.getFlows().size());
+
+        final long wire = AzkabanMetrics.getCompressedBytes("fetchprojectflows", false).getCount() - wireBefore;
+        final long decoded = AzkabanMetrics.getCompressedBytes("fetchprojectflows", true).getCount() - decodedBefore;
+        Assert.assertTrue("Both responses should be compressed, read " + wire + " bytes", wire > 0);
+        Assert.assertTrue("Expected " + decoded + " decoded bytes to be several times " + wire, decoded > 4 * wire);
+        Assert.assertTrue(AzkabanMetrics.getCompressionRatio("fetchprojectflows") > 1);
+    }
+}
@@ -0,0 +1,100 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.client.http.ConnectionPool;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Properties;
+
+public class ConnectionPoolTests {
+
+    private AzkabanStandIn azkaban;
+    private URI uri;
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+
+        final Properties properties = new Properties();
+        properties.setProperty(ConnectionPool.ROUTE_LIMITS, azkaban.getUrl() + "=3");
+        properties.setProperty(ConnectionPool.IDLE_TIMEOUT, "0");
+        properties.setProperty(ConnectionPool.EVICTION_INTERVAL, "0");
+        properties.setProperty(ConnectionPool.KEEP_ALIVE, "20");
+        final Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .build();
+        pool = new ConnectionPool("test", properties, socketFactories);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        azkaban.stop();
+    }
+
+    @Test
+    public void testPrewarmedConnectionsAreReused() throws Exception {
+        Assert.assertEquals(3, pool.prewarm(uri, 10));
+        Assert.assertEquals(3, pool.getStats(uri).getAvailable());
+        Assert.assertEquals(3, pool.getOpenedCount());
+
+        for(int i = 0; i < 5; i++) {
+            EntityUtils.consume(HttpClients.custom()
+                    .setConnectionManager(pool.getManager())
+                    .setKeepAliveStrategy(pool.getKeepAliveStrategy())
+                    .build()
+                    .execute(new HttpGet(uri)).getEntity());
+        }
+        Assert.assertEquals(3, pool.getOpenedCount());
+        Assert.assertEquals(3, pool.getStats(uri).getAvailable());
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() {
+        pool.prewarm(uri, 2);
+        pool.evict();
+
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+        Assert.assertEquals(2, pool.getEvictedCount());
+    }
+
+    @Test
+    public void testKeepAliveHonorsServerHint() {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        Assert.assertEquals(20000, pool.getKeepAliveStrategy().getKeepAliveDuration(response, null));
+
+        response.setHeader("Keep-Alive", "timeout=5, max=100");
+        Assert.assertEquals(5000, pool.getKeepAliveStrategy().getKeepAliveDuration(response, null));
+    }
+}
@@ -0,0 +1,144 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ExecutionWatcher;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.ExecutionFlowResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ExecutionWatcherTests {
+
+    private AzkabanStandIn azkaban;
+    private ExecutionManager executionManager;
+    private ExecutionWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        final URI uri = new URI(azkaban.getUrl());
+        final AzkabanSession session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+
+        final File zip = StandInArchives.tempZip("flow");
+        new ProjectManager(session, uri).createProject("pipeline", "Test pipeline");
+        new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip();
+        Assert.assertTrue(zip.delete());
+
+        executionManager = new ExecutionManager(session, uri);
+        watcher = new ExecutionWatcher(executionManager);
+        watcher.setPollInterval(10, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.close();
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testWatchesUntilCompletion() throws Exception {
+        azkaban.setExecutionDuration(300, TimeUnit.MILLISECONDS);
+        final List<String> transitions = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+        final ExecutionWatcher.Listener listener = new ExecutionWatcher.Listener() {
+            @Override
+            public void onStateChange(ExecutionFlowResult execution, String previousStatus) {
+                transitions.add(previousStatus + "->" + execution.getStatus());
+            }
+
+            @Override
+            public void onCompletion(ExecutionFlowResult execution) {
+                completed.add(execution.getExecId());
+            }
+        };
+
+        final List<ListenableFuture<ExecutionFlowResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(watcher.watch(executionManager.executeFlow("pipeline", "flow").getExecId(), listener));
+        }
+        for (ListenableFuture<ExecutionFlowResult> future : futures) {
+            Assert.assertEquals("SUCCEEDED", future.get(10, TimeUnit.SECONDS).getStatus());
+        }
+
+        Assert.assertEquals(20, completed.size());
+        Assert.assertEquals(20, Collections.frequency(transitions, "null->RUNNING"));
+        Assert.assertEquals(20, Collections.frequency(transitions, "RUNNING->SUCCEEDED"));
+        Assert.assertEquals(0, watcher.getWatchedCount());
+    }
+
+    @Test
+    public void testExpiredSessionIsRenewed() throws Exception {
+        azkaban.setExecutionDuration(500, TimeUnit.MILLISECONDS);
+        final List<String> executionIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            executionIds.add(executionManager.executeFlow("pipeline", "flow").getExecId());
+        }
+        azkaban.expireSessions();
+        // Slow requests, so the other executions are rejected while the session is being renewed
+        azkaban.setLatency(200, 200, TimeUnit.MILLISECONDS);
+        final long refreshes = SessionCache.getInstance().getRefreshes();
+
+        final List<ListenableFuture<ExecutionFlowResult>> futures = new ArrayList<>();
+        for (String executionId : executionIds) {
+            futures.add(watcher.watch(executionId, null));
+        }
+        for (ListenableFuture<ExecutionFlowResult> future : futures) {
+            Assert.assertEquals("SUCCEEDED", future.get(10, TimeUnit.SECONDS).getStatus());
+        }
+        Assert.assertEquals(refreshes + 1, SessionCache.getInstance().getRefreshes());
+        Assert.assertEquals(0, watcher.getWatchedCount());
+    }
+
+    @Test
+    public void testCancelledExecution() throws Exception {
+        final String executionId = executionManager.executeFlow("pipeline", "flow").getExecId();
+        final ListenableFuture<ExecutionFlowResult> future = watcher.watch(executionId, null);
+
+        executionManager.cancelFlow(executionId);
+        Assert.assertEquals("KILLED", future.get(10, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    public void testUnknownExecutionFails() throws Exception {
+        try {
+            watcher.watch("9999", null).get(10, TimeUnit.SECONDS);
+            Assert.fail("Unknown execution should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("9999"));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.LogTailer;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.LogChunkResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class LogTailerTests {
+
+    private AzkabanStandIn azkaban;
+    private ExecutionManager executionManager;
+    private int executionId;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        final URI uri = new URI(azkaban.getUrl());
+        final AzkabanSession session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+
+        final File zip = StandInArchives.tempZip("flow");
+        new ProjectManager(session, uri).createProject("pipeline", "Test pipeline");
+        new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip();
+        Assert.assertTrue(zip.delete());
+
+        executionManager = new ExecutionManager(session, uri);
+        executionId = Integer.parseInt(executionManager.executeFlow("pipeline", "flow").getExecId());
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testFetchesChunksFromOffset() throws Exception {
+        final String log = lines("job", 0, 200);
+        azkaban.appendLog(executionId, "job", log);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long offset = 0;
+        int chunks = 0;
+        LogChunkResult chunk;
+        do {
+            chunk = executionManager.fetchExecJobLogs(String.valueOf(executionId), "job", offset, 1000, out);
+            Assert.assertFalse(chunk.toString(), chunk.hasError());
+            Assert.assertEquals(offset, chunk.getOffset());
+            offset = chunk.getNextOffset();
+            chunks++;
+        } while(chunk.getLength() > 0);
+
+        Assert.assertEquals(log, out.toString("UTF-8"));
+        Assert.assertEquals(log.length(), offset);
+        Assert.assertEquals((log.length() + 999) / 1000 + 1, chunks);
+
+        // Multi-byte characters aren't split between chunks
+        azkaban.appendLog(executionId, "job", "\u00e9t\u00e9\n");
+        out.reset();
+        Assert.assertEquals(0, executionManager.fetchExecJobLogs(String.valueOf(executionId), "job", offset, 1,
+                out).getLength());
+        Assert.assertEquals(0, out.size());
+        Assert.assertEquals(2, executionManager.fetchExecJobLogs(String.valueOf(executionId), "job", offset, 2,
+                out).getLength());
+        Assert.assertEquals("\u00e9", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testMissingLogAndExecution() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final LogChunkResult missingJob = executionManager.fetchExecJobLogs(String.valueOf(executionId), "nothing", 0,
+                100, out);
+        Assert.assertFalse(missingJob.hasError());
+        Assert.assertEquals(0, missingJob.getLength());
+
+        Assert.assertTrue(executionManager.fetchExecFlowLogs("999", 0, 100, out).hasError());
+        Assert.assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testSessionRenewed() throws Exception {
+        azkaban.expireSessions();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final LogChunkResult chunk = executionManager.fetchExecFlowLogs(String.valueOf(executionId), 0, 1000, out);
+        Assert.assertFalse(chunk.toString(), chunk.hasError());
+        Assert.assertTrue(out.toString("UTF-8"), out.toString("UTF-8").startsWith("Submitting flow pipeline.flow"));
+    }
+
+    @Test
+    public void testTailsManyJobsUntilDone() throws Exception {
+        final int jobs = 8;
+        final List<ByteArrayOutputStream> outs = new ArrayList<>();
+        final List<ListenableFuture<Long>> tails = new ArrayList<>();
+        final SettableFuture<Void> finished = SettableFuture.create();
+
+        try(LogTailer tailer = new LogTailer(executionManager, 4)) {
+            tailer.setChunkSize(512);
+            tailer.setPollInterval(10, TimeUnit.MILLISECONDS);
+            for(int job = 0; job < jobs; job++) {
+                azkaban.appendLog(executionId, "job" + job, lines("job" + job, 0, 100));
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                outs.add(out);
+                tails.add(tailer.tail(String.valueOf(executionId), "job" + job, 0, out, finished));
+            }
+            Assert.assertEquals(jobs, tailer.getTailCount());
+
+            // Keep logging while the logs are followed
+            for(int line = 100; line < 300; line += 50) {
+                Thread.sleep(20);
+                for(int job = 0; job < jobs; job++) {
+                    azkaban.appendLog(executionId, "job" + job, lines("job" + job, line, line + 50));
+                }
+            }
+            finished.set(null);
+
+            long total = 0;
+            for(int job = 0; job < jobs; job++) {
+                final String expected = lines("job" + job, 0, 300);
+                Assert.assertEquals(Long.valueOf(expected.length()), tails.get(job).get(5, TimeUnit.SECONDS));
+                Assert.assertEquals(expected, outs.get(job).toString("UTF-8"));
+                total += expected.length();
+            }
+            Assert.assertEquals(total, tailer.getBytesTailed());
+            Assert.assertEquals(0, tailer.getTailCount());
+        }
+    }
+
+    @Test
+    public void testCancelledTailStops() throws Exception {
+        try(LogTailer tailer = new LogTailer(executionManager, 1)) {
+            tailer.setPollInterval(10, TimeUnit.MILLISECONDS);
+            final ListenableFuture<Long> tail = tailer.tail(String.valueOf(executionId), null, 0,
+                    new ByteArrayOutputStream(), null);
+            Thread.sleep(50);
+            Assert.assertFalse(tail.isDone());
+            Assert.assertEquals(1, tailer.getTailCount());
+
+            tail.cancel(false);
+            Assert.assertEquals(0, tailer.getTailCount());
+            Thread.sleep(30);
+            final long polls = tailer.getPollCount();
+            Thread.sleep(50);
+            Assert.assertEquals(polls, tailer.getPollCount());
+        }
+    }
+
+    private static String lines(String job, int from, int to) {
+        final StringBuilder lines = new StringBuilder();
+        for(int line = from; line < to; line++) {
+            lines.append(job).append(" INFO line ").append(line).append('\n');
+        }
+        return lines.toString();
+    }
+}
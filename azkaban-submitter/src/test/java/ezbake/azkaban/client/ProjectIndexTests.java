@@ -0,0 +1,124 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ProjectIndex;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+public class ProjectIndexTests {
+
+    private AzkabanStandIn azkaban;
+    private URI uri;
+    private AzkabanSession session;
+    private ProjectManager projectManager;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        ProjectIndex.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+        projectManager = new ProjectManager(session, uri);
+        projectManager.createProject("pipeline", "Test pipeline");
+        upload("pipeline", "extract");
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+        ProjectIndex.getInstance().setMaxSize(ProjectIndex.DEFAULT_MAX_SIZE);
+        ProjectIndex.getInstance().clear();
+    }
+
+    @Test
+    public void testResolvedWithoutRoundTrip() throws Exception {
+        final long fetchesBefore = fetches();
+        final ProjectIndex.Entry project = projectManager.resolveProject("pipeline");
+        Assert.assertEquals(Arrays.asList("extract"), project.getFlowIds());
+        Assert.assertEquals(fetchesBefore + 1, fetches());
+
+        final ScheduleManager scheduleManager = new ScheduleManager(session, uri);
+        scheduleManager.setScheduleDate("08/26/2014");
+        for(int i = 0; i < 5; i++) {
+            final SchedulerResult scheduled = scheduleManager.scheduleFlow("pipeline", "extract");
+            Assert.assertFalse(scheduled.getError(), scheduled.hasError());
+        }
+        Assert.assertEquals("success", scheduleManager.unscheduleFlow("pipeline", "extract").getResult());
+        Assert.assertEquals(fetchesBefore + 1, fetches());
+    }
+
+    @Test
+    public void testInvalidatedByUploadAndDelete() throws Exception {
+        Assert.assertEquals(Arrays.asList("extract"), projectManager.resolveProject("pipeline").getFlowIds());
+
+        upload("pipeline", "load");
+        Assert.assertNull(ProjectIndex.getInstance().get(uri, "pipeline"));
+        Assert.assertEquals(Arrays.asList("load"), projectManager.resolveProject("pipeline").getFlowIds());
+
+        projectManager.deleteProject("pipeline");
+        Assert.assertNull(projectManager.resolveProject("pipeline"));
+        Assert.assertNull(new ScheduleManager(session, uri).scheduleFlow("pipeline", "load").getStatus());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        ProjectIndex.getInstance().setMaxSize(2);
+        for(String name : Arrays.asList("first", "second", "third")) {
+            projectManager.createProject(name, name);
+            upload(name, name);
+        }
+
+        final long evictionsBefore = ProjectIndex.getInstance().getEvictions();
+        projectManager.resolveProject("first");
+        projectManager.resolveProject("second");
+        projectManager.resolveProject("first");
+        projectManager.resolveProject("third");
+        Assert.assertEquals(2, ProjectIndex.getInstance().size());
+        Assert.assertNotNull(ProjectIndex.getInstance().get(uri, "first"));
+        Assert.assertNull(ProjectIndex.getInstance().get(uri, "second"));
+        Assert.assertEquals(evictionsBefore + 1, ProjectIndex.getInstance().getEvictions());
+    }
+
+    private long fetches() {
+        return AzkabanMetrics.getLatency("fetchprojectflows").getCount();
+    }
+
+    private void upload(String projectName, String job) throws IOException {
+        final File zip = StandInArchives.tempZip(job);
+        Assert.assertFalse(new UploadManager(session.getId(), azkaban.getUrl(), projectName, zip).uploadZip().hasError());
+        Assert.assertTrue(zip.delete());
+    }
+}
@@ -0,0 +1,210 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes projects with running and scheduled flows from an {@link AzkabanStandIn}
+ */
+public class ProjectRemovalTests {
+
+    private static final List<String> FLOWS = Arrays.asList("extract", "transform", "load");
+
+    private AzkabanStandIn azkaban;
+    private URI uri;
+    private AzkabanSession session;
+    private ProjectManager projectManager;
+    private ExecutionManager executionManager;
+    private ScheduleManager scheduleManager;
+    private File zip;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+        projectManager = new ProjectManager(session, uri);
+        executionManager = new ExecutionManager(session, uri);
+        scheduleManager = new ScheduleManager(session, uri);
+        scheduleManager.setScheduleDate("08/26/2014");
+        scheduleManager.setPeriod("1d");
+
+        // Every job is a flow of its own
+        zip = StandInArchives.tempZip(FLOWS.toArray(new String[FLOWS.size()]));
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+        Assert.assertTrue(zip.delete());
+    }
+
+    @Test
+    public void testOneFailingFlowIsReported() throws Exception {
+        final String projectId = deploy("pipeline");
+        final List<String> executions = executeAll("pipeline");
+
+        azkaban.setFailingFlows("transform");
+        try {
+            projectManager.removeProject("pipeline", 3);
+            Assert.fail("The project was removed although a flow could not be torn down");
+        } catch (Exception e) {
+            Assert.assertEquals("Could not tear down 1 of 3 flows of project pipeline:" +
+                    "\n  transform: Could not un-schedule flow: Injected failure", e.getMessage());
+        }
+        azkaban.setFailingFlows();
+
+        // The other flows were torn down, the failing one and the project are left alone
+        Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(executions.get(0)).getStatus());
+        Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(executions.get(2)).getStatus());
+        Assert.assertNull(scheduleManager.fetchSchedule(projectId, "extract").getSchedule());
+        Assert.assertNull(scheduleManager.fetchSchedule(projectId, "load").getSchedule());
+        Assert.assertNotNull(scheduleManager.fetchSchedule(projectId, "transform").getSchedule());
+        Assert.assertFalse(projectManager.fetchProjectFlows("pipeline").hasError());
+
+        Assert.assertEquals(projectId, projectManager.removeProject("pipeline", 3));
+        Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(executions.get(1)).getStatus());
+        Assert.assertTrue(projectManager.fetchProjectFlows("pipeline").hasError());
+    }
+
+    @Test
+    public void testConcurrencyOfOneMatchesSequential() throws Exception {
+        final String sequentialId = deploy("sequential");
+        final List<String> sequentialExecutions = executeAll("sequential");
+        final String parallelId = deploy("parallel");
+        final List<String> parallelExecutions = executeAll("parallel");
+
+        Assert.assertEquals(sequentialId, projectManager.removeProject("sequential"));
+        Assert.assertEquals(parallelId, projectManager.removeProject("parallel", 1));
+
+        for(int i = 0; i < FLOWS.size(); i++) {
+            Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(sequentialExecutions.get(i)).getStatus());
+            Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(parallelExecutions.get(i)).getStatus());
+            Assert.assertNull(scheduleManager.fetchSchedule(sequentialId, FLOWS.get(i)).getSchedule());
+            Assert.assertNull(scheduleManager.fetchSchedule(parallelId, FLOWS.get(i)).getSchedule());
+        }
+        Assert.assertTrue(projectManager.fetchProjectFlows("sequential").hasError());
+        Assert.assertTrue(projectManager.fetchProjectFlows("parallel").hasError());
+    }
+
+    @Test
+    public void testConcurrencyOfOneFailsLikeSequential() throws Exception {
+        deploy("sequential");
+        deploy("parallel");
+        azkaban.setFailingFlows("transform");
+
+        try {
+            projectManager.removeProject("sequential");
+            Assert.fail("The project was removed although a flow could not be un-scheduled");
+        } catch (Exception e) {
+            Assert.assertEquals("Could not un-schedule flow: Injected failure", e.getMessage());
+        }
+        try {
+            projectManager.removeProject("parallel", 1);
+            Assert.fail("The project was removed although a flow could not be un-scheduled");
+        } catch (Exception e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().endsWith("transform: Could not un-schedule flow: Injected failure"));
+        }
+        Assert.assertFalse(projectManager.fetchProjectFlows("sequential").hasError());
+        Assert.assertFalse(projectManager.fetchProjectFlows("parallel").hasError());
+    }
+
+    @Test
+    public void testFlowsUploadedBySomebodyElseAreTornDown() throws Exception {
+        deploy("sequential");
+        deploy("parallel");
+        // Both projects are indexed before somebody else adds a flow to them
+        Assert.assertEquals(FLOWS.size(), projectManager.resolveProject("sequential").getFlowIds().size());
+        Assert.assertEquals(FLOWS.size(), projectManager.resolveProject("parallel").getFlowIds().size());
+
+        final String sequentialExecution = deployElsewhere("sequential", "report");
+        final String parallelExecution = deployElsewhere("parallel", "report");
+
+        projectManager.removeProject("sequential");
+        projectManager.removeProject("parallel", 3);
+        Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(sequentialExecution).getStatus());
+        Assert.assertEquals("KILLED", executionManager.fetchExecutionFlow(parallelExecution).getStatus());
+    }
+
+    /**
+     * Creates the project, uploads its flows and schedules them
+     *
+     * @return The project ID
+     */
+    private String deploy(String projectName) throws Exception {
+        Assert.assertFalse(projectManager.createProject(projectName, "Test project").hasError());
+        final UploaderResult uploaded = new UploadManager(session.getId(), azkaban.getUrl(), projectName, zip).uploadZip();
+        Assert.assertFalse(uploaded.getError(), uploaded.hasError());
+        for(String flow : FLOWS) {
+            Assert.assertFalse(scheduleManager.scheduleFlow(projectName, flow, uploaded.getProjectId()).hasError());
+        }
+        return uploaded.getProjectId();
+    }
+
+    /**
+     * @return The execution ID of every flow, in the order of {@link #FLOWS}
+     */
+    private List<String> executeAll(String projectName) {
+        final List<String> executions = new ArrayList<>();
+        for(String flow : FLOWS) {
+            executions.add(executionManager.executeFlow(projectName, flow).getExecId());
+        }
+        return executions;
+    }
+
+    /**
+     * Uploads the flows plus an extra one through another address of the stand-in, the way a client with its own
+     * {@link ezbake.azkaban.manager.ProjectIndex} would, and executes the extra flow
+     *
+     * @return The execution ID of the extra flow
+     */
+    private String deployElsewhere(String projectName, String extraFlow) throws Exception {
+        final List<String> flows = new ArrayList<>(FLOWS);
+        flows.add(extraFlow);
+        final File extended = StandInArchives.tempZip(flows.toArray(new String[flows.size()]));
+        try {
+            final String elsewhere = "http://127.0.0.1:" + uri.getPort();
+            final UploaderResult uploaded = new UploadManager(session.getId(), elsewhere, projectName, extended).uploadZip();
+            Assert.assertFalse(uploaded.getError(), uploaded.hasError());
+        } finally {
+            Assert.assertTrue(extended.delete());
+        }
+        return executionManager.executeFlow(projectName, extraFlow).getExecId();
+    }
+}
@@ -0,0 +1,166 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ProjectIndex;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.ScheduleReconciler;
+import ezbake.azkaban.manager.ScheduleSpec;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.FetchScheduleResult;
+import ezbake.azkaban.manager.result.ReconcileSchedulesResult;
+import ezbake.azkaban.manager.result.ScheduleChange;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+public class ScheduleReconcilerTests {
+
+    private AzkabanStandIn azkaban;
+    private URI uri;
+    private AzkabanSession session;
+    private String projectId;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        ProjectIndex.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.setTimeZone(TimeZone.getTimeZone("UTC"));
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+
+        final File zip = StandInArchives.tempZip("extract", "transform", "load", "report");
+        new ProjectManager(session, uri).createProject("pipeline", "Test pipeline");
+        projectId = new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip().getProjectId();
+        Assert.assertTrue(zip.delete());
+
+        final ScheduleReconciler reconciler = new ScheduleReconciler(session, uri, 4, DateTimeZone.UTC);
+        Assert.assertFalse(reconciler.reconcile(Arrays.asList(
+                spec("pipeline", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "transform", "3,00,am,UTC", "1d"),
+                spec("pipeline", "load", "4,30,pm,UTC", null))).hasError());
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+        ProjectIndex.getInstance().clear();
+    }
+
+    @Test
+    public void testOnlyDifferencesAreSent() throws Exception {
+        final ReconcileSchedulesResult result = new ScheduleReconciler(session, uri, 4, DateTimeZone.UTC).reconcile(Arrays.asList(
+                spec("pipeline", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "transform", "5,00,am,UTC", "1d"),
+                spec("pipeline", "report", "6,15,pm,UTC", "1w")));
+
+        Assert.assertFalse(result.toString(), result.hasError());
+        Assert.assertEquals(Arrays.asList("UNCHANGED pipeline.extract", "UPDATE pipeline.transform",
+                "ADD pipeline.report", "REMOVE pipeline.load"), describe(result));
+        // A fetch per flow and a request per change
+        Assert.assertEquals(4 + 3, result.getRequests());
+
+        final ScheduleManager scheduleManager = new ScheduleManager(session, uri);
+        final FetchScheduleResult.Schedule transform = scheduleManager.fetchSchedule(projectId, "transform")
+                .getSchedule();
+        Assert.assertTrue(transform.getFirstSchedTime(), transform.getFirstSchedTime().endsWith(" 05:00:00"));
+        Assert.assertEquals("1 day(s)", transform.getPeriod());
+        Assert.assertNull(scheduleManager.fetchSchedule(projectId, "load").getSchedule());
+    }
+
+    @Test
+    public void testNothingSentWhenReconciled() throws Exception {
+        final ReconcileSchedulesResult result = new ScheduleReconciler(session, uri, 2, DateTimeZone.UTC).reconcile(Arrays.asList(
+                spec("pipeline", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "transform", "3,00,am,UTC", "1d"),
+                spec("pipeline", "load", "16,30,pm,UTC", null)));
+
+        Assert.assertEquals(3, result.count(ScheduleChange.Type.UNCHANGED));
+        Assert.assertEquals(4, result.getRequests());
+    }
+
+    @Test
+    public void testUnknownProjectAndFlowFail() throws Exception {
+        final ReconcileSchedulesResult result = new ScheduleReconciler(session, uri, 2, DateTimeZone.UTC).reconcile(Arrays.asList(
+                spec("missing", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "transform", "3,00,am,UTC", "1d"),
+                spec("pipeline", "load", "4,30,pm,UTC", null),
+                spec("pipeline", "cleanup", "4,30,pm,UTC", null)));
+
+        Assert.assertEquals(2, result.getFailures().size());
+        Assert.assertEquals("missing", result.getFailures().get(0).getProjectName());
+        Assert.assertEquals("cleanup", result.getFailures().get(1).getFlow());
+        Assert.assertEquals(3, result.count(ScheduleChange.Type.UNCHANGED));
+    }
+
+    @Test
+    public void testServerOutsideUtc() throws Exception {
+        // Five and a half hours ahead of UTC all year
+        azkaban.setTimeZone(TimeZone.getTimeZone("Asia/Kolkata"));
+        final ScheduleReconciler reconciler = new ScheduleReconciler(session, uri, 2,
+                DateTimeZone.forID("Asia/Kolkata"));
+        final List<ScheduleSpec> desired = Arrays.asList(
+                spec("pipeline", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "transform", "3,00,am,UTC", "1d"),
+                spec("pipeline", "load", "4,30,pm,IST", null));
+        Assert.assertFalse(reconciler.reconcile(desired).hasError());
+
+        final FetchScheduleResult.Schedule extract = new ScheduleManager(session, uri).fetchSchedule(projectId,
+                "extract").getSchedule();
+        Assert.assertTrue(extract.getFirstSchedTime(), extract.getFirstSchedTime().endsWith(" 07:30:00"));
+
+        final ReconcileSchedulesResult result = reconciler.reconcile(desired);
+        Assert.assertEquals(3, result.count(ScheduleChange.Type.UNCHANGED));
+        Assert.assertEquals(4, result.getRequests());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateFlowRejected() throws Exception {
+        new ScheduleReconciler(session, uri, 2, DateTimeZone.UTC).reconcile(Arrays.asList(
+                spec("pipeline", "extract", "2,00,am,UTC", "1d"),
+                spec("pipeline", "extract", "3,00,am,UTC", "1d")));
+    }
+
+    private static ScheduleSpec spec(String projectName, String flow, String time, String period) {
+        return ScheduleSpec.parse(projectName, flow, null, time, period);
+    }
+
+    private static List<String> describe(ReconcileSchedulesResult result) {
+        final List<String> changes = new ArrayList<>();
+        for(ScheduleChange change : result.getChanges()) {
+            changes.add(change.toString());
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,141 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ProjectIndex;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.ScheduleSpec;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.FetchScheduleResult;
+import ezbake.azkaban.manager.result.FlowScheduleResult;
+import ezbake.azkaban.manager.result.ScheduleFlowsResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+public class ScheduleSpecTests {
+
+    @Test
+    public void testParse() {
+        final ScheduleSpec spec = ScheduleSpec.parse("pipeline", "extract", "10/31/2014", "2,05,pm,utc", "12h");
+        Assert.assertEquals(new LocalDate(2014, 10, 31), spec.getDate());
+        Assert.assertEquals(14, spec.getHour());
+        Assert.assertEquals(5, spec.getMinute());
+        Assert.assertEquals("UTC", spec.getTimeZone());
+        Assert.assertEquals(ScheduleSpec.Unit.HOURS, spec.getPeriodUnit());
+        Assert.assertEquals("10/31/2014", spec.getScheduleDate());
+        Assert.assertEquals("2,05,pm,UTC", spec.getScheduleTime());
+        Assert.assertEquals("12h", spec.getPeriod());
+
+        Assert.assertEquals(spec, ScheduleSpec.parse("pipeline", "extract", spec.getScheduleDate(),
+                spec.getScheduleTime(), spec.getPeriod()));
+        Assert.assertEquals(0, ScheduleSpec.parse("pipeline", "extract", null, "12,00,am,UTC", null).getHour());
+        Assert.assertEquals(16, ScheduleSpec.parse("pipeline", "extract", null, "16,00,am,UTC", null).getHour());
+        Assert.assertNull(ScheduleSpec.parse("pipeline", "extract", null, null, null).getPeriod());
+    }
+
+    @Test
+    public void testInvalidSpecsRejected() {
+        final String[][] invalid = {
+                {"13/01/2014", "2,00,am,UTC", null},
+                {null, "2,00,UTC", null},
+                {null, "2,00,xm,UTC", null},
+                {null, "25,00,am,UTC", null},
+                {null, "2,60,am,UTC", null},
+                {null, "2,00,am,UTC", "1y"},
+                {null, "2,00,am,UTC", "0d"},
+        };
+        for(String[] spec : invalid) {
+            try {
+                ScheduleSpec.parse("pipeline", "extract", spec[0], spec[1], spec[2]);
+                Assert.fail("Accepted " + spec[0] + " " + spec[1] + " " + spec[2]);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testScheduleFlows() throws Exception {
+        SessionCache.getInstance().clear();
+        ProjectIndex.getInstance().clear();
+        final AzkabanStandIn azkaban = new AzkabanStandIn();
+        azkaban.setTimeZone(TimeZone.getTimeZone("UTC"));
+        azkaban.start(0);
+        try {
+            final URI uri = new URI(azkaban.getUrl());
+            final AzkabanSession session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+            final int flows = 50;
+
+            final String[] names = new String[flows];
+            for(int i = 0; i < flows; i++) {
+                names[i] = "flow" + i;
+            }
+            final File zip = StandInArchives.tempZip(names);
+            new ProjectManager(session, uri).createProject("bulk", "Bulk scheduling");
+            final String projectId = new UploadManager(session.getId(), azkaban.getUrl(), "bulk", zip).uploadZip()
+                    .getProjectId();
+            Assert.assertTrue(zip.delete());
+
+            final ScheduleSpec nightly = ScheduleSpec.parse("bulk", "flow0", null, "2,30,am,UTC", "1d");
+            final List<ScheduleSpec> schedules = new ArrayList<>();
+            for(int i = 0; i < flows; i++) {
+                schedules.add(nightly.forFlow("bulk", "flow" + i));
+            }
+            schedules.add(nightly.forFlow("missing", "flow0"));
+
+            final ScheduleManager scheduleManager = new ScheduleManager(session, uri);
+            final ScheduleFlowsResult result = scheduleManager.scheduleFlows(schedules, 8);
+
+            Assert.assertEquals(flows + 1, result.getResults().size());
+            Assert.assertEquals(flows, result.getRequests());
+            Assert.assertEquals(1, result.getFailures().size());
+            final FlowScheduleResult missing = result.getResults().get(flows);
+            Assert.assertEquals("missing", missing.getProjectName());
+            Assert.assertTrue(missing.hasError());
+            for(int i = 0; i < flows; i++) {
+                Assert.assertEquals("flow" + i, result.getResults().get(i).getFlow());
+                Assert.assertFalse(result.getResults().get(i).toString(), result.getResults().get(i).hasError());
+            }
+            Assert.assertTrue(result.getFlowsPerSecond() > 0);
+            Assert.assertTrue(result.getLatencyMillis(99) >= result.getLatencyMillis(50));
+
+            final FetchScheduleResult.Schedule last = scheduleManager.fetchSchedule(projectId, "flow" + (flows - 1))
+                    .getSchedule();
+            Assert.assertTrue(last.getFirstSchedTime(), last.getFirstSchedTime().endsWith(" 02:30:00"));
+            Assert.assertTrue(nightly.forFlow("bulk", "flow" + (flows - 1)).matches(last, DateTimeZone.UTC));
+
+            Assert.assertFalse(scheduleManager.scheduleFlow(nightly.forFlow("bulk", "flow1")).hasError());
+            Assert.assertTrue(scheduleManager.scheduleFlow(nightly.forFlow("missing", "flow1")).hasError());
+        } finally {
+            azkaban.stop();
+            SessionCache.getInstance().clear();
+            ProjectIndex.getInstance().clear();
+        }
+    }
+}
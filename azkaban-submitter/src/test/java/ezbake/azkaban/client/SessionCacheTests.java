@@ -0,0 +1,107 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.result.AuthenticationResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SessionCacheTests {
+
+    private static class CountingAuthenticator extends AuthenticationManager {
+        final AtomicInteger logins = new AtomicInteger();
+
+        CountingAuthenticator(URI uri) {
+            super(uri, "user", "password");
+        }
+
+        @Override
+        public AuthenticationResult login() {
+            final AuthenticationResult result = new AuthenticationResult();
+            result.setSessionId("session-" + logins.incrementAndGet());
+            return result;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneLogin() throws Exception {
+        final CountingAuthenticator authenticator = new CountingAuthenticator(new URI("https://azkaban:8443"));
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<AuthenticationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(new Callable<AuthenticationResult>() {
+                    @Override
+                    public AuthenticationResult call() throws Exception {
+                        start.await();
+                        return SessionCache.getInstance().login(authenticator);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<AuthenticationResult> result : results) {
+                Assert.assertEquals("session-1", result.get().getSessionId());
+            }
+            Assert.assertEquals(1, authenticator.logins.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRefreshLogsInOncePerExpiredSession() throws Exception {
+        final CountingAuthenticator authenticator = new CountingAuthenticator(new URI("https://azkaban:8443"));
+        final SessionCache cache = SessionCache.getInstance();
+        final long refreshes = cache.getRefreshes();
+
+        final String expired = cache.login(authenticator).getSessionId();
+        Assert.assertEquals("session-2", cache.refresh(authenticator, expired).getSessionId());
+        // A second caller still holding the expired session gets the renewed one without logging in again
+        Assert.assertEquals("session-2", cache.refresh(authenticator, expired).getSessionId());
+        Assert.assertEquals(2, authenticator.logins.get());
+        Assert.assertEquals(refreshes + 1, cache.getRefreshes());
+    }
+
+    @Test
+    public void testPathsOfTheSameServerShareASession() throws Exception {
+        final CountingAuthenticator root = new CountingAuthenticator(new URI("https://azkaban:8443"));
+        final CountingAuthenticator schedule = new CountingAuthenticator(new URI("https://azkaban:8443/schedule"));
+        final SessionCache cache = SessionCache.getInstance();
+        final long hits = cache.getHits();
+
+        Assert.assertEquals(cache.login(root).getSessionId(), cache.login(schedule).getSessionId());
+        Assert.assertEquals(0, schedule.logins.get());
+        Assert.assertEquals(hits + 1, cache.getHits());
+    }
+}
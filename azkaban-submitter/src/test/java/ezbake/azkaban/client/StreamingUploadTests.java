@@ -0,0 +1,196 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.submitter.SubmissionPipeline;
+import ezbake.azkaban.submitter.SubmissionResult;
+import ezbake.azkaban.submitter.util.ArchiveIndex;
+import ezbake.azkaban.submitter.util.FileUtil;
+import ezbake.azkaban.submitter.util.UnzipUtil;
+import ezbake.azkaban.submitter.util.ZipTranscoder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+public class StreamingUploadTests {
+
+    private AzkabanStandIn azkaban;
+    private AzkabanSession session;
+    private ProjectManager projectManager;
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        final URI uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+        projectManager = new ProjectManager(session, uri);
+        projectManager.createProject("pipeline", "Test pipeline");
+        folder = Files.createTempDirectory("streaming-upload").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        azkaban.stop();
+        FileUtils.deleteDirectory(folder);
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testTranscodedZipMatchesExtractedZip() throws Exception {
+        final ByteBuffer archive = submission("./pipeline/jobs/ingest.job", "./pipeline/jobs/report.job",
+                "./pipeline/config/app.properties");
+
+        final ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+        final long bytes = ZipTranscoder.transcode(archive, transcoded);
+
+        final ArchiveIndex index = UnzipUtil.unzipAndIndex(folder, archive);
+        final File extracted = new File(folder, "extracted.zip");
+        Assert.assertEquals(FileUtil.zipDirectory(index.getRoot(), extracted), bytes);
+        try (InputStream in = new FileInputStream(extracted)) {
+            Assert.assertEquals(entries(in), entries(new ByteArrayInputStream(transcoded.toByteArray())));
+        }
+    }
+
+    @Test
+    public void testStreamedUpload() throws Exception {
+        final UploadManager uploader = uploader(submission("pipeline/flow.job"));
+
+        final UploaderResult result = uploader.uploadZipWithRetries();
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertEquals("1", result.getVersion());
+        Assert.assertTrue(uploader.getBytesUploaded() > 3 * 1024 * 1024);
+        final ProjectFlowsResult flows = projectManager.fetchProjectFlows("pipeline");
+        Assert.assertEquals(1, flows.getFlows().size());
+        Assert.assertEquals("flow", flows.getFlows().get(0).getFlowId());
+    }
+
+    @Test
+    public void testInvalidArchivesAreNotRetried() throws Exception {
+        final ByteBuffer[] archives = {submission("pipeline/README"), ByteBuffer.wrap(new byte[] {1, 2, 3, 4})};
+        final String[] errors = {"The archive doesn't contain any .job files", "Not in GZIP format"};
+        for (int i = 0; i < archives.length; i++) {
+            final long requestsBefore = azkaban.getRequestCount();
+
+            final UploaderResult result = uploader(archives[i]).uploadZipWithRetries();
+
+            Assert.assertEquals(errors[i], result.getError());
+            // The project log lookup and a single upload
+            Assert.assertEquals(2, azkaban.getRequestCount() - requestsBefore);
+            Assert.assertEquals(0, projectManager.fetchProjectLogs("pipeline").countEvents("UPLOADED"));
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void testArchiveWithoutJobs() throws Exception {
+        ZipTranscoder.transcode(submission("pipeline/README"), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testPipelineStreamsTarGz() throws Exception {
+        final ByteBuffer archive = submission("pipeline/flow.job");
+        final SubmissionPipeline pipeline = new SubmissionPipeline(azkaban.getUrl(), "azkaban", "azkaban");
+        pipeline.setWorkDirectory(folder);
+
+        final SubmissionResult result = pipeline.submit(archive, "pipeline");
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertEquals("1", result.getVersion());
+        for (SubmissionResult.Stage stage : result.getStages()) {
+            Assert.assertNotEquals("archive", stage.getName());
+        }
+        Assert.assertEquals(0, folder.list().length);
+    }
+
+    private UploadManager uploader(ByteBuffer archive) {
+        final UploadManager uploader = new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", archive);
+        uploader.setMaxAttempts(3);
+        uploader.setBackoff(1, 10, TimeUnit.MILLISECONDS);
+        return uploader;
+    }
+
+    /**
+     * Builds a tar.gz with the given small files and a few MB jar, without directory entries
+     */
+    private static ByteBuffer submission(String... names) throws IOException {
+        final byte[] jar = new byte[3 * 1024 * 1024];
+        new Random(7).nextBytes(jar);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(bytes))) {
+            for (String name : names) {
+                add(tar, name, ("type=command\ncommand=echo " + name + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            add(tar, "pipeline/lib/pipeline-1.0.jar", jar);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void add(TarOutputStream tar, String name, byte[] contents) throws IOException {
+        final TarEntry entry = new TarEntry(name);
+        entry.setSize(contents.length);
+        tar.putNextEntry(entry);
+        tar.write(contents);
+        tar.closeEntry();
+    }
+
+    /**
+     * @return The contents of every entry of the zip by name, directories have empty contents
+     */
+    private static Map<String, String> entries(InputStream in) throws IOException {
+        final Map<String, String> entries = new TreeMap<>();
+        try (ZipInputStream zip = new ZipInputStream(in)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toString(zip, StandardCharsets.ISO_8859_1));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,202 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ExecutionManager;
+import ezbake.azkaban.manager.ScheduleManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import ezbake.azkaban.submitter.SubmissionPipeline;
+import ezbake.azkaban.submitter.SubmissionResult;
+import ezbake.azkaban.submitter.util.UploadIndex;
+import org.apache.commons.io.FileUtils;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs whole submissions through the {@link SubmissionPipeline} against an {@link AzkabanStandIn}
+ */
+public class SubmissionPipelineTests {
+
+    private static final long LATENCY_MILLIS = 20;
+
+    private AzkabanStandIn azkaban;
+    private SubmissionPipeline pipeline;
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        folder = Files.createTempDirectory("submission-pipeline").toFile();
+        pipeline = new SubmissionPipeline(azkaban.getUrl(), "azkaban", "azkaban");
+        pipeline.setWorkDirectory(folder);
+        pipeline.setFlow("flow");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        azkaban.stop();
+        FileUtils.deleteDirectory(folder);
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testStagesAreTimed() throws Exception {
+        azkaban.setLatency(LATENCY_MILLIS, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        final ByteBuffer archive = zip();
+        pipeline.setExecute(true);
+
+        final SubmissionResult result = pipeline.submit(archive, "pipeline");
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        final Map<String, SubmissionResult.Stage> stages = stages(result);
+        Assert.assertEquals(stages.keySet().toString(), 5, stages.size());
+        Assert.assertEquals(archive.remaining(), stages.get("archive").getBytes());
+        Assert.assertTrue(stages.get("upload").getBytes() > 0);
+
+        // Every stage that talks to Azkaban waits for at least one response
+        long sequential = 0;
+        for(String name : new String[] {"authenticate", "project", "upload", "execute"}) {
+            Assert.assertTrue(name + " took " + stages.get(name), stages.get(name).getElapsedMillis() >= LATENCY_MILLIS);
+            sequential += stages.get(name).getElapsedMillis();
+        }
+        // The archive stage overlaps with preparing the project, the others run one after the other
+        Assert.assertTrue(result.getElapsedMillis() >= sequential);
+    }
+
+    @Test
+    public void testFailedUploadSkipsTheFlow() throws Exception {
+        final UploadIndex uploadIndex = new UploadIndex(new File(folder, "uploads.properties"));
+        pipeline.setUploadIndex(uploadIndex);
+        pipeline.setExecute(true);
+        pipeline.setSchedule("08/26/2014", null, "1d");
+
+        // Streamed, so the missing .job files are only noticed during the upload
+        final SubmissionResult result = pipeline.submit(tarGz("pipeline/README"), "pipeline");
+
+        Assert.assertTrue(result.hasError());
+        final Map<String, SubmissionResult.Stage> stages = stages(result);
+        Assert.assertTrue(stages.containsKey("upload"));
+        Assert.assertFalse(stages.containsKey("execute"));
+        Assert.assertFalse(stages.containsKey("schedule"));
+        Assert.assertNull(result.getExecutionResult());
+        Assert.assertNull(result.getSchedulerResult());
+        Assert.assertNull(uploadIndex.get(azkaban.getUrl(), "pipeline"));
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        pipeline.setExecute(true);
+
+        final SubmissionResult result = pipeline.submit(zip(), "pipeline");
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertTrue(stages(result).containsKey("execute"));
+        Assert.assertFalse(stages(result).containsKey("schedule"));
+        Assert.assertNull(result.getSchedulerResult());
+        final String execId = result.getExecutionResult().getExecId();
+        Assert.assertEquals("RUNNING", executionManager().fetchExecutionFlow(execId).getStatus());
+    }
+
+    @Test
+    public void testSchedule() throws Exception {
+        pipeline.setSchedule("08/26/2014", null, "1d");
+
+        final SubmissionResult result = pipeline.submit(zip(), "pipeline");
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertTrue(stages(result).containsKey("schedule"));
+        Assert.assertFalse(stages(result).containsKey("execute"));
+        Assert.assertNull(result.getExecutionResult());
+        Assert.assertFalse(result.getSchedulerResult().hasError());
+        Assert.assertNull(executionManager().getRunningExecutions("pipeline", "flow").getExecIds());
+        Assert.assertNotNull(scheduleManager().fetchSchedule(result.getProjectId(), "flow").getSchedule());
+    }
+
+    @Test
+    public void testExecuteAndSchedule() throws Exception {
+        pipeline.setExecute(true);
+        pipeline.setSchedule("08/26/2014", null, "1d");
+
+        final SubmissionResult result = pipeline.submit(zip(), "pipeline");
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertTrue(stages(result).containsKey("execute"));
+        Assert.assertTrue(stages(result).containsKey("schedule"));
+        Assert.assertFalse(result.getExecutionResult().hasError());
+        Assert.assertNotNull(scheduleManager().fetchSchedule(result.getProjectId(), "flow").getSchedule());
+    }
+
+    private ExecutionManager executionManager() throws Exception {
+        return new ExecutionManager(session(), new URI(azkaban.getUrl()));
+    }
+
+    private ScheduleManager scheduleManager() throws Exception {
+        return new ScheduleManager(session(), new URI(azkaban.getUrl()));
+    }
+
+    private AzkabanSession session() throws Exception {
+        return new AzkabanSession(new AuthenticationManager(new URI(azkaban.getUrl()), "azkaban", "azkaban"));
+    }
+
+    private static Map<String, SubmissionResult.Stage> stages(SubmissionResult result) {
+        final Map<String, SubmissionResult.Stage> stages = new HashMap<>();
+        for(SubmissionResult.Stage stage : result.getStages()) {
+            Assert.assertNull("Stage " + stage.getName() + " ran twice", stages.put(stage.getName(), stage));
+        }
+        return stages;
+    }
+
+    private static ByteBuffer zip() throws IOException {
+        return ByteBuffer.wrap(StandInArchives.zip(StandInArchives.flows("flow")));
+    }
+
+    private static ByteBuffer tarGz(String... names) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(new GZIPOutputStream(bytes))) {
+            for(String name : names) {
+                final byte[] contents = ("contents of " + name + "\n").getBytes(StandardCharsets.UTF_8);
+                final TarEntry entry = new TarEntry(name);
+                entry.setSize(contents.length);
+                tar.putNextEntry(entry);
+                tar.write(contents);
+                tar.closeEntry();
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
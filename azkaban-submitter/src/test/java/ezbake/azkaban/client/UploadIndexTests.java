@@ -0,0 +1,173 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import ezbake.azkaban.submitter.SubmissionPipeline;
+import ezbake.azkaban.submitter.SubmissionResult;
+import ezbake.azkaban.submitter.util.UploadIndex;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+public class UploadIndexTests {
+
+    private AzkabanStandIn azkaban;
+    private File folder;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        folder = Files.createTempDirectory("upload-index").toFile();
+        indexFile = new File(folder, "uploads.properties");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        azkaban.stop();
+        FileUtils.deleteDirectory(folder);
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testSameArchiveIsUploadedOnce() throws Exception {
+        final long hits = AzkabanMetrics.getDedupHits().getCount();
+        final ByteBuffer archive = zip("one");
+
+        final SubmissionResult first = submit(archive, false);
+        Assert.assertFalse(first.getError(), first.hasError());
+        Assert.assertTrue(hasStage(first, "upload"));
+
+        // A new index reads what the first one saved
+        final SubmissionResult second = submit(archive, false);
+        Assert.assertFalse(second.hasError());
+        Assert.assertFalse(hasStage(second, "upload"));
+        Assert.assertEquals(first.getProjectId(), second.getProjectId());
+        Assert.assertEquals(first.getVersion(), second.getVersion());
+        Assert.assertEquals(hits + 1, AzkabanMetrics.getDedupHits().getCount());
+
+        final SubmissionResult forced = submit(archive, true);
+        Assert.assertTrue(hasStage(forced, "upload"));
+        Assert.assertEquals("2", forced.getVersion());
+
+        final SubmissionResult changed = submit(zip("two"), false);
+        Assert.assertTrue(hasStage(changed, "upload"));
+        Assert.assertEquals("3", changed.getVersion());
+    }
+
+    @Test
+    public void testUploadBySomebodyElseIsNoticed() throws Exception {
+        final ByteBuffer archive = zip("one");
+        Assert.assertEquals("1", submit(archive, false).getVersion());
+
+        // Another submitter with its own index uploads a different archive
+        final SubmissionPipeline other = new SubmissionPipeline(azkaban.getUrl(), "azkaban", "azkaban");
+        Assert.assertEquals("2", other.submit(zip("two"), "pipeline").getVersion());
+
+        final SubmissionResult result = submit(archive, false);
+        Assert.assertTrue(hasStage(result, "upload"));
+        Assert.assertEquals("3", result.getVersion());
+        Assert.assertEquals(3, new ProjectManager(new URI(azkaban.getUrl()), "azkaban", "azkaban")
+                .fetchProjectLogs("pipeline").countEvents("UPLOADED"));
+    }
+
+    @Test
+    public void testDedupPastOnePageOfLog() throws Exception {
+        final ByteBuffer archive = zip("one");
+        Assert.assertEquals("1", submit(archive, false).getVersion());
+        Assert.assertEquals("2", submit(zip("two"), false).getVersion());
+        final SubmissionResult uploaded = submit(archive, false);
+        Assert.assertEquals("3", uploaded.getVersion());
+        // Longer than the default page of fetchProjectLogs, but the newest upload is still the archive
+        for (int i = 0; i < 1200; i++) {
+            azkaban.addProjectEvent("pipeline", "PROPERTY_OVERRIDE", "Modified property " + i);
+        }
+        azkaban.addProjectEvent("pipeline", "UPLOADED", "Uploaded project files zip of somebody else");
+        final SubmissionResult replaced = submit(archive, false);
+        Assert.assertTrue(hasStage(replaced, "upload"));
+        Assert.assertEquals("4", replaced.getVersion());
+
+        final SubmissionResult deduplicated = submit(archive, false);
+        Assert.assertFalse(hasStage(deduplicated, "upload"));
+        Assert.assertEquals("4", deduplicated.getVersion());
+    }
+
+    @Test
+    public void testEntriesWithAndWithoutUploadName() throws Exception {
+        final UploadIndex index = new UploadIndex(indexFile);
+        index.put(azkaban.getUrl(), "pipeline", new UploadIndex.Entry("abc", "1", "2", "pipeline-x.zip"));
+        final UploadIndex.Entry entry = new UploadIndex(indexFile).get(azkaban.getUrl(), "pipeline");
+        Assert.assertEquals("pipeline-x.zip", entry.getUploadName());
+        Assert.assertEquals("2", entry.getVersion());
+
+        FileUtils.writeStringToFile(indexFile, "pipeline@" + azkaban.getUrl().replace(":", "\\:") + "=abc,1,2\n",
+                StandardCharsets.ISO_8859_1);
+        final UploadIndex.Entry old = new UploadIndex(indexFile).get(azkaban.getUrl(), "pipeline");
+        Assert.assertEquals("abc", old.getSha256());
+        Assert.assertNull(old.getUploadName());
+    }
+
+    @Test
+    public void testHashes() throws Exception {
+        final ByteBuffer archive = zip("one");
+        final File file = new File(folder, "archive.zip");
+        FileUtils.writeByteArrayToFile(file, archive.array());
+
+        final String sha256 = UploadIndex.sha256(archive);
+        Assert.assertEquals(64, sha256.length());
+        Assert.assertEquals(sha256, UploadIndex.sha256(file));
+        Assert.assertEquals(0, archive.position());
+        Assert.assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                UploadIndex.sha256(ByteBuffer.allocate(0)));
+    }
+
+    private SubmissionResult submit(ByteBuffer archive, boolean force) {
+        final SubmissionPipeline pipeline = new SubmissionPipeline(azkaban.getUrl(), "azkaban", "azkaban");
+        pipeline.setUploadIndex(new UploadIndex(indexFile));
+        pipeline.setForce(force);
+        return pipeline.submit(archive, "pipeline");
+    }
+
+    private static boolean hasStage(SubmissionResult result, String name) {
+        for(SubmissionResult.Stage stage : result.getStages()) {
+            if(name.equals(stage.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer zip(String command) throws IOException {
+        return ByteBuffer.wrap(StandInArchives.zip(Collections.singletonMap("flow.job",
+                StandInArchives.commandJob(command))));
+    }
+}
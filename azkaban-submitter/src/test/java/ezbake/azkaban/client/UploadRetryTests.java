@@ -0,0 +1,148 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+package ezbake.azkaban.client;
+
+import ezbake.azkaban.manager.AuthenticationManager;
+import ezbake.azkaban.manager.AzkabanSession;
+import ezbake.azkaban.manager.ProjectManager;
+import ezbake.azkaban.manager.SessionCache;
+import ezbake.azkaban.manager.UploadManager;
+import ezbake.azkaban.manager.result.ProjectLogsResult;
+import ezbake.azkaban.manager.result.UploaderResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class UploadRetryTests {
+
+    private AzkabanStandIn azkaban;
+    private AzkabanSession session;
+    private ProjectManager projectManager;
+    private File zip;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        final URI uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+        projectManager = new ProjectManager(session, uri);
+        projectManager.createProject("pipeline", "Test pipeline");
+
+        // Random bytes so the zip is a few MB and several progress events are sent
+        final byte[] jar = new byte[3 * 1024 * 1024];
+        new Random(7).nextBytes(jar);
+        final Map<String, byte[]> entries = StandInArchives.flows("flow");
+        entries.put("lib/pipeline.jar", jar);
+        zip = StandInArchives.tempZip(entries);
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        Assert.assertTrue(zip.delete());
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testLostResponseIsNotSentAgain() throws Exception {
+        final List<long[]> progress = new ArrayList<>();
+        final UploadManager uploader = uploader("pipeline");
+        uploader.setProgressListener(new UploadManager.ProgressListener() {
+            @Override
+            public void onProgress(int attempt, long bytesSent, long totalBytes, double bytesPerSecond) {
+                progress.add(new long[] {attempt, bytesSent, totalBytes});
+                Assert.assertTrue(bytesPerSecond > 0);
+            }
+        });
+        azkaban.setLostResponseRate(1, "upload");
+
+        final UploaderResult result = uploader.uploadZipWithRetries();
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertEquals("1", result.getVersion());
+        Assert.assertEquals(1, projectManager.fetchProjectLogs("pipeline").countEvents("UPLOADED"));
+        Assert.assertTrue(progress.size() > 2);
+        final long[] last = progress.get(progress.size() - 1);
+        Assert.assertEquals(1, last[0]);
+        Assert.assertEquals(last[2], last[1]);
+    }
+
+    @Test
+    public void testLandedUploadIsFoundPastOnePageOfLog() throws Exception {
+        Assert.assertEquals("1", uploader("pipeline").uploadZipWithRetries().getVersion());
+        Assert.assertEquals("2", uploader("pipeline").uploadZipWithRetries().getVersion());
+        // More events than the default page of fetchProjectLogs, so counting the uploads in it stops changing
+        for (int i = 0; i < 1500; i++) {
+            azkaban.addProjectEvent("pipeline", "PROPERTY_OVERRIDE", "Modified property " + i);
+        }
+        azkaban.setLostResponseRate(1, "upload");
+
+        final UploadManager uploader = uploader("pipeline");
+        final UploaderResult result = uploader.uploadZipWithRetries();
+
+        Assert.assertFalse(result.getError(), result.hasError());
+        Assert.assertEquals("3", result.getVersion());
+        Assert.assertEquals("1", result.getProjectId());
+        Assert.assertEquals(1, azkaban.getInjectedFailureCount());
+        final ProjectLogsResult.Event latest = projectManager.fetchProjectLogs("pipeline", 0, 10)
+                .getLatestEvent("UPLOADED");
+        Assert.assertTrue(latest.getMessage(), UploadManager.isUploadOf(latest, uploader.getUploadName()));
+        Assert.assertEquals(1000, projectManager.fetchProjectLogs("pipeline").getLogData().size());
+    }
+
+    @Test
+    public void testServerErrorsAreRetried() throws Exception {
+        azkaban.setErrorRate(1);
+
+        final UploaderResult result = uploader("pipeline").uploadZipWithRetries();
+
+        Assert.assertTrue(result.hasError());
+        Assert.assertTrue(result.getError(), result.getError().startsWith("Upload failed after 3 attempts"));
+        azkaban.setErrorRate(0);
+        Assert.assertEquals(0, projectManager.fetchProjectLogs("pipeline").countEvents("UPLOADED"));
+    }
+
+    @Test
+    public void testAzkabanErrorIsNotRetried() throws Exception {
+        final long requestsBefore = azkaban.getRequestCount();
+
+        final UploaderResult result = uploader("missing").uploadZipWithRetries();
+
+        Assert.assertTrue(result.hasError());
+        Assert.assertTrue(result.getError(), result.getError().contains("doesn't exist"));
+        // The project log lookup and a single upload
+        Assert.assertEquals(2, azkaban.getRequestCount() - requestsBefore);
+    }
+
+    private UploadManager uploader(String projectName) {
+        final UploadManager uploader = new UploadManager(session.getId(), azkaban.getUrl(), projectName, zip);
+        uploader.setMaxAttempts(3);
+        uploader.setBackoff(1, 10, TimeUnit.MILLISECONDS);
+        return uploader;
+    }
+}
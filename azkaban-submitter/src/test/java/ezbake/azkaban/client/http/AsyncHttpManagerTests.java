@@ -0,0 +1,119 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.client.http;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncHttpManagerTests {
+
+    private AzkabanStandIn azkaban;
+
+    @Before
+    public void setUp() throws Exception {
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+    }
+
+    @Test
+    public void testCompletesWithTheBody() throws Exception {
+        final ListenableFuture<String> future = AsyncHttpManager.get(flows());
+        Assert.assertEquals("{\"error\":\"session\"}", future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompletesWithTheDecodedResult() throws Exception {
+        final ProjectFlowsResult result = AsyncHttpManager.get(flows(), ProjectFlowsResult.class)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("session", result.getError());
+    }
+
+    @Test
+    public void testResponseWithoutEntityIsEmpty() throws Exception {
+        // A response to HEAD never has an entity
+        final ListenableFuture<String> future = AsyncHttpManager.execute("head", new HttpHead(azkaban.getUrl() +
+                "/executor?ajax=cancelFlow&execid=1"), new AsyncHttpManager.ResponseParser<String>() {
+                    @Override
+                    public String parse(String body) {
+                        return body;
+                    }
+                });
+        Assert.assertEquals("", future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testParserFailureFailsTheFuture() throws Exception {
+        final IllegalStateException thrown = new IllegalStateException("Unparseable");
+        final ListenableFuture<Object> future = AsyncHttpManager.execute(flows(),
+                new AsyncHttpManager.ResponseParser<Object>() {
+                    @Override
+                    public Object parse(String body) {
+                        throw thrown;
+                    }
+                });
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("The future completed although the parser failed");
+        } catch (ExecutionException e) {
+            Assert.assertSame(thrown, e.getCause());
+        }
+    }
+
+    @Test
+    public void testConnectionFailureFailsTheFuture() throws Exception {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        final ListenableFuture<String> future = AsyncHttpManager.get(
+                new HttpGet("http://localhost:" + port + "/manager?ajax=fetchprojectflows"));
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("The future completed although nothing was listening");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testErrorStatusStillCompletes() throws Exception {
+        azkaban.setErrorRate(1);
+        final ProjectFlowsResult result = AsyncHttpManager.get(flows(), ProjectFlowsResult.class)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("Injected failure", result.getError());
+    }
+
+    private HttpGet flows() {
+        return new HttpGet(azkaban.getUrl() + "/manager?ajax=fetchprojectflows&project=pipeline&session.id=unknown");
+    }
+}
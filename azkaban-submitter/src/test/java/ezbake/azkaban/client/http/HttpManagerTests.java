@@ -0,0 +1,178 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.client.http;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import ezbake.azkaban.client.metrics.AzkabanMetrics;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.codehaus.jackson.JsonParseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+public class HttpManagerTests {
+
+    private AzkabanStandIn azkaban;
+
+    @Before
+    public void setUp() throws Exception {
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+    }
+
+    @Test
+    public void testActionFromAjaxParameter() {
+        Assert.assertEquals("fetchexecflow",
+                HttpManager.actionOf(new HttpGet("http://az01:8443/executor?execid=1&ajax=fetchexecflow")));
+        Assert.assertEquals("executeFlow",
+                HttpManager.actionOf(new HttpGet("http://az01:8443/executor?ajax=executeFlow&action=ignored")));
+    }
+
+    @Test
+    public void testActionFromActionParameter() {
+        Assert.assertEquals("login", HttpManager.actionOf(new HttpPost("http://az01:8443/?action=login")));
+        Assert.assertEquals("upload", HttpManager.actionOf(new HttpPost("http://az01:8443/manager?action=upload")));
+    }
+
+    @Test
+    public void testActionOfDelete() {
+        Assert.assertEquals("delete",
+                HttpManager.actionOf(new HttpGet("http://az01:8443/manager?session.id=1&delete=true&project=p")));
+    }
+
+    @Test
+    public void testActionFromPath() {
+        // Form parameters in the body aren't looked at
+        Assert.assertEquals("schedule", HttpManager.actionOf(new HttpPost("http://az01:8443/schedule")));
+        Assert.assertEquals("root", HttpManager.actionOf(new HttpPost("http://az01:8443/")));
+        Assert.assertEquals("root", HttpManager.actionOf(new HttpPost("http://az01:8443")));
+    }
+
+    @Test
+    public void testBytesOut() {
+        final HttpPost post = new HttpPost("http://az01:8443/manager");
+        Assert.assertEquals(0, HttpManager.bytesOut(post));
+
+        post.setEntity(new ByteArrayEntity(new byte[1234]));
+        Assert.assertEquals(1234, HttpManager.bytesOut(post));
+
+        // Chunked, the length isn't known up front
+        post.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[10])));
+        Assert.assertEquals(0, HttpManager.bytesOut(post));
+
+        Assert.assertEquals(0, HttpManager.bytesOut(new HttpGet("http://az01:8443/manager")));
+        Assert.assertEquals(0, HttpManager.bytesOut(new HttpDelete("http://az01:8443/manager")));
+    }
+
+    @Test
+    public void testCallIsRecorded() throws Exception {
+        azkaban.setLatency(20, 20, TimeUnit.MILLISECONDS);
+        final String action = "fetchProjectLogs";
+        final Timer latency = AzkabanMetrics.getLatency(action);
+        final long calls = latency.getCount();
+        final long errors = AzkabanMetrics.getErrors(action).getCount();
+        final long bytesOut = bytes(action, "bytesOut").getCount();
+        final long bytesIn = bytes(action, "bytesIn").getCount();
+
+        final HttpPost post = new HttpPost(azkaban.getUrl() + "/manager?ajax=" + action);
+        post.setEntity(new StringEntity("project=pipeline&session.id=unknown", StandardCharsets.UTF_8));
+        final String response = HttpManager.post(post);
+
+        Assert.assertEquals("{\"error\":\"session\"}", response);
+        Assert.assertEquals(calls + 1, latency.getCount());
+        Assert.assertTrue(latency.getMeanRate() > 0);
+        Assert.assertTrue(latency.getSnapshot().getMax() >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertEquals(errors, AzkabanMetrics.getErrors(action).getCount());
+        Assert.assertEquals(bytesOut + post.getEntity().getContentLength(), bytes(action, "bytesOut").getCount());
+        Assert.assertEquals(bytesIn + response.length(), bytes(action, "bytesIn").getCount());
+    }
+
+    @Test
+    public void testFailedCallIsRecorded() throws Exception {
+        azkaban.setErrorRate(1);
+        final String action = "fetchexecflow";
+        final long calls = AzkabanMetrics.getLatency(action).getCount();
+        final long errors = AzkabanMetrics.getErrors(action).getCount();
+
+        HttpManager.get(new HttpGet(azkaban.getUrl() + "/executor?ajax=" + action + "&execid=1"));
+
+        Assert.assertEquals(calls + 1, AzkabanMetrics.getLatency(action).getCount());
+        Assert.assertEquals(errors + 1, AzkabanMetrics.getErrors(action).getCount());
+    }
+
+    @Test
+    public void testStringWithoutEntityIsEmpty() throws Exception {
+        Assert.assertEquals("", new HttpManager.StringResponseHandler().handleResponse(
+                new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")));
+    }
+
+    @Test
+    public void testDecodeWithoutEntity() throws Exception {
+        Assert.assertNull(HttpManager.JsonResponseHandler.decode(null, ProjectFlowsResult.class));
+    }
+
+    @Test
+    public void testDecodeEmptyBody() throws Exception {
+        Assert.assertNull(HttpManager.JsonResponseHandler.decode(new ByteArrayEntity(new byte[0]),
+                ProjectFlowsResult.class));
+        // Unknown length, only reading tells that it's empty
+        Assert.assertNull(HttpManager.JsonResponseHandler.decode(new InputStreamEntity(
+                new ByteArrayInputStream(new byte[0])), ProjectFlowsResult.class));
+    }
+
+    @Test
+    public void testDecodeJsonBody() throws Exception {
+        final ProjectFlowsResult result = HttpManager.JsonResponseHandler.decode(new StringEntity(
+                "{\"project\":\"pipeline\",\"projectId\":7,\"flows\":[{\"flowId\":\"load\"}]}",
+                StandardCharsets.UTF_8), ProjectFlowsResult.class);
+        Assert.assertEquals("pipeline", result.getProject());
+        Assert.assertEquals("7", result.getProjectId());
+        Assert.assertEquals("load", result.getFlows().get(0).getFlowId());
+        Assert.assertFalse(result.hasError());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testDecodeBodyThatIsNotJson() throws Exception {
+        // Azkaban answers some calls with an HTML page, callers catch the parse failure
+        HttpManager.JsonResponseHandler.decode(new StringEntity("<html></html>", StandardCharsets.UTF_8),
+                ProjectFlowsResult.class);
+    }
+
+    private static Counter bytes(String action, String direction) {
+        return AzkabanMetrics.getRegistry().counter(MetricRegistry.name(AzkabanMetrics.PREFIX, action, direction));
+    }
+}
@@ -0,0 +1,99 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.client.http;
+
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+public class TimedSSLConnectionSocketFactoryTests {
+
+    private TimedSSLConnectionSocketFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, null, null);
+        final Properties properties = new Properties();
+        properties.setProperty(TimedSSLConnectionSocketFactory.SESSION_CACHE_SIZE, "2");
+        TimedSSLConnectionSocketFactory.configureSessionCache(sslContext, properties);
+        factory = new TimedSSLConnectionSocketFactory(sslContext,
+                SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+    }
+
+    @Test
+    public void testSameSessionIsResumed() {
+        Assert.assertFalse(factory.isResumed(session("a")));
+        Assert.assertTrue(factory.isResumed(session("a")));
+        Assert.assertTrue(factory.isResumed(session("a")));
+        Assert.assertFalse(factory.isResumed(session("b")));
+        Assert.assertTrue(factory.isResumed(session("b")));
+    }
+
+    @Test
+    public void testSessionCreationTimeDoesNotMatter() {
+        // A session negotiated in full can have been created before the handshake started, by the server's clock
+        Assert.assertFalse(factory.isResumed(session("a", 0)));
+        Assert.assertTrue(factory.isResumed(session("a", Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testSessionWithoutIdIsNotResumed() {
+        Assert.assertFalse(factory.isResumed(session("")));
+        Assert.assertFalse(factory.isResumed(session("")));
+    }
+
+    @Test
+    public void testOnlyAsManySessionsAsTheCacheAreRemembered() {
+        factory.isResumed(session("a"));
+        factory.isResumed(session("b"));
+        Assert.assertTrue(factory.isResumed(session("a")));
+
+        // The cache holds two sessions, b was used least recently
+        factory.isResumed(session("c"));
+        Assert.assertFalse(factory.isResumed(session("b")));
+        Assert.assertTrue(factory.isResumed(session("c")));
+    }
+
+    private static SSLSession session(String id) {
+        return session(id, System.currentTimeMillis());
+    }
+
+    private static SSLSession session(final String id, final long creationTime) {
+        return (SSLSession) Proxy.newProxyInstance(SSLSession.class.getClassLoader(), new Class<?>[] {SSLSession.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if("getId".equals(method.getName())) {
+                            return id.getBytes(StandardCharsets.UTF_8);
+                        }
+                        if("getCreationTime".equals(method.getName())) {
+                            return creationTime;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,213 @@
+/*   Copyright (C) 2013-2014 Computer Sciences Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. */
+
+
+package ezbake.azkaban.manager;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import ezbake.azkaban.manager.result.ExecutionResult;
+import ezbake.azkaban.manager.result.ProjectFlowsResult;
+import ezbake.azkaban.manager.result.SchedulerResult;
+import ezbake.azkaban.standin.AzkabanStandIn;
+import ezbake.azkaban.standin.StandInArchives;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the asynchronous manager calls to an {@link AzkabanStandIn}, one at a time and through {@link AsyncCalls}
+ */
+public class AsyncCallsTests {
+
+    private AzkabanStandIn azkaban;
+    private URI uri;
+    private AzkabanSession session;
+    private ProjectManager projectManager;
+    private String projectId;
+
+    @Before
+    public void setUp() throws Exception {
+        SessionCache.getInstance().clear();
+        azkaban = new AzkabanStandIn();
+        azkaban.start(0);
+        uri = new URI(azkaban.getUrl());
+        session = new AzkabanSession(new AuthenticationManager(uri, "azkaban", "azkaban"));
+        projectManager = new ProjectManager(session, uri);
+        projectManager.createProject("pipeline", "Test pipeline");
+
+        final File zip = StandInArchives.tempZip("flow");
+        projectId = new UploadManager(session.getId(), azkaban.getUrl(), "pipeline", zip).uploadZip().getProjectId();
+        Assert.assertTrue(zip.delete());
+    }
+
+    @After
+    public void tearDown() {
+        azkaban.stop();
+        SessionCache.getInstance().clear();
+    }
+
+    @Test
+    public void testAsyncManagerCallsComplete() throws Exception {
+        final ProjectFlowsResult flows = projectManager.fetchProjectFlowsAsync("pipeline").get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(projectId, flows.getProjectId());
+
+        final ExecutionManager executionManager = new ExecutionManager(session, uri);
+        final ExecutionResult execution = executionManager.executeFlowAsync("pipeline", "flow")
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(execution.getError(), execution.hasError());
+        Assert.assertEquals("RUNNING", executionManager.fetchExecutionFlowAsync(execution.getExecId())
+                .get(10, TimeUnit.SECONDS).getStatus());
+        Assert.assertEquals("", executionManager.cancelFlowAsync(execution.getExecId()).get(10, TimeUnit.SECONDS));
+        Assert.assertEquals("Flow isn't running",
+                executionManager.cancelFlowAsync(execution.getExecId()).get(10, TimeUnit.SECONDS));
+
+        final ScheduleManager scheduleManager = new ScheduleManager(session, uri);
+        scheduleManager.setScheduleDate("08/26/2014");
+        final SchedulerResult scheduled = scheduleManager.scheduleFlowAsync("pipeline", "flow", projectId)
+                .get(10, TimeUnit.SECONDS);
+        Assert.assertFalse(scheduled.getError(), scheduled.hasError());
+        Assert.assertNotNull(scheduleManager.fetchScheduleAsync(projectId, "flow").get(10, TimeUnit.SECONDS)
+                .getSchedule());
+        Assert.assertEquals("success", scheduleManager.removeScheduleAsync(projectId, "flow")
+                .get(10, TimeUnit.SECONDS).getResult());
+    }
+
+    @Test
+    public void testAsyncManagerCallsReportAnExpiredSession() throws Exception {
+        azkaban.expireSessions();
+        Assert.assertEquals("session", projectManager.fetchProjectFlowsAsync("pipeline").get(10, TimeUnit.SECONDS)
+                .getError());
+        Assert.assertEquals("session", new ScheduleManager(session, uri).removeScheduleAsync(projectId, "flow")
+                .get(10, TimeUnit.SECONDS).getError());
+    }
+
+    @Test
+    public void testCallsComplete() throws Exception {
+        final AsyncCalls calls = new AsyncCalls(session, 4);
+        final List<FlowsCall> flowsCalls = flowsCalls(20);
+
+        calls.send(flowsCalls);
+
+        for(FlowsCall call : flowsCalls) {
+            Assert.assertNull(call.error);
+            Assert.assertEquals(projectId, call.result.getProjectId());
+        }
+        Assert.assertEquals(20, calls.getRequests());
+    }
+
+    @Test
+    public void testConcurrencyIsLimited() throws Exception {
+        azkaban.setLatency(5, 5, TimeUnit.MILLISECONDS);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final List<FlowsCall> flowsCalls = new ArrayList<>();
+        for(int i = 0; i < 20; i++) {
+            flowsCalls.add(new FlowsCall() {
+                @Override
+                ListenableFuture<ProjectFlowsResult> send() {
+                    final int current = inFlight.incrementAndGet();
+                    int max;
+                    while((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+                        // Retry until the maximum is at least the current count
+                    }
+                    return super.send();
+                }
+
+                @Override
+                void completed(ProjectFlowsResult result) {
+                    inFlight.decrementAndGet();
+                    super.completed(result);
+                }
+            });
+        }
+
+        new AsyncCalls(session, 3).send(flowsCalls);
+
+        Assert.assertTrue("At most 3 calls in flight, was " + maxInFlight.get(), maxInFlight.get() <= 3);
+        Assert.assertEquals(0, inFlight.get());
+    }
+
+    @Test
+    public void testExpiredSessionIsRenewedOnce() throws Exception {
+        final String expired = session.getId();
+        azkaban.expireSessions();
+        final AsyncCalls calls = new AsyncCalls(session, 4);
+        final List<FlowsCall> flowsCalls = flowsCalls(10);
+
+        calls.send(flowsCalls);
+
+        Assert.assertNotEquals(expired, session.getId());
+        for(FlowsCall call : flowsCalls) {
+            Assert.assertNull(call.error);
+            Assert.assertEquals(projectId, call.result.getProjectId());
+        }
+        // Every call was rejected once and sent again with the new session
+        Assert.assertEquals(20, calls.getRequests());
+    }
+
+    @Test
+    public void testFailuresAreNotSentAgain() throws Exception {
+        azkaban.setErrorRate(1);
+        final AsyncCalls calls = new AsyncCalls(session, 4);
+        final List<FlowsCall> flowsCalls = flowsCalls(5);
+
+        calls.send(flowsCalls);
+
+        for(FlowsCall call : flowsCalls) {
+            Assert.assertEquals("Injected failure", call.error);
+        }
+        Assert.assertEquals(5, calls.getRequests());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConcurrencyMustBePositive() {
+        new AsyncCalls(session, 0);
+    }
+
+    private List<FlowsCall> flowsCalls(int count) {
+        final List<FlowsCall> calls = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            calls.add(new FlowsCall());
+        }
+        return calls;
+    }
+
+    /**
+     * Fetches the flows of the project
+     */
+    private class FlowsCall extends AsyncCalls.Call<ProjectFlowsResult> {
+        volatile ProjectFlowsResult result;
+
+        @Override
+        ListenableFuture<ProjectFlowsResult> send() {
+            return projectManager.fetchProjectFlowsAsync("pipeline");
+        }
+
+        @Override
+        void completed(ProjectFlowsResult result) {
+            this.result = result;
+            if(result.hasError()) {
+                error = result.getError();
+            }
+        }
+    }
+}